@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.execute.BulkUpserter;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.schema.ConstraintViolationException;
+import org.junit.Test;
+
+public class BulkUpserterIT extends ParallelStatsDisabledIT {
+
+    @Test
+    public void testBulkUpsertIntoSaltedTableWithIndex() throws Exception {
+        String tableName = generateUniqueName();
+        String indexName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (K VARCHAR NOT NULL PRIMARY KEY, V1 INTEGER, V2 VARCHAR) SALT_BUCKETS=4");
+            conn.createStatement().execute("CREATE INDEX " + indexName + " ON " + tableName
+                    + " (V1) INCLUDE (V2)");
+            try (BulkUpserter upserter = conn.unwrap(PhoenixConnection.class)
+                    .newBulkUpserter(tableName, Arrays.asList("K", "V1", "V2"))) {
+                for (int i = 0; i < 1000; i++) {
+                    upserter.upsert(String.format("k%04d", i), i, i % 2 == 0 ? "even" : null);
+                }
+                assertEquals(1000, upserter.getRowCount());
+            }
+
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT /*+ NO_INDEX */ COUNT(*), COUNT(V2) FROM " + tableName);
+            assertTrue(rs.next());
+            assertEquals(1000, rs.getInt(1));
+            assertEquals(500, rs.getInt(2));
+
+            rs = conn.createStatement().executeQuery(
+                    "SELECT K, V2 FROM " + tableName + " WHERE V1 = 7");
+            assertTrue(rs.next());
+            assertEquals("k0007", rs.getString(1));
+            assertNull(rs.getString(2));
+            assertFalse(rs.next());
+
+            rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM " + indexName);
+            assertTrue(rs.next());
+            assertEquals(1000, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void testBulkUpsertOverwritesRows() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (K1 CHAR(3) NOT NULL, K2 BIGINT NOT NULL, V DECIMAL(10,2)"
+                    + " CONSTRAINT PK PRIMARY KEY (K1, K2 DESC))");
+            conn.createStatement().execute("UPSERT INTO " + tableName + " VALUES ('a', 1, 1.5)");
+            conn.commit();
+            try (BulkUpserter upserter = conn.unwrap(PhoenixConnection.class)
+                    .newBulkUpserter(tableName, Arrays.asList("K1", "K2", "V"))) {
+                upserter.upsert("a", 1L, 2.25);
+                upserter.upsert("a", 2L, null);
+            }
+            ResultSet rs = conn.createStatement().executeQuery("SELECT * FROM " + tableName);
+            assertTrue(rs.next());
+            assertEquals("a", rs.getString(1));
+            assertEquals(2, rs.getLong(2));
+            assertNull(rs.getBigDecimal(3));
+            assertTrue(rs.next());
+            assertEquals(1, rs.getLong(2));
+            assertEquals(2.25, rs.getDouble(3), 0);
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testBulkUpsertNotSupportedForImmutableTableWithIndex() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE IMMUTABLE TABLE " + tableName
+                    + " (K VARCHAR NOT NULL PRIMARY KEY, V VARCHAR)");
+            conn.createStatement().execute("CREATE INDEX " + generateUniqueName() + " ON "
+                    + tableName + " (V)");
+            try {
+                conn.unwrap(PhoenixConnection.class).newBulkUpserter(tableName,
+                        Arrays.asList("K", "V"));
+                fail();
+            } catch (SQLFeatureNotSupportedException e) {
+                // expected
+            }
+        }
+    }
+
+    private static List<List<Object>> getRows(Connection conn, String tableName) throws Exception {
+        ResultSet rs = conn.createStatement().executeQuery("SELECT * FROM " + tableName);
+        int columnCount = rs.getMetaData().getColumnCount();
+        List<List<Object>> rows = new ArrayList<>();
+        while (rs.next()) {
+            List<Object> row = new ArrayList<>(columnCount);
+            for (int i = 1; i <= columnCount; i++) {
+                row.add(rs.getObject(i));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Test
+    public void testBulkUpsertWithDefaultValues() throws Exception {
+        String tableName = generateUniqueName();
+        String expectedTableName = generateUniqueName();
+        String ddl = " (K1 VARCHAR NOT NULL, K2 INTEGER NOT NULL DEFAULT 7,"
+                + " V1 VARCHAR DEFAULT 'x', V2 INTEGER CONSTRAINT PK PRIMARY KEY (K1, K2))";
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + tableName + ddl);
+            conn.createStatement().execute("CREATE TABLE " + expectedTableName + ddl);
+            conn.createStatement().execute("UPSERT INTO " + expectedTableName
+                    + " (K1, V2) VALUES ('a', 1)");
+            conn.createStatement().execute("UPSERT INTO " + expectedTableName
+                    + " (K1, K2, V1) VALUES ('b', 3, 'y')");
+            conn.createStatement().execute("UPSERT INTO " + expectedTableName
+                    + " (K1, V1) VALUES ('c', 'z')");
+            conn.commit();
+            PhoenixConnection phoenixConn = conn.unwrap(PhoenixConnection.class);
+            try (BulkUpserter upserter = phoenixConn.newBulkUpserter(tableName,
+                    Arrays.asList("K1", "V2"))) {
+                upserter.upsert("a", 1);
+            }
+            try (BulkUpserter upserter = phoenixConn.newBulkUpserter(tableName,
+                    Arrays.asList("K1", "K2", "V1"))) {
+                upserter.upsert("b", 3, "y");
+                // A null primary key column value is replaced by its default value
+                upserter.upsert("c", null, "z");
+            }
+            List<List<Object>> rows = getRows(conn, tableName);
+            assertEquals(Arrays.asList("a", 7, "x", 1), rows.get(0));
+            assertEquals(getRows(conn, expectedTableName), rows);
+
+            try {
+                phoenixConn.newBulkUpserter(tableName, Arrays.asList("K2", "V1"));
+                fail();
+            } catch (ConstraintViolationException e) {
+                // expected, as K1 may not be null
+            }
+        }
+    }
+
+    @Test
+    public void testBulkUpsertAcrossRegionSplit() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (K VARCHAR NOT NULL PRIMARY KEY, V INTEGER)");
+            PhoenixConnection phoenixConn = conn.unwrap(PhoenixConnection.class);
+            try (BulkUpserter upserter = phoenixConn.newBulkUpserter(tableName,
+                    Arrays.asList("K", "V"))) {
+                for (int i = 0; i < 500; i++) {
+                    upserter.upsert(String.format("k%04d", i), i);
+                }
+                upserter.flush();
+
+                // The upserter keeps writing the rows while the region it started with is split
+                TableName physicalName = TableName.valueOf(tableName);
+                try (Admin admin = phoenixConn.getQueryServices().getAdmin()) {
+                    admin.split(physicalName, Bytes.toBytes("k0500"));
+                    int retryCount = 0;
+                    while (admin.getRegions(physicalName).size() < 2 && retryCount++ < 30) {
+                        Thread.sleep(1000);
+                    }
+                    assertEquals(2, admin.getRegions(physicalName).size());
+                }
+                for (int i = 500; i < 1000; i++) {
+                    upserter.upsert(String.format("k%04d", i), i);
+                }
+                upserter.flush();
+                for (int i = 0; i < 1000; i++) {
+                    upserter.upsert(String.format("k%04d", i), -i);
+                }
+                assertEquals(2000, upserter.getRowCount());
+            }
+
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT K, V FROM " + tableName + " ORDER BY K");
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(rs.next());
+                assertEquals(String.format("k%04d", i), rs.getString(1));
+                assertEquals(-i, rs.getInt(2));
+            }
+            assertFalse(rs.next());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.phoenix.mapreduce.ColumnBatch;
+import org.apache.phoenix.mapreduce.ColumnBatchOutputFormat;
+import org.apache.phoenix.mapreduce.ColumnBatchReader;
+import org.apache.phoenix.mapreduce.ColumnarExportTool;
+import org.junit.Test;
+
+/**
+ * Tests that {@link ColumnarExportTool} exports the rows of a table to files that
+ * {@link ColumnBatchReader} reads back.
+ */
+public class ColumnarExportToolIT extends ParallelStatsDisabledIT {
+
+    private static final int NROWS = 100;
+
+    private static String createTable() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            // Two regions, so that the rows are exported by two tasks
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (K INTEGER NOT NULL PRIMARY KEY, D DOUBLE, V VARCHAR) SPLIT ON (50)");
+            PreparedStatement stmt = conn.prepareStatement(
+                    "UPSERT INTO " + tableName + " VALUES (?, ?, ?)");
+            for (int i = 0; i < NROWS; i++) {
+                stmt.setInt(1, i);
+                stmt.setDouble(2, i / 2d);
+                stmt.setString(3, i % 7 == 0 ? null : "v" + i);
+                stmt.execute();
+            }
+            conn.commit();
+        }
+        return tableName;
+    }
+
+    private static int runTool(String tableName, Path output, String... extraArgs)
+            throws Exception {
+        ColumnarExportTool tool = new ColumnarExportTool();
+        tool.setConf(new Configuration(getUtility().getConfiguration()));
+        String[] args = new String[] { "--table", tableName, "--output", output.toString(),
+                "--batch-size", "16" };
+        String[] allArgs = new String[args.length + extraArgs.length];
+        System.arraycopy(args, 0, allArgs, 0, args.length);
+        System.arraycopy(extraArgs, 0, allArgs, args.length, extraArgs.length);
+        return tool.run(allArgs);
+    }
+
+    /**
+     * Reads the rows of all the files of the export, keyed by the value of their first column.
+     */
+    private static void readRows(Path output, String[] expectedNames, int expectedFiles,
+            Map<Long, Object[]> rows) throws Exception {
+        FileSystem fs = output.getFileSystem(getUtility().getConfiguration());
+        int files = 0;
+        for (FileStatus status : fs.listStatus(output)) {
+            if (!status.getPath().getName().endsWith(ColumnBatchOutputFormat.EXTENSION)) {
+                continue;
+            }
+            files++;
+            try (ColumnBatchReader reader = new ColumnBatchReader(fs.open(status.getPath()))) {
+                if (reader.getColumnNames().length > 0) {
+                    assertArrayEquals(expectedNames, reader.getColumnNames());
+                }
+                ColumnBatch batch;
+                while ((batch = reader.next()) != null) {
+                    assertTrue(batch.getSize() <= 16);
+                    ColumnBatch.Column[] columns = batch.getColumns();
+                    for (int i = 0; i < batch.getSize(); i++) {
+                        Object[] row = new Object[columns.length];
+                        for (int j = 0; j < columns.length; j++) {
+                            if (columns[j].getNulls()[i]) {
+                                continue;
+                            }
+                            switch (columns[j].getKind()) {
+                            case LONG:
+                                row[j] = columns[j].getLongs()[i];
+                                break;
+                            case DOUBLE:
+                                row[j] = columns[j].getDoubles()[i];
+                                break;
+                            default:
+                                row[j] = columns[j].getType().toObject(columns[j].getBytes()[i]);
+                            }
+                        }
+                        assertNull(rows.put((Long) row[0], row));
+                    }
+                }
+            }
+        }
+        assertEquals(expectedFiles, files);
+    }
+
+    @Test
+    public void testExportTable() throws Exception {
+        String tableName = createTable();
+        Path output = new Path("/tmp/" + tableName);
+        assertEquals(0, runTool(tableName, output));
+
+        Map<Long, Object[]> rows = new TreeMap<>();
+        readRows(output, new String[] { "K", "D", "V" }, 2, rows);
+        assertEquals(NROWS, rows.size());
+        for (int i = 0; i < NROWS; i++) {
+            Object[] row = rows.get((long) i);
+            assertEquals(i / 2d, (Double) row[1], 0d);
+            assertEquals(i % 7 == 0 ? null : "v" + i, row[2]);
+        }
+    }
+
+    @Test
+    public void testExportQuery() throws Exception {
+        String tableName = createTable();
+        Path output = new Path("/tmp/" + tableName);
+        assertEquals(0, runTool(tableName, output, "--query",
+                "SELECT K, V FROM " + tableName + " WHERE K >= 60"));
+
+        Map<Long, Object[]> rows = new TreeMap<>();
+        // Only the second region holds rows of the query, so a single task exports them
+        readRows(output, new String[] { "K", "V" }, 1, rows);
+        assertEquals(NROWS - 60, rows.size());
+        for (int i = 60; i < NROWS; i++) {
+            Object[] row = rows.get((long) i);
+            assertEquals(2, row.length);
+            assertEquals(i % 7 == 0 ? null : "v" + i, row[1]);
+        }
+        assertFalse(rows.containsKey(59L));
+    }
+}
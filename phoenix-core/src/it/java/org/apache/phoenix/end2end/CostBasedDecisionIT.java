@@ -18,12 +18,16 @@
 package org.apache.phoenix.end2end;
 
 import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -36,6 +40,7 @@ import org.apache.phoenix.util.ReadOnlyProps;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
 
 public class CostBasedDecisionIT extends BaseUniqueNamesOwnClusterIT {
@@ -639,6 +644,46 @@ public class CostBasedDecisionIT extends BaseUniqueNamesOwnClusterIT {
         verifyQueryPlan(q, expected);
     }
 
+    /**
+     * Star join: without a wildcard, the RHS table with fewer rows is probed first even though
+     * it comes last in the query, and the rows are the same as with the query order.
+     */
+    @Test
+    public void testStarJoinOrder() throws Exception {
+        String select = "SELECT t1.ID, t2.ID, t3.ID\n";
+        String from = "FROM " + testTable1000 + " t1 JOIN " + testTable500 + " t2\n" +
+                "ON t1.COL1 = t2.COL1 AND t2.ID > 200\n" +
+                "JOIN " + testTable990 + " t3\n" +
+                "ON t1.COL2 = t3.COL2 AND t3.ID > 900";
+        String expected =
+                "CLIENT PARALLEL 1-WAY FULL SCAN OVER " + testTable1000 + "\n" +
+                "    PARALLEL INNER-JOIN TABLE 0\n" +
+                "        CLIENT PARALLEL 1-WAY RANGE SCAN OVER " + testTable990 + " [901] - [*]\n" +
+                "    PARALLEL INNER-JOIN TABLE 1\n" +
+                "        CLIENT PARALLEL 1-WAY RANGE SCAN OVER " + testTable500 + " [201] - [*]";
+        verifyQueryPlan(select + from, expected);
+
+        // Without a star join, the joins are run in the query order
+        String noStarJoinSelect = "SELECT /*+ NO_STAR_JOIN */ t1.ID, t2.ID, t3.ID\n";
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            List<String> rows = getRows(conn, select + from);
+            List<String> expectedRows = getRows(conn, noStarJoinSelect + from);
+            assertFalse(expectedRows.isEmpty());
+            assertEquals(expectedRows, rows);
+        }
+    }
+
+    private static List<String> getRows(Connection conn, String query) throws Exception {
+        List<String> rows = Lists.newArrayList();
+        ResultSet rs = conn.createStatement().executeQuery(query);
+        while (rs.next()) {
+            rows.add(rs.getInt(1) + "," + rs.getInt(2) + "," + rs.getInt(3));
+        }
+        Collections.sort(rows);
+        return rows;
+    }
+
     private static void verifyQueryPlan(String query, String expected) throws Exception {
         Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
         Connection conn = DriverManager.getConnection(getUrl(), props);
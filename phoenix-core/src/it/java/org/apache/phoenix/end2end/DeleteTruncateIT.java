@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.Properties;
+
+import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.apache.phoenix.util.QueryUtil;
+import org.junit.Test;
+
+public class DeleteTruncateIT extends ParallelStatsDisabledIT {
+
+    private static Connection getConnection() throws Exception {
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        props.setProperty(QueryServices.ENABLE_DELETE_TRUNCATE, Boolean.TRUE.toString());
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        conn.setAutoCommit(true);
+        return conn;
+    }
+
+    private static boolean truncates(Connection conn, String delete) throws Exception {
+        ResultSet rs = conn.createStatement().executeQuery("EXPLAIN " + delete);
+        return QueryUtil.getExplainPlan(rs).startsWith("DELETE ALL ROWS BY TRUNCATING TABLE");
+    }
+
+    private static long count(Connection conn, String table) throws Exception {
+        ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM " + table);
+        assertTrue(rs.next());
+        return rs.getLong(1);
+    }
+
+    @Test
+    public void testDeleteAllRowsTruncatesTableAndIndex() throws Exception {
+        String table = generateUniqueName();
+        String index = generateUniqueName();
+        try (Connection conn = getConnection()) {
+            conn.createStatement().execute("CREATE TABLE " + table
+                    + " (K INTEGER NOT NULL PRIMARY KEY, V VARCHAR) SPLIT ON (5)");
+            conn.createStatement().execute("CREATE INDEX " + index + " ON " + table + " (V)");
+            for (int i = 1; i <= 10; i++) {
+                conn.createStatement().execute(
+                        "UPSERT INTO " + table + " VALUES (" + i + ", 'v" + i + "')");
+            }
+            // Deleting a part of the rows writes delete markers
+            String partial = "DELETE FROM " + table + " WHERE K > 8";
+            assertFalse(truncates(conn, partial));
+            assertEquals(2, conn.createStatement().executeUpdate(partial));
+
+            String delete = "DELETE FROM " + table;
+            assertTrue(truncates(conn, delete));
+            assertEquals(8, conn.createStatement().executeUpdate(delete));
+            assertEquals(0, count(conn, table));
+            assertEquals(0, count(conn, index));
+
+            // The table and its index are usable after being truncated
+            conn.createStatement().execute("UPSERT INTO " + table + " VALUES (1, 'a')");
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT K FROM " + table + " WHERE V = 'a'");
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt(1));
+            assertFalse(rs.next());
+        }
+    }
+
+    private static long countGuidePosts(Connection conn, String physicalName) throws Exception {
+        ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM "
+                + PhoenixDatabaseMetaData.SYSTEM_STATS_NAME + " WHERE "
+                + PhoenixDatabaseMetaData.PHYSICAL_NAME + " = '" + physicalName + "'");
+        assertTrue(rs.next());
+        return rs.getLong(1);
+    }
+
+    @Test
+    public void testDeleteAllRowsDropsGuidePosts() throws Exception {
+        String table = generateUniqueName();
+        String index = generateUniqueName();
+        try (Connection conn = getConnection()) {
+            conn.createStatement().execute("CREATE TABLE " + table
+                    + " (K INTEGER NOT NULL PRIMARY KEY, V VARCHAR) "
+                    + PhoenixDatabaseMetaData.GUIDE_POSTS_WIDTH + "=20");
+            conn.createStatement().execute("CREATE INDEX " + index + " ON " + table + " (V)");
+            for (int i = 1; i <= 20; i++) {
+                conn.createStatement().execute(
+                        "UPSERT INTO " + table + " VALUES (" + i + ", 'v" + i + "')");
+            }
+            conn.createStatement().execute("UPDATE STATISTICS " + table + " ALL");
+            assertTrue(countGuidePosts(conn, table) > 0);
+
+            assertEquals(20, conn.createStatement().executeUpdate("DELETE FROM " + table));
+            assertEquals(0, countGuidePosts(conn, table));
+            assertEquals(0, countGuidePosts(conn, index));
+            assertEquals(0, count(conn, table));
+
+            // The tables are writable again once truncated
+            conn.createStatement().execute("UPSERT INTO " + table + " VALUES (1, 'a')");
+            assertEquals(1, count(conn, table));
+        }
+    }
+}
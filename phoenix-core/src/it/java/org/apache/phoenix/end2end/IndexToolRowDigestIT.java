@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.mapreduce.index.PhoenixIndexToolJobCounters.BEFORE_REBUILD_INVALID_INDEX_ROW_COUNT;
+import static org.apache.phoenix.mapreduce.index.PhoenixIndexToolJobCounters.BEFORE_REBUILD_MISSING_INDEX_ROW_COUNT;
+import static org.apache.phoenix.mapreduce.index.PhoenixIndexToolJobCounters.BEFORE_REBUILD_VALID_INDEX_ROW_COUNT;
+import static org.apache.phoenix.mapreduce.index.PhoenixIndexToolJobCounters.REBUILT_INDEX_ROW_COUNT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.phoenix.compat.hbase.HbaseCompatCapabilities;
+import org.apache.phoenix.coprocessor.GlobalIndexRegionScanner;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.mapreduce.index.IndexTool;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.SchemaUtil;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+@Category(NeedsOwnMiniClusterTest.class)
+public class IndexToolRowDigestIT extends BaseUniqueNamesOwnClusterIT {
+    private static final int NROWS = 10;
+
+    @BeforeClass
+    public static synchronized void setup() throws Exception {
+        Map<String, String> serverProps = Maps.newHashMapWithExpectedSize(2);
+        serverProps.put(GlobalIndexRegionScanner.INDEX_VERIFY_USE_ROW_DIGEST_CONF_KEY,
+                Boolean.TRUE.toString());
+        serverProps.put(QueryServices.GLOBAL_INDEX_ROW_AGE_THRESHOLD_TO_DELETE_MS_ATTRIB,
+                Long.toString(0));
+        setUpTestDriver(new ReadOnlyProps(serverProps.entrySet().iterator()));
+    }
+
+    private static Counters runVerifyOnly(String schemaName, String dataTableName,
+            String indexTableName) throws Exception {
+        IndexTool indexTool = IndexToolIT.runIndexTool(true, false, schemaName, dataTableName,
+                indexTableName, null, 0, IndexTool.IndexVerifyType.ONLY);
+        return indexTool.getJob().getCounters();
+    }
+
+    @Test
+    public void testRowDigestVerification() throws Exception {
+        Assume.assumeTrue(HbaseCompatCapabilities.isRawFilterSupported());
+        String schemaName = generateUniqueName();
+        String dataTableName = generateUniqueName();
+        String dataTableFullName = SchemaUtil.getTableName(schemaName, dataTableName);
+        String indexTableName = generateUniqueName();
+        String indexTableFullName = SchemaUtil.getTableName(schemaName, indexTableName);
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + dataTableFullName
+                    + " (ID INTEGER NOT NULL PRIMARY KEY, NAME VARCHAR, ZIP INTEGER)");
+            conn.createStatement().execute(String.format(
+                    "CREATE INDEX %s ON %s (NAME) INCLUDE (ZIP)", indexTableName, dataTableFullName));
+            PreparedStatement stmt = conn.prepareStatement(
+                    "UPSERT INTO " + dataTableFullName + " VALUES (?, ?, ?)");
+            // Each index row gets several versions of its covered column and empty column
+            for (int version = 0; version < 3; version++) {
+                for (int i = 0; i < NROWS; i++) {
+                    stmt.setInt(1, i);
+                    stmt.setString(2, "name" + i);
+                    stmt.setInt(3, 1000 * version + i);
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+            }
+
+            // The digests of the latest versions match although the raw rows have older versions
+            Counters counters = runVerifyOnly(schemaName, dataTableName, indexTableName);
+            assertEquals(0, counters.findCounter(REBUILT_INDEX_ROW_COUNT).getValue());
+            assertEquals(NROWS, counters.findCounter(BEFORE_REBUILD_VALID_INDEX_ROW_COUNT).getValue());
+            assertEquals(0, counters.findCounter(BEFORE_REBUILD_INVALID_INDEX_ROW_COUNT).getValue());
+            assertEquals(0, counters.findCounter(BEFORE_REBUILD_MISSING_INDEX_ROW_COUNT).getValue());
+
+            // Delete one index row behind Phoenix so that its digest no longer matches
+            try (Table indexHTable = conn.unwrap(PhoenixConnection.class).getQueryServices()
+                    .getTable(Bytes.toBytes(indexTableFullName));
+                    ResultScanner scanner = indexHTable.getScanner(new Scan())) {
+                Result result = scanner.next();
+                assertNotNull(result);
+                indexHTable.delete(new Delete(result.getRow()));
+            }
+            counters = runVerifyOnly(schemaName, dataTableName, indexTableName);
+            assertEquals(NROWS - 1,
+                    counters.findCounter(BEFORE_REBUILD_VALID_INDEX_ROW_COUNT).getValue());
+            assertEquals(1, counters.findCounter(BEFORE_REBUILD_INVALID_INDEX_ROW_COUNT).getValue()
+                    + counters.findCounter(BEFORE_REBUILD_MISSING_INDEX_ROW_COUNT).getValue());
+        }
+    }
+}
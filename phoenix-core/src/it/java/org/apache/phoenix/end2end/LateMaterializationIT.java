@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.phoenix.execute.HashJoinPlan;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.junit.Test;
+
+/**
+ * Compares the results of ORDER BY ... LIMIT queries rewritten for late materialization with
+ * the results of the same queries without the rewrite
+ */
+public class LateMaterializationIT extends ParallelStatsDisabledIT {
+    private static final int NROWS = 50;
+
+    private static Connection getConnection(boolean lateMaterialization) throws Exception {
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        props.setProperty(QueryServices.LATE_MATERIALIZATION_ENABLED_ATTRIB,
+                Boolean.toString(lateMaterialization));
+        props.setProperty(QueryServices.LATE_MATERIALIZATION_MIN_COLUMNS_ATTRIB, "4");
+        return DriverManager.getConnection(getUrl(), props);
+    }
+
+    private static String createTable() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (K1 VARCHAR NOT NULL, K2 INTEGER NOT NULL, A VARCHAR, B INTEGER,"
+                    + " C DECIMAL, D VARCHAR CONSTRAINT PK PRIMARY KEY (K1, K2))"
+                    + " SALT_BUCKETS=3");
+            PreparedStatement stmt = conn.prepareStatement(
+                    "UPSERT INTO " + tableName + " VALUES (?, ?, ?, ?, ?, ?)");
+            for (int i = 0; i < NROWS; i++) {
+                stmt.setString(1, "k" + (i % 7));
+                stmt.setInt(2, i);
+                // Every third row has no A and every fourth row has no B
+                stmt.setString(3, i % 3 == 0 ? null : "a" + (i % 5));
+                if (i % 4 == 0) {
+                    stmt.setNull(4, Types.INTEGER);
+                } else {
+                    stmt.setInt(4, (i * 37) % 11);
+                }
+                stmt.setBigDecimal(5, new BigDecimal(i).movePointLeft(1));
+                stmt.setString(6, i % 2 == 0 ? null : "d" + i);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+        }
+        return tableName;
+    }
+
+    private static List<List<Object>> getRows(Connection conn, String query) throws Exception {
+        ResultSet rs = conn.createStatement().executeQuery(query);
+        int columnCount = rs.getMetaData().getColumnCount();
+        List<List<Object>> rows = new ArrayList<>();
+        while (rs.next()) {
+            List<Object> row = new ArrayList<>(columnCount);
+            for (int i = 1; i <= columnCount; i++) {
+                row.add(rs.getObject(i));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static void assertSameResults(String tableName, String query) throws Exception {
+        query = query.replace(" FROM T ", " FROM " + tableName + " ");
+        try (Connection conn = getConnection(true); Connection baseConn = getConnection(false)) {
+            assertTrue(query, conn.createStatement().unwrap(PhoenixStatement.class)
+                    .optimizeQuery(query) instanceof HashJoinPlan);
+            assertFalse(query, baseConn.createStatement().unwrap(PhoenixStatement.class)
+                    .optimizeQuery(query) instanceof HashJoinPlan);
+            List<List<Object>> expectedRows = getRows(baseConn, query);
+            assertFalse(query, expectedRows.isEmpty());
+            assertEquals(query, expectedRows, getRows(conn, query));
+        }
+    }
+
+    @Test
+    public void testOrderByLimit() throws Exception {
+        String tableName = createTable();
+        // The sort keys are unique, so both queries return the same rows in the same order
+        for (String query : Arrays.asList(
+                "SELECT * FROM T ORDER BY C LIMIT 10",
+                "SELECT * FROM T ORDER BY C DESC LIMIT 10",
+                "SELECT K2, D, C, A, B FROM T ORDER BY B DESC, K2 LIMIT 7",
+                "SELECT * FROM T WHERE K1 = 'k3' ORDER BY C DESC LIMIT 3",
+                "SELECT * FROM T WHERE B > 3 ORDER BY A, K2 DESC LIMIT 12",
+                "SELECT * FROM T ORDER BY K2 LIMIT 5 OFFSET 4",
+                "SELECT * FROM T ORDER BY C LIMIT " + (NROWS + 10))) {
+            assertSameResults(tableName, query);
+        }
+    }
+
+    @Test
+    public void testNullColumns() throws Exception {
+        String tableName = createTable();
+        for (String query : Arrays.asList(
+                "SELECT * FROM T ORDER BY A NULLS FIRST, K2 LIMIT 20",
+                "SELECT * FROM T ORDER BY A NULLS LAST, K2 LIMIT 20",
+                "SELECT * FROM T ORDER BY B DESC NULLS FIRST, C LIMIT 15",
+                "SELECT * FROM T ORDER BY B DESC NULLS LAST, C LIMIT 15",
+                "SELECT * FROM T WHERE D IS NULL ORDER BY A DESC, C LIMIT 10",
+                "SELECT K1, K2, D, B FROM T WHERE A IS NULL ORDER BY D, K2 LIMIT 10")) {
+            assertSameResults(tableName, query);
+        }
+    }
+
+    @Test
+    public void testRowUpdatedBetweenPhases() throws Exception {
+        String tableName = createTable();
+        String query = "SELECT * FROM " + tableName + " WHERE B > 3 ORDER BY C LIMIT 5";
+        try (Connection conn = getConnection(true)) {
+            List<List<Object>> rows = getRows(conn, query);
+            assertEquals(5, rows.size());
+            String k1 = (String) rows.get(0).get(0);
+            int k2 = (Integer) rows.get(0).get(1);
+            // The primary keys of the rows to return are found before the rows are read
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            try (Connection writeConn = DriverManager.getConnection(getUrl())) {
+                writeConn.createStatement().execute("UPSERT INTO " + tableName
+                        + " (K1, K2, B) VALUES ('" + k1 + "', " + k2 + ", 0)");
+                writeConn.commit();
+            }
+            int count = 0;
+            while (rs.next()) {
+                assertTrue(rs.getInt("B") > 3);
+                assertFalse(k1.equals(rs.getString("K1")) && k2 == rs.getInt("K2"));
+                count++;
+            }
+            assertTrue(count <= 5);
+        }
+    }
+}
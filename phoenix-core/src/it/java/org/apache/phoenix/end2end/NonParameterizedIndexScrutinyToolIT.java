@@ -26,6 +26,8 @@ import org.apache.phoenix.util.PropertiesUtil;
 import org.apache.phoenix.util.SchemaUtil;
 import org.junit.Test;
 
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -227,6 +229,70 @@ public class NonParameterizedIndexScrutinyToolIT extends IndexScrutinyToolBaseIT
         }
     }
 
+    @Test
+    public void testIncrementalScrutinySkipsOlderRows() throws Exception {
+        String dataTableName = generateUniqueName();
+        String indexTableName = generateUniqueName();
+        String dataTableDDL = "CREATE TABLE %s (ID INTEGER NOT NULL PRIMARY KEY, NAME VARCHAR, "
+                + "ZIP INTEGER)";
+        String indexTableDDL = "CREATE INDEX %s ON %s (NAME) INCLUDE (ZIP)";
+        String upsertData = "UPSERT INTO %s VALUES (?, ?, ?)";
+        String upsertIndex = "UPSERT INTO %s (\"0:NAME\", \":ID\", \"0:ZIP\") values (?,?,?)";
+
+        try (Connection conn =
+                DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))) {
+            conn.createStatement().execute(String.format(dataTableDDL, dataTableName));
+            conn.createStatement().execute(String.format(indexTableDDL, indexTableName,
+                    dataTableName));
+            PreparedStatement upsertDataStmt = conn.prepareStatement(String.format(upsertData,
+                    dataTableName));
+            PreparedStatement upsertIndexStmt = conn.prepareStatement(String.format(upsertIndex,
+                    indexTableName));
+            // A valid row and a row with a mismatching index row before the start time
+            upsertRow(upsertDataStmt, 1, "name-1", 98051);
+            upsertRow(upsertDataStmt, 2, "name-2", 98052);
+            conn.commit();
+            upsertIndexStmt.setString(1, "name-2");
+            upsertIndexStmt.setInt(2, 2);
+            upsertIndexStmt.setInt(3, 11111);
+            upsertIndexStmt.executeUpdate();
+            conn.commit();
+
+            Thread.sleep(10);
+            long startTime = EnvironmentEdgeManager.currentTimeMillis();
+            Thread.sleep(10);
+
+            // The same after the start time
+            upsertRow(upsertDataStmt, 3, "name-3", 98053);
+            upsertRow(upsertDataStmt, 4, "name-4", 98054);
+            conn.commit();
+            upsertIndexStmt.setString(1, "name-4");
+            upsertIndexStmt.setInt(2, 4);
+            upsertIndexStmt.setInt(3, 22222);
+            upsertIndexStmt.executeUpdate();
+            conn.commit();
+
+            List<Job> completedJobs = runScrutiny(null, dataTableName, indexTableName);
+            Counters counters = completedJobs.get(0).getCounters();
+            assertEquals(2, getCounterValue(counters, VALID_ROW_COUNT));
+            assertEquals(2, getCounterValue(counters, INVALID_ROW_COUNT));
+
+            // The incremental scrutiny only compares the rows written after the start time
+            String[] cmdArgs = getArgValues(null, dataTableName, indexTableName, null, null,
+                    false, null, null, null, Long.MAX_VALUE);
+            List<String> args = Lists.newArrayList(cmdArgs);
+            args.add("-st");
+            args.add(String.valueOf(startTime));
+            completedJobs = runScrutiny(IndexScrutinyMapperForTest.class,
+                    args.toArray(new String[0]));
+            Job job = completedJobs.get(0);
+            assertTrue(job.isSuccessful());
+            counters = job.getCounters();
+            assertEquals(1, getCounterValue(counters, VALID_ROW_COUNT));
+            assertEquals(1, getCounterValue(counters, INVALID_ROW_COUNT));
+        }
+    }
+
     public static void upsertRow(PreparedStatement stmt, int id, String name, byte[] val) throws
             SQLException {
         int index = 1;
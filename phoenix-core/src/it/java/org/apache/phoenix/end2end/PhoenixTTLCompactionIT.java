@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.util.PhoenixRuntime.TENANT_ID_ATTRIB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.TestUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(NeedsOwnMiniClusterTest.class)
+public class PhoenixTTLCompactionIT extends BaseUniqueNamesOwnClusterIT {
+
+    @BeforeClass
+    public static synchronized void doSetup() throws Exception {
+        Map<String, String> props = Maps.newHashMapWithExpectedSize(1);
+        props.put(QueryServices.PHOENIX_TTL_COMPACTION_EXPIRY_ENABLED, Boolean.TRUE.toString());
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    /**
+     * Creates a tenant view and upserts three rows through it, from the given key.
+     */
+    private static void createTenantView(String tenantId, String table, String view,
+            String viewDefinition, int firstKey) throws Exception {
+        try (Connection conn = DriverManager.getConnection(
+                getUrl() + ';' + TENANT_ID_ATTRIB + '=' + tenantId)) {
+            conn.createStatement().execute(
+                    "CREATE VIEW " + view + " AS SELECT * FROM " + table + " " + viewDefinition);
+            for (int i = firstKey; i < firstKey + 3; i++) {
+                conn.createStatement().execute(
+                        "UPSERT INTO " + view + " (K, V) VALUES (" + i + ", 'v" + i + "')");
+            }
+            conn.commit();
+        }
+    }
+
+    @Test
+    public void testMajorCompactionDropsExpiredViewRows() throws Exception {
+        String table = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + table
+                    + " (TENANT_ID VARCHAR NOT NULL, K INTEGER NOT NULL, V VARCHAR"
+                    + " CONSTRAINT PK PRIMARY KEY (TENANT_ID, K)) MULTI_TENANT=true");
+        }
+        // Expired, and the rows of t10 must not be taken for the rows of t1
+        createTenantView("t1", table, generateUniqueName(), "PHOENIX_TTL=1", 1);
+        createTenantView("t10", table, generateUniqueName(), "", 1);
+        createTenantView("t2", table, generateUniqueName(), "PHOENIX_TTL=1000", 1);
+        // Only the rows in the key range of the view are expired
+        createTenantView("t3", table, generateUniqueName(), "WHERE K > 100 PHOENIX_TTL=1", 101);
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            // Rows written to the base table outside of the key ranges of the views are kept
+            for (String tenantId : new String[] { "t3", "t4" }) {
+                for (int i = 1; i <= 3; i++) {
+                    conn.createStatement().execute("UPSERT INTO " + table + " VALUES ('"
+                            + tenantId + "', " + i + ", 'v" + i + "')");
+                }
+            }
+            conn.commit();
+        }
+
+        Thread.sleep(2500);
+        getUtility().getAdmin().flush(TableName.valueOf(table));
+        TestUtil.majorCompact(getUtility(), TableName.valueOf(table));
+
+        try (Connection conn = DriverManager.getConnection(getUrl());
+                Table hTable = conn.unwrap(PhoenixConnection.class).getQueryServices()
+                        .getTable(Bytes.toBytes(table))) {
+            // The rows of t10, t2, and those written to the base table for t3 and t4
+            assertEquals(12, TestUtil.getRawRowCount(hTable));
+        }
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM " + table
+                    + " WHERE TENANT_ID IN ('t1', 't3') AND K > 100");
+            assertTrue(rs.next());
+            assertEquals(0, rs.getLong(1));
+        }
+    }
+
+    @Test
+    public void testViewCreatedAfterCompactionIsExpired() throws Exception {
+        String table = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + table
+                    + " (TENANT_ID VARCHAR NOT NULL, K INTEGER NOT NULL, V VARCHAR"
+                    + " CONSTRAINT PK PRIMARY KEY (TENANT_ID, K)) MULTI_TENANT=true");
+        }
+        createTenantView("t1", table, generateUniqueName(), "PHOENIX_TTL=1", 1);
+        Thread.sleep(2500);
+        getUtility().getAdmin().flush(TableName.valueOf(table));
+        TestUtil.majorCompact(getUtility(), TableName.valueOf(table));
+
+        // The key ranges compiled by the first compaction must not hide the new view
+        createTenantView("t2", table, generateUniqueName(), "PHOENIX_TTL=1", 1);
+        Thread.sleep(2500);
+        getUtility().getAdmin().flush(TableName.valueOf(table));
+        TestUtil.majorCompact(getUtility(), TableName.valueOf(table));
+
+        try (Connection conn = DriverManager.getConnection(getUrl());
+                Table hTable = conn.unwrap(PhoenixConnection.class).getQueryServices()
+                        .getTable(Bytes.toBytes(table))) {
+            assertEquals(0, TestUtil.getRawRowCount(hTable));
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.monitoring.MetricType.RESULT_CACHE_HITS;
+import static org.apache.phoenix.monitoring.MetricType.RESULT_CACHE_MISSES;
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.monitoring.MetricType;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.junit.Test;
+
+public class ResultCacheIT extends ParallelStatsDisabledIT {
+
+    private static long getMetric(ResultSet rs, String tableName, MetricType type)
+            throws Exception {
+        Map<MetricType, Long> metrics = PhoenixRuntime.getRequestReadMetricInfo(rs).get(tableName);
+        Long value = metrics == null ? null : metrics.get(type);
+        return value == null ? 0 : value;
+    }
+
+    private static Properties getScnProperties(long scn) {
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        props.setProperty(PhoenixRuntime.CURRENT_SCN_ATTRIB, Long.toString(scn));
+        props.setProperty(QueryServices.COLLECT_REQUEST_LEVEL_METRICS, Boolean.TRUE.toString());
+        // The tables are queried right after they are written to
+        props.setProperty(QueryServices.RESULT_CACHE_SCN_MARGIN_MS_ATTRIB, "0");
+        return props;
+    }
+
+    private static Connection getScnConnection(long scn, boolean enableCache) throws Exception {
+        Properties props = getScnProperties(scn);
+        if (enableCache) {
+            props.setProperty(QueryServices.RESULT_CACHE_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        }
+        return DriverManager.getConnection(getUrl(), props);
+    }
+
+    private static long createTable(String tableName, String indexName) throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (K INTEGER NOT NULL PRIMARY KEY, V VARCHAR, W INTEGER)");
+            conn.createStatement().execute(
+                    "CREATE INDEX " + indexName + " ON " + tableName + " (V)");
+            PreparedStatement stmt = conn.prepareStatement(
+                    "UPSERT INTO " + tableName + " VALUES (?, ?, ?)");
+            for (int i = 0; i < 10; i++) {
+                stmt.setInt(1, i);
+                stmt.setString(2, i % 2 == 0 ? "a" : "b");
+                stmt.setInt(3, i);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+        }
+        long scn = EnvironmentEdgeManager.currentTimeMillis();
+        Thread.sleep(1);
+        return scn;
+    }
+
+    private static int count(ResultSet rs) throws Exception {
+        int count = 0;
+        while (rs.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+        String tableName = generateUniqueName();
+        String indexName = generateUniqueName();
+        long scn = createTable(tableName, indexName);
+        String query = "SELECT K, V FROM " + tableName + " WHERE V = ?";
+        try (Connection conn = getScnConnection(scn, true)) {
+            PreparedStatement stmt = conn.prepareStatement(query);
+            stmt.setString(1, "a");
+            ResultSet rs = stmt.executeQuery();
+            assertEquals(5, count(rs));
+            assertEquals(1, getMetric(rs, tableName, RESULT_CACHE_MISSES));
+            assertEquals(0, getMetric(rs, tableName, RESULT_CACHE_HITS));
+
+            rs = stmt.executeQuery();
+            assertEquals(1, getMetric(rs, tableName, RESULT_CACHE_HITS));
+            assertEquals(0, getMetric(rs, tableName, RESULT_CACHE_MISSES));
+            for (int k = 0; k < 10; k += 2) {
+                assertTrue(rs.next());
+                assertEquals(k, rs.getInt(1));
+                assertEquals("a", rs.getString(2));
+            }
+            assertFalse(rs.next());
+            // The last query plan is the optimized one the results are for
+            assertEquals(indexName, stmt.unwrap(PhoenixStatement.class).getQueryPlan()
+                    .getTableRef().getTable().getTableName().getString());
+
+            // Other bind values are another query
+            stmt.setString(1, "b");
+            rs = stmt.executeQuery();
+            assertEquals(5, count(rs));
+            assertEquals(1, getMetric(rs, tableName, RESULT_CACHE_MISSES));
+        }
+    }
+
+    @Test
+    public void testCacheEnabledByConnectionProperty() throws Exception {
+        String tableName = generateUniqueName();
+        String indexName = generateUniqueName();
+        long scn = createTable(tableName, indexName);
+        String query = "SELECT COUNT(*) FROM " + tableName;
+        try (Connection conn = getScnConnection(scn, false)) {
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals(10, rs.getInt(1));
+            assertEquals(0, getMetric(rs, tableName, RESULT_CACHE_MISSES));
+            assertEquals(0, getMetric(rs, tableName, RESULT_CACHE_HITS));
+        }
+        try (Connection conn = getScnConnection(scn, true)) {
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertFalse(rs.next());
+            assertEquals(1, getMetric(rs, tableName, RESULT_CACHE_MISSES));
+            rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals(10, rs.getInt(1));
+            assertEquals(1, getMetric(rs, tableName, RESULT_CACHE_HITS));
+        }
+        // The results are not shared with connections opened with other properties
+        Properties props = getScnProperties(scn);
+        props.setProperty(QueryServices.RESULT_CACHE_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        props.setProperty(QueryServices.DATE_FORMAT_ATTRIB, "yyyy-MM-dd");
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals(10, rs.getInt(1));
+            assertEquals(1, getMetric(rs, tableName, RESULT_CACHE_MISSES));
+            assertEquals(0, getMetric(rs, tableName, RESULT_CACHE_HITS));
+        }
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        String tableName = generateUniqueName();
+        String indexName = generateUniqueName();
+        long scn = createTable(tableName, indexName);
+        String query = "SELECT K, W FROM " + tableName + " WHERE W > 4";
+        try (Connection conn = getScnConnection(scn, true)) {
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            assertEquals(5, count(rs));
+            assertEquals(1, getMetric(rs, tableName, RESULT_CACHE_MISSES));
+            rs = conn.createStatement().executeQuery(query);
+            assertEquals(5, count(rs));
+            assertEquals(1, getMetric(rs, tableName, RESULT_CACHE_HITS));
+
+            // Clearing the metadata cache of the query services clears the cached results
+            conn.unwrap(PhoenixConnection.class).getQueryServices().clearCache();
+            rs = conn.createStatement().executeQuery(query);
+            assertEquals(5, count(rs));
+            assertEquals(1, getMetric(rs, tableName, RESULT_CACHE_MISSES));
+            assertEquals(0, getMetric(rs, tableName, RESULT_CACHE_HITS));
+        }
+    }
+
+    @Test
+    public void testWriteAtPastTimestampInvalidates() throws Exception {
+        String tableName = generateUniqueName();
+        String indexName = generateUniqueName();
+        long scn = createTable(tableName, indexName);
+        String query = "SELECT K, W FROM " + tableName + " WHERE W > 4";
+        try (Connection conn = getScnConnection(scn, true)) {
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            assertEquals(5, count(rs));
+            assertEquals(1, getMetric(rs, tableName, RESULT_CACHE_MISSES));
+            rs = conn.createStatement().executeQuery(query);
+            assertEquals(5, count(rs));
+            assertEquals(1, getMetric(rs, tableName, RESULT_CACHE_HITS));
+
+            // A write visible at the SCN of the cached results
+            try (Connection writeConn = getScnConnection(scn - 1, false)) {
+                writeConn.createStatement().execute(
+                        "UPSERT INTO " + tableName + " VALUES (10, 'a', 10)");
+                writeConn.commit();
+            }
+            rs = conn.createStatement().executeQuery(query);
+            assertEquals(6, count(rs));
+            assertEquals(1, getMetric(rs, tableName, RESULT_CACHE_MISSES));
+            assertEquals(0, getMetric(rs, tableName, RESULT_CACHE_HITS));
+        }
+    }
+
+    @Test
+    public void testRecentScnIsNotCached() throws Exception {
+        String tableName = generateUniqueName();
+        String indexName = generateUniqueName();
+        long scn = createTable(tableName, indexName);
+        String query = "SELECT COUNT(*) FROM " + tableName;
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        props.setProperty(PhoenixRuntime.CURRENT_SCN_ATTRIB, Long.toString(scn));
+        props.setProperty(QueryServices.COLLECT_REQUEST_LEVEL_METRICS, Boolean.TRUE.toString());
+        props.setProperty(QueryServices.RESULT_CACHE_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        // Writes made at the time of the SCN may not all be committed yet
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            for (int i = 0; i < 2; i++) {
+                ResultSet rs = conn.createStatement().executeQuery(query);
+                assertTrue(rs.next());
+                assertEquals(10, rs.getInt(1));
+                assertEquals(0, getMetric(rs, tableName, RESULT_CACHE_MISSES));
+                assertEquals(0, getMetric(rs, tableName, RESULT_CACHE_HITS));
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+@Category(NeedsOwnMiniClusterTest.class)
+public class RollupIT extends BaseUniqueNamesOwnClusterIT {
+    private static final String TABLE_NAME = "ROLLUP_IT_EVENTS";
+    private static final String ROLLUP_TABLE_NAME = "ROLLUP_IT_EVENTS_BY_HOST";
+    private static final String DEFINITION = "SELECT HOST, DAY, SUM(BYTES) TOTAL_BYTES,"
+            + " MAX(BYTES) MAX_BYTES, COUNT(*) EVENT_COUNT FROM " + TABLE_NAME
+            + " GROUP BY HOST, DAY";
+
+    @BeforeClass
+    public static synchronized void doSetup() throws Exception {
+        Map<String, String> clientProps = Maps.newHashMapWithExpectedSize(1);
+        clientProps.put(QueryServices.ROLLUP_DEFINITION_ATTRIB_PREFIX + ROLLUP_TABLE_NAME,
+                DEFINITION);
+        setUpTestDriver(ReadOnlyProps.EMPTY_PROPS,
+                new ReadOnlyProps(clientProps.entrySet().iterator()));
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + TABLE_NAME
+                    + " (HOST VARCHAR NOT NULL, DAY INTEGER NOT NULL, ID INTEGER NOT NULL,"
+                    + " BYTES BIGINT CONSTRAINT PK PRIMARY KEY (HOST, DAY, ID))");
+            conn.createStatement().execute("CREATE TABLE " + ROLLUP_TABLE_NAME
+                    + " (HOST VARCHAR NOT NULL, DAY INTEGER NOT NULL, TOTAL_BYTES BIGINT,"
+                    + " MAX_BYTES BIGINT, EVENT_COUNT BIGINT CONSTRAINT PK PRIMARY KEY (HOST, DAY))");
+            PreparedStatement stmt = conn.prepareStatement(
+                    "UPSERT INTO " + TABLE_NAME + " VALUES (?, ?, ?, ?)");
+            for (int i = 0; i < 100; i++) {
+                stmt.setString(1, "h" + (i % 3));
+                stmt.setInt(2, i % 7);
+                stmt.setInt(3, i);
+                stmt.setLong(4, i * 10L);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+            refreshRollup(conn);
+        }
+    }
+
+    private static void refreshRollup(Connection conn) throws Exception {
+        conn.createStatement().execute("UPSERT INTO " + ROLLUP_TABLE_NAME + " " + DEFINITION);
+        conn.commit();
+    }
+
+    private static List<List<Object>> getRows(Connection conn, String query) throws Exception {
+        List<List<Object>> rows = Lists.newArrayList();
+        ResultSet rs = conn.createStatement().executeQuery(query);
+        int columnCount = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+            List<Object> row = Lists.newArrayListWithExpectedSize(columnCount);
+            for (int i = 1; i <= columnCount; i++) {
+                row.add(rs.getObject(i));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static String getExplainPlan(Connection conn, String query) throws Exception {
+        return QueryUtil.getExplainPlan(conn.createStatement().executeQuery("EXPLAIN " + query));
+    }
+
+    private static void assertRollupResults(Connection conn, String query) throws Exception {
+        String hintedQuery = query.replaceFirst("SELECT", "SELECT /*+ USE_ROLLUP */");
+        String plan = getExplainPlan(conn, hintedQuery);
+        assertTrue(plan, plan.contains(ROLLUP_TABLE_NAME));
+        plan = getExplainPlan(conn, query);
+        assertFalse(plan, plan.contains(ROLLUP_TABLE_NAME));
+        List<List<Object>> rows = getRows(conn, query);
+        assertFalse(rows.isEmpty());
+        assertEquals(rows, getRows(conn, hintedQuery));
+    }
+
+    @Test
+    public void testRollupResultsMatchTable() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            assertRollupResults(conn, "SELECT HOST, SUM(BYTES), MAX(BYTES), COUNT(*) FROM "
+                    + TABLE_NAME + " GROUP BY HOST ORDER BY HOST");
+            assertRollupResults(conn, "SELECT DAY, COUNT(*) C FROM " + TABLE_NAME
+                    + " WHERE HOST > 'h0' GROUP BY DAY HAVING COUNT(*) > 4 ORDER BY C DESC, DAY");
+            assertRollupResults(conn, "SELECT SUM(BYTES), COUNT(*) FROM " + TABLE_NAME
+                    + " WHERE DAY = 3");
+            assertRollupResults(conn, "SELECT COUNT(*) FROM " + TABLE_NAME);
+        }
+    }
+
+    @Test
+    public void testRollupIsOnlyReadWithHint() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String query = "SELECT COUNT(*) FROM " + TABLE_NAME + " WHERE HOST = 'h9'";
+            String hintedQuery = "SELECT /*+ USE_ROLLUP */ COUNT(*) FROM " + TABLE_NAME
+                    + " WHERE HOST = 'h9'";
+            conn.createStatement().execute(
+                    "UPSERT INTO " + TABLE_NAME + " VALUES ('h9', 1, 1000, 1)");
+            conn.commit();
+            // The rollup is stale until the application refreshes it
+            assertEquals(Lists.<Object>newArrayList(1L), getRows(conn, query).get(0));
+            assertNotEquals(getRows(conn, query), getRows(conn, hintedQuery));
+            refreshRollup(conn);
+            assertEquals(getRows(conn, query), getRows(conn, hintedQuery));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.Properties;
+
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.apache.phoenix.util.QueryUtil;
+import org.junit.Test;
+
+public class ServerUpsertSelectIT extends ParallelStatsDisabledIT {
+
+    private static Connection getConnection(boolean extended) throws Exception {
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        props.setProperty(QueryServices.ENABLE_SERVER_UPSERT_SELECT, Boolean.TRUE.toString());
+        props.setProperty(QueryServices.ENABLE_SERVER_UPSERT_SELECT_MUTABLE_INDEXES,
+                Boolean.toString(extended));
+        props.setProperty(QueryServices.ENABLE_SERVER_UPSERT_SELECT_JOINS, Boolean.toString(extended));
+        props.setProperty(QueryServices.ENABLE_SERVER_UPSERT_SELECT_ROW_TIMESTAMP,
+                Boolean.toString(extended));
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        conn.setAutoCommit(true);
+        return conn;
+    }
+
+    private static void createSource(Connection conn, String source) throws Exception {
+        conn.createStatement().execute(
+                "CREATE TABLE " + source + " (K INTEGER NOT NULL PRIMARY KEY, V VARCHAR, TS BIGINT)");
+        for (int i = 1; i <= 10; i++) {
+            conn.createStatement().execute("UPSERT INTO " + source + " VALUES (" + i + ", 'v" + i
+                    + "', " + (1000 + i) + ")");
+        }
+    }
+
+    private static boolean runsOnServer(Connection conn, String upsert) throws Exception {
+        ResultSet rs = conn.createStatement().executeQuery("EXPLAIN " + upsert);
+        return QueryUtil.getExplainPlan(rs).startsWith("UPSERT ROWS");
+    }
+
+    @Test
+    public void testUpsertSelectIntoTableWithMutableIndex() throws Exception {
+        String source = generateUniqueName();
+        String target = generateUniqueName();
+        String index = generateUniqueName();
+        try (Connection conn = getConnection(true)) {
+            createSource(conn, source);
+            conn.createStatement().execute(
+                    "CREATE TABLE " + target + " (K INTEGER NOT NULL PRIMARY KEY, V VARCHAR)");
+            conn.createStatement().execute("CREATE INDEX " + index + " ON " + target + " (V)");
+            String upsert = "UPSERT INTO " + target + " SELECT K, V FROM " + source;
+            assertTrue(runsOnServer(conn, upsert));
+            assertEquals(10, conn.createStatement().executeUpdate(upsert));
+
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT COUNT(*) FROM " + index);
+            assertTrue(rs.next());
+            assertEquals(10, rs.getLong(1));
+            rs = conn.createStatement().executeQuery(
+                    "SELECT K FROM " + target + " WHERE V = 'v3'");
+            assertTrue(rs.next());
+            assertEquals(3, rs.getInt(1));
+            assertFalse(rs.next());
+        }
+        try (Connection conn = getConnection(false)) {
+            assertFalse(runsOnServer(conn, "UPSERT INTO " + target + " SELECT K, V FROM " + source));
+        }
+    }
+
+    @Test
+    public void testUpsertSelectWithJoinAndSubquery() throws Exception {
+        String source = generateUniqueName();
+        String filter = generateUniqueName();
+        String target = generateUniqueName();
+        try (Connection conn = getConnection(true)) {
+            createSource(conn, source);
+            conn.createStatement().execute(
+                    "CREATE TABLE " + filter + " (K INTEGER NOT NULL PRIMARY KEY, W VARCHAR)");
+            for (int i = 2; i <= 10; i += 2) {
+                conn.createStatement().execute(
+                        "UPSERT INTO " + filter + " VALUES (" + i + ", 'w" + i + "')");
+            }
+            conn.createStatement().execute("CREATE TABLE " + target
+                    + " (K INTEGER NOT NULL PRIMARY KEY, V VARCHAR, W VARCHAR)");
+
+            String join = "UPSERT INTO " + target + " SELECT s.K, s.V, f.W FROM " + source
+                    + " s JOIN " + filter + " f ON s.K = f.K";
+            assertTrue(runsOnServer(conn, join));
+            assertEquals(5, conn.createStatement().executeUpdate(join));
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT V, W FROM " + target + " WHERE K = 4");
+            assertTrue(rs.next());
+            assertEquals("v4", rs.getString(1));
+            assertEquals("w4", rs.getString(2));
+
+            String subquery = "UPSERT INTO " + target + " (K, V) SELECT K, V FROM " + source
+                    + " WHERE K NOT IN (SELECT K FROM " + filter + ")";
+            assertTrue(runsOnServer(conn, subquery));
+            assertEquals(5, conn.createStatement().executeUpdate(subquery));
+            rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM " + target);
+            assertTrue(rs.next());
+            assertEquals(10, rs.getLong(1));
+        }
+    }
+
+    @Test
+    public void testUpsertSelectIntoTableWithRowTimestamp() throws Exception {
+        String source = generateUniqueName();
+        String target = generateUniqueName();
+        try (Connection conn = getConnection(true)) {
+            createSource(conn, source);
+            conn.createStatement().execute("CREATE TABLE " + target + " (K INTEGER NOT NULL, "
+                    + "TS BIGINT NOT NULL, V VARCHAR CONSTRAINT PK PRIMARY KEY (K, TS ROW_TIMESTAMP))");
+            String upsert = "UPSERT INTO " + target + " SELECT K, TS, V FROM " + source;
+            assertTrue(runsOnServer(conn, upsert));
+            assertEquals(10, conn.createStatement().executeUpdate(upsert));
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT K FROM " + target + " WHERE TS < 1006");
+            int count = 0;
+            while (rs.next()) {
+                count++;
+            }
+            assertEquals(5, count);
+            // The server cannot generate the value of the ROW_TIMESTAMP column
+            assertFalse(runsOnServer(conn,
+                    "UPSERT INTO " + target + " (K, V) SELECT K, V FROM " + source));
+        }
+    }
+}
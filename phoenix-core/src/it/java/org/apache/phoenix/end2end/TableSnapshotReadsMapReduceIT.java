@@ -131,6 +131,14 @@ public class TableSnapshotReadsMapReduceIT extends BaseUniqueNamesOwnClusterIT {
     configureJob(job, tableName, null, null, true);
   }
 
+  @Test
+  public void testMapReduceSnapshotsMultiRegionParallelScan() throws Exception {
+    PhoenixMapReduceUtil.setInput(job,PhoenixIndexDBWritable.class,
+            SNAPSHOT_NAME, tableName, tmpDir, null, FIELD1, FIELD2, FIELD3);
+    PhoenixConfigurationUtil.setSnapshotScanThreads(job.getConfiguration(), 4);
+    configureJob(job, tableName, null, null, true);
+  }
+
   @Test
   public void testMapReduceSnapshotsWithCondition() throws Exception {
     PhoenixMapReduceUtil.setInput(job,PhoenixIndexDBWritable.class,
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.compile.ColumnProjector;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.iterate.ResultIterator;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.junit.Test;
+
+public class WindowFunctionIT extends ParallelStatsDisabledIT {
+    private static final String[] PARTITIONS = { "a", "b", "c" };
+    private static final int NROWS_PER_PARTITION = 10;
+
+    // Ordering key of the window, with peer rows in every partition
+    private static int getV(int partition, int k2) {
+        return (k2 * (partition + 3)) % 4;
+    }
+
+    // Aggregated value, null in every third row
+    private static Integer getW(int partition, int k2) {
+        return k2 % 3 == 1 ? null : k2 + 10 * partition;
+    }
+
+    private static String createTable() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (K1 VARCHAR NOT NULL, K2 INTEGER NOT NULL, V INTEGER NOT NULL, W INTEGER"
+                    + " CONSTRAINT PK PRIMARY KEY (K1, K2))");
+            PreparedStatement stmt = conn.prepareStatement(
+                    "UPSERT INTO " + tableName + " VALUES (?, ?, ?, ?)");
+            for (int p = 0; p < PARTITIONS.length; p++) {
+                for (int k2 = 0; k2 < NROWS_PER_PARTITION; k2++) {
+                    stmt.setString(1, PARTITIONS[p]);
+                    stmt.setInt(2, k2);
+                    stmt.setInt(3, getV(p, k2));
+                    Integer w = getW(p, k2);
+                    if (w == null) {
+                        stmt.setNull(4, Types.INTEGER);
+                    } else {
+                        stmt.setInt(4, w);
+                    }
+                    stmt.executeUpdate();
+                }
+            }
+            conn.commit();
+        }
+        return tableName;
+    }
+
+    private static int getPartition(String k1) {
+        for (int p = 0; p < PARTITIONS.length; p++) {
+            if (PARTITIONS[p].equals(k1)) {
+                return p;
+            }
+        }
+        throw new IllegalArgumentException(k1);
+    }
+
+    @Test
+    public void testRankingOverPeerRows() throws Exception {
+        String tableName = createTable();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT K1, K2, V,"
+                    + " ROW_NUMBER() OVER (PARTITION BY K1 ORDER BY V),"
+                    + " RANK() OVER (PARTITION BY K1 ORDER BY V),"
+                    + " DENSE_RANK() OVER (PARTITION BY K1 ORDER BY V),"
+                    + " SUM(W) OVER (PARTITION BY K1 ORDER BY V)"
+                    + " FROM " + tableName + " ORDER BY K1, K2");
+            for (int p = 0; p < PARTITIONS.length; p++) {
+                Set<Long> rowNumbers = new HashSet<>();
+                for (int k2 = 0; k2 < NROWS_PER_PARTITION; k2++) {
+                    assertTrue(rs.next());
+                    assertEquals(PARTITIONS[p], rs.getString(1));
+                    assertEquals(k2, rs.getInt(2));
+                    int v = rs.getInt(3);
+                    long below = 0;
+                    long peers = 0;
+                    Set<Integer> distinctBelow = new HashSet<>();
+                    Long sum = null;
+                    for (int i = 0; i < NROWS_PER_PARTITION; i++) {
+                        int other = getV(p, i);
+                        if (other < v) {
+                            below++;
+                            distinctBelow.add(other);
+                        } else if (other == v) {
+                            peers++;
+                        }
+                        Integer w = getW(p, i);
+                        if (other <= v && w != null) {
+                            sum = (sum == null ? 0 : sum) + w;
+                        }
+                    }
+                    // Peer rows are numbered in any order, after the rows before them
+                    long rowNumber = rs.getLong(4);
+                    assertTrue(rowNumber > below && rowNumber <= below + peers);
+                    assertTrue(rowNumbers.add(rowNumber));
+                    assertEquals(below + 1, rs.getLong(5));
+                    assertEquals(distinctBelow.size() + 1, rs.getLong(6));
+                    // Peer rows share the running sum over all of them
+                    assertEquals(sum, rs.getObject(7) == null ? null : rs.getLong(7));
+                }
+                assertEquals(NROWS_PER_PARTITION, rowNumbers.size());
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testLagAndRunningSum() throws Exception {
+        String tableName = createTable();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT K1, K2,"
+                    + " ROW_NUMBER() OVER (PARTITION BY K1 ORDER BY K2 DESC),"
+                    + " LAG(W) OVER (PARTITION BY K1 ORDER BY K2 DESC),"
+                    + " LAG(W, 2, -1) OVER (PARTITION BY K1 ORDER BY K2 DESC),"
+                    + " SUM(W) OVER (PARTITION BY K1 ORDER BY K2 DESC)"
+                    + " FROM " + tableName + " ORDER BY K1, K2 DESC");
+            for (int p = 0; p < PARTITIONS.length; p++) {
+                Long sum = null;
+                for (int k2 = NROWS_PER_PARTITION - 1; k2 >= 0; k2--) {
+                    assertTrue(rs.next());
+                    assertEquals(PARTITIONS[p], rs.getString(1));
+                    assertEquals(k2, rs.getInt(2));
+                    assertEquals(NROWS_PER_PARTITION - k2, rs.getLong(3));
+                    // The partition starts over at its first row
+                    assertEquals(k2 + 1 < NROWS_PER_PARTITION ? getW(p, k2 + 1) : null,
+                            rs.getObject(4));
+                    Integer lag2 = k2 + 2 < NROWS_PER_PARTITION ? getW(p, k2 + 2) : Integer.valueOf(-1);
+                    assertEquals(lag2, rs.getObject(5));
+                    Integer w = getW(p, k2);
+                    if (w != null) {
+                        sum = (sum == null ? 0 : sum) + w;
+                    }
+                    assertEquals(sum, rs.getObject(6) == null ? null : rs.getLong(6));
+                }
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testConcurrentIterators() throws Exception {
+        String tableName = createTable();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            // The window follows the row key, so the rows stream through the window functions
+            QueryPlan plan = conn.createStatement().unwrap(PhoenixStatement.class).optimizeQuery(
+                    "SELECT K1, K2, ROW_NUMBER() OVER (PARTITION BY K1 ORDER BY K2),"
+                    + " SUM(W) OVER (PARTITION BY K1 ORDER BY K2) FROM " + tableName);
+            List<List<Object>> firstRows = new ArrayList<>();
+            List<List<Object>> secondRows = new ArrayList<>();
+            try (ResultIterator first = plan.iterator()) {
+                // Half of the rows are read before the second iterator starts
+                for (int i = 0; i < NROWS_PER_PARTITION * PARTITIONS.length / 2; i++) {
+                    firstRows.add(getRow(plan, first.next()));
+                }
+                try (ResultIterator second = plan.iterator()) {
+                    Tuple tuple;
+                    while ((tuple = second.next()) != null) {
+                        secondRows.add(getRow(plan, tuple));
+                        tuple = first.next();
+                        if (tuple != null) {
+                            firstRows.add(getRow(plan, tuple));
+                        }
+                    }
+                }
+            }
+            assertEquals(NROWS_PER_PARTITION * PARTITIONS.length, firstRows.size());
+            assertEquals(firstRows, secondRows);
+            Long sum = null;
+            String k1 = null;
+            for (List<Object> row : firstRows) {
+                if (!row.get(0).equals(k1)) {
+                    k1 = (String) row.get(0);
+                    sum = null;
+                }
+                int k2 = (Integer) row.get(1);
+                assertEquals(Long.valueOf(k2 + 1), row.get(2));
+                Integer w = getW(getPartition(k1), k2);
+                if (w != null) {
+                    sum = (sum == null ? 0 : sum) + w;
+                }
+                assertEquals(sum, row.get(3));
+            }
+        }
+    }
+
+    private static List<Object> getRow(QueryPlan plan, Tuple tuple) throws Exception {
+        assertNotNull(tuple);
+        List<Object> row = new ArrayList<>();
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        for (ColumnProjector projector : plan.getProjector().getColumnProjectors()) {
+            row.add(projector.getValue(tuple, projector.getExpression().getDataType(), ptr));
+        }
+        return row;
+    }
+}
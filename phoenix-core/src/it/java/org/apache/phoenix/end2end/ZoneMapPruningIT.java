@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.monitoring.MetricType.COUNT_ROWS_SCANNED;
+import static org.apache.phoenix.monitoring.MetricType.NUM_PRUNED_SCAN_CHUNKS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.phoenix.monitoring.MetricType;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.TestUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+@Category(NeedsOwnMiniClusterTest.class)
+public class ZoneMapPruningIT extends BaseUniqueNamesOwnClusterIT {
+    private static final int NROWS = 100;
+
+    @BeforeClass
+    public static synchronized void doSetup() throws Exception {
+        Map<String, String> serverProps = Maps.newHashMapWithExpectedSize(2);
+        serverProps.put(QueryServices.STATS_ZONE_MAP_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        serverProps.put(QueryServices.STATS_GUIDEPOST_WIDTH_BYTES_ATTRIB, Long.toString(200));
+        Map<String, String> clientProps = Maps.newHashMapWithExpectedSize(2);
+        clientProps.put(QueryServices.STATS_ZONE_MAP_PRUNING_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        clientProps.put(QueryServices.COLLECT_REQUEST_LEVEL_METRICS, Boolean.TRUE.toString());
+        setUpTestDriver(new ReadOnlyProps(serverProps.entrySet().iterator()),
+                new ReadOnlyProps(clientProps.entrySet().iterator()));
+    }
+
+    private static void createTable(Connection conn, String tableName, boolean immutable)
+            throws Exception {
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (K INTEGER NOT NULL PRIMARY KEY, V INTEGER)"
+                + (immutable ? " IMMUTABLE_ROWS=true, IMMUTABLE_STORAGE_SCHEME=ONE_CELL_PER_COLUMN"
+                        : ""));
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?)");
+        for (int i = 0; i < NROWS; i++) {
+            stmt.setInt(1, i);
+            stmt.setInt(2, i);
+            stmt.executeUpdate();
+        }
+        conn.commit();
+        updateStatistics(conn, tableName);
+    }
+
+    private static void updateStatistics(Connection conn, String tableName) throws Exception {
+        // Zone maps are only used to skip the chunks of regions with an empty memstore
+        getUtility().getAdmin().flush(TableName.valueOf(tableName));
+        conn.createStatement().execute("UPDATE STATISTICS " + tableName);
+    }
+
+    private static long getMetric(ResultSet rs, String tableName, MetricType type)
+            throws Exception {
+        Map<MetricType, Long> metrics = PhoenixRuntime.getRequestReadMetricInfo(rs).get(tableName);
+        Long value = metrics == null ? null : metrics.get(type);
+        return value == null ? 0 : value;
+    }
+
+    @Test
+    public void testChunksAreSkipped() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            createTable(conn, tableName, true);
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT K FROM " + tableName + " WHERE V > " + NROWS);
+            assertFalse(rs.next());
+            assertTrue(getMetric(rs, tableName, NUM_PRUNED_SCAN_CHUNKS) > 1);
+            // Only the rows after the last guidepost, which have no zone map, are scanned
+            long rowsScanned = getMetric(rs, tableName, COUNT_ROWS_SCANNED);
+            assertTrue(Long.toString(rowsScanned), rowsScanned < NROWS / 2);
+
+            // Chunks whose zone map may match are scanned
+            rs = conn.createStatement().executeQuery(
+                    "SELECT K FROM " + tableName + " WHERE V = 50");
+            assertTrue(rs.next());
+            assertEquals(50, rs.getInt(1));
+            assertFalse(rs.next());
+            assertTrue(getMetric(rs, tableName, COUNT_ROWS_SCANNED) > 0);
+        }
+    }
+
+    @Test
+    public void testRowsWrittenAfterStatsAreFound() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            createTable(conn, tableName, true);
+            // Outside of the range of values of every zone map
+            conn.createStatement().execute(
+                    "UPSERT INTO " + tableName + " VALUES (" + (NROWS + 1) + ", 1000)");
+            conn.commit();
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT K FROM " + tableName + " WHERE V = 1000");
+            assertTrue(rs.next());
+            assertEquals(NROWS + 1, rs.getInt(1));
+            assertFalse(rs.next());
+            // The region was written to since the stats were collected, so no chunk is skipped
+            assertEquals(0, getMetric(rs, tableName, NUM_PRUNED_SCAN_CHUNKS));
+            assertTrue(getMetric(rs, tableName, COUNT_ROWS_SCANNED) > NROWS / 2);
+
+            // Even once the new row is flushed
+            getUtility().getAdmin().flush(TableName.valueOf(tableName));
+            rs = conn.createStatement().executeQuery(
+                    "SELECT K FROM " + tableName + " WHERE V = 1000");
+            assertTrue(rs.next());
+            assertFalse(rs.next());
+            assertEquals(0, getMetric(rs, tableName, NUM_PRUNED_SCAN_CHUNKS));
+
+            // Once the stats are collected again, the new row is in a zone map
+            updateStatistics(conn, tableName);
+            rs = conn.createStatement().executeQuery(
+                    "SELECT K FROM " + tableName + " WHERE V = 1000");
+            assertTrue(rs.next());
+            assertFalse(rs.next());
+            rs = conn.createStatement().executeQuery(
+                    "SELECT K FROM " + tableName + " WHERE V > 1000");
+            assertFalse(rs.next());
+            assertTrue(getMetric(rs, tableName, NUM_PRUNED_SCAN_CHUNKS) > 1);
+            assertTrue(getMetric(rs, tableName, COUNT_ROWS_SCANNED) < NROWS / 2);
+        }
+    }
+
+    @Test
+    public void testRowsWrittenBeforeStatsTimestampAreFound() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            createTable(conn, tableName, true);
+            long scn = PhoenixRuntime.getTableNoCache(conn, tableName).getTimeStamp() + 1;
+            Properties props = PropertiesUtil.deepCopy(TestUtil.TEST_PROPERTIES);
+            props.setProperty(PhoenixRuntime.CURRENT_SCN_ATTRIB, Long.toString(scn));
+            try (Connection scnConn = DriverManager.getConnection(getUrl(), props)) {
+                scnConn.createStatement().execute(
+                        "UPSERT INTO " + tableName + " VALUES (" + (NROWS + 1) + ", 1000)");
+                scnConn.commit();
+            }
+            getUtility().getAdmin().flush(TableName.valueOf(tableName));
+            // The row is older than the stats but was written after them
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT K FROM " + tableName + " WHERE V = 1000");
+            assertTrue(rs.next());
+            assertEquals(NROWS + 1, rs.getInt(1));
+            assertFalse(rs.next());
+            assertEquals(0, getMetric(rs, tableName, NUM_PRUNED_SCAN_CHUNKS));
+        }
+    }
+
+    @Test
+    public void testZoneMapsOfCompactionsAreNotUsed() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            createTable(conn, tableName, true);
+            // Still in the memstore when the compaction collects the stats
+            conn.createStatement().execute(
+                    "UPSERT INTO " + tableName + " VALUES (" + (NROWS + 1) + ", 1000)");
+            conn.commit();
+            TestUtil.majorCompact(getUtility(), TableName.valueOf(tableName));
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT K FROM " + tableName + " WHERE V = 1000");
+            assertTrue(rs.next());
+            assertEquals(NROWS + 1, rs.getInt(1));
+            assertFalse(rs.next());
+            assertEquals(0, getMetric(rs, tableName, NUM_PRUNED_SCAN_CHUNKS));
+
+            // Nor once the memstore is flushed
+            getUtility().getAdmin().flush(TableName.valueOf(tableName));
+            TestUtil.majorCompact(getUtility(), TableName.valueOf(tableName));
+            rs = conn.createStatement().executeQuery(
+                    "SELECT K FROM " + tableName + " WHERE V > 1000");
+            assertFalse(rs.next());
+            assertEquals(0, getMetric(rs, tableName, NUM_PRUNED_SCAN_CHUNKS));
+        }
+    }
+
+    @Test
+    public void testMutableTablesAreNotPruned() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            createTable(conn, tableName, false);
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT K FROM " + tableName + " WHERE V > " + NROWS);
+            assertFalse(rs.next());
+            assertEquals(0, getMetric(rs, tableName, NUM_PRUNED_SCAN_CHUNKS));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+
+import org.apache.phoenix.end2end.BaseUniqueNamesOwnClusterIT;
+import org.apache.phoenix.end2end.NeedsOwnMiniClusterTest;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Tests local index queries on uncovered columns when the data table rows of several index rows
+ * are read with a single skip scan
+ */
+@Category(NeedsOwnMiniClusterTest.class)
+public class LocalIndexDataJoinBatchIT extends BaseUniqueNamesOwnClusterIT {
+    private static final int BATCH_SIZE = 3;
+    private static final int NROWS = 20;
+
+    @BeforeClass
+    public static synchronized void doSetup() throws Exception {
+        Map<String, String> serverProps = Maps.newHashMapWithExpectedSize(1);
+        serverProps.put(QueryServices.LOCAL_INDEX_DATA_JOIN_BATCH_SIZE_ATTRIB,
+                Integer.toString(BATCH_SIZE));
+        setUpTestDriver(new ReadOnlyProps(serverProps.entrySet().iterator()),
+                ReadOnlyProps.EMPTY_PROPS);
+    }
+
+    private static String createTableAndIndex(Connection conn, String tableName,
+            String indexName) throws Exception {
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (K INTEGER NOT NULL PRIMARY KEY, V1 INTEGER, V2 VARCHAR, V3 VARCHAR)"
+                + " SPLIT ON (7, 14)");
+        conn.createStatement().execute(
+                "CREATE LOCAL INDEX " + indexName + " ON " + tableName + " (V1)");
+        PreparedStatement stmt = conn.prepareStatement(
+                "UPSERT INTO " + tableName + " VALUES (?, ?, ?, ?)");
+        for (int i = 0; i < NROWS; i++) {
+            stmt.setInt(1, i);
+            stmt.setInt(2, NROWS - i);
+            stmt.setString(3, "a" + i);
+            // Every third row has no V3
+            stmt.setString(4, i % 3 == 0 ? null : "b" + i);
+            stmt.executeUpdate();
+        }
+        conn.commit();
+        return "SELECT /*+ INDEX(" + tableName + " " + indexName + ") */ K, V1, V2, V3 FROM "
+                + tableName + " WHERE V1 > 0 ORDER BY V1";
+    }
+
+    @Test
+    public void testUncoveredColumnsAcrossBatches() throws Exception {
+        String tableName = generateUniqueName();
+        String indexName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String query = createTableAndIndex(conn, tableName, indexName);
+            String plan = QueryUtil.getExplainPlan(
+                    conn.createStatement().executeQuery("EXPLAIN " + query));
+            assertTrue(plan, plan.contains("RANGE SCAN OVER " + tableName + " [1"));
+
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            for (int v1 = 1; v1 <= NROWS; v1++) {
+                int k = NROWS - v1;
+                assertTrue(rs.next());
+                assertEquals(k, rs.getInt(1));
+                assertEquals(v1, rs.getInt(2));
+                assertEquals("a" + k, rs.getString(3));
+                assertEquals(k % 3 == 0 ? null : "b" + k, rs.getString(4));
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testUncoveredColumnsWithDeletesAndMultipleVersions() throws Exception {
+        String tableName = generateUniqueName();
+        String indexName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String query = createTableAndIndex(conn, tableName, indexName);
+            // Several versions of the uncovered columns, including one setting them to null
+            PreparedStatement stmt = conn.prepareStatement(
+                    "UPSERT INTO " + tableName + " (K, V2, V3) VALUES (?, ?, ?)");
+            for (int version = 1; version <= 3; version++) {
+                for (int k = 0; k < NROWS; k += 2) {
+                    stmt.setInt(1, k);
+                    stmt.setString(2, "a" + k + "-" + version);
+                    stmt.setString(3, version == 3 ? null : "b" + version);
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+            }
+            // Delete the rows at the end of the batches of the first region and a whole batch
+            conn.createStatement().execute("DELETE FROM " + tableName
+                    + " WHERE K IN (2, 5, 15, 16, 17)");
+            conn.commit();
+
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            int count = 0;
+            for (int v1 = 1; v1 <= NROWS; v1++) {
+                int k = NROWS - v1;
+                if (k == 2 || k == 5 || k == 15 || k == 16 || k == 17) {
+                    continue;
+                }
+                assertTrue(rs.next());
+                assertEquals(k, rs.getInt(1));
+                assertEquals(v1, rs.getInt(2));
+                if (k % 2 == 0) {
+                    assertEquals("a" + k + "-3", rs.getString(3));
+                    assertEquals(null, rs.getString(4));
+                } else {
+                    assertEquals("a" + k, rs.getString(3));
+                    assertEquals(k % 3 == 0 ? null : "b" + k, rs.getString(4));
+                }
+                count++;
+            }
+            assertFalse(rs.next());
+            assertEquals(NROWS - 5, count);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.end2end.BaseUniqueNamesOwnClusterIT;
+import org.apache.phoenix.end2end.NeedsOwnMiniClusterTest;
+import org.apache.phoenix.iterate.ResultIterator;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Tests uncovered global index lookups whose join keys are streamed to the data table in batches
+ */
+@Category(NeedsOwnMiniClusterTest.class)
+public class SemiJoinKeyBatchingIT extends BaseUniqueNamesOwnClusterIT {
+    private static final int NROWS = 25;
+
+    @BeforeClass
+    public static synchronized void doSetup() throws Exception {
+        Map<String, String> clientProps = Maps.newHashMapWithExpectedSize(3);
+        clientProps.put(QueryServices.SEMI_JOIN_KEY_BATCHING_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        clientProps.put(QueryServices.SEMI_JOIN_KEY_BATCH_MIN_SIZE_ATTRIB, Integer.toString(2));
+        clientProps.put(QueryServices.SEMI_JOIN_KEY_BATCH_MAX_SIZE_ATTRIB, Integer.toString(4));
+        setUpTestDriver(ReadOnlyProps.EMPTY_PROPS,
+                new ReadOnlyProps(clientProps.entrySet().iterator()));
+    }
+
+    private static String createTableAndIndex(Connection conn) throws Exception {
+        String tableName = generateUniqueName();
+        String indexName = generateUniqueName();
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (K INTEGER NOT NULL PRIMARY KEY, V1 VARCHAR, V2 INTEGER) SPLIT ON (10, 20)");
+        conn.createStatement().execute(
+                "CREATE INDEX " + indexName + " ON " + tableName + " (V1)");
+        PreparedStatement stmt = conn.prepareStatement(
+                "UPSERT INTO " + tableName + " VALUES (?, ?, ?)");
+        for (int i = 0; i < NROWS; i++) {
+            stmt.setInt(1, i);
+            // Every fifth row does not match
+            stmt.setString(2, i % 5 == 0 ? "b" : "a");
+            stmt.setInt(3, i * 10);
+            stmt.executeUpdate();
+        }
+        conn.commit();
+        return "SELECT /*+ INDEX(" + tableName + " " + indexName + ") */ K, V2 FROM " + tableName
+                + " WHERE V1 = 'a'";
+    }
+
+    private static Set<Integer> getExpectedKeys() {
+        Set<Integer> keys = new HashSet<>();
+        for (int i = 0; i < NROWS; i++) {
+            if (i % 5 != 0) {
+                keys.add(i);
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    public void testKeysAreLookedUpInBatches() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String query = createTableAndIndex(conn);
+            String plan = QueryUtil.getExplainPlan(
+                    conn.createStatement().executeQuery("EXPLAIN " + query));
+            assertTrue(plan, plan.contains("SKIP-SCAN-JOIN TABLE 0"));
+            assertTrue(plan, plan.contains("BATCHED KEY LOOKUP (2-4 KEYS PER BATCH)"));
+
+            // Batches are not returned in row key order
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            Set<Integer> keys = new HashSet<>();
+            while (rs.next()) {
+                assertEquals(rs.getInt(1) * 10, rs.getInt(2));
+                assertTrue(keys.add(rs.getInt(1)));
+            }
+            assertEquals(getExpectedKeys(), keys);
+        }
+    }
+
+    @Test
+    public void testBatchSizeGrows() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String query = createTableAndIndex(conn);
+            QueryPlan plan = conn.createStatement().unwrap(PhoenixStatement.class)
+                    .optimizeQuery(query);
+            try (ResultIterator iterator = plan.iterator()) {
+                List<String> planSteps = new ArrayList<>();
+                assertTrue(iterator.next() != null);
+                iterator.explain(planSteps);
+                assertTrue(planSteps.toString(), planSteps.contains(
+                        "CLIENT BATCHED KEY LOOKUP (2 KEYS IN CURRENT BATCH, 2-4 KEYS PER BATCH)"));
+                int count = 1;
+                while (iterator.next() != null) {
+                    count++;
+                }
+                assertEquals(getExpectedKeys().size(), count);
+                planSteps.clear();
+                iterator.explain(planSteps);
+                assertTrue(planSteps.toString(), planSteps.contains(
+                        "CLIENT BATCHED KEY LOOKUP (4 KEYS IN CURRENT BATCH, 2-4 KEYS PER BATCH)"));
+            }
+        }
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            String query = createTableAndIndex(conn) + " LIMIT 5";
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            Set<Integer> expectedKeys = getExpectedKeys();
+            for (int i = 0; i < 5; i++) {
+                assertTrue(rs.next());
+                assertTrue(expectedKeys.contains(rs.getInt(1)));
+            }
+            assertFalse(rs.next());
+        }
+    }
+}
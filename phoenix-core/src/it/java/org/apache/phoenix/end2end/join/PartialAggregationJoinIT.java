@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.join;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.end2end.ParallelStatsDisabledIT;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.parse.DerivedTableNode;
+import org.apache.phoenix.parse.JoinTableNode;
+import org.apache.phoenix.parse.SelectStatement;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.junit.Test;
+
+/**
+ * Compares the results of aggregate join queries whose fact table is partially aggregated
+ * before the join with the results of the same queries without the rewrite
+ */
+public class PartialAggregationJoinIT extends ParallelStatsDisabledIT {
+    private static final int NFACTS = 60;
+    private static final int NDIM_IDS = 5;
+
+    private static Connection getConnection(boolean partialAggregation) throws Exception {
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        props.setProperty(QueryServices.JOIN_PARTIAL_AGGREGATION_ENABLED_ATTRIB,
+                Boolean.toString(partialAggregation));
+        return DriverManager.getConnection(getUrl(), props);
+    }
+
+    private static String[] createTables() throws Exception {
+        String factTable = generateUniqueName();
+        String dimTable = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + factTable
+                    + " (K1 VARCHAR NOT NULL, K2 INTEGER NOT NULL, DIM_ID INTEGER, AMOUNT DECIMAL"
+                    + " CONSTRAINT PK PRIMARY KEY (K1, K2))");
+            // Several rows of the dimension table share an ID, so each fact row joins with
+            // several of them
+            conn.createStatement().execute("CREATE TABLE " + dimTable
+                    + " (ID INTEGER NOT NULL, SEQ INTEGER NOT NULL, NAME VARCHAR"
+                    + " CONSTRAINT PK PRIMARY KEY (ID, SEQ))");
+            PreparedStatement stmt = conn.prepareStatement(
+                    "UPSERT INTO " + factTable + " VALUES (?, ?, ?, ?)");
+            for (int i = 0; i < NFACTS; i++) {
+                stmt.setString(1, "k" + (i % 4));
+                stmt.setInt(2, i);
+                // Many fact rows share a join key, and some have none
+                if (i % 11 == 0) {
+                    stmt.setNull(3, Types.INTEGER);
+                } else {
+                    stmt.setInt(3, i % (NDIM_IDS + 1));
+                }
+                if (i % 7 == 0) {
+                    stmt.setNull(4, Types.DECIMAL);
+                } else {
+                    stmt.setBigDecimal(4, new BigDecimal(i).movePointLeft(1));
+                }
+                stmt.executeUpdate();
+            }
+            stmt = conn.prepareStatement("UPSERT INTO " + dimTable + " VALUES (?, ?, ?)");
+            // No dimension row has the last ID
+            for (int id = 0; id < NDIM_IDS; id++) {
+                for (int seq = 0; seq <= id % 3; seq++) {
+                    stmt.setInt(1, id);
+                    stmt.setInt(2, seq);
+                    stmt.setString(3, "n" + ((id + seq) % 3));
+                    stmt.executeUpdate();
+                }
+            }
+            conn.commit();
+        }
+        return new String[] { factTable, dimTable };
+    }
+
+    private static List<List<Object>> getRows(Connection conn, String query) throws Exception {
+        ResultSet rs = conn.createStatement().executeQuery(query);
+        int columnCount = rs.getMetaData().getColumnCount();
+        List<List<Object>> rows = new ArrayList<>();
+        while (rs.next()) {
+            List<Object> row = new ArrayList<>(columnCount);
+            for (int i = 1; i <= columnCount; i++) {
+                Object value = rs.getObject(i);
+                // Sums of partial sums may have another scale or type than direct sums
+                if (value instanceof BigDecimal) {
+                    value = ((BigDecimal) value).stripTrailingZeros();
+                } else if (value instanceof Number) {
+                    value = ((Number) value).longValue();
+                }
+                row.add(value);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static boolean isRewritten(Connection conn, String query) throws Exception {
+        QueryPlan plan = conn.createStatement().unwrap(PhoenixStatement.class).optimizeQuery(query);
+        return plan.getStatement() instanceof SelectStatement
+                && ((SelectStatement) plan.getStatement()).getFrom() instanceof JoinTableNode
+                && ((JoinTableNode) ((SelectStatement) plan.getStatement()).getFrom())
+                        .getLHS() instanceof DerivedTableNode;
+    }
+
+    @Test
+    public void testAggregatesWithDuplicateJoinKeys() throws Exception {
+        String[] tableNames = createTables();
+        String from = " FROM " + tableNames[0] + " F JOIN " + tableNames[1] + " D ON F.DIM_ID = D.ID ";
+        for (String query : Arrays.asList(
+                "SELECT D.NAME, SUM(F.AMOUNT), COUNT(*), COUNT(F.AMOUNT), MIN(F.AMOUNT),"
+                        + " MAX(F.AMOUNT)" + from + "GROUP BY D.NAME ORDER BY D.NAME",
+                "SELECT D.NAME, SUM(F.AMOUNT), COUNT(*)" + from
+                        + "WHERE F.K2 > 20 GROUP BY D.NAME ORDER BY D.NAME",
+                "SELECT D.NAME, F.K1, SUM(F.AMOUNT), COUNT(*), MAX(F.AMOUNT)" + from
+                        + "GROUP BY D.NAME, F.K1 ORDER BY D.NAME, F.K1",
+                "SELECT D.ID, D.SEQ, SUM(F.AMOUNT), COUNT(F.K2)" + from
+                        + "GROUP BY D.ID, D.SEQ ORDER BY D.ID, D.SEQ",
+                "SELECT D.NAME, SUM(F.AMOUNT)" + from
+                        + "GROUP BY D.NAME HAVING COUNT(*) > 10 ORDER BY D.NAME")) {
+            try (Connection conn = getConnection(true); Connection baseConn = getConnection(false)) {
+                assertTrue(query, isRewritten(conn, query));
+                assertFalse(query, isRewritten(baseConn, query));
+                List<List<Object>> expectedRows = getRows(baseConn, query);
+                assertFalse(query, expectedRows.isEmpty());
+                assertEquals(query, expectedRows, getRows(conn, query));
+            }
+        }
+    }
+}
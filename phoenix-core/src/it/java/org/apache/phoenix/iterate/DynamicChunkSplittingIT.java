@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.monitoring.MetricType.NUM_PARALLEL_SCANS;
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.phoenix.end2end.ParallelStatsDisabledIT;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.apache.phoenix.util.QueryUtil;
+import org.junit.Test;
+
+public class DynamicChunkSplittingIT extends ParallelStatsDisabledIT {
+    private static final int NROWS = 100;
+
+    @Test
+    public void testSlowChunkIsSplitOnRoundRobinPath() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            // The chunks of the two middle regions have a bounded key range, so they can be split
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (K INTEGER NOT NULL PRIMARY KEY, V INTEGER) SPLIT ON (0, 50, 100)");
+            PreparedStatement stmt = conn.prepareStatement(
+                    "UPSERT INTO " + tableName + " VALUES (?, ?)");
+            for (int i = 0; i < NROWS; i++) {
+                stmt.setInt(1, i);
+                stmt.setInt(2, i);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+        }
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        props.setProperty(QueryServices.DYNAMIC_CHUNK_SPLITTING_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        props.setProperty(QueryServices.DYNAMIC_CHUNK_SPLITTING_MIN_REMAINING_MS_ATTRIB, "1");
+        props.setProperty(QueryServices.COLLECT_REQUEST_LEVEL_METRICS, Boolean.TRUE.toString());
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            String query = "SELECT K, V FROM " + tableName;
+            Statement statement = conn.createStatement();
+            statement.setFetchSize(10);
+            String plan = QueryUtil.getExplainPlan(statement.executeQuery("EXPLAIN " + query));
+            assertTrue(plan, plan.contains("ROUND ROBIN"));
+
+            // Every row takes a while to read, so that the chunks are still being read by this
+            // thread long after the workers fetched their first rows
+            conn.unwrap(PhoenixConnection.class).setTableResultIteratorFactory(
+                    new DelayedTableResultIteratorFactory(5));
+            ResultSet rs = statement.executeQuery(query);
+            Set<Integer> keys = new HashSet<>();
+            while (rs.next()) {
+                assertEquals(rs.getInt(1), rs.getInt(2));
+                assertTrue(keys.add(rs.getInt(1)));
+            }
+            assertEquals(NROWS, keys.size());
+            // One scan per region, and more for the parts split off the chunks
+            long numScans = PhoenixRuntime.getOverAllReadRequestMetricInfo(rs).get(NUM_PARALLEL_SCANS);
+            assertTrue(Long.toString(numScans), numScans > 4);
+        }
+    }
+}
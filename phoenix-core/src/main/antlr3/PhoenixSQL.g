@@ -265,6 +265,11 @@ package org.apache.phoenix.parse;
         return t.getCharPositionInLine() + 1;
     }
     
+    // OVER and PARTITION are not reserved, so that they may still be used as names
+    private boolean isNonReservedKeyword(Token t, String keyword) {
+        return t.getType() == NAME && keyword.equalsIgnoreCase(t.getText());
+    }
+
     private void throwRecognitionException(Token t) throws RecognitionException {
         RecognitionException e = new RecognitionException();
         e.token = t;
@@ -1024,26 +1029,34 @@ term returns [ParseNode ret]
     |   field=identifier { $ret = factory.column(null,field,field); }
     |   ex=ARRAY LSQUARE v=one_or_more_expressions RSQUARE {$ret = factory.upsertStmtArrayNode(v);}
     |   tableName=table_name DOT field=identifier { $ret = factory.column(tableName, field, field); }
-    |   field=identifier LPAREN l=zero_or_more_expressions RPAREN wg=(WITHIN GROUP LPAREN ORDER BY l2=one_or_more_expressions (a=ASC | DESC) RPAREN)?
+    |   field=identifier LPAREN l=zero_or_more_expressions RPAREN (wg=(WITHIN GROUP LPAREN ORDER BY l2=one_or_more_expressions (a=ASC | DESC) RPAREN) | w=window_specification)?
         {
-            FunctionParseNode f = wg==null ? factory.function(field, l) : factory.function(field,l,l2,a!=null);
-            if (!contextStack.isEmpty()) {
-            	contextStack.peek().setAggregate(f.isAggregate());
+            if (w != null) {
+                $ret = factory.windowFunction(field, l, $w.partitionBy, $w.orderBy);
+            } else {
+                FunctionParseNode f = wg==null ? factory.function(field, l) : factory.function(field,l,l2,a!=null);
+                if (!contextStack.isEmpty()) {
+                	contextStack.peek().setAggregate(f.isAggregate());
+                }
+                if(f instanceof UDFParseNode) udfParseNodes.put(f.getName(),(UDFParseNode)f);
+                $ret = f;
             }
-            if(f instanceof UDFParseNode) udfParseNodes.put(f.getName(),(UDFParseNode)f);
-            $ret = f;
         } 
-    |   field=identifier LPAREN t=ASTERISK RPAREN 
+    |   field=identifier LPAREN t=ASTERISK RPAREN w=window_specification?
         {
             if (!isCountFunction(field)) {
                 throwRecognitionException(t);
             }
-            FunctionParseNode f = factory.function(field, LiteralParseNode.STAR);
-            if (!contextStack.isEmpty()) {
-            	contextStack.peek().setAggregate(f.isAggregate());
+            if (w != null) {
+                $ret = factory.windowFunction(field, LiteralParseNode.STAR, $w.partitionBy, $w.orderBy);
+            } else {
+                FunctionParseNode f = factory.function(field, LiteralParseNode.STAR);
+                if (!contextStack.isEmpty()) {
+                	contextStack.peek().setAggregate(f.isAggregate());
+                }
+                if(f instanceof UDFParseNode) udfParseNodes.put(f.getName(),(UDFParseNode)f);
+                $ret = f;
             }
-            if(f instanceof UDFParseNode) udfParseNodes.put(f.getName(),(UDFParseNode)f);
-            $ret = f;
         } 
     |   field=identifier LPAREN t=DISTINCT l=zero_or_more_expressions RPAREN 
         {
@@ -1191,6 +1204,14 @@ parseNoReserved returns [String ret]
     :   n=NAME { $ret = n.getText(); }
     ;
 
+// Parse the window of a window function: OVER ([PARTITION BY ...] [ORDER BY ...])
+window_specification returns [List<ParseNode> partitionBy, List<OrderByNode> orderBy]
+@init{$partitionBy = Collections.<ParseNode>emptyList(); $orderBy = Collections.<OrderByNode>emptyList();}
+    :   {isNonReservedKeyword(input.LT(1), "over") && input.LA(2) == LPAREN}?=> NAME
+        LPAREN ({isNonReservedKeyword(input.LT(1), "partition")}?=> NAME BY p=one_or_more_expressions { $partitionBy = p; })?
+        (ORDER BY o=order_by { $orderBy = o; })? RPAREN
+    ;
+
 case_statement returns [ParseNode ret]
 @init{List<ParseNode> w = new ArrayList<ParseNode>(4);}
     : CASE e1=expression (WHEN e2=expression THEN t=expression {w.add(t);w.add(factory.equal(e1,e2));})+ (ELSE el=expression {w.add(el);})? END {$ret = factory.caseWhen(w);}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.RowProjector;
+import org.apache.phoenix.iterate.DelegateResultIterator;
+import org.apache.phoenix.iterate.ResultIterator;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.parse.HintNode.Hint;
+import org.apache.phoenix.parse.SelectStatement;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.TableRef;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.SizedUtil;
+
+import org.apache.phoenix.thirdparty.com.google.common.cache.Cache;
+import org.apache.phoenix.thirdparty.com.google.common.cache.CacheBuilder;
+import org.apache.phoenix.thirdparty.com.google.common.cache.Weigher;
+
+/**
+ * Client-side cache of the results of queries. Only queries run at a fixed SCN that is older
+ * than {@link QueryServices#RESULT_CACHE_SCN_MARGIN_MS_ATTRIB} are cached, keyed by the query
+ * with its bind values and by the SCN, the tenant and the timestamps of the tables read, so that
+ * schema changes invalidate the cached results. As writes with an explicit timestamp, such as
+ * those of SCN connections, may still change the results at that SCN, the key also includes the
+ * number of times the physical tables read were written to through the query services, which
+ * invalidates the cached results on each such write. Writes with an explicit timestamp at or
+ * below the SCN made by other clients are not seen. Entries are evicted in LRU order once their total size exceeds
+ * {@link QueryServices#RESULT_CACHE_MAX_SIZE_ATTRIB}, and expire after
+ * {@link QueryServices#RESULT_CACHE_TTL_MS_ATTRIB}.
+ */
+public class ResultCache {
+    private final Cache<String, CachedResults> cache;
+    private final ConcurrentMap<String, Long> writeCounts = new ConcurrentHashMap<>();
+    private final long maxEntrySize;
+
+    public ResultCache(ReadOnlyProps props) {
+        this.maxEntrySize = props.getLong(QueryServices.RESULT_CACHE_MAX_ENTRY_SIZE_ATTRIB,
+                QueryServicesOptions.DEFAULT_RESULT_CACHE_MAX_ENTRY_SIZE);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(props.getLong(QueryServices.RESULT_CACHE_MAX_SIZE_ATTRIB,
+                        QueryServicesOptions.DEFAULT_RESULT_CACHE_MAX_SIZE))
+                .weigher(new Weigher<String, CachedResults>() {
+                    @Override
+                    public int weigh(String key, CachedResults results) {
+                        return (int) Math.min(Integer.MAX_VALUE, SizedUtil.OBJECT_SIZE
+                                + SizedUtil.ARRAY_SIZE + 2L * key.length() + results.size);
+                    }
+                })
+                .expireAfterWrite(props.getLong(QueryServices.RESULT_CACHE_TTL_MS_ATTRIB,
+                        QueryServicesOptions.DEFAULT_RESULT_CACHE_TTL_MS), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * The results of a query along with the projector of the plan they were produced by, as
+     * the plan chosen by the optimizer may change
+     */
+    public static class CachedResults {
+        private final RowProjector projector;
+        private final List<Tuple> results;
+        private final long size;
+
+        private CachedResults(RowProjector projector, List<Tuple> results, long size) {
+            this.projector = projector;
+            this.results = results;
+            this.size = size;
+        }
+
+        public RowProjector getProjector() {
+            return projector;
+        }
+
+        public List<Tuple> getResults() {
+            return results;
+        }
+    }
+
+    private static long getSize(Tuple tuple) {
+        long size = SizedUtil.OBJECT_SIZE + SizedUtil.POINTER_SIZE;
+        for (int i = 0; i < tuple.size(); i++) {
+            size += CellUtil.estimatedSerializedSizeOf(tuple.getValue(i));
+        }
+        return size;
+    }
+
+    /**
+     * @return the key of the results of the given query plan of the statement, or null if
+     * the results of the query may not be cached
+     */
+    public String getKey(PhoenixStatement statement, QueryPlan plan) throws SQLException {
+        PhoenixConnection connection = statement.getConnection();
+        Long scn = connection.getSCN();
+        if (scn == null || !(plan.getStatement() instanceof SelectStatement)) {
+            return null;
+        }
+        // The properties of the query services of a connection include the properties the
+        // connection was opened with
+        ReadOnlyProps props = connection.getQueryServices().getProps();
+        SelectStatement select = (SelectStatement) plan.getStatement();
+        if (select.hasSequence()
+                || (!select.getHint().hasHint(Hint.RESULT_CACHE)
+                        && !props.getBoolean(QueryServices.RESULT_CACHE_ENABLED_ATTRIB,
+                                QueryServicesOptions.DEFAULT_RESULT_CACHE_ENABLED))) {
+            return null;
+        }
+        // Writes still in flight, or made with a clock ahead of this one, may be visible at an
+        // SCN close to or past the current time once they are committed
+        if (scn > EnvironmentEdgeManager.currentTimeMillis() - props.getLong(
+                QueryServices.RESULT_CACHE_SCN_MARGIN_MS_ATTRIB,
+                QueryServicesOptions.DEFAULT_RESULT_CACHE_SCN_MARGIN_MS)) {
+            return null;
+        }
+        StringBuilder buf = new StringBuilder();
+        buf.append(connection.getTenantId()).append('\0').append(scn).append('\0');
+        // The cache is shared by all the connections of the query services, so results are only
+        // shared by connections opened with the same properties, which may change them
+        Properties info = connection.getClientInfo();
+        for (String name : new TreeSet<>(info.stringPropertyNames())) {
+            buf.append(name).append('=').append(info.getProperty(name)).append('\0');
+        }
+        for (TableRef tableRef : plan.getSourceRefs()) {
+            // Transactional tables may have uncommitted data visible to the connection
+            if (tableRef.getTable().isTransactional()) {
+                return null;
+            }
+            String physicalName = tableRef.getTable().getPhysicalName().getString();
+            Long writeCount = writeCounts.get(physicalName);
+            buf.append(tableRef.getTable().getName().getString()).append('@')
+                    .append(tableRef.getTable().getTimeStamp()).append('#')
+                    .append(writeCount == null ? 0 : writeCount).append('\0');
+        }
+        buf.append(statement.getMaxRows()).append('\0');
+        buf.append(plan.getStatement()).append('\0');
+        buf.append(Arrays.deepToString(statement.getParameters().toArray()));
+        return buf.toString();
+    }
+
+    /**
+     * @return the cached results for the given key, or null if there are none
+     */
+    public CachedResults get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * @return an iterator over the results of the given iterator that caches them for the given
+     * key along with the given projector once they have all been read, unless they are larger
+     * than {@link QueryServices#RESULT_CACHE_MAX_ENTRY_SIZE_ATTRIB}
+     */
+    public ResultIterator newCachingIterator(final String key, ResultIterator iterator,
+            final RowProjector projector) {
+        return new DelegateResultIterator(iterator) {
+            private List<Tuple> results = new ArrayList<>();
+            private long size = SizedUtil.OBJECT_SIZE + SizedUtil.ARRAY_SIZE;
+
+            @Override
+            public Tuple next() throws SQLException {
+                Tuple tuple = super.next();
+                if (results != null) {
+                    if (tuple == null) {
+                        cache.put(key, new CachedResults(projector,
+                                Collections.unmodifiableList(results), size));
+                        results = null;
+                    } else {
+                        size += getSize(tuple);
+                        if (size > maxEntrySize) {
+                            results = null;
+                        } else {
+                            results.add(tuple);
+                        }
+                    }
+                }
+                return tuple;
+            }
+
+            @Override
+            public void close() throws SQLException {
+                results = null;
+                super.close();
+            }
+        };
+    }
+
+    /**
+     * Invalidates the results read from the physical tables of the given table and of its
+     * indexes, once mutations of the table were sent
+     */
+    public void invalidate(PTable table) {
+        writeCounts.merge(table.getPhysicalName().getString(), 1L, Long::sum);
+        for (PTable index : table.getIndexes()) {
+            writeCounts.merge(index.getPhysicalName().getString(), 1L, Long::sum);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -31,7 +31,10 @@ import java.util.Set;
 
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Admin;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.cache.ServerCacheClient;
@@ -74,6 +77,7 @@ import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.DelegateColumn;
 import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PColumnFamily;
 import org.apache.phoenix.schema.PIndexState;
 import org.apache.phoenix.schema.PName;
 import org.apache.phoenix.schema.PRow;
@@ -84,11 +88,13 @@ import org.apache.phoenix.schema.PTableType;
 import org.apache.phoenix.schema.ReadOnlyTableException;
 import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.TableRef;
+import org.apache.phoenix.schema.stats.GuidePostsKey;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PLong;
 import org.apache.phoenix.transaction.PhoenixTransactionProvider.Feature;
 import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.IndexUtil;
+import org.apache.phoenix.util.MetaDataUtil;
 import org.apache.phoenix.util.PhoenixRuntime;
 import org.apache.phoenix.util.ScanUtil;
 
@@ -451,6 +457,9 @@ public class DeleteCompiler {
         boolean allowServerMutations =
                 services.getProps().getBoolean(QueryServices.ENABLE_SERVER_SIDE_DELETE_MUTATIONS,
                         QueryServicesOptions.DEFAULT_ENABLE_SERVER_SIDE_DELETE_MUTATIONS);
+        boolean allowTruncate =
+                services.getProps().getBoolean(QueryServices.ENABLE_DELETE_TRUNCATE,
+                        QueryServicesOptions.DEFAULT_ENABLE_DELETE_TRUNCATE);
         NamedTableNode tableNode = delete.getTable();
         String tableName = tableNode.getName().getTableName();
         String schemaName = tableNode.getName().getSchemaName();
@@ -584,7 +593,11 @@ public class DeleteCompiler {
             // TODO: better abstraction
             final StatementContext context = dataPlan.getContext();
             Scan scan = context.getScan();
-            scan.setAttribute(BaseScannerRegionObserver.DELETE_AGG, QueryConstants.TRUE);
+            // When all the rows of the table are deleted, the scan only counts them
+            boolean truncate = allowTruncate && isDeletingAllRows(dataPlan, connection);
+            if (!truncate) {
+                scan.setAttribute(BaseScannerRegionObserver.DELETE_AGG, QueryConstants.TRUE);
+            }
 
             // Build an ungrouped aggregate query: select COUNT(*) from <table> where <where>
             // The coprocessor will delete each row returned from the scan
@@ -598,7 +611,8 @@ public class DeleteCompiler {
             final RowProjector projector = projectorToBe;
             final QueryPlan aggPlan = new AggregatePlan(context, select, dataPlan.getTableRef(), projector, null, null,
                     OrderBy.EMPTY_ORDER_BY, null, GroupBy.EMPTY_GROUP_BY, null, dataPlan);
-            return new ServerSelectDeleteMutationPlan(dataPlan, connection, aggPlan, projector, maxSize, maxSizeBytes);
+            ServerSelectDeleteMutationPlan serverPlan = new ServerSelectDeleteMutationPlan(dataPlan, connection, aggPlan, projector, maxSize, maxSizeBytes);
+            return truncate ? new TruncateDeleteMutationPlan(serverPlan) : serverPlan;
         } else {
             final DeletingParallelIteratorFactory parallelIteratorFactory = parallelIteratorFactoryToBe;
             List<PColumn> adjustedProjectedColumns = Lists.newArrayListWithExpectedSize(projectedColumns.size());
@@ -837,6 +851,235 @@ public class DeleteCompiler {
         }
     }
 
+    /**
+     * Whether the plan deletes all the rows of a table, which is then truncated. Tenant specific
+     * connections, views and connections with an SCN only see a part of the rows of the table,
+     * and truncating is not part of a transaction.
+     */
+    private static boolean isDeletingAllRows(QueryPlan dataPlan, PhoenixConnection connection) {
+        PTable table = dataPlan.getTableRef().getTable();
+        StatementContext context = dataPlan.getContext();
+        return table.getType() == PTableType.TABLE
+                && !table.isTransactional()
+                && connection.getTenantId() == null
+                && connection.getSCN() == null
+                && context.getScanRanges().isEverything()
+                && !context.getScan().hasFilter();
+    }
+
+    private static void setReadOnly(Admin admin, org.apache.hadoop.hbase.TableName tableName,
+            boolean readOnly) throws IOException {
+        TableDescriptor descriptor = admin.getDescriptor(tableName);
+        if (descriptor.isReadOnly() != readOnly) {
+            admin.modifyTable(TableDescriptorBuilder.newBuilder(descriptor).setReadOnly(readOnly).build());
+        }
+    }
+
+    private static void invalidateStats(ConnectionQueryServices services, PTable table) {
+        byte[] physicalName = table.getPhysicalName().getBytes();
+        if (table.getColumnFamilies().isEmpty()) {
+            services.invalidateStats(new GuidePostsKey(physicalName, SchemaUtil.getEmptyColumnFamily(table)));
+        } else {
+            for (PColumnFamily family : table.getColumnFamilies()) {
+                services.invalidateStats(new GuidePostsKey(physicalName, family.getName().getBytes()));
+            }
+        }
+    }
+
+    /**
+     * Deletes all the rows of a table by truncating it and the tables of its global indexes,
+     * preserving their splits, instead of writing a delete marker per row. Only deletes of all the
+     * rows of a table are handled this way: HBase cannot drop the files of a key range, so deletes
+     * of a key prefix keep writing delete markers. The tables are made read only before the rows
+     * are counted for the update count, so that concurrent writes fail instead of being lost,
+     * and are all disabled before any of them is truncated. Truncating the tables is not atomic:
+     * if it fails after the data table was truncated, the indexes not truncated yet are disabled.
+     * Falls back to deleting the rows on the server if the table has views with indexes, as
+     * their rows would not be cleaned up otherwise.
+     */
+    private class TruncateDeleteMutationPlan implements MutationPlan {
+        private final ServerSelectDeleteMutationPlan serverPlan;
+
+        public TruncateDeleteMutationPlan(ServerSelectDeleteMutationPlan serverPlan) {
+            this.serverPlan = serverPlan;
+        }
+
+        @Override
+        public ParameterMetaData getParameterMetaData() {
+            return serverPlan.getParameterMetaData();
+        }
+
+        @Override
+        public StatementContext getContext() {
+            return serverPlan.getContext();
+        }
+
+        @Override
+        public TableRef getTargetRef() {
+            return serverPlan.getTargetRef();
+        }
+
+        @Override
+        public Set<TableRef> getSourceRefs() {
+            return serverPlan.getSourceRefs();
+        }
+
+        @Override
+        public Operation getOperation() {
+          return operation;
+        }
+
+        @Override
+        public MutationState execute() throws SQLException {
+            PhoenixConnection connection = serverPlan.connection;
+            PTable table = serverPlan.dataPlan.getTableRef().getTable();
+            List<PTable> globalIndexes = Lists.newArrayList();
+            // The data table goes first, so that a failure leaves index rows without data
+            // rows rather than data rows missing from the indexes
+            List<org.apache.hadoop.hbase.TableName> physicalTableNames = Lists.newArrayList(
+                    org.apache.hadoop.hbase.TableName.valueOf(table.getPhysicalName().getBytes()));
+            for (PTable index : table.getIndexes()) {
+                // Local indexes are in the table itself
+                if (index.getIndexType() == IndexType.GLOBAL) {
+                    globalIndexes.add(index);
+                    physicalTableNames.add(org.apache.hadoop.hbase.TableName.valueOf(
+                            index.getPhysicalName().getBytes()));
+                }
+            }
+            org.apache.hadoop.hbase.TableName failedTable = physicalTableNames.get(0);
+            int truncatedCount = 0;
+            final long rowCount;
+            try (Admin admin = connection.getQueryServices().getAdmin()) {
+                if (admin.tableExists(org.apache.hadoop.hbase.TableName.valueOf(
+                        MetaDataUtil.getViewIndexPhysicalName(table.getPhysicalName().getBytes())))) {
+                    serverPlan.context.getScan().setAttribute(BaseScannerRegionObserver.DELETE_AGG, QueryConstants.TRUE);
+                    return serverPlan.execute();
+                }
+                try {
+                    // Writes fail from here on instead of being counted but then silently lost
+                    // by the truncation
+                    for (org.apache.hadoop.hbase.TableName physicalTableName : physicalTableNames) {
+                        failedTable = physicalTableName;
+                        setReadOnly(admin, physicalTableName, true);
+                    }
+                    failedTable = physicalTableNames.get(0);
+                    ResultIterator iterator = serverPlan.aggPlan.iterator();
+                    try {
+                        Tuple row = iterator.next();
+                        rowCount = (Long) serverPlan.projector.getColumnProjector(0).getValue(row,
+                                PLong.INSTANCE, serverPlan.context.getTempPtr());
+                    } finally {
+                        iterator.close();
+                    }
+                    // All the tables are disabled before any is truncated, so that no query
+                    // reads a truncated data table through indexes that are not truncated yet
+                    for (org.apache.hadoop.hbase.TableName physicalTableName : physicalTableNames) {
+                        failedTable = physicalTableName;
+                        admin.disableTable(physicalTableName);
+                    }
+                    for (org.apache.hadoop.hbase.TableName physicalTableName : physicalTableNames) {
+                        failedTable = physicalTableName;
+                        // The truncated table keeps the descriptor of the table
+                        setReadOnly(admin, physicalTableName, false);
+                        admin.truncateTable(physicalTableName, true);
+                        //truncateTable automatically re-enables when it's done
+                        truncatedCount++;
+                    }
+                } catch (IOException | SQLException | RuntimeException e) {
+                    restoreAfterFailure(connection, admin, table, globalIndexes,
+                            physicalTableNames, truncatedCount, e);
+                    throw e;
+                }
+            } catch (IOException e) {
+                throw new SQLExceptionInfo.Builder(SQLExceptionCode.UNKNOWN_ERROR_CODE).
+                    setMessage("Error when truncating table [" + failedTable.getNameAsString() +
+                        "] to delete all its rows: " + e.getMessage()).
+                    setTableName(failedTable.getNameAsString()).setRootCause(e).build().buildException();
+            }
+            // The guideposts of the truncated tables point to rows that are gone
+            List<byte[]> indexPhysicalNames = Lists.newArrayListWithExpectedSize(globalIndexes.size());
+            for (PTable index : globalIndexes) {
+                indexPhysicalNames.add(index.getPhysicalName().getBytes());
+            }
+            MetaDataUtil.deleteFromStatsTable(connection, table, indexPhysicalNames,
+                    Collections.<MetaDataProtocol.SharedTableState>emptyList());
+            invalidateStats(connection.getQueryServices(), table);
+            for (PTable index : globalIndexes) {
+                invalidateStats(connection.getQueryServices(), index);
+            }
+            return new MutationState(serverPlan.maxSize, serverPlan.maxSizeBytes, connection) {
+                @Override
+                public long getUpdateCount() {
+                    return rowCount;
+                }
+            };
+        }
+
+        /**
+         * Makes the tables that were not truncated writable and enabled again. If the data table
+         * was truncated, the global indexes that were not are disabled, as they still hold the
+         * rows of the data table, and must be rebuilt.
+         */
+        private void restoreAfterFailure(PhoenixConnection connection, Admin admin, PTable table,
+                List<PTable> globalIndexes,
+                List<org.apache.hadoop.hbase.TableName> physicalTableNames, int truncatedCount,
+                Exception cause) {
+            for (int i = truncatedCount; i < physicalTableNames.size(); i++) {
+                org.apache.hadoop.hbase.TableName physicalTableName = physicalTableNames.get(i);
+                try {
+                    setReadOnly(admin, physicalTableName, false);
+                    if (admin.isTableDisabled(physicalTableName)) {
+                        admin.enableTable(physicalTableName);
+                    }
+                } catch (IOException e) {
+                    cause.addSuppressed(e);
+                }
+                if (truncatedCount > 0) {
+                    PTable index = globalIndexes.get(i - 1);
+                    try {
+                        connection.createStatement().execute("ALTER INDEX "
+                                + SchemaUtil.getEscapedArgument(index.getTableName().getString())
+                                + " ON " + SchemaUtil.getEscapedTableName(
+                                        table.getSchemaName().getString(),
+                                        table.getTableName().getString())
+                                + " DISABLE");
+                    } catch (SQLException e) {
+                        cause.addSuppressed(e);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public ExplainPlan getExplainPlan() throws SQLException {
+            List<String> queryPlanSteps =  serverPlan.aggPlan.getExplainPlan().getPlanSteps();
+            List<String> planSteps = Lists.newArrayListWithExpectedSize(queryPlanSteps.size()+1);
+            planSteps.add("DELETE ALL ROWS BY TRUNCATING TABLE");
+            planSteps.addAll(queryPlanSteps);
+            return new ExplainPlan(planSteps);
+        }
+
+        @Override
+        public Long getEstimatedRowsToScan() throws SQLException {
+            return serverPlan.getEstimatedRowsToScan();
+        }
+
+        @Override
+        public Long getEstimatedBytesToScan() throws SQLException {
+            return serverPlan.getEstimatedBytesToScan();
+        }
+
+        @Override
+        public Long getEstimateInfoTimestamp() throws SQLException {
+            return serverPlan.getEstimateInfoTimestamp();
+        }
+
+        @Override
+        public QueryPlan getQueryPlan() {
+            return serverPlan.getQueryPlan();
+        }
+    }
+
     private class ClientSelectDeleteMutationPlan implements MutationPlan {
         private final StatementContext context;
         private final TableRef targetTableRef;
@@ -0,0 +1,411 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.compile;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.phoenix.expression.function.CountAggregateFunction;
+import org.apache.phoenix.expression.function.MaxAggregateFunction;
+import org.apache.phoenix.expression.function.MinAggregateFunction;
+import org.apache.phoenix.expression.function.SumAggregateFunction;
+import org.apache.phoenix.parse.AliasedNode;
+import org.apache.phoenix.parse.AndParseNode;
+import org.apache.phoenix.parse.ColumnParseNode;
+import org.apache.phoenix.parse.FunctionParseNode;
+import org.apache.phoenix.parse.JoinTableNode;
+import org.apache.phoenix.parse.JoinTableNode.JoinType;
+import org.apache.phoenix.parse.NamedTableNode;
+import org.apache.phoenix.parse.OrderByNode;
+import org.apache.phoenix.parse.ParseNode;
+import org.apache.phoenix.parse.ParseNodeFactory;
+import org.apache.phoenix.parse.ParseNodeRewriter;
+import org.apache.phoenix.parse.SelectStatement;
+import org.apache.phoenix.parse.StatelessTraverseAllParseNodeVisitor;
+import org.apache.phoenix.parse.TableName;
+import org.apache.phoenix.parse.TableNode;
+import org.apache.phoenix.schema.AmbiguousColumnException;
+import org.apache.phoenix.schema.ColumnNotFoundException;
+import org.apache.phoenix.schema.ColumnRef;
+import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.TableRef;
+import org.apache.phoenix.util.SchemaUtil;
+
+/**
+ * <pre>
+ * Pushes a partial aggregation below the joins of an aggregate join query. For
+ *   SELECT d.name, SUM(f.amount) FROM fact f JOIN dim d ON f.dim_id = d.id GROUP BY d.name
+ * the table all the aggregate arguments come from is replaced with a derived table grouped
+ * by the columns of it that the rest of the query refers to:
+ *   SELECT d.name, SUM($3.$2) FROM (SELECT f.dim_id $1, SUM(f.amount) $2 FROM fact f GROUP BY f.dim_id) $3
+ *   JOIN dim d ON $3.$1 = d.id GROUP BY d.name
+ * so that the join sees one row per distinct join key instead of every row of the table.
+ * </pre>
+ * Partial SUM and COUNT are finished with SUM, partial MIN and MAX with themselves. MIN and
+ * MAX of the other tables are left as they are, since they do not depend on how many times a
+ * row is joined. The rewrite only applies to inner joins of named tables with a GROUP BY, and
+ * is skipped if the grouping columns include the whole primary key of the table, in which case
+ * no rows would be combined.
+ */
+public class PartialAggregateRewriter {
+    private static final ParseNodeFactory NODE_FACTORY = new ParseNodeFactory();
+
+    private final ColumnResolver resolver;
+
+    private PartialAggregateRewriter(ColumnResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * Returns the statement with a partial aggregation pushed below its joins, or the statement
+     * itself if it cannot be rewritten.
+     * @param select the normalized select statement
+     * @param resolver the resolver of the statement
+     */
+    public static SelectStatement rewrite(SelectStatement select, ColumnResolver resolver) throws SQLException {
+        if (!select.isJoin() || !select.isAggregate() || select.getGroupBy().isEmpty()
+                || select.isDistinct() || select.hasSequence() || select.hasWildcard()
+                || (select.getUdfParseNodes() != null && !select.getUdfParseNodes().isEmpty())
+                || (select.getWhere() != null && select.getWhere().hasSubquery())
+                || (select.getHaving() != null && select.getHaving().hasSubquery())) {
+            return select;
+        }
+        try {
+            SelectStatement rewritten = new PartialAggregateRewriter(resolver).rewrite(select);
+            return rewritten == null ? select : rewritten;
+        } catch (ColumnNotFoundException | AmbiguousColumnException e) {
+            // Leave it to the compilation of the original statement to report
+            return select;
+        }
+    }
+
+    private SelectStatement rewrite(SelectStatement select) throws SQLException {
+        List<NamedTableNode> tableNodes = new ArrayList<NamedTableNode>();
+        List<ParseNode> onNodes = new ArrayList<ParseNode>();
+        if (!collectInnerJoinTables(select.getFrom(), tableNodes, onNodes)) {
+            return null;
+        }
+
+        List<ParseNode> outerNodes = new ArrayList<ParseNode>();
+        for (AliasedNode aliasedNode : select.getSelect()) {
+            outerNodes.add(aliasedNode.getNode());
+        }
+        if (select.getHaving() != null) {
+            outerNodes.add(select.getHaving());
+        }
+        for (OrderByNode orderByNode : select.getOrderBy()) {
+            outerNodes.add(orderByNode.getNode());
+        }
+        AggregateCollector aggregateCollector = new AggregateCollector();
+        for (ParseNode node : outerNodes) {
+            node.accept(aggregateCollector);
+        }
+
+        // Find the only table the partial aggregates can be computed over
+        TableRef tableRef = null;
+        for (boolean minMax : new boolean[] {false, true}) {
+            for (FunctionParseNode aggregate : aggregateCollector.aggregates) {
+                String name = aggregate.getName();
+                boolean isMinMax = MinAggregateFunction.NAME.equals(name) || MaxAggregateFunction.NAME.equals(name);
+                if (!isMinMax && !SumAggregateFunction.NAME.equals(name) && !CountAggregateFunction.NORMALIZED_NAME.equals(name)) {
+                    return null;
+                }
+                if (isMinMax != minMax) {
+                    continue;
+                }
+                Set<TableRef> tableRefs = getTableRefs(aggregate);
+                if (tableRefs.size() > 1) {
+                    return null;
+                }
+                if (tableRefs.size() == 1) {
+                    TableRef aggregateTableRef = tableRefs.iterator().next();
+                    if (tableRef == null) {
+                        tableRef = aggregateTableRef;
+                    } else if (!isMinMax && !tableRef.equals(aggregateTableRef)) {
+                        return null;
+                    }
+                }
+            }
+        }
+        if (tableRef == null) {
+            return null;
+        }
+        NamedTableNode tableNode = null;
+        for (NamedTableNode node : tableNodes) {
+            if (tableRef.equals(resolveTable(node))) {
+                tableNode = node;
+            }
+        }
+        if (tableNode == null) {
+            return null;
+        }
+
+        // Split the WHERE clause into the filters on the table alone, which are applied before
+        // the partial aggregation, and the rest
+        List<ParseNode> innerFilters = new ArrayList<ParseNode>();
+        List<ParseNode> outerFilters = new ArrayList<ParseNode>();
+        ParseNode where = select.getWhere();
+        if (where != null) {
+            List<ParseNode> filters = where instanceof AndParseNode ? where.getChildren() : Collections.singletonList(where);
+            for (ParseNode filter : filters) {
+                Set<TableRef> tableRefs = getTableRefs(filter);
+                if (tableRefs.size() == 1 && tableRefs.contains(tableRef)) {
+                    innerFilters.add(filter);
+                } else {
+                    outerFilters.add(filter);
+                }
+            }
+        }
+
+        // Any column of the table used outside of an aggregate becomes a grouping key
+        ColumnCollector columnCollector = new ColumnCollector(tableRef);
+        List<ParseNode> keyUsers = new ArrayList<ParseNode>(outerNodes);
+        keyUsers.addAll(onNodes);
+        keyUsers.addAll(outerFilters);
+        keyUsers.addAll(select.getGroupBy());
+        for (ParseNode node : keyUsers) {
+            node.accept(columnCollector);
+        }
+        Map<ColumnRef, ColumnParseNode> keys = columnCollector.columns;
+        if (keys.isEmpty() || coversPrimaryKey(tableRef, keys.keySet())) {
+            return null;
+        }
+
+        String tableAlias = ParseNodeFactory.createTempAlias();
+        TableName derivedTableName = NODE_FACTORY.table(null, tableAlias);
+        List<AliasedNode> innerSelectNodes = new ArrayList<AliasedNode>();
+        List<ParseNode> innerGroupBy = new ArrayList<ParseNode>(keys.size());
+        Map<ColumnRef, ParseNode> columnMap = new LinkedHashMap<ColumnRef, ParseNode>();
+        for (Map.Entry<ColumnRef, ColumnParseNode> entry : keys.entrySet()) {
+            String alias = ParseNodeFactory.createTempAlias();
+            innerSelectNodes.add(NODE_FACTORY.aliasedNode(alias, entry.getValue()));
+            innerGroupBy.add(entry.getValue());
+            columnMap.put(entry.getKey(), NODE_FACTORY.column(derivedTableName, alias, null));
+        }
+        Map<ParseNode, ParseNode> aggregateMap = new LinkedHashMap<ParseNode, ParseNode>();
+        for (FunctionParseNode aggregate : aggregateCollector.aggregates) {
+            if (aggregateMap.containsKey(aggregate)) {
+                continue;
+            }
+            Set<TableRef> tableRefs = getTableRefs(aggregate);
+            String name = aggregate.getName();
+            boolean isMinMax = MinAggregateFunction.NAME.equals(name) || MaxAggregateFunction.NAME.equals(name);
+            if (isMinMax && !tableRefs.contains(tableRef)) {
+                continue;
+            }
+            String alias = ParseNodeFactory.createTempAlias();
+            innerSelectNodes.add(NODE_FACTORY.aliasedNode(alias, aggregate));
+            ParseNode partial = NODE_FACTORY.column(derivedTableName, alias, null);
+            aggregateMap.put(aggregate, NODE_FACTORY.function(
+                    isMinMax ? name : SumAggregateFunction.NAME, Collections.singletonList(partial)));
+        }
+        SelectStatement innerSelect = NODE_FACTORY.select(tableNode, select.getHint(), false,
+                innerSelectNodes, combine(innerFilters), innerGroupBy, null, null, null, null,
+                select.getBindCount(), true, false, Collections.<SelectStatement>emptyList(),
+                select.getUdfParseNodes());
+
+        OuterRewriter rewriter = new OuterRewriter(resolver, columnMap, aggregateMap);
+        TableNode from = rewriteFrom(select.getFrom(), tableNode,
+                NODE_FACTORY.derivedTable(tableAlias, innerSelect), rewriter);
+        List<AliasedNode> selectNodes = new ArrayList<AliasedNode>(select.getSelect().size());
+        for (AliasedNode aliasedNode : select.getSelect()) {
+            ParseNode node = ParseNodeRewriter.rewrite(aliasedNode.getNode(), rewriter);
+            String alias = aliasedNode.getAlias() == null ? null : aliasedNode.isCaseSensitve() ? '"' + aliasedNode.getAlias() + '"' : aliasedNode.getAlias();
+            if (alias == null && node != aliasedNode.getNode()) {
+                // Keep the column label of the original expression
+                alias = getLabel(aliasedNode.getNode());
+            }
+            selectNodes.add(NODE_FACTORY.aliasedNode(alias, node));
+        }
+        List<ParseNode> groupBy = new ArrayList<ParseNode>(select.getGroupBy().size());
+        for (ParseNode node : select.getGroupBy()) {
+            groupBy.add(ParseNodeRewriter.rewrite(node, rewriter));
+        }
+        List<ParseNode> filters = new ArrayList<ParseNode>(outerFilters.size());
+        for (ParseNode node : outerFilters) {
+            filters.add(ParseNodeRewriter.rewrite(node, rewriter));
+        }
+        List<OrderByNode> orderBy = new ArrayList<OrderByNode>(select.getOrderBy().size());
+        for (OrderByNode orderByNode : select.getOrderBy()) {
+            orderBy.add(NODE_FACTORY.orderBy(ParseNodeRewriter.rewrite(orderByNode.getNode(), rewriter),
+                    orderByNode.isNullsLast(), orderByNode.isAscending()));
+        }
+        return NODE_FACTORY.select(from, select.getHint(), false, selectNodes, combine(filters),
+                groupBy, ParseNodeRewriter.rewrite(select.getHaving(), rewriter), orderBy,
+                select.getLimit(), select.getOffset(), select.getBindCount(), true, false,
+                select.getSelects(), select.getUdfParseNodes());
+    }
+
+    private static boolean collectInnerJoinTables(TableNode node, List<NamedTableNode> tableNodes, List<ParseNode> onNodes) {
+        if (node instanceof NamedTableNode) {
+            tableNodes.add((NamedTableNode) node);
+            return true;
+        }
+        if (!(node instanceof JoinTableNode)) {
+            return false;
+        }
+        JoinTableNode joinNode = (JoinTableNode) node;
+        if (joinNode.getType() != JoinType.Inner || joinNode.isSingleValueOnly()
+                || joinNode.getOnNode() == null || joinNode.getOnNode().hasSubquery()) {
+            return false;
+        }
+        onNodes.add(joinNode.getOnNode());
+        return collectInnerJoinTables(joinNode.getLHS(), tableNodes, onNodes)
+                && collectInnerJoinTables(joinNode.getRHS(), tableNodes, onNodes);
+    }
+
+    private static TableNode rewriteFrom(TableNode node, NamedTableNode tableNode, TableNode derivedTableNode, OuterRewriter rewriter) throws SQLException {
+        if (node == tableNode) {
+            return derivedTableNode;
+        }
+        if (!(node instanceof JoinTableNode)) {
+            return node;
+        }
+        JoinTableNode joinNode = (JoinTableNode) node;
+        return NODE_FACTORY.join(joinNode.getType(),
+                rewriteFrom(joinNode.getLHS(), tableNode, derivedTableNode, rewriter),
+                rewriteFrom(joinNode.getRHS(), tableNode, derivedTableNode, rewriter),
+                ParseNodeRewriter.rewrite(joinNode.getOnNode(), rewriter), joinNode.isSingleValueOnly());
+    }
+
+    private TableRef resolveTable(NamedTableNode node) throws SQLException {
+        if (node.getAlias() != null) {
+            return resolver.resolveTable(null, node.getAlias());
+        }
+        return resolver.resolveTable(node.getName().getSchemaName(), node.getName().getTableName());
+    }
+
+    private Set<TableRef> getTableRefs(ParseNode node) throws SQLException {
+        ColumnCollector collector = new ColumnCollector(null);
+        node.accept(collector);
+        Set<TableRef> tableRefs = new HashSet<TableRef>();
+        for (ColumnRef columnRef : collector.columns.keySet()) {
+            tableRefs.add(columnRef.getTableRef());
+        }
+        return tableRefs;
+    }
+
+    private static boolean coversPrimaryKey(TableRef tableRef, Set<ColumnRef> keys) {
+        PTable table = tableRef.getTable();
+        Set<PColumn> columns = new HashSet<PColumn>();
+        for (ColumnRef columnRef : keys) {
+            columns.add(columnRef.getColumn());
+        }
+        List<PColumn> pkColumns = table.getPKColumns();
+        for (int i = table.getBucketNum() == null ? 0 : 1; i < pkColumns.size(); i++) {
+            if (!columns.contains(pkColumns.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ParseNode combine(List<ParseNode> nodes) {
+        if (nodes.isEmpty()) {
+            return null;
+        }
+        return nodes.size() == 1 ? nodes.get(0) : NODE_FACTORY.and(nodes);
+    }
+
+    private static String getLabel(ParseNode node) {
+        String label = node instanceof ColumnParseNode
+                ? ((ColumnParseNode) node).getName() : node.toString().trim();
+        // Quote the label so that it is not normalized again
+        return SchemaUtil.normalizeIdentifier(label).equals(label) ? label : "\"" + label + "\"";
+    }
+
+    private static class AggregateCollector extends StatelessTraverseAllParseNodeVisitor {
+        private final List<FunctionParseNode> aggregates = new ArrayList<FunctionParseNode>();
+
+        @Override
+        public boolean visitEnter(FunctionParseNode node) throws SQLException {
+            if (node.isAggregate()) {
+                aggregates.add(node);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Collects the column references of a table, or of all tables if the table is null.
+     * The arguments of aggregate functions are skipped when collecting the columns of a table.
+     */
+    private class ColumnCollector extends StatelessTraverseAllParseNodeVisitor {
+        private final TableRef tableRef;
+        private final Map<ColumnRef, ColumnParseNode> columns = new LinkedHashMap<ColumnRef, ColumnParseNode>();
+
+        private ColumnCollector(TableRef tableRef) {
+            this.tableRef = tableRef;
+        }
+
+        @Override
+        public boolean visitEnter(FunctionParseNode node) throws SQLException {
+            return tableRef == null || !node.isAggregate();
+        }
+
+        @Override
+        public Void visit(ColumnParseNode node) throws SQLException {
+            ColumnRef columnRef = resolver.resolveColumn(node.getSchemaName(), node.getTableName(), node.getName());
+            if ((tableRef == null || tableRef.equals(columnRef.getTableRef())) && !columns.containsKey(columnRef)) {
+                columns.put(columnRef, node);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the aggregates and the columns of the aggregated table with references to the
+     * columns of the derived table.
+     */
+    private static class OuterRewriter extends ParseNodeRewriter {
+        private final Map<ColumnRef, ParseNode> columnMap;
+        private final Map<ParseNode, ParseNode> aggregateMap;
+
+        private OuterRewriter(ColumnResolver resolver, Map<ColumnRef, ParseNode> columnMap, Map<ParseNode, ParseNode> aggregateMap) {
+            super(resolver);
+            this.columnMap = columnMap;
+            this.aggregateMap = aggregateMap;
+        }
+
+        @Override
+        public boolean visitEnter(FunctionParseNode node) throws SQLException {
+            return !aggregateMap.containsKey(node);
+        }
+
+        @Override
+        public ParseNode visitLeave(FunctionParseNode node, List<ParseNode> children) throws SQLException {
+            ParseNode partial = aggregateMap.get(node);
+            return partial != null ? partial : super.visitLeave(node, children);
+        }
+
+        @Override
+        public ParseNode visit(ColumnParseNode node) throws SQLException {
+            ColumnRef columnRef = getResolver().resolveColumn(node.getSchemaName(), node.getTableName(), node.getName());
+            ParseNode replacement = columnMap.get(columnRef);
+            return replacement != null ? replacement : node;
+        }
+    }
+}
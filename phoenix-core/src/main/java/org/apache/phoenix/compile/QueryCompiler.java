@@ -53,6 +53,9 @@ import org.apache.phoenix.execute.SortMergeJoinPlan;
 import org.apache.phoenix.execute.TupleProjectionPlan;
 import org.apache.phoenix.execute.TupleProjector;
 import org.apache.phoenix.execute.UnionPlan;
+import org.apache.phoenix.execute.visitor.RowCountVisitor;
+import org.apache.phoenix.expression.CoerceExpression;
+import org.apache.phoenix.expression.Determinism;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.LiteralExpression;
 import org.apache.phoenix.expression.RowValueConstructorExpression;
@@ -83,6 +86,7 @@ import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.schema.RowValueConstructorOffsetNotCoercibleException;
 import org.apache.phoenix.schema.TableNotFoundException;
 import org.apache.phoenix.schema.TableRef;
+import org.apache.phoenix.util.CostUtil;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.QueryUtil;
 import org.apache.phoenix.util.ScanUtil;
@@ -115,6 +119,8 @@ public class QueryCompiler {
     private final boolean optimizeSubquery;
     private final Map<TableRef, QueryPlan> dataPlans;
     private final boolean costBased;
+    private final boolean useHashJoinBloomFilter;
+    private final boolean usePartialAggregation;
 
     public QueryCompiler(PhoenixStatement statement, SelectStatement select, ColumnResolver resolver, boolean projectTuples, boolean optimizeSubquery, Map<TableRef, QueryPlan> dataPlans) throws SQLException {
         this(statement, select, resolver, Collections.<PDatum>emptyList(), null, new SequenceManager(statement), projectTuples, optimizeSubquery, dataPlans);
@@ -142,6 +148,8 @@ public class QueryCompiler {
         this.usePersistentCache = select.getHint().hasHint(Hint.USE_PERSISTENT_CACHE);
         ConnectionQueryServices services = statement.getConnection().getQueryServices();
         this.costBased = services.getProps().getBoolean(QueryServices.COST_BASED_OPTIMIZER_ENABLED, QueryServicesOptions.DEFAULT_COST_BASED_OPTIMIZER_ENABLED);
+        this.useHashJoinBloomFilter = !usePersistentCache && services.getProps().getBoolean(QueryServices.HASH_JOIN_BLOOM_FILTER_ENABLED_ATTRIB, QueryServicesOptions.DEFAULT_HASH_JOIN_BLOOM_FILTER_ENABLED);
+        this.usePartialAggregation = services.getProps().getBoolean(QueryServices.JOIN_PARTIAL_AGGREGATION_ENABLED_ATTRIB, QueryServicesOptions.DEFAULT_JOIN_PARTIAL_AGGREGATION_ENABLED);
         scan.setLoadColumnFamiliesOnDemand(true);
         if (select.getHint().hasHint(Hint.NO_CACHE)) {
             scan.setCacheBlocks(false);
@@ -242,9 +250,19 @@ public class QueryCompiler {
     }
 
     public QueryPlan compileSelect(SelectStatement select) throws SQLException{
+        if (select.hasWindowFunctions()) {
+            return compileWindowQuery(select);
+        }
         List<Object> binds = statement.getParameters();
         StatementContext context = new StatementContext(statement, resolver, bindManager, scan, sequenceManager);
         if (select.isJoin()) {
+            if (usePartialAggregation) {
+                SelectStatement rewritten = PartialAggregateRewriter.rewrite(select, resolver);
+                if (rewritten != select) {
+                    select = rewritten;
+                    context.setResolver(FromCompiler.getResolverForQuery(select, statement.getConnection()));
+                }
+            }
             JoinTable joinTable = JoinCompiler.compile(statement, select, context.getResolver());
             return compileJoinQuery(context, binds, joinTable, false, false, null);
         } else {
@@ -321,6 +339,60 @@ public class QueryCompiler {
         return bestPlan;
     }
 
+    /**
+     * Returns the cost-based probe order of the hash joins in a star join, or null if the
+     * joins should be probed in the order they appear in the query. Joins are only reordered
+     * if the cost-based optimizer is enabled, all of them are part of the star join, row
+     * count estimates are available for every RHS and the query does not select a wildcard,
+     * whose column order follows the join order. Only the probe order changes: the joins of
+     * the star keep the LHS of the query, and the build side and strategy are still chosen
+     * among the applicable join strategies by their cost, as before.
+     */
+    private int[] getStarJoinOrder(JoinTable joinTable, boolean[] starJoinVector, QueryPlan[] subPlans) throws SQLException {
+        if (!costBased || subPlans.length < 2 || joinTable.getStatement().hasWildcard()) {
+            return null;
+        }
+        for (boolean isStarJoin : starJoinVector) {
+            if (!isStarJoin) {
+                return null;
+            }
+        }
+        double[] rhsRows = new double[subPlans.length];
+        JoinType[] joinTypes = new JoinType[subPlans.length];
+        List<JoinSpec> joinSpecs = joinTable.getJoinSpecs();
+        for (int i = 0; i < subPlans.length; i++) {
+            Double rows = subPlans[i].accept(new RowCountVisitor());
+            if (rows == null) {
+                return null;
+            }
+            rhsRows[i] = rows;
+            joinTypes[i] = joinSpecs.get(i).getType();
+        }
+        int[] joinOrder = CostUtil.orderStarJoins(rhsRows, joinTypes);
+        for (int i = 0; i < joinOrder.length; i++) {
+            if (joinOrder[i] != i) {
+                return joinOrder;
+            }
+        }
+        return null;
+    }
+
+    private static <T> List<T> reorder(List<T> list, int[] order) {
+        List<T> ret = Lists.newArrayListWithExpectedSize(order.length);
+        for (int i : order) {
+            ret.add(list.get(i));
+        }
+        return ret;
+    }
+
+    private static <T> T[] reorder(T[] array, int[] order) {
+        T[] ret = array.clone();
+        for (int i = 0; i < order.length; i++) {
+            ret[i] = array[order[i]];
+        }
+        return ret;
+    }
+
     protected QueryPlan compileJoinQuery(JoinCompiler.Strategy strategy, StatementContext context, List<Object> binds, JoinTable joinTable, boolean asSubquery, boolean projectPKColumns, List<OrderByNode> orderBy) throws SQLException {
         byte[] emptyByteArray = new byte[0];
         List<JoinSpec> joinSpecs = joinTable.getJoinSpecs();
@@ -374,6 +446,15 @@ public class QueryCompiler {
                             true,
                             true,
                             null);
+                }
+                int[] joinOrder = getStarJoinOrder(joinTable, starJoinVector, subPlans);
+                if (joinOrder != null) {
+                    joinSpecs = reorder(joinSpecs, joinOrder);
+                    subContexts = reorder(subContexts, joinOrder);
+                    subPlans = reorder(subPlans, joinOrder);
+                }
+                for (int i = 0; i < count; i++) {
+                    JoinSpec joinSpec = joinSpecs.get(i);
                     boolean hasPostReference = joinSpec.getRhsJoinTable().hasPostReference();
                     if (hasPostReference) {
                         tables[i] = subContexts[i].getResolver().getTables().get(0).getTable();
@@ -397,7 +478,11 @@ public class QueryCompiler {
                     if (i < count - 1) {
                         fieldPositions[i + 1] = fieldPositions[i] + (tables[i] == null ? 0 : (tables[i].getColumns().size() - tables[i].getPKColumns().size()));
                     }
-                    hashPlans[i] = new HashSubPlan(i, subPlans[i], optimized ? null : hashExpressions, joinSpec.isSingleValueOnly(), usePersistentCache, keyRangeLhsExpression, keyRangeRhsExpression);
+                    Expression bloomFilterKeyExpression = null;
+                    if (useHashJoinBloomFilter && !optimized && keyRangeLhsExpression == null && !table.isSubselect()) {
+                        bloomFilterKeyExpression = compileBloomFilterKeyExpression(context, joinSpec, tableRef, query, joinExpressions[i]);
+                    }
+                    hashPlans[i] = new HashSubPlan(i, subPlans[i], optimized ? null : hashExpressions, joinSpec.isSingleValueOnly(), usePersistentCache, keyRangeLhsExpression, keyRangeRhsExpression, bloomFilterKeyExpression);
                 }
                 TupleProjector.serializeProjectorIntoScan(context.getScan(), tupleProjector,
                         wildcardIncludesDynamicCols);
@@ -568,6 +653,37 @@ public class QueryCompiler {
         }
     }
 
+    /**
+     * Compiles the join key of an inner or semi hash join against the probe side table, so
+     * that a bloom filter of the build side join keys can be evaluated by the probe side scan
+     * before rows are projected and joined. Returns null if the join has more than one join
+     * key or the join key cannot be evaluated from the probe side table alone.
+     */
+    private Expression compileBloomFilterKeyExpression(StatementContext context, JoinSpec joinSpec, TableRef tableRef, SelectStatement query, List<Expression> joinExpressions) throws SQLException {
+        JoinType type = joinSpec.getType();
+        if ((type != JoinType.Inner && type != JoinType.Semi) || joinSpec.getOnConditions().size() != 1)
+            return null;
+
+        ColumnResolver tableResolver = FromCompiler.getResolver(context.getConnection(), tableRef, query.getUdfParseNodes());
+        StatementContext tableContext = new StatementContext(statement, tableResolver, context.getBindManager(), ScanUtil.newScan(originalScan), new SequenceManager(statement));
+        tableContext.setCurrentTable(tableRef);
+        Expression keyExpression;
+        try {
+            keyExpression = joinSpec.getOnConditions().get(0).getLHS().accept(new WhereCompiler.WhereExpressionCompiler(tableContext));
+        } catch (SQLException e) {
+            return null;
+        }
+        if (keyExpression.isStateless() || keyExpression.getDeterminism() != Determinism.ALWAYS)
+            return null;
+
+        // Encode the key the same way as the join key the hash cache is keyed on
+        Expression joinExpression = joinExpressions.get(0);
+        if (keyExpression.getDataType() != joinExpression.getDataType() || keyExpression.getSortOrder() != joinExpression.getSortOrder()) {
+            keyExpression = CoerceExpression.create(keyExpression, joinExpression.getDataType(), joinExpression.getSortOrder(), joinExpression.getMaxLength());
+        }
+        return keyExpression;
+    }
+
     private boolean getKeyExpressionCombinations(Pair<Expression, Expression> combination, StatementContext context, SelectStatement select, TableRef table, JoinType type, final List<Expression> joinExpressions, final List<Expression> hashExpressions) throws SQLException {
         if ((type != JoinType.Inner && type != JoinType.Semi) || this.noChildParentJoinOptimization)
             return false;
@@ -622,6 +738,30 @@ public class QueryCompiler {
         return plan;
     }
 
+    /**
+     * Compiles a query with window functions as an outer query over the window functions
+     * computed on the rows of a base query, see {@link WindowCompiler}.
+     */
+    protected QueryPlan compileWindowQuery(SelectStatement select) throws SQLException {
+        List<Object> binds = statement.getParameters();
+        WindowCompiler.WindowQuery windowQuery = WindowCompiler.rewrite(select);
+        SelectStatement outerSelect = windowQuery.getOuterSelect();
+        ColumnResolver resolver = FromCompiler.getResolverForQuery(outerSelect, statement.getConnection());
+        StatementContext context = new StatementContext(statement, resolver, bindManager, scan, sequenceManager);
+        QueryPlan innerPlan = WindowCompiler.compile(windowQuery, compileSubquery(windowQuery.getBaseSelect(), false));
+        RowProjector innerQueryPlanRowProjector = innerPlan.getProjector();
+        TupleProjector tupleProjector = new TupleProjector(innerQueryPlanRowProjector);
+
+        // Replace the original resolver and table with those having compiled type info.
+        TableRef tableRef = resolver.getTables().get(0);
+        resolver = FromCompiler.getResolverForCompiledDerivedTable(statement.getConnection(), tableRef, innerQueryPlanRowProjector);
+        context.setResolver(resolver);
+        context.setCurrentTable(resolver.getTables().get(0));
+        innerPlan = new TupleProjectionPlan(innerPlan, tupleProjector, context, null);
+
+        return compileSingleFlatQuery(context, outerSelect, binds, false, true, innerPlan, false, false);
+    }
+
     protected QueryPlan compileSingleQuery(StatementContext context, SelectStatement select, List<Object> binds, boolean asSubquery, boolean allowPageFilter) throws SQLException{
         SelectStatement innerSelect = select.getInnerSelectStatement();
         if (innerSelect == null) {
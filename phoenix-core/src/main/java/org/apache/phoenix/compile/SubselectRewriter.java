@@ -114,7 +114,8 @@ public class SubselectRewriter extends ParseNodeRewriter {
      * @throws SQLException
      */
     public static boolean isFilterCanPushDownToSelect(SelectStatement statement) throws SQLException {
-        return statement.getLimit() == null && (!statement.isAggregate() || !statement.getGroupBy().isEmpty());        
+        return statement.getLimit() == null && !statement.hasWindowFunctions()
+                && (!statement.isAggregate() || !statement.getGroupBy().isEmpty());        
     }
     
     /**
@@ -346,7 +347,7 @@ public class SubselectRewriter extends ParseNodeRewriter {
         while (from != null && from instanceof DerivedTableNode) {
             DerivedTableNode derivedTable = (DerivedTableNode) from;
             SelectStatement subselect = derivedTable.getSelect();
-            if (subselect.isUnion()) {
+            if (subselect.isUnion() || subselect.hasWindowFunctions()) {
                 break;
             }
             ColumnResolver resolver = FromCompiler.getResolverForQuery(subselect, connection);
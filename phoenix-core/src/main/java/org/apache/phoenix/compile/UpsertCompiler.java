@@ -50,10 +50,14 @@ import org.apache.phoenix.exception.DataExceedsCapacityException;
 import org.apache.phoenix.exception.SQLExceptionCode;
 import org.apache.phoenix.exception.SQLExceptionInfo;
 import org.apache.phoenix.execute.AggregatePlan;
+import org.apache.phoenix.execute.HashJoinPlan;
+import org.apache.phoenix.execute.HashJoinPlan.HashSubPlan;
+import org.apache.phoenix.execute.HashJoinPlan.SubPlan;
 import org.apache.phoenix.execute.MutationState;
 import org.apache.phoenix.execute.MutationState.MultiRowMutationState;
 import org.apache.phoenix.execute.MutationState.RowMutationState;
 import org.apache.phoenix.execute.MutationState.RowTimestampColInfo;
+import org.apache.phoenix.execute.ScanPlan;
 import org.apache.phoenix.expression.Determinism;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.LiteralExpression;
@@ -74,6 +78,7 @@ import org.apache.phoenix.parse.HintNode;
 import org.apache.phoenix.parse.HintNode.Hint;
 import org.apache.phoenix.parse.LiteralParseNode;
 import org.apache.phoenix.parse.NamedTableNode;
+import org.apache.phoenix.parse.OrderByNode;
 import org.apache.phoenix.parse.ParseNode;
 import org.apache.phoenix.parse.SelectStatement;
 import org.apache.phoenix.parse.SequenceValueParseNode;
@@ -396,6 +401,16 @@ public class UpsertCompiler {
         boolean allowServerMutations =
                 services.getProps().getBoolean(QueryServices.ENABLE_SERVER_SIDE_UPSERT_MUTATIONS,
                         QueryServicesOptions.DEFAULT_ENABLE_SERVER_SIDE_UPSERT_MUTATIONS);
+        boolean serverUpsertSelectMutableIndexesEnabled =
+                services.getProps().getBoolean(QueryServices.ENABLE_SERVER_UPSERT_SELECT_MUTABLE_INDEXES,
+                        QueryServicesOptions.DEFAULT_ENABLE_SERVER_UPSERT_SELECT_MUTABLE_INDEXES);
+        boolean serverUpsertSelectJoinsEnabled =
+                services.getProps().getBoolean(QueryServices.ENABLE_SERVER_UPSERT_SELECT_JOINS,
+                        QueryServicesOptions.DEFAULT_ENABLE_SERVER_UPSERT_SELECT_JOINS);
+        boolean serverUpsertSelectRowTimestampEnabled =
+                services.getProps().getBoolean(QueryServices.ENABLE_SERVER_UPSERT_SELECT_ROW_TIMESTAMP,
+                        QueryServicesOptions.DEFAULT_ENABLE_SERVER_UPSERT_SELECT_ROW_TIMESTAMP);
+        boolean joinOnServer = false;
         UpsertingParallelIteratorFactory parallelIteratorFactoryToBe = null;
         boolean useServerTimestampToBe = false;
         
@@ -590,6 +605,9 @@ public class UpsertCompiler {
              * 5) no limit clause, as the limit clause requires client-side post processing
              * 6) no sequences, as sequences imply that the order of upsert must match the order of
              *    selection. TODO: change this and only force client side if there's a ORDER BY on the sequence value
+             * 7) no joins or WHERE subqueries, unless enabled and compiled to a hash join whose caches
+             *    are sent to the region servers
+             * 8) no ROW_TIMESTAMP column, unless enabled and set by the select
              * Otherwise, run the query to pull the data from the server
              * and populate the MutationState (upto a limit).
             */
@@ -603,13 +621,22 @@ public class UpsertCompiler {
                 // Disable running upsert select on server side if a table has global mutable secondary indexes on it
                 boolean hasGlobalMutableIndexes = SchemaUtil.hasGlobalIndex(table) && !table.isImmutableRows();
                 boolean hasWhereSubquery = select.getWhere() != null && select.getWhere().hasSubquery();
-                runOnServer = (sameTable || (serverUpsertSelectEnabled && !hasGlobalMutableIndexes)) && isAutoCommit 
+                // Whether the plan is a hash join is only known once compiled, see canRunJoinOnServer
+                joinOnServer = (select.isJoin() || hasWhereSubquery) && serverUpsertSelectJoinsEnabled;
+                runOnServer = (sameTable || (serverUpsertSelectEnabled
+                        // The mutations written by the region servers carry the index maintainers of
+                        // the target table, so its regions maintain the global mutable indexes
+                        && (!hasGlobalMutableIndexes || serverUpsertSelectMutableIndexesEnabled))) && isAutoCommit
                         // We can run the upsert select for initial index population on server side for transactional
                         // tables since the writes do not need to be done transactionally, since we gate the index
                         // usage on successfully writing all data rows.
                         && (!table.isTransactional() || table.getType() == PTableType.INDEX)
                         && !(table.isImmutableRows() && !table.getIndexes().isEmpty())
-                        && !select.isJoin() && !hasWhereSubquery && table.getRowTimestampColPos() == -1;
+                        && (!(select.isJoin() || hasWhereSubquery) || joinOnServer)
+                        // The region servers take the timestamp of the rows from the ROW_TIMESTAMP
+                        // column, but cannot generate it
+                        && (table.getRowTimestampColPos() == -1
+                                || (serverUpsertSelectRowTimestampEnabled && !useServerTimestampToBe));
             }
             runOnServer &= allowServerMutations;
             // If we may be able to run on the server, add a hint that favors using the data table
@@ -703,6 +730,9 @@ public class UpsertCompiler {
             // the projected expression either matches the column name or
             // is a constant with the same required value.
             throwIfNotUpdatable(tableRef, overlapViewColumnsToBe, targetColumns, projector, sameTable);
+            if (runOnServer && joinOnServer && !canRunJoinOnServer(queryPlan, tableRef)) {
+                runOnServer = false;
+            }
             
             ////////////////////////////////////////////////////////////////////
             // UPSERT SELECT run server-side (maybe)
@@ -795,7 +825,20 @@ public class UpsertCompiler {
                     scan.setAttribute(BaseScannerRegionObserver.UPSERT_SELECT_EXPRS, UngroupedAggregateRegionObserver.serialize(projectedExpressions));
                     
                     // Ignore order by - it has no impact
-                    final QueryPlan aggPlan = new AggregatePlan(context, select, statementContext.getCurrentTable(), aggProjector, null,null, OrderBy.EMPTY_ORDER_BY, null, GroupBy.EMPTY_GROUP_BY, null, originalQueryPlan);
+                    final QueryPlan aggPlan;
+                    if (queryPlan instanceof HashJoinPlan) {
+                        // Count the rows upserted by the scan of the hash join, keeping its WHERE
+                        // clause as it's compiled again once the sub plans are executed
+                        HashJoinPlan joinPlan = (HashJoinPlan) queryPlan;
+                        QueryPlan delegate = joinPlan.getDelegate();
+                        SelectStatement countSelect = SelectStatement.create(
+                                SelectStatement.create((SelectStatement) delegate.getStatement(), select.getSelect()),
+                                Collections.<OrderByNode>emptyList(), null, null, true);
+                        QueryPlan countPlan = new AggregatePlan(context, countSelect, delegate.getTableRef(), aggProjector, null, null, OrderBy.EMPTY_ORDER_BY, null, GroupBy.EMPTY_GROUP_BY, null, originalQueryPlan);
+                        aggPlan = HashJoinPlan.create((SelectStatement) joinPlan.getStatement(), countPlan, joinPlan.getJoinInfo(), joinPlan.getSubPlans());
+                    } else {
+                        aggPlan = new AggregatePlan(context, select, statementContext.getCurrentTable(), aggProjector, null,null, OrderBy.EMPTY_ORDER_BY, null, GroupBy.EMPTY_GROUP_BY, null, originalQueryPlan);
+                    }
                     return new ServerUpsertSelectMutationPlan(queryPlan, tableRef, originalQueryPlan, context, connection, scan, aggPlan, aggProjector, maxSize, maxSizeBytes);
                 }
             }
@@ -934,6 +977,39 @@ public class UpsertCompiler {
                 connection, pkSlotIndexes, useServerTimestamp, onDupKeyBytes, maxSize, maxSizeBytes);
     }
     
+    /**
+     * A join or WHERE subquery can be run on the server if it's compiled to a hash join whose
+     * delegate scans a table, the results of the sub plans being sent to the region servers as
+     * server caches or compiled into the WHERE clause. The target table must not be read by the
+     * query, as the region servers would see the rows they upsert.
+     */
+    private static boolean canRunJoinOnServer(QueryPlan queryPlan, TableRef targetTableRef) {
+        if (!(queryPlan instanceof HashJoinPlan)) {
+            return false;
+        }
+        HashJoinPlan joinPlan = (HashJoinPlan) queryPlan;
+        if (!(joinPlan.getDelegate() instanceof ScanPlan)
+                || ((SelectStatement) joinPlan.getStatement()).getInnerSelectStatement() != null) {
+            return false;
+        }
+        if (joinPlan.getJoinInfo() != null) {
+            // The WHERE clause is only compiled again with the sub plans of WHERE subqueries
+            // when they are not merged with the sub plans of a join
+            for (SubPlan subPlan : joinPlan.getSubPlans()) {
+                if (!(subPlan instanceof HashSubPlan)) {
+                    return false;
+                }
+            }
+        }
+        PName targetPhysicalName = targetTableRef.getTable().getPhysicalName();
+        for (TableRef sourceRef : queryPlan.getSourceRefs()) {
+            if (sourceRef.getTable().getPhysicalName().equals(targetPhysicalName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static boolean isRowTimestampSet(int[] pkSlotIndexes, PTable table) {
         checkArgument(table.getRowTimestampColPos() != -1, "Call this method only for tables with row timestamp column");
         int rowTimestampColPKSlot = table.getRowTimestampColPos();
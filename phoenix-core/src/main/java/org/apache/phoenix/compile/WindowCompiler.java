@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.compile;
+
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.phoenix.execute.WindowPlan;
+import org.apache.phoenix.execute.WindowPlan.AggregateWindowFunction;
+import org.apache.phoenix.execute.WindowPlan.LagFunction;
+import org.apache.phoenix.execute.WindowPlan.RankFunction;
+import org.apache.phoenix.execute.WindowPlan.RowNumberFunction;
+import org.apache.phoenix.execute.WindowPlan.WindowFunction;
+import org.apache.phoenix.expression.CoerceExpression;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.function.CountAggregateFunction;
+import org.apache.phoenix.expression.function.MaxAggregateFunction;
+import org.apache.phoenix.expression.function.MinAggregateFunction;
+import org.apache.phoenix.expression.function.SumAggregateFunction;
+import org.apache.phoenix.parse.AliasedNode;
+import org.apache.phoenix.parse.ColumnParseNode;
+import org.apache.phoenix.parse.FamilyWildcardParseNode;
+import org.apache.phoenix.parse.HintNode;
+import org.apache.phoenix.parse.LiteralParseNode;
+import org.apache.phoenix.parse.OrderByNode;
+import org.apache.phoenix.parse.ParseNode;
+import org.apache.phoenix.parse.ParseNodeFactory;
+import org.apache.phoenix.parse.SelectStatement;
+import org.apache.phoenix.parse.TableName;
+import org.apache.phoenix.parse.TableWildcardParseNode;
+import org.apache.phoenix.parse.WildcardParseNode;
+import org.apache.phoenix.parse.WindowFunctionParseNode;
+import org.apache.phoenix.schema.TypeMismatchException;
+import org.apache.phoenix.schema.types.PDecimal;
+import org.apache.phoenix.util.SchemaUtil;
+
+/**
+ * Compiles a query with window functions in its select expressions. The query
+ * <pre>
+ *   SELECT A, ROW_NUMBER() OVER (PARTITION BY B ORDER BY C) FROM T WHERE ... ORDER BY D LIMIT 10
+ * </pre>
+ * is split into a base query computing the select expressions other than the window
+ * functions, along with the PARTITION BY and ORDER BY expressions and the arguments of the
+ * window functions, ordered by the window
+ * <pre>
+ *   SELECT A $1, D $2, B $3, C $4 FROM T WHERE ... ORDER BY B, C
+ * </pre>
+ * which is compiled and optimized like any other query, so that the sort is optimized out if
+ * the window follows the row key of the table or of an index. The window functions are
+ * computed by a {@link WindowPlan} over the rows of the base query, and the outer query
+ * <pre>
+ *   SELECT $0.$1 A, $0.$5 "ROW_NUMBER() ..." FROM (...) $0 ORDER BY $0.$2 LIMIT 10
+ * </pre>
+ * projects, orders and limits its results.
+ */
+public class WindowCompiler {
+    private static final ParseNodeFactory NODE_FACTORY = new ParseNodeFactory();
+
+    public static final String ROW_NUMBER = "ROW_NUMBER";
+    public static final String RANK = "RANK";
+    public static final String DENSE_RANK = "DENSE_RANK";
+    public static final String LAG = "LAG";
+
+    private WindowCompiler() {
+    }
+
+    /**
+     * The base and outer queries of a query with window functions
+     */
+    public static class WindowQuery {
+        private final SelectStatement baseSelect;
+        private final SelectStatement outerSelect;
+        private final List<WindowFunctionParseNode> functions;
+        private final List<String> functionAliases;
+        private final List<Integer> argPositions;
+        private final int columnCount;
+        private final int partitionByCount;
+
+        private WindowQuery(SelectStatement baseSelect, SelectStatement outerSelect,
+                List<WindowFunctionParseNode> functions, List<String> functionAliases,
+                List<Integer> argPositions, int columnCount, int partitionByCount) {
+            this.baseSelect = baseSelect;
+            this.outerSelect = outerSelect;
+            this.functions = functions;
+            this.functionAliases = functionAliases;
+            this.argPositions = argPositions;
+            this.columnCount = columnCount;
+            this.partitionByCount = partitionByCount;
+        }
+
+        public SelectStatement getBaseSelect() {
+            return baseSelect;
+        }
+
+        public SelectStatement getOuterSelect() {
+            return outerSelect;
+        }
+    }
+
+    /**
+     * @return the alias of the outer query column for the given select expression, which
+     * keeps the name of the column of the original query
+     */
+    private static String getLabel(AliasedNode aliasedNode) {
+        String label = aliasedNode.getAlias();
+        if (label == null) {
+            ParseNode node = aliasedNode.getNode();
+            label = node instanceof ColumnParseNode
+                    ? ((ColumnParseNode) node).getName() : node.toString().trim();
+        }
+        // Quote the label so that it is not normalized again
+        return SchemaUtil.normalizeIdentifier(label).equals(label) ? label : "\"" + label + "\"";
+    }
+
+    private static int getArgCount(WindowFunctionParseNode node) throws SQLException {
+        String name = node.getName();
+        int argCount = node.getArguments().size();
+        if (ROW_NUMBER.equals(name) || RANK.equals(name) || DENSE_RANK.equals(name)) {
+            if (argCount == 0) {
+                return 0;
+            }
+        } else if (LAG.equals(name)) {
+            if (argCount >= 1 && argCount <= 3) {
+                // The offset is a constant read at compile time
+                getLagOffset(node);
+                return argCount == 3 ? 2 : 1;
+            }
+        } else if (SumAggregateFunction.NAME.equals(name)
+                || CountAggregateFunction.NORMALIZED_NAME.equals(name)
+                || MinAggregateFunction.NAME.equals(name)
+                || MaxAggregateFunction.NAME.equals(name)) {
+            if (argCount == 1) {
+                return 1;
+            }
+        }
+        throw new SQLFeatureNotSupportedException("Unsupported window function " + node);
+    }
+
+    private static int getLagOffset(WindowFunctionParseNode node) throws SQLException {
+        if (node.getArguments().size() < 2) {
+            return 1;
+        }
+        ParseNode offsetNode = node.getArguments().get(1);
+        if (offsetNode instanceof LiteralParseNode
+                && ((LiteralParseNode) offsetNode).getValue() instanceof Number) {
+            int offset = ((Number) ((LiteralParseNode) offsetNode).getValue()).intValue();
+            if (offset >= 0) {
+                return offset;
+            }
+        }
+        throw new SQLFeatureNotSupportedException(
+                "The offset of " + LAG + " must be a non negative integer constant");
+    }
+
+    /**
+     * Splits the given query, which must have window functions in its select expressions,
+     * into a base query and an outer query.
+     */
+    public static WindowQuery rewrite(SelectStatement select) throws SQLException {
+        if (select.isDistinct() || select.hasSequence()) {
+            throw new SQLFeatureNotSupportedException(
+                    "Window functions are not supported with DISTINCT or sequences");
+        }
+        List<AliasedNode> selectNodes = select.getSelect();
+        List<WindowFunctionParseNode> functions = new ArrayList<WindowFunctionParseNode>();
+        for (AliasedNode aliasedNode : selectNodes) {
+            ParseNode node = aliasedNode.getNode();
+            if (node instanceof WildcardParseNode || node instanceof TableWildcardParseNode
+                    || node instanceof FamilyWildcardParseNode) {
+                throw new SQLFeatureNotSupportedException(
+                        "Wildcards are not supported with window functions");
+            }
+            if (node instanceof WindowFunctionParseNode) {
+                WindowFunctionParseNode function = (WindowFunctionParseNode) node;
+                if (!functions.isEmpty() && !functions.get(0).hasSameWindow(function)) {
+                    throw new SQLFeatureNotSupportedException(
+                            "Window functions over different windows are not supported");
+                }
+                functions.add(function);
+            }
+        }
+        WindowFunctionParseNode window = functions.get(0);
+
+        String tableAlias = ParseNodeFactory.createTempAlias();
+        TableName tableName = NODE_FACTORY.table(null, tableAlias);
+        List<AliasedNode> baseNodes = new ArrayList<AliasedNode>();
+        List<AliasedNode> windowNodes = new ArrayList<AliasedNode>();
+        List<String> functionAliases = new ArrayList<String>(functions.size());
+        List<AliasedNode> outerNodes = new ArrayList<AliasedNode>(selectNodes.size());
+        for (AliasedNode aliasedNode : selectNodes) {
+            String alias = ParseNodeFactory.createTempAlias();
+            ParseNode node = aliasedNode.getNode();
+            if (node instanceof WindowFunctionParseNode) {
+                windowNodes.add(NODE_FACTORY.aliasedNode(alias, node));
+                functionAliases.add(alias);
+            } else {
+                baseNodes.add(NODE_FACTORY.aliasedNode(alias, node));
+            }
+            outerNodes.add(NODE_FACTORY.aliasedNode(getLabel(aliasedNode),
+                    NODE_FACTORY.column(tableName, alias, null)));
+        }
+        List<OrderByNode> outerOrderBy = new ArrayList<OrderByNode>(select.getOrderBy().size());
+        for (OrderByNode orderByNode : select.getOrderBy()) {
+            ParseNode node = orderByNode.getNode();
+            ParseNode outerNode = null;
+            if (node instanceof LiteralParseNode) {
+                // Position in the select expressions, which the outer query keeps
+                outerNode = node;
+            }
+            for (int i = 0; outerNode == null && i < selectNodes.size(); i++) {
+                AliasedNode aliasedNode = selectNodes.get(i);
+                if (node.equals(aliasedNode.getNode())
+                        || (node instanceof ColumnParseNode
+                                && ((ColumnParseNode) node).getTableName() == null
+                                && ((ColumnParseNode) node).getName().equals(aliasedNode.getAlias()))) {
+                    outerNode = outerNodes.get(i).getNode();
+                }
+            }
+            if (outerNode == null) {
+                String alias = ParseNodeFactory.createTempAlias();
+                baseNodes.add(NODE_FACTORY.aliasedNode(alias, node));
+                outerNode = NODE_FACTORY.column(tableName, alias, null);
+            }
+            outerOrderBy.add(NODE_FACTORY.orderBy(outerNode, orderByNode.isNullsLast(),
+                    orderByNode.isAscending()));
+        }
+
+        // Columns of the base query only used to compute the window functions
+        int columnCount = baseNodes.size();
+        List<AliasedNode> windowBaseNodes = new ArrayList<AliasedNode>(baseNodes);
+        List<OrderByNode> baseOrderBy = new ArrayList<OrderByNode>();
+        for (ParseNode node : window.getPartitionBy()) {
+            windowBaseNodes.add(NODE_FACTORY.aliasedNode(ParseNodeFactory.createTempAlias(), node));
+            baseOrderBy.add(NODE_FACTORY.orderBy(node, false, true));
+        }
+        for (OrderByNode orderByNode : window.getOrderBy()) {
+            windowBaseNodes.add(NODE_FACTORY.aliasedNode(ParseNodeFactory.createTempAlias(),
+                    orderByNode.getNode()));
+            baseOrderBy.add(orderByNode);
+        }
+        List<Integer> argPositions = new ArrayList<Integer>(functions.size());
+        for (WindowFunctionParseNode function : functions) {
+            argPositions.add(windowBaseNodes.size());
+            List<ParseNode> args = function.getArguments();
+            int argCount = getArgCount(function);
+            for (int i = 0; i < argCount; i++) {
+                // Skip the offset of LAG
+                ParseNode arg = args.get(i == 0 ? 0 : args.size() - 1);
+                windowBaseNodes.add(NODE_FACTORY.aliasedNode(ParseNodeFactory.createTempAlias(), arg));
+            }
+        }
+        SelectStatement baseSelect = NODE_FACTORY.select(select.getFrom(), select.getHint(), false,
+                windowBaseNodes, select.getWhere(), select.getGroupBy(), select.getHaving(),
+                baseOrderBy, null, null, select.getBindCount(), select.isAggregate(), false,
+                Collections.<SelectStatement> emptyList(), select.getUdfParseNodes());
+
+        List<AliasedNode> derivedNodes = new ArrayList<AliasedNode>(baseNodes);
+        derivedNodes.addAll(windowNodes);
+        SelectStatement derivedSelect = NODE_FACTORY.select(baseSelect, false, derivedNodes);
+        SelectStatement outerSelect = NODE_FACTORY.select(
+                NODE_FACTORY.derivedTable(tableAlias, derivedSelect), HintNode.EMPTY_HINT_NODE,
+                false, outerNodes, null, Collections.<ParseNode> emptyList(), null, outerOrderBy,
+                select.getLimit(), select.getOffset(), select.getBindCount(), false, false,
+                Collections.<SelectStatement> emptyList(), select.getUdfParseNodes());
+        return new WindowQuery(baseSelect, outerSelect, functions, functionAliases, argPositions,
+                columnCount, window.getPartitionBy().size());
+    }
+
+    private static Expression getExpression(QueryPlan basePlan, int position) {
+        return basePlan.getProjector().getColumnProjector(position).getExpression();
+    }
+
+    private static WindowFunction compile(WindowFunctionParseNode node, QueryPlan basePlan,
+            int argPosition) throws SQLException {
+        String name = node.getName();
+        if (ROW_NUMBER.equals(name)) {
+            return new RowNumberFunction(name);
+        }
+        if (RANK.equals(name) || DENSE_RANK.equals(name)) {
+            return new RankFunction(name, DENSE_RANK.equals(name));
+        }
+        Expression arg = getExpression(basePlan, argPosition);
+        if (LAG.equals(name)) {
+            Expression defaultValue = null;
+            if (node.getArguments().size() == 3) {
+                defaultValue = getExpression(basePlan, argPosition + 1);
+                if (!defaultValue.getDataType().isCastableTo(arg.getDataType())) {
+                    throw TypeMismatchException.newException(arg.getDataType(),
+                            defaultValue.getDataType(), node.toString());
+                }
+                defaultValue = CoerceExpression.create(defaultValue, arg.getDataType(),
+                        arg.getSortOrder(), arg.getMaxLength());
+            }
+            return new LagFunction(name, arg, getLagOffset(node), defaultValue);
+        }
+        List<Expression> children = Collections.singletonList(arg);
+        if (SumAggregateFunction.NAME.equals(name)) {
+            if (!arg.getDataType().isCoercibleTo(PDecimal.INSTANCE)) {
+                throw TypeMismatchException.newException(PDecimal.INSTANCE, arg.getDataType(),
+                        node.toString());
+            }
+            return new AggregateWindowFunction(name, new SumAggregateFunction(children));
+        }
+        if (CountAggregateFunction.NORMALIZED_NAME.equals(name)) {
+            return new AggregateWindowFunction(name, new CountAggregateFunction(children));
+        }
+        if (MinAggregateFunction.NAME.equals(name)) {
+            return new AggregateWindowFunction(name, new MinAggregateFunction(children));
+        }
+        return new AggregateWindowFunction(name, new MaxAggregateFunction(children));
+    }
+
+    /**
+     * @return the plan computing the window functions of the given query over the rows of the
+     * compiled plan of its base query
+     */
+    public static WindowPlan compile(WindowQuery windowQuery, QueryPlan basePlan) throws SQLException {
+        int position = windowQuery.columnCount;
+        List<Expression> partitionBy = new ArrayList<Expression>(windowQuery.partitionByCount);
+        for (int i = 0; i < windowQuery.partitionByCount; i++) {
+            partitionBy.add(getExpression(basePlan, position++));
+        }
+        int orderByCount = windowQuery.functions.get(0).getOrderBy().size();
+        List<Expression> orderBy = new ArrayList<Expression>(orderByCount);
+        for (int i = 0; i < orderByCount; i++) {
+            orderBy.add(getExpression(basePlan, position++));
+        }
+        List<WindowFunction> functions = new ArrayList<WindowFunction>(windowQuery.functions.size());
+        for (int i = 0; i < windowQuery.functions.size(); i++) {
+            functions.add(compile(windowQuery.functions.get(i), basePlan,
+                    windowQuery.argPositions.get(i)));
+        }
+        return new WindowPlan(basePlan, partitionBy, orderBy, functions,
+                windowQuery.functionAliases, windowQuery.columnCount);
+    }
+}
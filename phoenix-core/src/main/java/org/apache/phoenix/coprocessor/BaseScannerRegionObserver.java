@@ -37,6 +37,7 @@ import org.apache.hadoop.hbase.regionserver.ScanType;
 import org.apache.hadoop.hbase.regionserver.ScannerContext;
 import org.apache.hadoop.hbase.regionserver.ScannerContextUtil;
 import org.apache.hadoop.hbase.regionserver.Store;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
 import org.apache.hadoop.hbase.regionserver.compactions.CompactionLifeCycleTracker;
 import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequest;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -131,6 +132,8 @@ abstract public class BaseScannerRegionObserver extends CompatBaseScannerRegionO
     public static final String EMPTY_COLUMN_FAMILY_NAME = "_EmptyCFName";
     public static final String EMPTY_COLUMN_QUALIFIER_NAME = "_EmptyCQName";
     public static final String INDEX_ROW_KEY = "_IndexRowKey";
+    // Read point of the statistics scan whose zone map shows that no row of the chunk scanned can match
+    public static final String ZONE_MAP_READ_POINT = "_ZoneMapReadPoint";
     
     public final static byte[] REPLAY_TABLE_AND_INDEX_WRITES = PUnsignedTinyint.INSTANCE.toBytes(1);
     public final static byte[] REPLAY_ONLY_INDEX_WRITES = PUnsignedTinyint.INSTANCE.toBytes(2);
@@ -269,7 +272,12 @@ abstract public class BaseScannerRegionObserver extends CompatBaseScannerRegionO
                 final Span savedSpan = Trace.currentSpan();
                 final Span child = Trace.startSpan(SCANNER_OPENED_TRACE_INFO, savedSpan).getSpan();
                 try {
-                    RegionScanner scanner = doPostScannerOpen(c, scan, delegate);
+                    boolean pruned = canSkipZoneMapChunk(c.getEnvironment().getRegion(), scan);
+                    RegionScanner scanner = doPostScannerOpen(c, scan,
+                            pruned ? new EmptyRegionScanner(delegate) : delegate);
+                    if (pruned) {
+                        scanner = new ZoneMapPrunedRegionScanner(scanner);
+                    }
                     scanner = new DelegateRegionScanner(scanner) {
                         // This isn't very obvious but close() could be called in a thread
                         // that is different from the thread that created the scanner.
@@ -332,7 +340,111 @@ abstract public class BaseScannerRegionObserver extends CompatBaseScannerRegionO
         }
         
 
-        /**
+    /**
+     * Returns true if the zone map of the chunk scanned shows that none of its rows can match the
+     * scan, and the region has not changed since the statistics scan that built the zone map.
+     * As sequence ids only grow, this holds if the memstore is empty and no store file has a
+     * sequence id past the read point of that scan, whatever the timestamps of the cells written.
+     */
+    private static boolean canSkipZoneMapChunk(Region region, Scan scan) {
+        byte[] readPointBytes = scan.getAttribute(ZONE_MAP_READ_POINT);
+        if (readPointBytes == null) {
+            return false;
+        }
+        long readPoint = Bytes.toLong(readPointBytes);
+        if (readPoint < 0 || region.getMemStoreDataSize() != 0) {
+            return false;
+        }
+        for (Store store : region.getStores()) {
+            for (StoreFile file : store.getStorefiles()) {
+                // Bulk loaded files may be given a sequence id below the read point
+                if (file.isBulkLoadResult() || file.getMaxSequenceId() > readPoint) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static class EmptyRegionScanner extends DelegateRegionScanner {
+        EmptyRegionScanner(RegionScanner scanner) {
+            super(scanner);
+        }
+
+        @Override
+        public boolean next(List<Cell> result, ScannerContext scannerContext) {
+            return false;
+        }
+
+        @Override
+        public boolean next(List<Cell> result) {
+            return false;
+        }
+
+        @Override
+        public boolean nextRaw(List<Cell> result, ScannerContext scannerContext) {
+            return false;
+        }
+
+        @Override
+        public boolean nextRaw(List<Cell> result) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns a marker row once the scanner of a pruned chunk is exhausted, so that the client
+     * counts the chunks actually skipped by region servers.
+     */
+    private static class ZoneMapPrunedRegionScanner extends DelegateRegionScanner {
+        private boolean delegateDone;
+        private boolean markerReturned;
+
+        ZoneMapPrunedRegionScanner(RegionScanner scanner) {
+            super(scanner);
+        }
+
+        private boolean afterNext(List<Cell> result, boolean hasMore) {
+            if (hasMore) {
+                return true;
+            }
+            delegateDone = true;
+            // The marker is returned in the next call if the last rows came with this one
+            return result.isEmpty() ? nextMarker(result) : true;
+        }
+
+        private boolean nextMarker(List<Cell> result) {
+            if (!markerReturned) {
+                markerReturned = true;
+                ScanUtil.getZoneMapPrunedResult(result);
+            }
+            return false;
+        }
+
+        @Override
+        public boolean next(List<Cell> result, ScannerContext scannerContext) throws IOException {
+            return delegateDone ? nextMarker(result)
+                    : afterNext(result, delegate.next(result, scannerContext));
+        }
+
+        @Override
+        public boolean next(List<Cell> result) throws IOException {
+            return delegateDone ? nextMarker(result) : afterNext(result, delegate.next(result));
+        }
+
+        @Override
+        public boolean nextRaw(List<Cell> result, ScannerContext scannerContext) throws IOException {
+            return delegateDone ? nextMarker(result)
+                    : afterNext(result, delegate.nextRaw(result, scannerContext));
+        }
+
+        @Override
+        public boolean nextRaw(List<Cell> result) throws IOException {
+            return delegateDone ? nextMarker(result) : afterNext(result, delegate.nextRaw(result));
+        }
+    }
+
+    /**
      * Wrapper for {@link #postScannerOpen(ObserverContext, Scan, RegionScanner)} that ensures no non IOException is thrown,
      * to prevent the coprocessor from becoming blacklisted.
      *
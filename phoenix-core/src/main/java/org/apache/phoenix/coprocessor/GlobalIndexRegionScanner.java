@@ -110,6 +110,11 @@ public abstract class GlobalIndexRegionScanner extends BaseRegionScanner {
     public static final int DEFAULT_CONCURRENT_INDEX_VERIFY_THREADS = 16;
     public static final String INDEX_VERIFY_ROW_COUNTS_PER_TASK_CONF_KEY = "index.verify.row.count.per.task";
     public static final int DEFAULT_INDEX_VERIFY_ROW_COUNTS_PER_TASK = 2048;
+    // When enabled, index rows are first compared against the expected index mutations using a digest computed
+    // on the index region server, and only the rows whose digests differ are retrieved and verified in full.
+    // Ignored when max lookback is enabled, as the digest does not cover the older versions of the rows
+    public static final String INDEX_VERIFY_USE_ROW_DIGEST_CONF_KEY = "index.verify.row.digest.enabled";
+    public static final boolean DEFAULT_INDEX_VERIFY_USE_ROW_DIGEST = false;
     public static final String NO_EXPECTED_MUTATION = "No expected mutation";
     public static final String ACTUAL_MUTATION_IS_NULL_OR_EMPTY = "actualMutationList is null or empty";
     public static final String ERROR_MESSAGE_MISSING_INDEX_ROW_BEYOND_MAX_LOOKBACK = "Missing index row beyond maxLookBack";
@@ -157,6 +162,7 @@ public abstract class GlobalIndexRegionScanner extends BaseRegionScanner {
     protected IndexTool.IndexVerifyType verifyType = IndexTool.IndexVerifyType.NONE;
     protected boolean verify = false;
     protected boolean useSkipScanFilter;
+    protected boolean useRowDigest;
 
     public GlobalIndexRegionScanner(final RegionScanner innerScanner,
                                     final Region region,
@@ -245,6 +251,12 @@ public abstract class GlobalIndexRegionScanner extends BaseRegionScanner {
             nextStartKey = null;
             minTimestamp = scan.getTimeRange().getMin();
             useSkipScanFilter = HbaseCompatCapabilities.isRawFilterSupported();
+            // The digest filter replaces the row cells in filterRowCells() which requires raw filter support.
+            // The digest only covers the latest visible version of a row, while the full verification also
+            // checks every version within max lookback, so digests are not used when max lookback is enabled
+            useRowDigest = useSkipScanFilter && config.getBoolean(INDEX_VERIFY_USE_ROW_DIGEST_CONF_KEY,
+                    DEFAULT_INDEX_VERIFY_USE_ROW_DIGEST)
+                    && !CompatBaseScannerRegionObserver.isMaxLookbackTimeEnabled(maxLookBackInMills);
         }
     }
 
@@ -48,6 +48,7 @@ import java.util.TreeSet;
 import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.HConstants;
@@ -59,11 +60,13 @@ import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.compat.hbase.HbaseCompatCapabilities;
 import org.apache.phoenix.filter.AllVersionsIndexRebuildFilter;
+import org.apache.phoenix.filter.IndexRowDigestFilter;
 import org.apache.phoenix.query.HBaseFactoryProvider;
 import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.hbase.index.parallel.Task;
@@ -73,6 +76,7 @@ import org.apache.phoenix.index.GlobalIndexChecker;
 import org.apache.phoenix.mapreduce.index.IndexTool;
 import org.apache.phoenix.schema.types.PLong;
 import org.apache.phoenix.schema.types.PVarbinary;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.PhoenixKeyValueUtil;
 import org.apache.phoenix.util.ServerUtil;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
@@ -186,6 +190,72 @@ public class IndexRebuildRegionScanner extends GlobalIndexRegionScanner {
     }
 
 
+    /**
+     * Computes the digest of the expected index row in the same way {@link IndexRowDigestFilter} computes it for
+     * the actual index row, that is, over all the cells of all the mutations sorted in the raw scan order
+     */
+    private static byte[] getExpectedIndexRowDigest(List<Mutation> expectedMutationList) throws IOException {
+        List<Cell> cells = new ArrayList<>();
+        for (Mutation mutation : expectedMutationList) {
+            for (List<Cell> cellList : mutation.getFamilyCellMap().values()) {
+                cells.addAll(cellList);
+            }
+        }
+        Collections.sort(cells, CellComparator.getInstance());
+        return IndexRowDigestFilter.computeDigest(cells);
+    }
+
+    /**
+     * Retrieves the digests of the index rows instead of the rows themselves. The index rows whose digests match the
+     * digests of their expected mutations are counted as valid and removed from the expected index mutation map.
+     * The remaining rows are left for the full row by row verification.
+     */
+    private void verifyIndexRowDigests(Map<byte[], List<Mutation>> expectedIndexMutationMap,
+                                       IndexToolVerificationResult.PhaseResult verificationPhaseResult)
+            throws IOException {
+        Scan indexScan = prepareIndexScan(expectedIndexMutationMap);
+        indexScan.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ALL, indexScan.getFilter(),
+                new IndexRowDigestFilter()));
+        long currentTime = EnvironmentEdgeManager.currentTimeMillis();
+        try (ResultScanner resultScanner = indexHTable.getScanner(indexScan)) {
+            for (Result result = resultScanner.next(); (result != null); result = resultScanner.next()) {
+                ungroupedAggregateRegionObserver.checkForRegionClosingOrSplitting();
+                byte[] indexRowKey = result.getRow();
+                List<Mutation> expectedMutationList = expectedIndexMutationMap.get(indexRowKey);
+                Cell digestCell = result.getColumnLatestCell(IndexRowDigestFilter.DIGEST_FAMILY,
+                        IndexRowDigestFilter.DIGEST_QUALIFIER);
+                if (expectedMutationList == null || digestCell == null) {
+                    continue;
+                }
+                // Expired rows are counted differently, so leave them to the full verification
+                if (isTimestampBeforeTTL(indexTableTTL, currentTime,
+                        getTimestamp(expectedMutationList.get(expectedMutationList.size() - 1)))) {
+                    continue;
+                }
+                byte[] expectedDigest = getExpectedIndexRowDigest(expectedMutationList);
+                if (Bytes.equals(expectedDigest, 0, expectedDigest.length, digestCell.getValueArray(),
+                        digestCell.getValueOffset(), digestCell.getValueLength())) {
+                    verificationPhaseResult.setValidIndexRowCount(verificationPhaseResult.getValidIndexRowCount() + 1);
+                    expectedIndexMutationMap.remove(indexRowKey);
+                }
+            }
+        } catch (Throwable t) {
+            ServerUtil.throwIOException(indexHTable.getName().toString(), t);
+        }
+    }
+
+    private Map<byte[], List<Mutation>> populateActualIndexMutationMap(Map<byte[], List<Mutation>> expectedIndexMutationMap,
+                                                                       IndexToolVerificationResult.PhaseResult verificationPhaseResult)
+            throws IOException {
+        if (useRowDigest) {
+            verifyIndexRowDigests(expectedIndexMutationMap, verificationPhaseResult);
+            if (expectedIndexMutationMap.isEmpty()) {
+                return Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+            }
+        }
+        return populateActualIndexMutationMap(expectedIndexMutationMap);
+    }
+
     private void rebuildAndOrVerifyIndexRows(Map<byte[], List<Mutation>> expectedIndexMutationMap,
                                              Set<byte[]> mostRecentIndexRowKeys,
                                              IndexToolVerificationResult verificationResult) throws IOException {
@@ -195,12 +265,14 @@ public class IndexRebuildRegionScanner extends GlobalIndexRegionScanner {
             return;
         }
         if (verifyType == IndexTool.IndexVerifyType.ONLY) {
-            Map<byte[], List<Mutation>> actualIndexMutationMap = populateActualIndexMutationMap(expectedIndexMutationMap);
+            Map<byte[], List<Mutation>> actualIndexMutationMap = populateActualIndexMutationMap(expectedIndexMutationMap,
+                    verificationResult.getBefore());
             verifyIndexRows(actualIndexMutationMap, expectedIndexMutationMap, mostRecentIndexRowKeys, Collections.EMPTY_LIST, verificationResult.getBefore(), true);
             return;
         }
         if (verifyType == IndexTool.IndexVerifyType.BEFORE) {
-            Map<byte[], List<Mutation>> actualIndexMutationMap = populateActualIndexMutationMap(expectedIndexMutationMap);
+            Map<byte[], List<Mutation>> actualIndexMutationMap = populateActualIndexMutationMap(expectedIndexMutationMap,
+                    verificationResult.getBefore());
             verifyIndexRows(actualIndexMutationMap, expectedIndexMutationMap, mostRecentIndexRowKeys, indexRowsToBeDeleted, verificationResult.getBefore(), true);
             if (!expectedIndexMutationMap.isEmpty() || !indexRowsToBeDeleted.isEmpty()) {
                 rebuildIndexRows(expectedIndexMutationMap, indexRowsToBeDeleted, verificationResult);
@@ -209,18 +281,21 @@ public class IndexRebuildRegionScanner extends GlobalIndexRegionScanner {
         }
         if (verifyType == IndexTool.IndexVerifyType.AFTER) {
             rebuildIndexRows(expectedIndexMutationMap, Collections.EMPTY_LIST, verificationResult);
-            Map<byte[], List<Mutation>> actualIndexMutationMap = populateActualIndexMutationMap(expectedIndexMutationMap);
+            Map<byte[], List<Mutation>> actualIndexMutationMap = populateActualIndexMutationMap(expectedIndexMutationMap,
+                    verificationResult.getAfter());
             verifyIndexRows(actualIndexMutationMap, expectedIndexMutationMap, mostRecentIndexRowKeys, Collections.EMPTY_LIST, verificationResult.getAfter(), false);
             return;
         }
         if (verifyType == IndexTool.IndexVerifyType.BOTH) {
-            Map<byte[], List<Mutation>> actualIndexMutationMap = populateActualIndexMutationMap(expectedIndexMutationMap);
+            Map<byte[], List<Mutation>> actualIndexMutationMap = populateActualIndexMutationMap(expectedIndexMutationMap,
+                    verificationResult.getBefore());
             verifyIndexRows(actualIndexMutationMap,expectedIndexMutationMap, mostRecentIndexRowKeys, indexRowsToBeDeleted, verificationResult.getBefore(), true);
             if (!expectedIndexMutationMap.isEmpty() || !indexRowsToBeDeleted.isEmpty()) {
                 rebuildIndexRows(expectedIndexMutationMap, indexRowsToBeDeleted, verificationResult);
             }
             if (!expectedIndexMutationMap.isEmpty()) {
-                actualIndexMutationMap = populateActualIndexMutationMap(expectedIndexMutationMap);
+                actualIndexMutationMap = populateActualIndexMutationMap(expectedIndexMutationMap,
+                        verificationResult.getAfter());
                 verifyIndexRows(actualIndexMutationMap, expectedIndexMutationMap, mostRecentIndexRowKeys, Collections.EMPTY_LIST, verificationResult.getAfter(), false);
             }
         }
@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.coprocessor;
+
+import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.PHOENIX_TTL_NOT_DEFINED;
+import static org.apache.phoenix.util.PhoenixRuntime.TENANT_ID_ATTRIB;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.regionserver.InternalScanner;
+import org.apache.hadoop.hbase.regionserver.ScannerContext;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.ScanRanges;
+import org.apache.phoenix.filter.SkipScanFilter;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTableKey;
+import org.apache.phoenix.schema.PTableType;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.EncodedColumnsUtil;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.SchemaUtil;
+import org.apache.phoenix.util.ServerUtil;
+import org.apache.phoenix.util.ViewUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compaction scanner that drops the rows expired by the PHOENIX_TTL of the views on a table, so
+ * that they are no longer read and masked by {@link PhoenixTTLRegionObserver} on every scan.
+ * Rows are told apart by their key only: a row is dropped when it is in the key ranges of at
+ * least one view with a PHOENIX_TTL, in the key ranges of no view without one, and its latest
+ * empty column is older than the longest PHOENIX_TTL of the views it is in. Rows in the key range
+ * of no view with a PHOENIX_TTL, such as the rows of other tenants written to the base table, are
+ * kept. Views whose WHERE clause is not fully captured by key ranges keep the rows in their key
+ * ranges. The scanner is only used for major compactions, which see all the versions of the rows,
+ * of the empty column family store.
+ */
+public class PhoenixTTLCompactionScanner implements InternalScanner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PhoenixTTLCompactionScanner.class);
+
+    /**
+     * The key ranges of the rows of a view and their PHOENIX_TTL.
+     */
+    public static class ViewTTL {
+        private final ScanRanges ranges;
+        // In milliseconds, or PHOENIX_TTL_NOT_DEFINED for the views that keep their rows
+        private final long ttl;
+
+        ViewTTL(ScanRanges ranges, long ttl) {
+            this.ranges = ranges;
+            this.ttl = ttl;
+        }
+
+        boolean contains(byte[] rowKey, byte[] nextRowKey) {
+            return ranges.intersectRegion(rowKey, nextRowKey, false);
+        }
+    }
+
+    /**
+     * The key ranges compiled for the views on the table of a region. They are reused by the
+     * major compactions of the region as long as the table and each of its views keep the same
+     * timestamp, as compiling a query on every view is much more costly than resolving them.
+     */
+    public static class ViewTTLCache {
+        private long tableTimestamp = -1;
+        // The timestamp of each view when its key ranges were compiled
+        private final Map<PTableKey, Pair<Long, ViewTTL>> viewTTLs = new HashMap<>();
+
+        /**
+         * Resolves the views on the table through their links in SYSTEM.CHILD_LINK, which are
+         * keyed by the table, and compiles a query on each view created or altered since the last
+         * call to find the key ranges of its rows.
+         * @return the key ranges and PHOENIX_TTL of all the views on the table, or an empty list
+         * if none of them defines a PHOENIX_TTL
+         */
+        public synchronized List<ViewTTL> getViewTTLs(RegionCoprocessorEnvironment env,
+                Configuration config, PTable table) throws IOException, SQLException {
+            if (table.getTimeStamp() != tableTimestamp) {
+                // The key ranges of the views depend on the row key of the table
+                viewTTLs.clear();
+                tableTimestamp = table.getTimeStamp();
+            }
+            List<PTable> views;
+            try (Table childLinkTable = ServerUtil.getHTableForCoprocessorScan(env,
+                    ViewUtil.getSystemTableForChildLinks(MetaDataProtocol.PHOENIX_VERSION,
+                            config))) {
+                views = ViewUtil.findAllDescendantViews(childLinkTable, config, null,
+                        table.getSchemaName().getBytes(), table.getTableName().getBytes(),
+                        HConstants.LATEST_TIMESTAMP, false).getFirst();
+            }
+            Map<PTableKey, Pair<Long, ViewTTL>> currentViewTTLs = new HashMap<>(views.size());
+            List<ViewTTL> result = new ArrayList<>(views.size());
+            boolean hasTTL = false;
+            for (PTable view : views) {
+                Pair<Long, ViewTTL> viewTTL = viewTTLs.get(view.getKey());
+                if (viewTTL == null || viewTTL.getFirst() != view.getTimeStamp()) {
+                    viewTTL = new Pair<>(view.getTimeStamp(), compileViewTTL(config, view));
+                }
+                currentViewTTLs.put(view.getKey(), viewTTL);
+                result.add(viewTTL.getSecond());
+                hasTTL |= viewTTL.getSecond().ttl != PHOENIX_TTL_NOT_DEFINED;
+            }
+            // Forget the views that were dropped
+            viewTTLs.clear();
+            viewTTLs.putAll(currentViewTTLs);
+            return hasTTL ? result : Collections.<ViewTTL>emptyList();
+        }
+    }
+
+    private final InternalScanner delegate;
+    private final String tableName;
+    private final List<ViewTTL> viewTTLs;
+    private final byte[] emptyCQ;
+    private final long now;
+    // The cells of the row following the one returned last, read ahead from the delegate
+    private final List<Cell> nextRowCells = new ArrayList<>();
+    private boolean delegateHasMore = true;
+    private long numRowsScanned;
+    private long numRowsExpired;
+
+    public PhoenixTTLCompactionScanner(InternalScanner delegate, PTable table,
+            List<ViewTTL> viewTTLs) {
+        this.delegate = delegate;
+        this.tableName = table.getName().getString();
+        this.viewTTLs = viewTTLs;
+        this.emptyCQ = EncodedColumnsUtil.getEmptyKeyValueInfo(table).getFirst();
+        this.now = EnvironmentEdgeManager.currentTimeMillis();
+    }
+
+    /**
+     * @return whether the rows of the store of the table may be expired during compaction. The
+     * rows of tables with more than one column family, with indexes that would keep the expired
+     * rows or that are transactional are never dropped.
+     */
+    public static boolean isSupported(PTable table, byte[] family) {
+        return table.getType() == PTableType.TABLE
+                && !table.isTransactional()
+                && table.getIndexes().isEmpty()
+                && table.getColumnFamilies().size() <= 1
+                && Bytes.equals(SchemaUtil.getEmptyColumnFamily(table), family);
+    }
+
+    /**
+     * Compiles a query on the view to find the key ranges of its rows.
+     */
+    private static ViewTTL compileViewTTL(Configuration config, PTable view) throws SQLException {
+        Properties props = new Properties();
+        if (view.getTenantId() != null) {
+            props.setProperty(TENANT_ID_ATTRIB, view.getTenantId().getString());
+        }
+        try (PhoenixConnection connection = QueryUtil.getConnectionOnServer(props, config)
+                .unwrap(PhoenixConnection.class)) {
+            QueryPlan plan = connection.createStatement().unwrap(PhoenixStatement.class)
+                    .compileQuery("SELECT * FROM " + SchemaUtil.getEscapedTableName(
+                            view.getSchemaName().getString(), view.getTableName().getString()));
+            Scan scan = plan.getContext().getScan();
+            // The rows of a view filtered on other columns than its key cannot be told apart
+            boolean isKeyOnly = !scan.hasFilter() || scan.getFilter() instanceof SkipScanFilter;
+            long ttl = PHOENIX_TTL_NOT_DEFINED;
+            if (view.getPhoenixTTL() != PHOENIX_TTL_NOT_DEFINED && isKeyOnly) {
+                // PHOENIX_TTL is declared in seconds. Expiring by it is never earlier than masking
+                ttl = TimeUnit.SECONDS.toMillis(view.getPhoenixTTL());
+            }
+            return new ViewTTL(plan.getContext().getScanRanges(), ttl);
+        }
+    }
+
+    @Override
+    public boolean next(List<Cell> result) throws IOException {
+        return next(result, null);
+    }
+
+    @Override
+    public boolean next(List<Cell> result, ScannerContext scannerContext) throws IOException {
+        boolean hasMore;
+        do {
+            hasMore = nextRow(result, scannerContext);
+            if (result.isEmpty()) {
+                break;
+            }
+            numRowsScanned++;
+            if (!isExpired(result)) {
+                break;
+            }
+            numRowsExpired++;
+            result.clear();
+        } while (hasMore);
+        return hasMore;
+    }
+
+    /**
+     * Reads all the cells of the next row, as the empty column decides the expiry of all of them.
+     * The delegate returns a row in more than one batch when it reaches a limit of the scanner
+     * context, so the batches are read until one starts the following row, which is kept for the
+     * next call.
+     */
+    private boolean nextRow(List<Cell> result, ScannerContext scannerContext) throws IOException {
+        result.addAll(nextRowCells);
+        nextRowCells.clear();
+        while (delegateHasMore) {
+            List<Cell> cells = new ArrayList<>();
+            delegateHasMore = scannerContext == null
+                    ? delegate.next(cells) : delegate.next(cells, scannerContext);
+            if (cells.isEmpty()) {
+                continue;
+            }
+            if (!result.isEmpty() && !CellUtil.matchingRows(result.get(0), cells.get(0))) {
+                nextRowCells.addAll(cells);
+                return true;
+            }
+            result.addAll(cells);
+        }
+        return false;
+    }
+
+    private boolean isExpired(List<Cell> row) {
+        byte[] rowKey = CellUtil.cloneRow(row.get(0));
+        // The range of keys that only holds the row
+        byte[] nextRowKey = ByteUtil.concat(rowKey, QueryConstants.SEPARATOR_BYTE_ARRAY);
+        long ttl = PHOENIX_TTL_NOT_DEFINED;
+        for (ViewTTL viewTTL : viewTTLs) {
+            if (!viewTTL.contains(rowKey, nextRowKey)) {
+                continue;
+            }
+            if (viewTTL.ttl == PHOENIX_TTL_NOT_DEFINED) {
+                // The row is still returned by a view without PHOENIX_TTL
+                return false;
+            }
+            ttl = Math.max(ttl, viewTTL.ttl);
+        }
+        if (ttl == PHOENIX_TTL_NOT_DEFINED) {
+            return false;
+        }
+        long maxTimestamp = -1;
+        for (Cell cell : row) {
+            if (Bytes.equals(cell.getQualifierArray(), cell.getQualifierOffset(),
+                    cell.getQualifierLength(), emptyCQ, 0, emptyCQ.length)) {
+                maxTimestamp = Math.max(maxTimestamp, cell.getTimestamp());
+            }
+        }
+        // Rows without an empty column are not masked either
+        return maxTimestamp >= 0 && maxTimestamp + ttl < now;
+    }
+
+    @Override
+    public void close() throws IOException {
+        LOGGER.debug("PHOENIX-TTL-COMPACTION-STATS: table = {}, rows scanned = {}, rows expired = {}",
+                tableName, numRowsScanned, numRowsExpired);
+        delegate.close();
+    }
+}
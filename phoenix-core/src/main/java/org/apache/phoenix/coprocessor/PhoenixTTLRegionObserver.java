@@ -17,6 +17,7 @@
  */
 package org.apache.phoenix.coprocessor;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CoprocessorEnvironment;
 import org.apache.hadoop.hbase.HConstants;
@@ -26,37 +27,71 @@ import org.apache.hadoop.hbase.client.RegionInfo;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
 import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessor;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.coprocessor.RegionObserver;
 import org.apache.hadoop.hbase.io.TimeRange;
+import org.apache.hadoop.hbase.regionserver.InternalScanner;
 import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.regionserver.ScanType;
 import org.apache.hadoop.hbase.regionserver.ScannerContext;
+import org.apache.hadoop.hbase.regionserver.Store;
+import org.apache.hadoop.hbase.regionserver.compactions.CompactionLifeCycleTracker;
+import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequest;
+import org.apache.hadoop.hbase.security.User;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.coprocessor.metrics.MetricsPhoenixCoprocessorSourceFactory;
 import org.apache.phoenix.coprocessor.metrics.MetricsPhoenixTTLSource;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.TableNotFoundException;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.QueryUtil;
 import org.apache.phoenix.util.ScanUtil;
+import org.apache.phoenix.util.SchemaUtil;
 import org.apache.phoenix.util.ServerUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.security.PrivilegedExceptionAction;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 
 import static org.apache.phoenix.coprocessor.BaseScannerRegionObserver.EMPTY_COLUMN_FAMILY_NAME;
 import static org.apache.phoenix.coprocessor.BaseScannerRegionObserver.EMPTY_COLUMN_QUALIFIER_NAME;
 
 /**
- * Coprocessor that checks whether the row is expired based on the TTL spec.
+ * Coprocessor that checks whether the row is expired based on the TTL spec. When
+ * {@link QueryServices#PHOENIX_TTL_COMPACTION_EXPIRY_ENABLED} is set, major compactions also
+ * drop the expired rows of tenant views through a {@link PhoenixTTLCompactionScanner}.
  */
-public class PhoenixTTLRegionObserver extends BaseRegionObserver {
+public class PhoenixTTLRegionObserver extends BaseRegionObserver implements RegionCoprocessor,
+        RegionObserver {
     private static final Logger LOG = LoggerFactory.getLogger(PhoenixTTLRegionObserver.class);
     private MetricsPhoenixTTLSource metricSource;
+    private boolean compactionExpiryEnabled;
+    private Configuration compactionConfig;
+    private final PhoenixTTLCompactionScanner.ViewTTLCache viewTTLCache =
+            new PhoenixTTLCompactionScanner.ViewTTLCache();
 
     @Override public void start(CoprocessorEnvironment e) throws IOException {
         super.start(e);
         metricSource = MetricsPhoenixCoprocessorSourceFactory.getInstance().getPhoenixTTLSource();
+        compactionExpiryEnabled = e.getConfiguration().getBoolean(
+                QueryServices.PHOENIX_TTL_COMPACTION_EXPIRY_ENABLED,
+                QueryServicesOptions.DEFAULT_PHOENIX_TTL_COMPACTION_EXPIRY_ENABLED);
+        compactionConfig = ServerUtil.getCompactionConfig(e.getConfiguration());
+    }
+
+    @Override
+    public Optional<RegionObserver> getRegionObserver() {
+        return Optional.of(this);
     }
 
     @Override public void stop(CoprocessorEnvironment e) throws IOException {
@@ -96,6 +131,54 @@ public class PhoenixTTLRegionObserver extends BaseRegionObserver {
         return new PhoenixTTLRegionScanner(c.getEnvironment(), scan, s);
     }
 
+    @Override
+    public InternalScanner preCompact(ObserverContext<RegionCoprocessorEnvironment> c, Store store,
+            final InternalScanner scanner, ScanType scanType, CompactionLifeCycleTracker tracker,
+            CompactionRequest request) throws IOException {
+        final String fullTableName =
+                c.getEnvironment().getRegion().getRegionInfo().getTable().getNameAsString();
+        // Only major compactions see the latest empty column of all the rows
+        if (!compactionExpiryEnabled || !request.isMajor()
+                || !scanType.equals(ScanType.COMPACT_DROP_DELETES)
+                || SchemaUtil.isSystemTable(Bytes.toBytes(fullTableName))) {
+            return scanner;
+        }
+        final byte[] family = store.getColumnFamilyDescriptor().getName();
+        final RegionCoprocessorEnvironment env = c.getEnvironment();
+        // Compaction and split upcalls run with the effective user context of the requesting user.
+        // Switch to the login user context to resolve the views on the table.
+        return User.runAsLoginUser(new PrivilegedExceptionAction<InternalScanner>() {
+            @Override
+            public InternalScanner run() throws Exception {
+                try (PhoenixConnection conn = QueryUtil.getConnectionOnServer(compactionConfig)
+                        .unwrap(PhoenixConnection.class)) {
+                    PTable table = PhoenixRuntime.getTableNoCache(conn, fullTableName);
+                    if (!PhoenixTTLCompactionScanner.isSupported(table, family)) {
+                        return scanner;
+                    }
+                    List<PhoenixTTLCompactionScanner.ViewTTL> viewTTLs =
+                            viewTTLCache.getViewTTLs(env, compactionConfig, table);
+                    if (viewTTLs.isEmpty()) {
+                        return scanner;
+                    }
+                    LOG.info("Expiring rows by the PHOENIX_TTL of " + viewTTLs.size()
+                            + " views while compacting " + fullTableName);
+                    return new PhoenixTTLCompactionScanner(scanner, table, viewTTLs);
+                } catch (Exception e) {
+                    if (e instanceof TableNotFoundException) {
+                        LOG.debug("Ignoring HBase table that is not a Phoenix table: "
+                                + fullTableName);
+                    } else {
+                        // Expired rows are still masked, so don't interrupt the compaction
+                        LOG.warn("Unable to expire rows by PHOENIX_TTL while compacting "
+                                + fullTableName, e);
+                    }
+                    return scanner;
+                }
+            }
+        });
+    }
+
     /**
      * A region scanner that checks the TTL expiration of rows
      */
@@ -776,6 +776,7 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
             long rowCount = 0;
             try {
                 if (!compactionRunning) {
+                    statsCollector.setReadPoint(innerScanner.getMvccReadPoint());
                     statsCollector.init();
                     synchronized (innerScanner) {
                         do {
@@ -79,6 +79,7 @@ import org.apache.phoenix.memory.InsufficientMemoryException;
 import org.apache.phoenix.memory.MemoryManager;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.IllegalDataException;
 import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PRow;
 import org.apache.phoenix.schema.PTable;
@@ -97,6 +98,7 @@ import org.apache.phoenix.schema.types.PChar;
 import org.apache.phoenix.schema.types.PDataType;
 import org.apache.phoenix.schema.types.PDouble;
 import org.apache.phoenix.schema.types.PFloat;
+import org.apache.phoenix.schema.types.PLong;
 import org.apache.phoenix.transaction.PhoenixTransactionContext;
 import org.apache.phoenix.transaction.PhoenixTransactionProvider;
 import org.apache.phoenix.transaction.TransactionFactory;
@@ -506,8 +508,20 @@ public class UngroupedAggregateRegionScanner extends BaseRegionScanner {
                 values[i] = ByteUtil.EMPTY_BYTE_ARRAY;
             }
         }
+        long rowTs = ts;
+        int rowTimestampColPos = projectedTable.getRowTimestampColPos();
+        if (rowTimestampColPos != -1 && values[rowTimestampColPos].length > 0) {
+            // Same as on the client, the value of the ROW_TIMESTAMP column is the timestamp of the row
+            PColumn rowTimestampCol = projectedTable.getPKColumns().get(rowTimestampColPos);
+            rowTs = PLong.INSTANCE.getCodec().decodeLong(values[rowTimestampColPos], 0,
+                    rowTimestampCol.getSortOrder());
+            if (rowTs < 0) {
+                throw new IllegalDataException(
+                        "Value of a column designated as ROW_TIMESTAMP cannot be less than zero");
+            }
+        }
         projectedTable.newKey(ptr, values);
-        PRow row = projectedTable.newRow(GenericKeyValueBuilder.INSTANCE, ts, ptr, false);
+        PRow row = projectedTable.newRow(GenericKeyValueBuilder.INSTANCE, rowTs, ptr, false);
         for (; i < projectedColumns.size(); i++) {
             Expression expression = selectExpressions.get(i - bucketNumOffset);
             if (expression.evaluate(result, ptr)) {
@@ -0,0 +1,503 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.execute;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.cache.ServerCacheClient.ServerCache;
+import org.apache.phoenix.compile.ExpressionCompiler;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.exception.DataExceedsCapacityException;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.index.IndexMetaDataCacheClient;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.parse.SQLParser;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.ConstraintViolationException;
+import org.apache.phoenix.schema.IllegalDataException;
+import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PRow;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTableType;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.TypeMismatchException;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PTimestamp;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.IndexUtil;
+import org.apache.phoenix.util.PhoenixKeyValueUtil;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.SchemaUtil;
+import org.apache.phoenix.util.ServerUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Writes rows of a table straight to the region servers, without compiling a statement per row
+ * or buffering the rows in the {@link MutationState} of the connection. Rows are given as arrays
+ * of the values of the columns the upserter was created for. Each row is encoded once into its
+ * mutation, which is added to the batch of the region it belongs to, as found from the region
+ * locations cached by the HBase connection, so that the rows added after a region split go to
+ * the batches of the daughter regions once the split is seen by a write. The batch of a region is
+ * sorted and written as soon as it is full, while rows for other regions keep being encoded. At
+ * most a configurable number of batches are written to the same region server at once; adding a
+ * row whose batch is full blocks until a batch being written to the server of its region
+ * completes.
+ * <p>
+ * As for UPSERT VALUES, the primary key columns with a default value that are not given, or are
+ * given a null value, are set to their default value, while the default value of other columns is
+ * applied when they are read.
+ * <p>
+ * Only non transactional tables whose indexes, if any, are maintained on the server side are
+ * supported. The rows written are not part of the transaction of the connection and are not
+ * rolled back. Errors are reported by the call to {@link #upsert(Object...)}, {@link #flush()} or
+ * {@link #close()} following the failed write.
+ * <p>
+ * Instances are not thread safe: rows must be added, and the upserter flushed and closed, by one
+ * thread at a time.
+ */
+public class BulkUpserter implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkUpserter.class);
+
+    private static final Comparator<Mutation> ROW_COMPARATOR = new Comparator<Mutation>() {
+        @Override
+        public int compare(Mutation m1, Mutation m2) {
+            return Bytes.compareTo(m1.getRow(), m2.getRow());
+        }
+    };
+
+    private final PhoenixConnection connection;
+    private final PTable table;
+    private final byte[] physicalName;
+    private final PColumn[] columns;
+    private final byte[] indexMetaData;
+    private final int batchSize;
+    private final long batchSizeBytes;
+    private final long maxBufferedBytes;
+    private final int maxInFlightBatchesPerServer;
+    // Values of the primary key columns when not given, by position in the primary key
+    private final byte[][] pkDefaultValues;
+    // Rows not written yet, by encoded region name
+    private final Map<String, RegionBatch> batches = Maps.newHashMap();
+    private final ConcurrentMap<ServerName, Semaphore> serverPermits = Maps.newConcurrentMap();
+    private final List<Future<Void>> pendingWrites = Lists.newLinkedList();
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    private final ExecutorService executor;
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    private long bufferedBytes;
+    private long rowCount;
+    private boolean closed;
+
+    /**
+     * @param connection the connection to write the rows with
+     * @param tableName the full name of the table
+     * @param columnNames the names of the columns of the rows, optionally qualified by their
+     * column family, which must include the columns that are not nullable and have no default
+     * value
+     */
+    public BulkUpserter(PhoenixConnection connection, String tableName, List<String> columnNames)
+            throws SQLException {
+        this.connection = connection;
+        this.table = PhoenixRuntime.getTable(connection, tableName);
+        if (table.getType() != PTableType.TABLE) {
+            throw new SQLFeatureNotSupportedException(
+                    "Bulk upserts are only supported for tables: " + tableName);
+        }
+        if (table.isTransactional() || !IndexUtil.getClientMaintainedIndexes(table).isEmpty()) {
+            throw new SQLFeatureNotSupportedException("Bulk upserts are not supported for "
+                    + "transactional tables or tables with immutable rows and indexes: " + tableName);
+        }
+        if (connection.getTenantId() != null && table.isMultiTenant()) {
+            throw new SQLFeatureNotSupportedException(
+                    "Bulk upserts are not supported on tenant specific connections: " + tableName);
+        }
+        this.physicalName = table.getPhysicalName().getBytes();
+        this.columns = new PColumn[columnNames.size()];
+        for (int i = 0; i < columns.length; i++) {
+            String columnName = columnNames.get(i);
+            int familySeparator = columnName.indexOf(QueryConstants.NAME_SEPARATOR);
+            columns[i] = familySeparator < 0
+                    ? table.getColumnForColumnName(SchemaUtil.normalizeIdentifier(columnName))
+                    : table.getColumnFamily(SchemaUtil.normalizeIdentifier(
+                            columnName.substring(0, familySeparator)))
+                            .getPColumnForColumnName(SchemaUtil.normalizeIdentifier(
+                                    columnName.substring(familySeparator + 1)));
+        }
+        this.pkDefaultValues = getPKDefaultValues(connection, table);
+        List<PColumn> givenColumns = Arrays.asList(columns);
+        for (PColumn column : table.getColumns()) {
+            if (!givenColumns.contains(column) && !column.isNullable()
+                    && column.getExpressionStr() == null
+                    && !(column.isRowTimestamp() && SchemaUtil.isPKColumn(column))
+                    && !(table.getBucketNum() != null
+                            && SchemaUtil.getPKPosition(table, column) == 0)) {
+                throw new ConstraintViolationException(table.getName().getString() + "."
+                        + SchemaUtil.getColumnDisplayName(column) + " may not be null");
+            }
+        }
+        ImmutableBytesWritable indexMetaDataPtr = new ImmutableBytesWritable();
+        table.getIndexMaintainers(indexMetaDataPtr, connection);
+        this.indexMetaData = ByteUtil.copyKeyBytesIfNecessary(indexMetaDataPtr);
+        this.batchSize = connection.getMutateBatchSize();
+        this.batchSizeBytes = connection.getMutateBatchSizeBytes();
+        this.maxBufferedBytes = connection.getMutationState().getMaxSizeBytes();
+        this.maxInFlightBatchesPerServer = connection.getQueryServices().getProps().getInt(
+                QueryServices.BULK_UPSERT_MAX_IN_FLIGHT_BATCHES_PER_SERVER_ATTRIB,
+                QueryServicesOptions.DEFAULT_BULK_UPSERT_MAX_IN_FLIGHT_BATCHES_PER_SERVER);
+        int threads = connection.getQueryServices().getProps().getInt(
+                QueryServices.BULK_UPSERT_THREAD_POOL_SIZE_ATTRIB,
+                QueryServicesOptions.DEFAULT_BULK_UPSERT_THREAD_POOL_SIZE);
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setDaemon(true).setNameFormat("phoenix-bulk-upsert-%d").build());
+    }
+
+    /**
+     * Evaluates the default values of the primary key columns once, instead of for every row
+     * as {@link PTable#newKey(ImmutableBytesWritable, byte[][])} would.
+     */
+    private static byte[][] getPKDefaultValues(PhoenixConnection connection, PTable table)
+            throws SQLException {
+        List<PColumn> pkColumns = table.getPKColumns();
+        byte[][] defaultValues = new byte[pkColumns.size()][];
+        StatementContext context = new StatementContext(new PhoenixStatement(connection));
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        for (int i = 0; i < pkColumns.size(); i++) {
+            PColumn column = pkColumns.get(i);
+            if (column.getExpressionStr() == null) {
+                continue;
+            }
+            ExpressionCompiler compiler = new ExpressionCompiler(context);
+            Expression defaultExpression = new SQLParser(column.getExpressionStr())
+                    .parseExpression().accept(compiler);
+            if (!defaultExpression.evaluate(null, ptr)) {
+                continue;
+            }
+            column.getDataType().coerceBytes(ptr, null, defaultExpression.getDataType(),
+                    defaultExpression.getMaxLength(), defaultExpression.getScale(),
+                    defaultExpression.getSortOrder(), column.getMaxLength(), column.getScale(),
+                    column.getSortOrder());
+            defaultValues[i] = ByteUtil.copyKeyBytesIfNecessary(ptr);
+        }
+        return defaultValues;
+    }
+
+    /**
+     * Adds a row to the batch of its region, writing the batch if it is full.
+     * @param values the values of the columns of the row, in the order of the column names the
+     * upserter was created with. A null value sets the column to null, or to its default value
+     * for a primary key column that has one.
+     */
+    public void upsert(Object... values) throws SQLException {
+        checkOpen();
+        if (values.length != columns.length) {
+            throw new IllegalArgumentException("Expected " + columns.length + " values but got "
+                    + values.length);
+        }
+        Long scn = connection.getSCN();
+        long timestamp = scn == null ? EnvironmentEdgeManager.currentTimeMillis() : scn;
+        byte[][] pkValues = pkDefaultValues.clone();
+        // The salt byte is filled in when the row is created
+        if (table.getBucketNum() != null) {
+            pkValues[0] = new byte[] {0};
+        }
+        Map<PColumn, byte[]> columnValues = Maps.newHashMapWithExpectedSize(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            PColumn column = columns[i];
+            if (SchemaUtil.isPKColumn(column)) {
+                int pkPosition = SchemaUtil.getPKPosition(table, column);
+                if (values[i] != null || pkDefaultValues[pkPosition] == null) {
+                    pkValues[pkPosition] = toBytes(column, values[i]);
+                }
+            } else {
+                columnValues.put(column, toBytes(column, values[i]));
+            }
+        }
+        int rowTimestampColPos = table.getRowTimestampColPos();
+        if (rowTimestampColPos != -1) {
+            PColumn rowTimestampCol = table.getPKColumns().get(rowTimestampColPos);
+            byte[] value = pkValues[rowTimestampColPos];
+            if (value == null || value.length == 0) {
+                pkValues[rowTimestampColPos] = rowTimestampCol.getDataType() == PTimestamp.INSTANCE
+                        ? PTimestamp.INSTANCE.toBytes(new Timestamp(timestamp), rowTimestampCol.getSortOrder())
+                        : PLong.INSTANCE.toBytes(timestamp, rowTimestampCol.getSortOrder());
+            } else {
+                timestamp = PLong.INSTANCE.getCodec().decodeLong(value, 0, rowTimestampCol.getSortOrder());
+                if (timestamp < 0) {
+                    throw new IllegalDataException(
+                            "Value of a column designated as ROW_TIMESTAMP cannot be less than zero");
+                }
+            }
+        }
+        ImmutableBytesPtr key = new ImmutableBytesPtr();
+        table.newKey(key, pkValues);
+        PRow row = table.newRow(connection.getKeyValueBuilder(), timestamp, key, false);
+        for (Map.Entry<PColumn, byte[]> entry : columnValues.entrySet()) {
+            row.setValue(entry.getKey(), entry.getValue());
+        }
+        for (Mutation mutation : row.toRowMutations()) {
+            add(mutation);
+        }
+        rowCount++;
+    }
+
+    private byte[] toBytes(PColumn column, Object value) throws SQLException {
+        if (value == null) {
+            return ByteUtil.EMPTY_BYTE_ARRAY;
+        }
+        PDataType type = column.getDataType();
+        PDataType actualType = PDataType.fromLiteral(value);
+        if (actualType == null || !actualType.isCoercibleTo(type, value)) {
+            throw TypeMismatchException.newException(actualType, type,
+                    "value: " + value + " in column " + column);
+        }
+        ptr.set(actualType.toBytes(value));
+        if (!type.isSizeCompatible(ptr, value, actualType, SortOrder.getDefault(), null, null,
+                column.getMaxLength(), column.getScale())) {
+            throw new DataExceedsCapacityException(type, column.getMaxLength(),
+                    column.getScale(), column.getName().getString());
+        }
+        type.coerceBytes(ptr, value, actualType, null, null, SortOrder.getDefault(),
+                column.getMaxLength(), column.getScale(), column.getSortOrder(),
+                table.rowKeyOrderOptimizable());
+        return ByteUtil.copyKeyBytesIfNecessary(ptr);
+    }
+
+    private void add(Mutation mutation) throws SQLException {
+        // The location comes from the cache of the HBase connection, which is updated when a
+        // write finds that the region was split or moved
+        HRegionLocation location = connection.getQueryServices().getTableRegionLocation(
+                physicalName, mutation.getRow());
+        String regionName = location.getRegion().getEncodedName();
+        RegionBatch batch = batches.get(regionName);
+        if (batch == null) {
+            batch = new RegionBatch(Lists.<Mutation>newArrayListWithExpectedSize(batchSize));
+            batches.put(regionName, batch);
+        }
+        batch.serverName = location.getServerName();
+        batch.mutations.add(mutation);
+        long size = PhoenixKeyValueUtil.calculateMutationDiskSize(mutation);
+        batch.bytes += size;
+        bufferedBytes += size;
+        if (batch.mutations.size() >= batchSize || batch.bytes >= batchSizeBytes) {
+            write(regionName);
+        }
+        if (bufferedBytes >= maxBufferedBytes) {
+            // Too many rows spread over too many regions, so write them all
+            writeAll();
+        }
+    }
+
+    private void writeAll() throws SQLException {
+        for (String regionName : Lists.newArrayList(batches.keySet())) {
+            write(regionName);
+        }
+    }
+
+    private void write(String regionName) throws SQLException {
+        RegionBatch regionBatch = batches.get(regionName);
+        if (regionBatch == null) {
+            return;
+        }
+        throwIfFailed();
+        final List<Mutation> batch = regionBatch.mutations;
+        final Semaphore permits = getPermits(regionBatch.serverName);
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION)
+                    .setRootCause(e).build().buildException();
+        }
+        batches.remove(regionName);
+        bufferedBytes -= regionBatch.bytes;
+        try {
+            pendingWrites.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try {
+                        writeBatch(batch);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        permits.release();
+                    }
+                    return null;
+                }
+            }));
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        // Drop the writes that completed already
+        Iterator<Future<Void>> iterator = pendingWrites.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private Semaphore getPermits(ServerName serverName) {
+        Semaphore permits = serverPermits.get(serverName);
+        if (permits == null) {
+            permits = new Semaphore(maxInFlightBatchesPerServer);
+            Semaphore existingPermits = serverPermits.putIfAbsent(serverName, permits);
+            if (existingPermits != null) {
+                permits = existingPermits;
+            }
+        }
+        return permits;
+    }
+
+    private void writeBatch(List<Mutation> batch) throws SQLException, IOException,
+            InterruptedException {
+        Collections.sort(batch, ROW_COMPARATOR);
+        boolean retried = false;
+        while (true) {
+            ServerCache cache = IndexMetaDataCacheClient.setMetaDataOnMutations(connection, table,
+                    batch, new ImmutableBytesWritable(indexMetaData));
+            try (Table hTable = connection.getQueryServices().getTable(physicalName)) {
+                hTable.batch(batch, null);
+                return;
+            } catch (IOException e) {
+                SQLException sqlE = ServerUtil.parseServerExceptionOrNull(e);
+                // As for commits, the region servers may not have the index metadata if the
+                // regions moved after it was sent, so retry once after clearing the region cache
+                if (retried || cache == null || sqlE == null || sqlE.getErrorCode()
+                        != SQLExceptionCode.INDEX_METADATA_NOT_FOUND.getErrorCode()) {
+                    throw e;
+                }
+                LOGGER.warn("Retrying bulk upsert batch after clearing region cache: " + sqlE);
+                connection.getQueryServices().clearTableRegionCache(TableName.valueOf(physicalName));
+                retried = true;
+            } finally {
+                if (cache != null) {
+                    cache.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the rows added so far and waits for all of them to be written.
+     */
+    public void flush() throws SQLException {
+        checkOpen();
+        writeAll();
+        for (Future<Void> write : pendingWrites) {
+            try {
+                write.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION)
+                        .setRootCause(e).build().buildException();
+            } catch (ExecutionException e) {
+                failure.compareAndSet(null, e.getCause());
+            }
+        }
+        pendingWrites.clear();
+        throwIfFailed();
+    }
+
+    /**
+     * The rows not written yet of a region, and the server of the region when the last of them
+     * was added.
+     */
+    private static class RegionBatch {
+        private final List<Mutation> mutations;
+        private long bytes;
+        private ServerName serverName;
+
+        RegionBatch(List<Mutation> mutations) {
+            this.mutations = mutations;
+        }
+    }
+
+    /**
+     * @return the number of rows added so far
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    private void throwIfFailed() throws SQLException {
+        Throwable t = failure.get();
+        if (t != null) {
+            throw ServerUtil.parseServerException(t);
+        }
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.CONNECTION_CLOSED).build()
+                    .buildException();
+        }
+    }
+
+    /**
+     * Writes the rows added so far and releases the threads writing them.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            executor.shutdownNow();
+        }
+    }
+}
@@ -42,6 +42,7 @@ import org.apache.phoenix.cache.ServerCacheClient.ServerCache;
 import org.apache.phoenix.compile.ColumnProjector;
 import org.apache.phoenix.compile.ExplainPlan;
 import org.apache.phoenix.compile.FromCompiler;
+import org.apache.phoenix.compile.OrderByCompiler.OrderBy;
 import org.apache.phoenix.compile.QueryPlan;
 import org.apache.phoenix.compile.RowProjector;
 import org.apache.phoenix.compile.ScanRanges;
@@ -53,6 +54,7 @@ import org.apache.phoenix.exception.SQLExceptionInfo;
 import org.apache.phoenix.execute.visitor.AvgRowWidthVisitor;
 import org.apache.phoenix.execute.visitor.QueryPlanVisitor;
 import org.apache.phoenix.execute.visitor.RowCountVisitor;
+import org.apache.phoenix.expression.BloomFilterExpression;
 import org.apache.phoenix.expression.Determinism;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.InListExpression;
@@ -83,9 +85,11 @@ import org.apache.phoenix.schema.types.PVarbinary;
 import org.apache.phoenix.util.CostUtil;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.SQLCloseables;
+import org.apache.phoenix.util.TupleUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Sets;
@@ -111,6 +115,11 @@ public class HashJoinPlan extends DelegateQueryPlan {
     private Long estimateInfoTs;
     private boolean getEstimatesCalled;
     private boolean hasSubPlansWithPersistentCache;
+    private final boolean keyBatchingEnabled;
+    private final int minKeyBatchSize;
+    private final int maxKeyBatchSize;
+    private final float bloomFilterFpp;
+    private final int bloomFilterMaxKeys;
     
     public static HashJoinPlan create(SelectStatement statement, 
             QueryPlan plan, HashJoinInfo joinInfo, SubPlan[] subPlans) throws SQLException {
@@ -152,6 +161,16 @@ public class HashJoinPlan extends DelegateQueryPlan {
                 QueryServices.MAX_SERVER_CACHE_TIME_TO_LIVE_MS_ATTRIB, QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_TIME_TO_LIVE_MS);
         this.serverCacheLimit = services.getProps().getLong(
                 QueryServices.MAX_SERVER_CACHE_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_SIZE);
+        this.keyBatchingEnabled = services.getProps().getBoolean(
+                QueryServices.SEMI_JOIN_KEY_BATCHING_ENABLED_ATTRIB, QueryServicesOptions.DEFAULT_SEMI_JOIN_KEY_BATCHING_ENABLED);
+        this.minKeyBatchSize = Math.max(1, services.getProps().getInt(
+                QueryServices.SEMI_JOIN_KEY_BATCH_MIN_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_SEMI_JOIN_KEY_BATCH_MIN_SIZE));
+        this.maxKeyBatchSize = Math.max(minKeyBatchSize, services.getProps().getInt(
+                QueryServices.SEMI_JOIN_KEY_BATCH_MAX_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_SEMI_JOIN_KEY_BATCH_MAX_SIZE));
+        this.bloomFilterFpp = services.getProps().getFloat(
+                QueryServices.HASH_JOIN_BLOOM_FILTER_FPP_ATTRIB, QueryServicesOptions.DEFAULT_HASH_JOIN_BLOOM_FILTER_FPP);
+        this.bloomFilterMaxKeys = services.getProps().getInt(
+                QueryServices.HASH_JOIN_BLOOM_FILTER_MAX_KEYS_ATTRIB, QueryServicesOptions.DEFAULT_HASH_JOIN_BLOOM_FILTER_MAX_KEYS);
     }
     
     @Override
@@ -176,6 +195,13 @@ public class HashJoinPlan extends DelegateQueryPlan {
                   : new HashCacheClient(delegate.getContext().getConnection());
             firstJobEndTime = new AtomicLong(0);
             keyRangeExpressions = new CopyOnWriteArrayList<Expression>();
+            if (useKeyBatching()) {
+                ResultIterator iterator = new KeyBatchingResultIterator((HashSubPlan) subPlans[0], scanGrouper, scan);
+                if (delegate.getLimit() != null) {
+                    iterator = new LimitingResultIterator(iterator, delegate.getLimit());
+                }
+                return iterator;
+            }
         }
         
         for (int i = 0; i < count; i++) {
@@ -225,6 +251,25 @@ public class HashJoinPlan extends DelegateQueryPlan {
             throw firstException;
         }
 
+        Expression postFilter = compileWhereClause();
+
+        if (joinInfo != null) {
+            HashJoinInfo.serializeHashJoinIntoScan(scan, joinInfo);
+        }
+        
+        ResultIterator iterator = joinInfo == null ? delegate.iterator(scanGrouper, scan) : ((BaseQueryPlan) delegate).iterator(dependencies, scanGrouper, scan);
+        if (statement.getInnerSelectStatement() != null && postFilter != null) {
+            iterator = new FilterResultIterator(iterator, postFilter);
+        }
+
+        if (hasSubPlansWithPersistentCache) {
+            return peekForPersistentCache(iterator, scanGrouper, scan);
+        } else {
+            return iterator;
+        }
+    }
+
+    private Expression compileWhereClause() throws SQLException {
         Expression postFilter = null;
         boolean hasKeyRangeExpressions = keyRangeExpressions != null && !keyRangeExpressions.isEmpty();
         if (recompileWhereClause || hasKeyRangeExpressions) {
@@ -242,20 +287,134 @@ public class HashJoinPlan extends DelegateQueryPlan {
                 WhereCompiler.compile(delegate.getContext(), delegate.getStatement(), viewWhere, keyRangeExpressions, null, Optional.<byte[]>absent());
             }
         }
+        return postFilter;
+    }
 
-        if (joinInfo != null) {
+    /**
+     * Whether the join keys of the only sub plan can be streamed to the delegate plan in
+     * batches. This is the case for a skip-scan semi join (which is what an uncovered global
+     * index lookup is rewritten to) whose result does not need to be ordered, since each batch
+     * runs as a separate skip scan over the data table.
+     */
+    private boolean useKeyBatching() {
+        if (!keyBatchingEnabled || joinInfo == null || recompileWhereClause || hasSubPlansWithPersistentCache
+                || subPlans.length != 1 || !(subPlans[0] instanceof HashSubPlan)) {
+            return false;
+        }
+        HashSubPlan subPlan = (HashSubPlan) subPlans[0];
+        return subPlan.hashExpressions == null && subPlan.keyRangeLhsExpression != null
+                && joinInfo.getPostJoinFilterExpression() == null
+                && delegate instanceof ScanPlan
+                && delegate.getOrderBy() == OrderBy.EMPTY_ORDER_BY
+                && delegate.getOffset() == null;
+    }
+
+    /**
+     * Returns the number of join keys to use for the next batch. The batch size grows
+     * geometrically so that the first rows are returned quickly, and grows faster when
+     * few of the keys of the last batch matched a data row.
+     */
+    @VisibleForTesting
+    static int nextKeyBatchSize(int batchSize, long keyCount, long rowCount, int minBatchSize, int maxBatchSize) {
+        long nextBatchSize = batchSize * 2L;
+        if (keyCount > 0 && rowCount * 4 < keyCount) {
+            nextBatchSize *= 2;
+        }
+        return (int) Math.max(minBatchSize, Math.min(maxBatchSize, nextBatchSize));
+    }
+
+    /**
+     * Iterates over the results of the delegate plan by pulling the join keys from the sub plan
+     * in batches and running the delegate plan with a skip scan over each batch of keys. Rows
+     * are returned as soon as the scan of their batch produces them, instead of waiting for all
+     * join keys to be collected first.
+     */
+    private class KeyBatchingResultIterator implements ResultIterator {
+        private final HashSubPlan subPlan;
+        private final ParallelScanGrouper scanGrouper;
+        private final Scan scan;
+        private ResultIterator keyIterator;
+        private ResultIterator batchIterator;
+        private boolean keysExhausted;
+        private int batchSize = minKeyBatchSize;
+        private long batchKeyCount;
+        private long batchRowCount;
+
+        KeyBatchingResultIterator(HashSubPlan subPlan, ParallelScanGrouper scanGrouper, Scan scan) {
+            this.subPlan = subPlan;
+            this.scanGrouper = scanGrouper;
+            this.scan = scan;
+        }
+
+        @Override
+        public Tuple next() throws SQLException {
+            while (true) {
+                if (batchIterator != null) {
+                    Tuple tuple = batchIterator.next();
+                    if (tuple != null) {
+                        batchRowCount++;
+                        return tuple;
+                    }
+                    batchIterator.close();
+                    batchIterator = null;
+                    batchSize = nextKeyBatchSize(batchSize, batchKeyCount, batchRowCount, minKeyBatchSize, maxKeyBatchSize);
+                }
+                if (keysExhausted || !startNextBatch()) {
+                    return null;
+                }
+            }
+        }
+
+        private boolean startNextBatch() throws SQLException {
+            QueryPlan plan = subPlan.plan;
+            if (keyIterator == null) {
+                keyIterator = plan.iterator();
+            }
+            ImmutableBytesWritable ptr = plan.getContext().getTempPtr();
+            List<Expression> keyValues = Lists.newArrayListWithExpectedSize(batchSize + 1);
+            while (keyValues.size() < batchSize) {
+                Tuple result = keyIterator.next();
+                if (result == null) {
+                    keysExhausted = true;
+                    break;
+                }
+                keyValues.add(HashCacheClient.evaluateKeyExpression(subPlan.keyRangeRhsExpression, result, ptr));
+            }
+            if (keyValues.isEmpty()) {
+                return false;
+            }
+            batchKeyCount = keyValues.size();
+            batchRowCount = 0;
+            keyRangeExpressions.clear();
+            keyRangeExpressions.add(createKeyRangeExpression(subPlan.keyRangeLhsExpression, subPlan.keyRangeRhsExpression,
+                    keyValues, ptr, plan.getContext().getCurrentTable().getTable().rowKeyOrderOptimizable()));
+            compileWhereClause();
             HashJoinInfo.serializeHashJoinIntoScan(scan, joinInfo);
+            batchIterator = ((BaseQueryPlan) delegate).iterator(dependencies, scanGrouper, scan);
+            return true;
         }
-        
-        ResultIterator iterator = joinInfo == null ? delegate.iterator(scanGrouper, scan) : ((BaseQueryPlan) delegate).iterator(dependencies, scanGrouper, scan);
-        if (statement.getInnerSelectStatement() != null && postFilter != null) {
-            iterator = new FilterResultIterator(iterator, postFilter);
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                if (batchIterator != null) {
+                    batchIterator.close();
+                }
+            } finally {
+                batchIterator = null;
+                if (keyIterator != null) {
+                    keyIterator.close();
+                }
+            }
         }
 
-        if (hasSubPlansWithPersistentCache) {
-            return peekForPersistentCache(iterator, scanGrouper, scan);
-        } else {
-            return iterator;
+        @Override
+        public void explain(List<String> planSteps) {
+            if (batchIterator != null) {
+                batchIterator.explain(planSteps);
+            }
+            planSteps.add("CLIENT BATCHED KEY LOOKUP (" + batchSize + " KEYS IN CURRENT BATCH, "
+                    + minKeyBatchSize + "-" + maxKeyBatchSize + " KEYS PER BATCH)");
         }
     }
 
@@ -304,6 +463,9 @@ public class HashJoinPlan extends DelegateQueryPlan {
             planSteps.addAll(subPlans[i].getPostSteps(this));
         }
         
+        if (useKeyBatching()) {
+            planSteps.add("    BATCHED KEY LOOKUP (" + minKeyBatchSize + "-" + maxKeyBatchSize + " KEYS PER BATCH)");
+        }
         if (joinInfo != null && joinInfo.getPostJoinFilterExpression() != null) {
             planSteps.add("    AFTER-JOIN SERVER FILTER BY " + joinInfo.getPostJoinFilterExpression().toString());
         }
@@ -505,6 +667,7 @@ public class HashJoinPlan extends DelegateQueryPlan {
         private final boolean usePersistentCache;
         private final Expression keyRangeLhsExpression;
         private final Expression keyRangeRhsExpression;
+        private final Expression bloomFilterKeyExpression;
         private final MessageDigest digest;
         
         public HashSubPlan(int index, QueryPlan subPlan, 
@@ -513,6 +676,22 @@ public class HashJoinPlan extends DelegateQueryPlan {
                 boolean usePersistentCache,
                 Expression keyRangeLhsExpression, 
                 Expression keyRangeRhsExpression) {
+            this(index, subPlan, hashExpressions, singleValueOnly, usePersistentCache,
+                    keyRangeLhsExpression, keyRangeRhsExpression, null);
+        }
+
+        /**
+         * @param bloomFilterKeyExpression the join key expression of the probe side, compiled
+         *        against the probe side table, for which a bloom filter of the join keys of
+         *        this sub plan is pushed down to the probe side scan, or null if none.
+         */
+        public HashSubPlan(int index, QueryPlan subPlan, 
+                List<Expression> hashExpressions,
+                boolean singleValueOnly,
+                boolean usePersistentCache,
+                Expression keyRangeLhsExpression, 
+                Expression keyRangeRhsExpression,
+                Expression bloomFilterKeyExpression) {
             this.index = index;
             this.plan = subPlan;
             this.hashExpressions = hashExpressions;
@@ -520,6 +699,7 @@ public class HashJoinPlan extends DelegateQueryPlan {
             this.usePersistentCache = usePersistentCache;
             this.keyRangeLhsExpression = keyRangeLhsExpression;
             this.keyRangeRhsExpression = keyRangeRhsExpression;
+            this.bloomFilterKeyExpression = bloomFilterKeyExpression;
             try {
                 this.digest = MessageDigest.getInstance("SHA-256");
             } catch (NoSuchAlgorithmException e) {
@@ -537,6 +717,10 @@ public class HashJoinPlan extends DelegateQueryPlan {
             ServerCache cache = null;
             if (hashExpressions != null) {
                 ResultIterator iterator = plan.iterator();
+                JoinKeyCollector keyCollector = null;
+                if (bloomFilterKeyExpression != null) {
+                    iterator = keyCollector = new JoinKeyCollector(iterator, hashExpressions, parent.bloomFilterMaxKeys);
+                }
                 try {
                     final byte[] cacheId;
                     String queryString = plan.getStatement().toString().replaceAll("\\$[0-9]+", "\\$");
@@ -575,6 +759,10 @@ public class HashJoinPlan extends DelegateQueryPlan {
                 } finally {
                     iterator.close();
                 }
+                if (keyCollector != null && keyCollector.getKeys() != null) {
+                    parent.keyRangeExpressions.add(BloomFilterExpression.create(
+                            bloomFilterKeyExpression, keyCollector.getKeys(), parent.bloomFilterFpp));
+                }
             } else {
                 assert (keyRangeRhsExpression != null);
                 ResultIterator iterator = plan.iterator();
@@ -623,6 +811,10 @@ public class HashJoinPlan extends DelegateQueryPlan {
 
         @Override
         public List<String> getPostSteps(HashJoinPlan parent) throws SQLException {
+            if (bloomFilterKeyExpression != null) {
+                return Collections.<String> singletonList("    DYNAMIC SERVER FILTER BY BLOOM_FILTER("
+                        + bloomFilterKeyExpression.toString() + ") IN (" + hashExpressions.get(0).toString() + ")");
+            }
             if (keyRangeLhsExpression == null)
                 return Collections.<String> emptyList();
             
@@ -643,6 +835,53 @@ public class HashJoinPlan extends DelegateQueryPlan {
         }
     }
 
+    /**
+     * Collects the distinct join keys of the build side of a hash join as it is iterated
+     * over to create the server cache, so that they can be pushed down to the probe side
+     * as a bloom filter. Gives up once there are more than maxKeys distinct keys.
+     */
+    private static class JoinKeyCollector extends DelegateResultIterator {
+        private final List<Expression> hashExpressions;
+        private final int maxKeys;
+        private Set<ImmutableBytesPtr> keys = Sets.newHashSet();
+        private boolean done;
+
+        JoinKeyCollector(ResultIterator delegate, List<Expression> hashExpressions, int maxKeys) {
+            super(delegate);
+            this.hashExpressions = hashExpressions;
+            this.maxKeys = maxKeys;
+        }
+
+        @Override
+        public Tuple next() throws SQLException {
+            Tuple tuple = super.next();
+            if (tuple == null) {
+                done = true;
+            } else if (keys != null) {
+                try {
+                    ImmutableBytesPtr key = TupleUtil.getConcatenatedValue(tuple, hashExpressions);
+                    if (key.getLength() > 0) {
+                        keys.add(new ImmutableBytesPtr(key.copyBytes()));
+                    }
+                } catch (IOException e) {
+                    throw ServerUtil.parseServerException(e);
+                }
+                if (keys.size() > maxKeys) {
+                    keys = null;
+                }
+            }
+            return tuple;
+        }
+
+        /**
+         * @return the keys, or null if the build side has not been iterated over completely
+         * or has too many distinct keys.
+         */
+        Set<ImmutableBytesPtr> getKeys() {
+            return done ? keys : null;
+        }
+    }
+
     @Override
     public Long getEstimatedRowsToScan() throws SQLException {
         if (!getEstimatesCalled) {
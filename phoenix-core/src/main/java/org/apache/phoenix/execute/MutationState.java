@@ -922,6 +922,7 @@ public class MutationState implements SQLCloseable {
 
         MultiRowMutationState multiRowMutationState;
         Map<TableInfo, List<Mutation>> physicalTableMutationMap = Maps.newLinkedHashMap();
+        List<PTable> sentTables = Lists.newArrayList();
         // add tracing for this operation
         try (TraceScope trace = Tracing.startNewSpan(connection, "Committing mutations to tables")) {
             Span span = trace.getSpan();
@@ -940,6 +941,7 @@ public class MutationState implements SQLCloseable {
                                 validateAndGetServerTimestamp(tableRef, multiRowMutationState) :
                                 serverTimeStamps[i++];
                 final PTable table = tableRef.getTable();
+                sentTables.add(table);
                 Long scn = connection.getSCN();
                 long mutationTimestamp = scn == null ?
                     (table.isTransactional() == true ? HConstants.LATEST_TIMESTAMP : EnvironmentEdgeManager.currentTimeMillis())
@@ -1001,6 +1003,11 @@ public class MutationState implements SQLCloseable {
                         "Ignoring exception that happened during setting index verified value to verified=TRUE ",
                         ex);
             }
+        } finally {
+            // The results cached from the tables written to may have changed, even at a past SCN
+            for (PTable table : sentTables) {
+                connection.getQueryServices().getResultCache().invalidate(table);
+            }
         }
     }
 
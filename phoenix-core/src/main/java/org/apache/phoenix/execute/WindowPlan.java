@@ -0,0 +1,584 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.execute;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.compile.ColumnProjector;
+import org.apache.phoenix.compile.ExplainPlan;
+import org.apache.phoenix.compile.ExpressionProjector;
+import org.apache.phoenix.compile.OrderByCompiler.OrderBy;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.RowProjector;
+import org.apache.phoenix.execute.visitor.QueryPlanVisitor;
+import org.apache.phoenix.expression.BaseTerminalExpression;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.function.SingleAggregateFunction;
+import org.apache.phoenix.expression.visitor.ExpressionVisitor;
+import org.apache.phoenix.iterate.DelegateResultIterator;
+import org.apache.phoenix.iterate.ParallelScanGrouper;
+import org.apache.phoenix.iterate.ResultIterator;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.DelegateTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.SizedUtil;
+
+/**
+ * Query plan computing window functions over the rows of its delegate, which must be ordered
+ * by the PARTITION BY expressions followed by the ORDER BY expressions of the window. Rows
+ * are streamed through one group of peer rows (rows with equal PARTITION BY and ORDER BY
+ * values) at a time, so only a peer group is held in memory, which is reserved through the
+ * memory manager of the query services. Without ORDER BY, a whole partition is a peer group.
+ * The window functions use the default frame, from the start of the partition to the last
+ * peer of the current row.
+ * <p>
+ * The projector of the plan is made of the first columns of the projector of its delegate
+ * followed by a column for each window function.
+ */
+public class WindowPlan extends DelegateQueryPlan {
+    private static final int WINDOW_MEMORY_CHUNK_SIZE = 64 * 1024;
+    private final Expression[] partitionBy;
+    private final Expression[] orderBy;
+    private final List<WindowFunction> functions;
+    private final RowProjector projector;
+
+    public WindowPlan(QueryPlan delegate, List<Expression> partitionBy, List<Expression> orderBy,
+            List<WindowFunction> functions, List<String> names, int columnCount) {
+        super(delegate);
+        this.partitionBy = partitionBy.toArray(new Expression[partitionBy.size()]);
+        this.orderBy = orderBy.toArray(new Expression[orderBy.size()]);
+        this.functions = functions;
+        RowProjector delegateProjector = delegate.getProjector();
+        List<ColumnProjector> columnProjectors =
+                new ArrayList<ColumnProjector>(columnCount + functions.size());
+        columnProjectors.addAll(delegateProjector.getColumnProjectors().subList(0, columnCount));
+        for (int i = 0; i < functions.size(); i++) {
+            columnProjectors.add(new ExpressionProjector(names.get(i), "",
+                    new WindowValueExpression(i, functions.get(i).getDatum()), false));
+        }
+        this.projector = new RowProjector(columnProjectors,
+                delegateProjector.getEstimatedRowByteSize() + functions.size() * PLong.INSTANCE.getByteSize(),
+                delegateProjector.projectEveryRow());
+    }
+
+    public List<WindowFunction> getFunctions() {
+        return functions;
+    }
+
+    @Override
+    public RowProjector getProjector() {
+        return projector;
+    }
+
+    @Override
+    public ResultIterator iterator(ParallelScanGrouper scanGrouper, Scan scan) throws SQLException {
+        return new WindowResultIterator(delegate.iterator(scanGrouper, scan),
+                getContext().getConnection().getQueryServices().getMemoryManager()
+                        .allocate(WINDOW_MEMORY_CHUNK_SIZE));
+    }
+
+    @Override
+    public ExplainPlan getExplainPlan() throws SQLException {
+        List<String> planSteps = new ArrayList<String>(delegate.getExplainPlan().getPlanSteps());
+        StringBuilder buf = new StringBuilder("CLIENT WINDOW ");
+        for (WindowFunction function : functions) {
+            buf.append(function).append(", ");
+        }
+        buf.setLength(buf.length() - 2);
+        if (partitionBy.length > 0) {
+            buf.append(" PARTITION BY ").append(Arrays.toString(partitionBy));
+        }
+        if (orderBy.length > 0) {
+            buf.append(" ORDER BY ").append(Arrays.toString(orderBy));
+        }
+        planSteps.add(buf.toString());
+        return new ExplainPlan(planSteps);
+    }
+
+    @Override
+    public Integer getLimit() {
+        return null;
+    }
+
+    @Override
+    public <T> T accept(QueryPlanVisitor<T> visitor) {
+        return visitor.visit(this);
+    }
+
+    @Override
+    public List<OrderBy> getOutputOrderBys() {
+        return Collections.<OrderBy> emptyList();
+    }
+
+    private static byte[] getValue(Expression expression, Tuple tuple, ImmutableBytesWritable ptr) {
+        if (!expression.evaluate(tuple, ptr) || ptr.getLength() == 0) {
+            return null;
+        }
+        return ptr.copyBytes();
+    }
+
+    /**
+     * @return the estimated size of a peer row along with its window function values
+     */
+    private long getSize(Tuple tuple) {
+        long size = 2 * (SizedUtil.OBJECT_SIZE + SizedUtil.POINTER_SIZE) + SizedUtil.ARRAY_SIZE
+                + functions.size() * SizedUtil.POINTER_SIZE;
+        for (int i = 0; i < tuple.size(); i++) {
+            size += CellUtil.estimatedSerializedSizeOf(tuple.getValue(i));
+        }
+        return size;
+    }
+
+    private static byte[][] getValues(Expression[] expressions, Tuple tuple, ImmutableBytesWritable ptr) {
+        byte[][] values = new byte[expressions.length][];
+        for (int i = 0; i < expressions.length; i++) {
+            values[i] = getValue(expressions[i], tuple, ptr);
+        }
+        return values;
+    }
+
+    private class WindowResultIterator extends DelegateResultIterator {
+        private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        // Each iterator has its own state, so that the plan may be iterated over concurrently
+        private final WindowFunctionEvaluator[] evaluators =
+                new WindowFunctionEvaluator[functions.size()];
+        private final List<Tuple> peers = new ArrayList<Tuple>();
+        private final MemoryChunk memoryChunk;
+        private List<Tuple> results = Collections.emptyList();
+        private int index;
+        private Tuple next;
+        private byte[][] nextPartitionKey;
+        private byte[][] nextOrderKey;
+        private byte[][] partitionKey;
+        private boolean started;
+
+        public WindowResultIterator(ResultIterator iterator, MemoryChunk memoryChunk) {
+            super(iterator);
+            this.memoryChunk = memoryChunk;
+            for (int i = 0; i < evaluators.length; i++) {
+                evaluators[i] = functions.get(i).newEvaluator();
+            }
+        }
+
+        @Override
+        public Tuple next() throws SQLException {
+            while (index >= results.size()) {
+                if (!nextPeers()) {
+                    return null;
+                }
+            }
+            return results.get(index++);
+        }
+
+        private void readNext() throws SQLException {
+            next = super.next();
+            if (next != null) {
+                nextPartitionKey = getValues(partitionBy, next, ptr);
+                nextOrderKey = getValues(orderBy, next, ptr);
+            }
+        }
+
+        private boolean nextPeers() throws SQLException {
+            if (!started) {
+                started = true;
+                readNext();
+            }
+            if (next == null) {
+                results = Collections.emptyList();
+                index = 0;
+                return false;
+            }
+            if (partitionKey != null && !Arrays.deepEquals(partitionKey, nextPartitionKey)) {
+                for (WindowFunctionEvaluator evaluator : evaluators) {
+                    evaluator.reset();
+                }
+            }
+            partitionKey = nextPartitionKey;
+            byte[][] orderKey = nextOrderKey;
+            peers.clear();
+            long peersSize = 0;
+            do {
+                peers.add(next);
+                peersSize += getSize(next);
+                if (peersSize > memoryChunk.getSize()) {
+                    // This will throw InsufficientMemoryException if necessary
+                    memoryChunk.resize(peersSize + WINDOW_MEMORY_CHUNK_SIZE);
+                }
+                readNext();
+            } while (next != null && Arrays.deepEquals(partitionKey, nextPartitionKey)
+                    && Arrays.deepEquals(orderKey, nextOrderKey));
+
+            byte[][][] values = new byte[functions.size()][][];
+            for (int i = 0; i < functions.size(); i++) {
+                values[i] = evaluators[i].evaluate(peers, ptr);
+            }
+            results = new ArrayList<Tuple>(peers.size());
+            for (int i = 0; i < peers.size(); i++) {
+                byte[][] rowValues = new byte[functions.size()][];
+                for (int j = 0; j < functions.size(); j++) {
+                    rowValues[j] = values[j][i];
+                }
+                results.add(new WindowTuple(peers.get(i), rowValues));
+            }
+            index = 0;
+            return true;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            peers.clear();
+            results = Collections.emptyList();
+            try {
+                memoryChunk.close();
+            } finally {
+                super.close();
+            }
+        }
+
+        @Override
+        public void explain(List<String> planSteps) {
+            super.explain(planSteps);
+            planSteps.add("CLIENT WINDOW");
+        }
+
+        @Override
+        public String toString() {
+            return "WindowResultIterator [functions=" + functions + "]";
+        }
+    }
+
+    private static class WindowTuple extends DelegateTuple {
+        private final byte[][] values;
+
+        public WindowTuple(Tuple delegate, byte[][] values) {
+            super(delegate);
+            this.values = values;
+        }
+    }
+
+    /**
+     * Expression evaluating to the value of a window function for a row returned by the plan.
+     */
+    @SuppressWarnings("rawtypes")
+    private static class WindowValueExpression extends BaseTerminalExpression {
+        private final int index;
+        private final PDatum datum;
+
+        public WindowValueExpression(int index, PDatum datum) {
+            this.index = index;
+            this.datum = datum;
+        }
+
+        @Override
+        public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+            byte[] value = ((WindowTuple) tuple).values[index];
+            if (value == null) {
+                ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+            } else {
+                ptr.set(value);
+            }
+            return true;
+        }
+
+        @Override
+        public <T> T accept(ExpressionVisitor<T> visitor) {
+            // This Expression class is only used at runtime.
+            return null;
+        }
+
+        @Override
+        public PDataType getDataType() {
+            return datum.getDataType();
+        }
+
+        @Override
+        public boolean isNullable() {
+            return datum.isNullable();
+        }
+
+        @Override
+        public Integer getMaxLength() {
+            return datum.getMaxLength();
+        }
+
+        @Override
+        public Integer getScale() {
+            return datum.getScale();
+        }
+
+        @Override
+        public SortOrder getSortOrder() {
+            return datum.getSortOrder();
+        }
+    }
+
+    /**
+     * A function computed over the rows of a partition up to the current row and its peers.
+     */
+    public abstract static class WindowFunction {
+        private final String name;
+
+        protected WindowFunction(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the data type, length and sort order of the values of the function
+         */
+        public abstract PDatum getDatum();
+
+        /**
+         * @return a new evaluator holding the state of the function for one iteration over the
+         * rows of the plan
+         */
+        protected abstract WindowFunctionEvaluator newEvaluator();
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * The state of a window function while iterating over the rows of the plan.
+     */
+    protected abstract static class WindowFunctionEvaluator {
+        /**
+         * Resets the state of the function at the start of a partition
+         */
+        protected abstract void reset();
+
+        /**
+         * @return the value of the function for each of the given peer rows, which directly
+         * follow the rows evaluated since the last {@link #reset()} in the same partition
+         */
+        protected abstract byte[][] evaluate(List<Tuple> peers, ImmutableBytesWritable ptr);
+    }
+
+    private static final PDatum LONG_DATUM = new PDatum() {
+        @Override
+        public boolean isNullable() {
+            return false;
+        }
+
+        @Override
+        public PDataType getDataType() {
+            return PLong.INSTANCE;
+        }
+
+        @Override
+        public Integer getMaxLength() {
+            return null;
+        }
+
+        @Override
+        public Integer getScale() {
+            return null;
+        }
+
+        @Override
+        public SortOrder getSortOrder() {
+            return SortOrder.getDefault();
+        }
+    };
+
+    /**
+     * ROW_NUMBER(): the position of the row in its partition, numbering peer rows arbitrarily.
+     */
+    public static class RowNumberFunction extends WindowFunction {
+        public RowNumberFunction(String name) {
+            super(name);
+        }
+
+        @Override
+        public PDatum getDatum() {
+            return LONG_DATUM;
+        }
+
+        @Override
+        protected WindowFunctionEvaluator newEvaluator() {
+            return new WindowFunctionEvaluator() {
+                private long count;
+
+                @Override
+                protected void reset() {
+                    count = 0;
+                }
+
+                @Override
+                protected byte[][] evaluate(List<Tuple> peers, ImmutableBytesWritable ptr) {
+                    byte[][] values = new byte[peers.size()][];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = PLong.INSTANCE.toBytes(++count);
+                    }
+                    return values;
+                }
+            };
+        }
+    }
+
+    /**
+     * RANK() and DENSE_RANK(): the position in its partition of the first peer of the row,
+     * counting either rows or groups of peer rows.
+     */
+    public static class RankFunction extends WindowFunction {
+        private final boolean dense;
+
+        public RankFunction(String name, boolean dense) {
+            super(name);
+            this.dense = dense;
+        }
+
+        @Override
+        public PDatum getDatum() {
+            return LONG_DATUM;
+        }
+
+        @Override
+        protected WindowFunctionEvaluator newEvaluator() {
+            return new WindowFunctionEvaluator() {
+                private long count;
+
+                @Override
+                protected void reset() {
+                    count = 0;
+                }
+
+                @Override
+                protected byte[][] evaluate(List<Tuple> peers, ImmutableBytesWritable ptr) {
+                    byte[] rank = PLong.INSTANCE.toBytes(count + 1);
+                    count += dense ? 1 : peers.size();
+                    byte[][] values = new byte[peers.size()][];
+                    Arrays.fill(values, rank);
+                    return values;
+                }
+            };
+        }
+    }
+
+    /**
+     * LAG(expr [, offset [, default]]): the value of the expression for the row at the given
+     * offset before the row in its partition, or the default if there is no such row.
+     */
+    public static class LagFunction extends WindowFunction {
+        private final Expression expression;
+        private final int offset;
+        private final Expression defaultValue;
+
+        public LagFunction(String name, Expression expression, int offset, Expression defaultValue) {
+            super(name);
+            this.expression = expression;
+            this.offset = offset;
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        public PDatum getDatum() {
+            return expression;
+        }
+
+        @Override
+        protected WindowFunctionEvaluator newEvaluator() {
+            return new WindowFunctionEvaluator() {
+                private final Deque<byte[]> previousValues = new ArrayDeque<byte[]>();
+
+                @Override
+                protected void reset() {
+                    previousValues.clear();
+                }
+
+                @Override
+                protected byte[][] evaluate(List<Tuple> peers, ImmutableBytesWritable ptr) {
+                    byte[][] values = new byte[peers.size()][];
+                    for (int i = 0; i < values.length; i++) {
+                        Tuple tuple = peers.get(i);
+                        // Deque holds a null value as an empty array
+                        byte[] value = getValue(expression, tuple, ptr);
+                        previousValues.addLast(value == null ? ByteUtil.EMPTY_BYTE_ARRAY : value);
+                        if (previousValues.size() > offset) {
+                            byte[] previousValue = previousValues.removeFirst();
+                            values[i] = previousValue.length == 0 ? null : previousValue;
+                        } else if (defaultValue != null) {
+                            values[i] = getValue(defaultValue, tuple, ptr);
+                        }
+                    }
+                    return values;
+                }
+            };
+        }
+    }
+
+    /**
+     * SUM, COUNT, MIN and MAX over the rows of the partition up to the row and its peers,
+     * computed with the server aggregator of the aggregate function.
+     */
+    public static class AggregateWindowFunction extends WindowFunction {
+        private final SingleAggregateFunction function;
+
+        public AggregateWindowFunction(String name, SingleAggregateFunction function) {
+            super(name);
+            this.function = function;
+        }
+
+        @Override
+        public PDatum getDatum() {
+            return function;
+        }
+
+        @Override
+        protected WindowFunctionEvaluator newEvaluator() {
+            final Aggregator aggregator = function.newServerAggregator(null);
+            return new WindowFunctionEvaluator() {
+                @Override
+                protected void reset() {
+                    aggregator.reset();
+                }
+
+                @Override
+                protected byte[][] evaluate(List<Tuple> peers, ImmutableBytesWritable ptr) {
+                    Expression child = function.getAggregatorExpression();
+                    for (Tuple tuple : peers) {
+                        if (child.evaluate(tuple, ptr) && ptr.getLength() != 0) {
+                            aggregator.aggregate(tuple, ptr);
+                        }
+                    }
+                    byte[] value = aggregator.evaluate(null, ptr) && ptr.getLength() != 0
+                            ? ptr.copyBytes() : null;
+                    byte[][] values = new byte[peers.size()][];
+                    Arrays.fill(values, value);
+                    return values;
+                }
+            };
+        }
+    }
+}
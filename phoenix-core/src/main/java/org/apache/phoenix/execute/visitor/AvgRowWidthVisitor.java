@@ -32,6 +32,7 @@ import org.apache.phoenix.execute.SortMergeJoinPlan;
 import org.apache.phoenix.execute.TupleProjectionPlan;
 import org.apache.phoenix.execute.UnionPlan;
 import org.apache.phoenix.execute.UnnestArrayPlan;
+import org.apache.phoenix.execute.WindowPlan;
 import org.apache.phoenix.parse.JoinTableNode;
 
 import java.sql.SQLException;
@@ -155,6 +156,11 @@ public class AvgRowWidthVisitor implements QueryPlanVisitor<Double> {
         return plan.getDelegate().accept(this);
     }
 
+    @Override
+    public Double visit(WindowPlan plan) {
+        return plan.getDelegate().accept(this);
+    }
+
     @Override
     public Double visit(CorrelatePlan plan) {
         return plan.getDelegate().accept(this);
@@ -32,6 +32,7 @@ import org.apache.phoenix.execute.SortMergeJoinPlan;
 import org.apache.phoenix.execute.TupleProjectionPlan;
 import org.apache.phoenix.execute.UnionPlan;
 import org.apache.phoenix.execute.UnnestArrayPlan;
+import org.apache.phoenix.execute.WindowPlan;
 
 /**
  * Implementation of QueryPlanVisitor used to get the number of output bytes for a QueryPlan.
@@ -93,6 +94,11 @@ public class ByteCountVisitor implements QueryPlanVisitor<Double> {
         return getByteCountFromRowCountAndRowWidth(plan);
     }
 
+    @Override
+    public Double visit(WindowPlan plan) {
+        return getByteCountFromRowCountAndRowWidth(plan);
+    }
+
     @Override
     public Double visit(CorrelatePlan plan) {
         return getByteCountFromRowCountAndRowWidth(plan);
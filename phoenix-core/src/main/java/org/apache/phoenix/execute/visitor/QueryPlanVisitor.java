@@ -39,6 +39,7 @@ public interface QueryPlanVisitor<E> {
     E visit(SortMergeJoinPlan plan);
     E visit(UnionPlan plan);
     E visit(UnnestArrayPlan plan);
+    E visit(WindowPlan plan);
     E visit(CorrelatePlan plan);
     E visit(CursorFetchPlan plan);
     E visit(ListJarsQueryPlan plan);
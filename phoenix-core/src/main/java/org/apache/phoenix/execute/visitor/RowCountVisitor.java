@@ -22,6 +22,7 @@ import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.phoenix.compile.GroupByCompiler;
 import org.apache.phoenix.compile.ListJarsQueryPlan;
 import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.StatementContext;
 import org.apache.phoenix.compile.TraceQueryPlan;
 import org.apache.phoenix.execute.AggregatePlan;
 import org.apache.phoenix.execute.ClientAggregatePlan;
@@ -35,6 +36,7 @@ import org.apache.phoenix.execute.SortMergeJoinPlan;
 import org.apache.phoenix.execute.TupleProjectionPlan;
 import org.apache.phoenix.execute.UnionPlan;
 import org.apache.phoenix.execute.UnnestArrayPlan;
+import org.apache.phoenix.execute.WindowPlan;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.filter.BooleanExpressionFilter;
 import org.apache.phoenix.parse.JoinTableNode;
@@ -73,7 +75,8 @@ public class RowCountVisitor implements QueryPlanVisitor<Double> {
                                         filter(
                                                 b.doubleValue(),
                                                 stripSkipScanFilter(
-                                                        plan.getContext().getScan().getFilter())),
+                                                        plan.getContext().getScan().getFilter()),
+                                                plan.getContext()),
                                         plan.getGroupBy()),
                                 plan.getHaving()),
                         plan.getLimit());
@@ -92,7 +95,8 @@ public class RowCountVisitor implements QueryPlanVisitor<Double> {
                 return limit(
                         filter(
                                 b.doubleValue(),
-                                stripSkipScanFilter(plan.getContext().getScan().getFilter())),
+                                stripSkipScanFilter(plan.getContext().getScan().getFilter()),
+                                plan.getContext()),
                         plan.getLimit());
             }
         } catch (SQLException e) {
@@ -152,7 +156,8 @@ public class RowCountVisitor implements QueryPlanVisitor<Double> {
             }
 
             Double rows = filter(b.doubleValue(),
-                    stripSkipScanFilter(lhsPlan.getContext().getScan().getFilter()));
+                    stripSkipScanFilter(lhsPlan.getContext().getScan().getFilter()),
+                    lhsPlan.getContext());
             JoinTableNode.JoinType[] joinTypes = plan.getJoinInfo().getJoinTypes();
             HashJoinPlan.SubPlan[] subPlans = plan.getSubPlans();
             for (int i = 0; i < joinTypes.length; i++) {
@@ -205,6 +210,11 @@ public class RowCountVisitor implements QueryPlanVisitor<Double> {
         return plan.getDelegate().accept(this);
     }
 
+    @Override
+    public Double visit(WindowPlan plan) {
+        return plan.getDelegate().accept(this);
+    }
+
     @Override
     public Double visit(CorrelatePlan plan) {
         Double lhsRows = plan.getDelegate().accept(this);
@@ -265,6 +275,17 @@ public class RowCountVisitor implements QueryPlanVisitor<Double> {
         return 0.5 * inputRows;
     }
 
+    /**
+     * Estimates the rows passing the filter of a scan from the column statistics of the
+     * scanned table, when they are loaded.
+     */
+    public static double filter(double inputRows, Filter filter, StatementContext context) {
+        if (filter == null) {
+            return inputRows;
+        }
+        return new SelectivityEstimator(context).estimate(filter) * inputRows;
+    }
+
     public static double filter(double inputRows, Expression filter) {
         if (filter == null) {
             return inputRows;
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.execute.visitor;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.expression.AndExpression;
+import org.apache.phoenix.expression.ComparisonExpression;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.InListExpression;
+import org.apache.phoenix.expression.IsNullExpression;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.NotExpression;
+import org.apache.phoenix.expression.OrExpression;
+import org.apache.phoenix.expression.SingleCellColumnExpression;
+import org.apache.phoenix.filter.BooleanExpressionFilter;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.stats.ColumnStatistics;
+import org.apache.phoenix.schema.stats.GuidePostsInfo;
+import org.apache.phoenix.schema.stats.GuidePostsKey;
+import org.apache.phoenix.util.EquiDepthStreamHistogram.Bucket;
+
+/**
+ * Estimates the fraction of the rows that pass a filter from the {@link ColumnStatistics} of the
+ * columns it compares with constants. Predicates on columns without statistics, and any other
+ * predicate, are assumed to pass half of the rows, as the row count estimates did before
+ * column statistics were collected.
+ */
+public class SelectivityEstimator {
+    public static final double DEFAULT_SELECTIVITY = 0.5;
+
+    private final StatementContext context;
+    // Column statistics of the column families of the table, keyed by column family
+    private final Map<ImmutableBytesPtr, Map<ImmutableBytesPtr, ColumnStatistics>> familyStats =
+            new HashMap<>();
+
+    public SelectivityEstimator(StatementContext context) {
+        this.context = context;
+    }
+
+    /**
+     * @return the estimated fraction of the rows passing the filter of a scan
+     */
+    public double estimate(Filter filter) {
+        if (filter instanceof BooleanExpressionFilter) {
+            return estimate(((BooleanExpressionFilter) filter).getExpression());
+        }
+        if (filter instanceof FilterList
+                && ((FilterList) filter).getOperator() == FilterList.Operator.MUST_PASS_ALL) {
+            double selectivity = 1.0;
+            for (Filter f : ((FilterList) filter).getFilters()) {
+                selectivity *= estimate(f);
+            }
+            return selectivity;
+        }
+        return DEFAULT_SELECTIVITY;
+    }
+
+    /**
+     * @return the estimated fraction of the rows for which the expression is true
+     */
+    public double estimate(Expression expression) {
+        if (expression instanceof AndExpression) {
+            double selectivity = 1.0;
+            for (Expression child : expression.getChildren()) {
+                selectivity *= estimate(child);
+            }
+            return selectivity;
+        }
+        if (expression instanceof OrExpression) {
+            double selectivity = 0.0;
+            for (Expression child : expression.getChildren()) {
+                double childSelectivity = estimate(child);
+                selectivity = selectivity + childSelectivity - selectivity * childSelectivity;
+            }
+            return selectivity;
+        }
+        if (expression instanceof NotExpression) {
+            return 1.0 - estimate(expression.getChildren().get(0));
+        }
+        if (expression instanceof IsNullExpression) {
+            ColumnStatistics stats = getColumnStatistics(expression.getChildren().get(0));
+            if (stats == null) {
+                return DEFAULT_SELECTIVITY;
+            }
+            double nullFraction = stats.getNullFraction();
+            return ((IsNullExpression) expression).isNegate() ? 1.0 - nullFraction : nullFraction;
+        }
+        if (expression instanceof InListExpression) {
+            InListExpression inList = (InListExpression) expression;
+            ColumnStatistics stats = getColumnStatistics(inList.getChild());
+            if (stats == null || inList.getKeyExpressions() == null) {
+                return DEFAULT_SELECTIVITY;
+            }
+            return Math.min(1.0, inList.getKeyExpressions().size() * getEqualSelectivity(stats));
+        }
+        if (expression instanceof ComparisonExpression) {
+            return estimateComparison((ComparisonExpression) expression);
+        }
+        return DEFAULT_SELECTIVITY;
+    }
+
+    private double estimateComparison(ComparisonExpression comparison) {
+        List<Expression> children = comparison.getChildren();
+        Expression column = children.get(0);
+        Expression constant = children.get(1);
+        CompareOp op = comparison.getFilterOp();
+        if (column instanceof LiteralExpression) {
+            column = children.get(1);
+            constant = children.get(0);
+            // Swapping the operands mirrors the operator the way a descending sort order does
+            op = SortOrder.DESC.transform(op);
+        }
+        ColumnStatistics stats = getColumnStatistics(column);
+        if (stats == null || !(constant instanceof LiteralExpression)) {
+            return DEFAULT_SELECTIVITY;
+        }
+        double nonNullFraction = 1.0 - stats.getNullFraction();
+        switch (op) {
+        case EQUAL:
+            return getEqualSelectivity(stats);
+        case NOT_EQUAL:
+            return Math.max(0.0, nonNullFraction - getEqualSelectivity(stats));
+        case LESS:
+        case LESS_OR_EQUAL:
+        case GREATER:
+        case GREATER_OR_EQUAL:
+            LiteralExpression literal = (LiteralExpression) constant;
+            // The histogram bounds are the bytes of the column values, so they can only be
+            // compared with constants of the same type that are serialized the same way
+            if (literal.getBytes() == null || literal.getDataType() != column.getDataType()
+                    || literal.getSortOrder() != SortOrder.ASC
+                    || !column.getDataType().isBytesComparableWith(literal.getDataType())) {
+                return DEFAULT_SELECTIVITY;
+            }
+            Double fractionBelow = getFractionBelow(stats.getHistogramBuckets(), literal.getBytes());
+            if (fractionBelow == null) {
+                return DEFAULT_SELECTIVITY;
+            }
+            boolean isLess = op == CompareOp.LESS || op == CompareOp.LESS_OR_EQUAL;
+            return nonNullFraction * (isLess ? fractionBelow : 1.0 - fractionBelow);
+        default:
+            return DEFAULT_SELECTIVITY;
+        }
+    }
+
+    private static double getEqualSelectivity(ColumnStatistics stats) {
+        long distinctCount = stats.getDistinctCount();
+        double nonNullFraction = 1.0 - stats.getNullFraction();
+        return distinctCount <= 0 ? 0.0 : nonNullFraction / distinctCount;
+    }
+
+    /**
+     * @return the estimated fraction of the values of the histogram that are below the given
+     * value, counting half of the values of the buckets it falls into, or null if the
+     * histogram is empty
+     */
+    static Double getFractionBelow(List<Bucket> buckets, byte[] value) {
+        double total = 0;
+        double below = 0;
+        for (Bucket bucket : buckets) {
+            long count = bucket.getCountEstimate();
+            total += count;
+            if (Bytes.compareTo(bucket.getRightBoundExclusive(), value) <= 0) {
+                below += count;
+            } else if (Bytes.compareTo(bucket.getLeftBoundInclusive(), value) < 0) {
+                below += count / 2.0;
+            }
+        }
+        return total == 0 ? null : below / total;
+    }
+
+    private ColumnStatistics getColumnStatistics(Expression expression) {
+        // Single cell columns share a cell, so they have no statistics of their own
+        if (!(expression instanceof KeyValueColumnExpression)
+                || expression instanceof SingleCellColumnExpression) {
+            return null;
+        }
+        KeyValueColumnExpression column = (KeyValueColumnExpression) expression;
+        return getColumnStatistics(column.getColumnFamily(), column.getColumnQualifier());
+    }
+
+    /**
+     * @return the statistics of the column of the table of the context, or null if they were
+     * not collected or not loaded
+     */
+    protected ColumnStatistics getColumnStatistics(byte[] family, byte[] qualifier) {
+        ImmutableBytesPtr familyPtr = new ImmutableBytesPtr(family);
+        Map<ImmutableBytesPtr, ColumnStatistics> columnStats = familyStats.get(familyPtr);
+        if (columnStats == null) {
+            if (context.getCurrentTable() == null) {
+                return null;
+            }
+            PTable table = context.getCurrentTable().getTable();
+            try {
+                GuidePostsInfo guidePostsInfo = context.getConnection().getQueryServices()
+                        .getTableStats(new GuidePostsKey(table.getPhysicalName().getBytes(), family));
+                columnStats = guidePostsInfo.getColumnStatistics();
+            } catch (SQLException e) {
+                // Estimates are best effort
+                columnStats = null;
+            }
+            if (columnStats == null) {
+                return null;
+            }
+            familyStats.put(familyPtr, columnStats);
+        }
+        return columnStats.get(new ImmutableBytesPtr(qualifier));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.visitor.ExpressionVisitor;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PBoolean;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.util.ByteUtil;
+
+import org.apache.phoenix.thirdparty.com.google.common.hash.BloomFilter;
+import org.apache.phoenix.thirdparty.com.google.common.hash.Funnel;
+import org.apache.phoenix.thirdparty.com.google.common.hash.PrimitiveSink;
+
+/**
+ * 
+ * Expression that tests whether the value of its child may be one of a set of keys, based
+ * on the min and max key and a bloom filter built over the keys. Used to push the join keys
+ * of the build side of a hash join down to the scan of the probe side, so that rows which
+ * cannot find a match are filtered out on the server before they reach the join. The
+ * expression may return true for a value that is not in the set, but never returns false
+ * for a value that is.
+ *
+ */
+public class BloomFilterExpression extends BaseSingleExpression {
+    private ImmutableBytesPtr minKey;
+    private ImmutableBytesPtr maxKey;
+    private BloomFilter<ImmutableBytesWritable> bloomFilter;
+
+    private enum BytesFunnel implements Funnel<ImmutableBytesWritable> {
+        INSTANCE;
+
+        @Override
+        public void funnel(ImmutableBytesWritable from, PrimitiveSink into) {
+            into.putBytes(from.get(), from.getOffset(), from.getLength());
+        }
+    }
+
+    /**
+     * Creates the expression testing the value of keyExpression against the given keys.
+     * @param keyExpression the probe side key expression
+     * @param keys the build side keys, encoded the same way as the value of keyExpression
+     * @param fpp the desired false positive probability of the bloom filter
+     * @return the expression, or a constant false if there are no keys
+     */
+    public static Expression create(Expression keyExpression, Collection<ImmutableBytesPtr> keys, double fpp) throws SQLException {
+        if (keys.isEmpty()) {
+            return LiteralExpression.newConstant(false, PBoolean.INSTANCE, Determinism.ALWAYS);
+        }
+        BloomFilter<ImmutableBytesWritable> bloomFilter = BloomFilter.create(BytesFunnel.INSTANCE, keys.size(), fpp);
+        ImmutableBytesPtr minKey = null;
+        ImmutableBytesPtr maxKey = null;
+        for (ImmutableBytesPtr key : keys) {
+            bloomFilter.put(key);
+            if (minKey == null || ByteUtil.BYTES_PTR_COMPARATOR.compare(key, minKey) < 0) {
+                minKey = key;
+            }
+            if (maxKey == null || ByteUtil.BYTES_PTR_COMPARATOR.compare(key, maxKey) > 0) {
+                maxKey = key;
+            }
+        }
+        return new BloomFilterExpression(keyExpression, minKey, maxKey, bloomFilter);
+    }
+
+    public BloomFilterExpression() {
+    }
+
+    private BloomFilterExpression(Expression keyExpression, ImmutableBytesPtr minKey,
+            ImmutableBytesPtr maxKey, BloomFilter<ImmutableBytesWritable> bloomFilter) {
+        super(keyExpression);
+        this.minKey = minKey;
+        this.maxKey = maxKey;
+        this.bloomFilter = bloomFilter;
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        if (!getChild().evaluate(tuple, ptr)) {
+            return false;
+        }
+        if (ptr.getLength() == 0) { // null never matches a join key
+            ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+            return true;
+        }
+        if (compare(ptr, minKey) < 0 || compare(ptr, maxKey) > 0 || !bloomFilter.mightContain(ptr)) {
+            ptr.set(PDataType.FALSE_BYTES);
+            return true;
+        }
+        ptr.set(PDataType.TRUE_BYTES);
+        return true;
+    }
+
+    private static int compare(ImmutableBytesWritable ptr, ImmutableBytesPtr key) {
+        return Bytes.compareTo(ptr.get(), ptr.getOffset(), ptr.getLength(), key.get(), key.getOffset(), key.getLength());
+    }
+
+    @Override
+    public PDataType getDataType() {
+        return PBoolean.INSTANCE;
+    }
+
+    @Override
+    public void readFields(DataInput input) throws IOException {
+        super.readFields(input);
+        minKey = new ImmutableBytesPtr(Bytes.readByteArray(input));
+        maxKey = new ImmutableBytesPtr(Bytes.readByteArray(input));
+        bloomFilter = BloomFilter.readFrom(new ByteArrayInputStream(Bytes.readByteArray(input)), BytesFunnel.INSTANCE);
+    }
+
+    @Override
+    public void write(DataOutput output) throws IOException {
+        super.write(output);
+        Bytes.writeByteArray(output, minKey.get(), minKey.getOffset(), minKey.getLength());
+        Bytes.writeByteArray(output, maxKey.get(), maxKey.getOffset(), maxKey.getLength());
+        ByteArrayOutputStream bloomFilterOut = new ByteArrayOutputStream();
+        bloomFilter.writeTo(bloomFilterOut);
+        Bytes.writeByteArray(output, bloomFilterOut.toByteArray());
+    }
+
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        // Do not pass through the child's result: this expression is not a key range on it
+        List<T> l = acceptChildren(visitor, null);
+        return visitor.defaultReturn(this, l);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + bloomFilter.hashCode();
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!super.equals(obj)) return false;
+        BloomFilterExpression other = (BloomFilterExpression)obj;
+        return minKey.equals(other.minKey) && maxKey.equals(other.maxKey) && bloomFilter.equals(other.bloomFilter);
+    }
+
+    @Override
+    public String toString() {
+        return "BLOOM_FILTER(" + getChild() + ")";
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.filter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.exceptions.DeserializationException;
+import org.apache.hadoop.hbase.filter.FilterBase;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Writables;
+import org.apache.hadoop.io.Writable;
+import org.apache.phoenix.util.CellVisibilityUtil;
+import org.apache.phoenix.util.PhoenixKeyValueUtil;
+
+/**
+ * Filter used by IndexTool verification to replace the raw cells of an index row with a single
+ * cell holding a digest of them. The digest covers the family, qualifier, timestamp and value
+ * of the latest version of each column that is not masked by a delete marker, so that the
+ * verifier can compare an index row against the expected index mutations without shipping the
+ * row to the data table region server. Older versions are left out as the raw scan may return
+ * versions that the expected mutations do not have. Rows whose digest does not match are then
+ * fetched and verified in full. As older versions are not covered, the verifier does not use
+ * digests when max lookback is enabled.
+ */
+public class IndexRowDigestFilter extends FilterBase implements Writable {
+    private static final byte VERSION = 1;
+    public static final byte[] DIGEST_FAMILY = Bytes.toBytes("_d");
+    public static final byte[] DIGEST_QUALIFIER = Bytes.toBytes("_d");
+
+    public IndexRowDigestFilter() {
+    }
+
+    @Override
+    public boolean hasFilterRow() {
+        return true;
+    }
+
+    @Override
+    public void filterRowCells(List<Cell> cells) throws IOException {
+        if (cells.isEmpty()) {
+            return;
+        }
+        Cell firstCell = cells.get(0);
+        byte[] digest = computeDigest(cells);
+        cells.clear();
+        cells.add(PhoenixKeyValueUtil.newKeyValue(firstCell.getRowArray(), firstCell.getRowOffset(),
+                firstCell.getRowLength(), DIGEST_FAMILY, DIGEST_QUALIFIER, firstCell.getTimestamp(),
+                digest, 0, digest.length));
+    }
+
+    /**
+     * Computes the digest of the latest visible version of the columns of the given cells which
+     * must be in the order they are returned by a raw scan (i.e., sorted by CellComparator).
+     */
+    public static byte[] computeDigest(List<Cell> cells) throws IOException {
+        MessageDigest md5;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        for (Cell cell : CellVisibilityUtil.getLatestVisibleCells(cells)) {
+            md5.update(cell.getFamilyArray(), cell.getFamilyOffset(), cell.getFamilyLength());
+            md5.update((byte) 0);
+            md5.update(cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength());
+            md5.update((byte) 0);
+            md5.update(Bytes.toBytes(cell.getTimestamp()));
+            md5.update(Bytes.toBytes(cell.getValueLength()));
+            md5.update(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+        }
+        return md5.digest();
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        in.readByte(); // ignore
+    }
+
+    @Override
+    public byte[] toByteArray() throws IOException {
+        return Writables.getBytes(this);
+    }
+
+    public static IndexRowDigestFilter parseFrom(final byte[] pbBytes)
+            throws DeserializationException {
+        try {
+            return (IndexRowDigestFilter) Writables.getWritable(pbBytes,
+                    new IndexRowDigestFilter());
+        } catch (IOException e) {
+            throw new DeserializationException(e);
+        }
+    }
+}
@@ -310,7 +310,7 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
 
         this.rowLockWaitDuration = env.getConfiguration().getInt("hbase.rowlock.wait.duration",
                 DEFAULT_ROWLOCK_WAIT_DURATION);
-          this.lockManager = new LockManager();
+          this.lockManager = LockManager.create(env.getConfiguration());
           this.concurrentMutationWaitDuration = env.getConfiguration().getInt("phoenix.index.concurrent.wait.duration.ms",
                   DEFAULT_CONCURRENT_MUTATION_WAIT_DURATION_IN_MS);
           // Metrics impl for the Indexer -- avoiding unnecessary indirection for hadoop-1/2 compat
@@ -456,9 +456,10 @@ public class IndexRegionObserver implements RegionObserver, RegionCoprocessor {
   }
 
   private void lockRows(BatchMutateContext context) throws IOException {
-      for (ImmutableBytesPtr rowKey : context.rowsToLock) {
-          context.rowLocks.add(lockManager.lockRow(rowKey, rowLockWaitDuration));
-      }
+      long start = System.nanoTime();
+      context.rowLocks.addAll(lockManager.lockRows(context.rowsToLock, rowLockWaitDuration));
+      metricSource.updateRowLockWaitTime(dataTableName,
+              TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
   }
 
     private void unlockRows(BatchMutateContext context) throws IOException {
@@ -19,12 +19,16 @@ package org.apache.phoenix.hbase.index;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.exceptions.TimeoutIOException;
 import org.apache.htrace.Trace;
 import org.apache.htrace.TraceScope;
@@ -42,6 +46,10 @@ import org.slf4j.LoggerFactory;
  */
 public class LockManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(LockManager.class);
+    // The number of lock stripes used by the StripedLockManager. When zero or less,
+    // a lock is allocated for each locked row instead.
+    public static final String ROW_LOCK_STRIPES_CONF_KEY = "phoenix.index.row.lock.stripes";
+    public static final int DEFAULT_ROW_LOCK_STRIPES = 0;
 
     private final ConcurrentHashMap<ImmutableBytesPtr, RowLockContext> lockedRows =
             new ConcurrentHashMap<ImmutableBytesPtr, RowLockContext>();
@@ -49,6 +57,17 @@ public class LockManager {
     public LockManager () {
     }
 
+    /**
+     * Creates the lock manager configured by {@link #ROW_LOCK_STRIPES_CONF_KEY}
+     * @param conf the region server configuration
+     * @return a {@link StripedLockManager} if lock striping is enabled and a
+     * {@link LockManager} otherwise
+     */
+    public static LockManager create(Configuration conf) {
+        int numStripes = conf.getInt(ROW_LOCK_STRIPES_CONF_KEY, DEFAULT_ROW_LOCK_STRIPES);
+        return numStripes > 0 ? new StripedLockManager(numStripes) : new LockManager();
+    }
+
     /**
      * Lock the row or throw otherwise
      * @param rowKey the row key
@@ -119,6 +138,32 @@ public class LockManager {
         return lockRow(rowKey, waitDuration);
     }
 
+    /**
+     * Lock all of the given rows or throw otherwise. If a lock cannot be acquired, the locks
+     * acquired so far are released before throwing.
+     * @param rowKeys the row keys
+     * @param waitDuration the time in milliseconds to wait for each lock
+     * @return the RowLocks used to eventually release the locks
+     * @throws IOException if a lock could not be acquired
+     */
+    public List<RowLock> lockRows(Collection<ImmutableBytesPtr> rowKeys, int waitDuration) throws IOException {
+        List<RowLock> rowLocks = new ArrayList<>(rowKeys.size());
+        boolean success = false;
+        try {
+            for (ImmutableBytesPtr rowKey : rowKeys) {
+                rowLocks.add(lockRow(rowKey, waitDuration));
+            }
+            success = true;
+            return rowLocks;
+        } finally {
+            if (!success) {
+                for (RowLock rowLock : rowLocks) {
+                    rowLock.release();
+                }
+            }
+        }
+    }
+
     /**
      * Unlock the row. We need this stateless way of unlocking because
      * we have no means of passing the RowLock instances between
@@ -79,6 +79,9 @@ public interface MetricsIndexerSource extends BaseSource {
   String POST_INDEX_UPDATE_FAILURE = "postIndexUpdateFailure";
   String POST_INDEX_UPDATE_FAILURE_DESC = "The number of failures of index updates post data updates";
 
+  String ROW_LOCK_WAIT_TIME = "rowLockWaitTime";
+  String ROW_LOCK_WAIT_TIME_DESC = "Histogram for the time in microseconds spent waiting for the row locks of a batch";
+
   /**
    * Updates the index preparation time histogram (preBatchMutate).
    * @param dataTableName  Physical data table name
@@ -210,4 +213,12 @@ public interface MetricsIndexerSource extends BaseSource {
    * @param dataTableName  Physical data table name
    */
   void incrementPostIndexUpdateFailures(String dataTableName);
+
+  /**
+   * Updates the row lock wait time histogram
+   *
+   * @param dataTableName  Physical data table name
+   * @param t time taken in microseconds
+   */
+  void updateRowLockWaitTime(String dataTableName, long t);
 }
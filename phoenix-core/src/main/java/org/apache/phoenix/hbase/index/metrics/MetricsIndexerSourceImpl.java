@@ -44,6 +44,7 @@ public class MetricsIndexerSourceImpl extends BaseSourceImpl implements MetricsI
     private final MetricHistogram postIndexUpdateTimeHisto;
     private final MetricHistogram preIndexUpdateFailureTimeHisto;
     private final MetricHistogram postIndexUpdateFailureTimeHisto;
+    private final MetricHistogram rowLockWaitTimeHisto;
     private final MutableFastCounter preIndexUpdateFailures;
     private final MutableFastCounter postIndexUpdateFailures;
 
@@ -82,6 +83,8 @@ public class MetricsIndexerSourceImpl extends BaseSourceImpl implements MetricsI
                 POST_INDEX_UPDATE_FAILURE, POST_INDEX_UPDATE_FAILURE_DESC, 0L);
         preIndexUpdateFailures = getMetricsRegistry().newCounter(
                 PRE_INDEX_UPDATE_FAILURE, PRE_INDEX_UPDATE_FAILURE_DESC, 0L);
+        rowLockWaitTimeHisto = getMetricsRegistry().newHistogram(
+                ROW_LOCK_WAIT_TIME, ROW_LOCK_WAIT_TIME_DESC);
     }
 
     @Override
@@ -204,6 +207,12 @@ public class MetricsIndexerSourceImpl extends BaseSourceImpl implements MetricsI
         postIndexUpdateFailures.incr();
     }
 
+    @Override
+    public void updateRowLockWaitTime(String dataTableName, long t) {
+        incrementTableSpecificHistogram(ROW_LOCK_WAIT_TIME, dataTableName, t);
+        rowLockWaitTimeHisto.add(t);
+    }
+
     private void incrementTableSpecificCounter(String baseCounterName, String tableName) {
         MutableFastCounter indexSpecificCounter =
             getMetricsRegistry().getCounter(getCounterName(baseCounterName, tableName), 0);
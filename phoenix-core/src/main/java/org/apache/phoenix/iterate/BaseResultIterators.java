@@ -597,6 +597,11 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
             return GuidePostsInfo.NO_GUIDEPOST;
         }
 
+        GuidePostsKey key = new GuidePostsKey(physicalTableName, getGuidePostsColumnFamily());
+        return context.getConnection().getQueryServices().getTableStats(key);
+    }
+
+    private byte[] getGuidePostsColumnFamily() {
         TreeSet<byte[]> whereConditions = new TreeSet<byte[]>(Bytes.BYTES_COMPARATOR);
         for(Pair<byte[], byte[]> where : context.getWhereConditionColumns()) {
             byte[] cf = where.getFirst();
@@ -622,8 +627,25 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
         if (cf == null) {
             cf = defaultCF;
         }
-        GuidePostsKey key = new GuidePostsKey(physicalTableName, cf);
-        return context.getConnection().getQueryServices().getTableStats(key);
+        return cf;
+    }
+
+    /**
+     * @return the pruner of the chunks of the parallel scans based on the zone maps of the
+     * guideposts, or null if zone maps are not used for this scan. Zone maps are only used for
+     * immutable tables, and region servers only skip a chunk if its region has not been written
+     * to since the statistics scan that built its zone map.
+     */
+    private ZoneMapPruner getZoneMapPruner(GuidePostsInfo gps, boolean isLocalIndex) {
+        PTable table = getTable();
+        if (!useStatsForParallelization || isLocalIndex || !gps.hasZoneMaps()
+                || !table.isImmutableRows()
+                || !context.getConnection().getQueryServices().getProps().getBoolean(
+                        QueryServices.STATS_ZONE_MAP_PRUNING_ENABLED_ATTRIB,
+                        QueryServicesOptions.DEFAULT_STATS_ZONE_MAP_PRUNING_ENABLED)) {
+            return null;
+        }
+        return ZoneMapPruner.create(scan.getFilter(), getGuidePostsColumnFamily());
     }
 
     private static void updateEstimates(GuidePostsInfo gps, int guideIndex, GuidePostEstimate estimate) {
@@ -995,6 +1017,7 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
         // we cannot definitively say at what time the guideposts
         // were collected.
         boolean gpsAvailableForAllRegions = true;
+        ZoneMapPruner zoneMapPruner = getZoneMapPruner(gps, isLocalIndex);
         try {
             boolean delayAddingEst = false;
             ImmutableBytesWritable firstRegionStartKey = null;
@@ -1077,6 +1100,14 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
                 while (intersectWithGuidePosts && (endKey.length == 0 || (gpsComparedToEndKey=currentGuidePost.compareTo(endKey)) <= 0)) {
                     Scan newScan = scanRanges.intersectScan(scan, currentKeyBytes, currentGuidePostBytes, keyOffset,
                         false);
+                    // If the zone map of its guidepost shows no row can match, let the region
+                    // server skip the chunk unless the region was written to since the stats
+                    // were collected. Region servers report the chunks they actually skip.
+                    if (newScan != null && zoneMapPruner != null
+                            && zoneMapPruner.canSkip(gps.getZoneMap(guideIndex), currentKeyBytes)) {
+                        newScan.setAttribute(BaseScannerRegionObserver.ZONE_MAP_READ_POINT,
+                                Bytes.toBytes(gps.getZoneMap(guideIndex).getReadPoint()));
+                    }
                     if (newScan != null) {
                         ScanUtil.setLocalIndexAttributes(newScan, keyOffset,
                             regionInfo.getStartKey(), regionInfo.getEndKey(),
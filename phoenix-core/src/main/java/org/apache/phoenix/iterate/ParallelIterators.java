@@ -24,10 +24,14 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.cache.ServerCacheClient.ServerCache;
 import org.apache.phoenix.compile.QueryPlan;
@@ -36,9 +40,12 @@ import org.apache.phoenix.job.JobManager.JobCallable;
 import org.apache.phoenix.monitoring.ReadMetricQueue;
 import org.apache.phoenix.monitoring.ScanMetricsHolder;
 import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.trace.util.Tracing;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.LogUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
 import org.apache.phoenix.util.ScanUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -108,57 +115,233 @@ public class ParallelIterators extends BaseResultIterators {
         context.getOverallQueryMetrics().updateNumParallelScans(numScans);
         GLOBAL_NUM_PARALLEL_SCANS.update(numScans);
         final long renewLeaseThreshold = context.getConnection().getQueryServices().getRenewLeaseThresholdMilliSeconds();
+        ChunkSplitter splitter = isDynamicChunkSplittingPossible() ? new ChunkSplitter(executor,
+                allIterators, readMetrics, physicalTableName, renewLeaseThreshold, scanGrouper) : null;
         for (final ScanLocator scanLocation : scanLocations) {
             final Scan scan = scanLocation.getScan();
-            final ScanMetricsHolder scanMetricsHolder = ScanMetricsHolder.getInstance(readMetrics, physicalTableName,
-                scan, context.getConnection().getLogLevel());
-            final TaskExecutionMetricsHolder taskMetrics = new TaskExecutionMetricsHolder(readMetrics, physicalTableName);
-            final TableResultIterator tableResultItr =
-                    context.getConnection().getTableResultIteratorFactory().newIterator(
-                        mutationState, tableRef, scan, scanMetricsHolder, renewLeaseThreshold, plan,
-                        scanGrouper, caches);
-            context.getConnection().addIteratorForLeaseRenewal(tableResultItr);
-            Future<PeekingResultIterator> future = executor.submit(Tracing.wrap(new JobCallable<PeekingResultIterator>() {
-                
-                @Override
-                public PeekingResultIterator call() throws Exception {
-                    long startTime = EnvironmentEdgeManager.currentTimeMillis();
-                    if (LOGGER.isDebugEnabled()) {
-                        LOGGER.debug(LogUtil.addCustomAnnotations("Id: " + scanId + ", Time: " +
-                            (EnvironmentEdgeManager.currentTimeMillis() - startTime) +
-                            "ms, Scan: " + scan, ScanUtil.getCustomAnnotations(scan)));
-                    }
-                    PeekingResultIterator iterator = iteratorFactory.newIterator(context, tableResultItr, scan, physicalTableName, ParallelIterators.this.plan);
-                    if (initFirstScanOnly) {
-                        if ((!isReverse && scanLocation.isFirstScan()) || (isReverse && scanLocation.isLastScan())) {
-                            // Fill the scanner's cache. This helps reduce latency since we are parallelizing the I/O needed.
-                            iterator.peek();
-                        }
-                    } else {
+            boolean peek = !initFirstScanOnly || (!isReverse && scanLocation.isFirstScan()) || (isReverse && scanLocation.isLastScan());
+            Future<PeekingResultIterator> future = submitScan(executor, scan, peek, allIterators,
+                    readMetrics, physicalTableName, renewLeaseThreshold, scanGrouper, splitter);
+            // Add our future in the right place so that we can concatenate the
+            // results of the inner futures versus merge sorting across all of them.
+            nestedFutures.get(scanLocation.getOuterListIndex()).set(scanLocation.getInnerListIndex(), new Pair<Scan,Future<PeekingResultIterator>>(scan,future));
+        }
+    }
+
+    private Future<PeekingResultIterator> submitScan(ExecutorService executor, final Scan scan,
+            final boolean peek, final Queue<PeekingResultIterator> allIterators,
+            ReadMetricQueue readMetrics, final String physicalTableName, long renewLeaseThreshold,
+            ParallelScanGrouper scanGrouper, final ChunkSplitter splitter) throws SQLException {
+        final ScanMetricsHolder scanMetricsHolder = ScanMetricsHolder.getInstance(readMetrics, physicalTableName,
+            scan, context.getConnection().getLogLevel());
+        final TaskExecutionMetricsHolder taskMetrics = new TaskExecutionMetricsHolder(readMetrics, physicalTableName);
+        final TableResultIterator tableResultItr =
+                context.getConnection().getTableResultIteratorFactory().newIterator(
+                    mutationState, tableRef, scan, scanMetricsHolder, renewLeaseThreshold, plan,
+                    scanGrouper, caches);
+        context.getConnection().addIteratorForLeaseRenewal(tableResultItr);
+        final SplittableResultIterator splittableItr = splitter != null && isSplittable(scan)
+                ? new SplittableResultIterator(tableResultItr, scan.getStartRow(), scan.getStopRow(), splitter) : null;
+        if (splitter != null) {
+            splitter.taskQueued();
+        }
+        return executor.submit(Tracing.wrap(new JobCallable<PeekingResultIterator>() {
+
+            @Override
+            public PeekingResultIterator call() throws Exception {
+                long startTime = EnvironmentEdgeManager.currentTimeMillis();
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug(LogUtil.addCustomAnnotations("Id: " + scanId + ", Time: " +
+                        (EnvironmentEdgeManager.currentTimeMillis() - startTime) +
+                        "ms, Scan: " + scan, ScanUtil.getCustomAnnotations(scan)));
+                }
+                if (splitter != null) {
+                    splitter.taskStarted(splittableItr, scan);
+                }
+                try {
+                    PeekingResultIterator iterator = iteratorFactory.newIterator(context,
+                            splittableItr == null ? tableResultItr : splittableItr, scan, physicalTableName,
+                            ParallelIterators.this.plan);
+                    if (peek) {
+                        // Fill the scanner's cache. This helps reduce latency since we are parallelizing the I/O needed.
                         iterator.peek();
                     }
                     allIterators.add(iterator);
                     return iterator;
+                } finally {
+                    if (splitter != null) {
+                        splitter.taskDone();
+                    }
                 }
+            }
 
-                /**
-                 * Defines the grouping for round robin behavior.  All threads spawned to process
-                 * this scan will be grouped together and time sliced with other simultaneously
-                 * executing parallel scans.
-                 */
-                @Override
-                public Object getJobId() {
-                    return ParallelIterators.this;
-                }
+            /**
+             * Defines the grouping for round robin behavior.  All threads spawned to process
+             * this scan will be grouped together and time sliced with other simultaneously
+             * executing parallel scans.
+             */
+            @Override
+            public Object getJobId() {
+                return ParallelIterators.this;
+            }
+
+            @Override
+            public TaskExecutionMetricsHolder getTaskExecutionMetric() {
+                return taskMetrics;
+            }
+        }, "Parallel scanner for table: " + tableRef.getTable().getPhysicalName().getString()));
+    }
+
+    /**
+     * Chunked iterators scan the rest of a chunk with scans of their own, which would read past
+     * the key the chunk is split at.
+     */
+    @SuppressWarnings("deprecation")
+    private boolean isDynamicChunkSplittingPossible() {
+        return context.getConnection().getQueryServices().getProps().getBoolean(
+                    QueryServices.DYNAMIC_CHUNK_SPLITTING_ENABLED_ATTRIB,
+                    QueryServicesOptions.DEFAULT_DYNAMIC_CHUNK_SPLITTING_ENABLED)
+                && !(iteratorFactory instanceof ChunkedResultIterator.ChunkedResultIteratorFactory);
+    }
+
+    /**
+     * A chunk may only be split when the rows of its scan come back in row key order and the
+     * end of its key range is known.
+     */
+    private static boolean isSplittable(Scan scan) {
+        return ScanUtil.isSimpleScan(scan)
+                && !ScanUtil.isReversed(scan)
+                && !ScanUtil.isLocalIndex(scan)
+                && scan.getStopRow().length > 0;
+    }
 
-                @Override
-                public TaskExecutionMetricsHolder getTaskExecutionMetric() {
-                    return taskMetrics;
+    /**
+     * Lets the workers of a query that run out of queued scans take over the second half of
+     * the chunk with the most time left to scan, as estimated from how fast each chunk has been
+     * scanned so far. The part split off may itself be split again, so the work is spread based
+     * on the measured throughput of the chunks rather than on the guideposts they were cut at.
+     * <p>
+     * A chunk stays splittable until its scan is read up to its stop key or it is closed, which
+     * is usually long after its task is done, since the task only reads the first rows of the
+     * chunk and the rest is read by the thread consuming the results. Splits are therefore also
+     * looked for as the consumer reads rows, and the first rows of the part split off are read
+     * by an idle worker while the consumer reads the rest of the chunk.
+     */
+    private class ChunkSplitter implements SplittableResultIterator.ChunkListener {
+        private final ExecutorService executor;
+        private final Queue<PeekingResultIterator> allIterators;
+        private final ReadMetricQueue readMetrics;
+        private final String physicalTableName;
+        private final long renewLeaseThreshold;
+        private final ParallelScanGrouper scanGrouper;
+        private final long minRemainingMillis;
+        private final AtomicInteger remainingSplits;
+        private final AtomicInteger queuedTasks = new AtomicInteger();
+        // Time splits were last looked for while reading rows
+        private final AtomicLong lastSplitCheckTime = new AtomicLong();
+        // Chunks whose task started and that are not read up to their stop key, with their scans
+        private final Map<SplittableResultIterator, Scan> activeChunks =
+                new ConcurrentHashMap<SplittableResultIterator, Scan>();
+
+        ChunkSplitter(ExecutorService executor, Queue<PeekingResultIterator> allIterators,
+                ReadMetricQueue readMetrics, String physicalTableName, long renewLeaseThreshold,
+                ParallelScanGrouper scanGrouper) {
+            this.executor = executor;
+            this.allIterators = allIterators;
+            this.readMetrics = readMetrics;
+            this.physicalTableName = physicalTableName;
+            this.renewLeaseThreshold = renewLeaseThreshold;
+            this.scanGrouper = scanGrouper;
+            ReadOnlyProps props = context.getConnection().getQueryServices().getProps();
+            this.minRemainingMillis = props.getLong(
+                    QueryServices.DYNAMIC_CHUNK_SPLITTING_MIN_REMAINING_MS_ATTRIB,
+                    QueryServicesOptions.DEFAULT_DYNAMIC_CHUNK_SPLITTING_MIN_REMAINING_MS);
+            this.remainingSplits = new AtomicInteger(props.getInt(
+                    QueryServices.DYNAMIC_CHUNK_SPLITTING_MAX_SPLITS_ATTRIB,
+                    QueryServicesOptions.DEFAULT_DYNAMIC_CHUNK_SPLITTING_MAX_SPLITS));
+        }
+
+        void taskQueued() {
+            queuedTasks.incrementAndGet();
+        }
+
+        void taskStarted(SplittableResultIterator chunk, Scan scan) {
+            queuedTasks.decrementAndGet();
+            if (chunk != null) {
+                chunk.start();
+                activeChunks.put(chunk, scan);
+            }
+        }
+
+        void taskDone() {
+            // The worker running this task is free, so have it take over part of the slowest
+            // chunk unless there are still scans of this query waiting for a worker.
+            split(EnvironmentEdgeManager.currentTimeMillis());
+        }
+
+        @Override
+        public void rowRead(SplittableResultIterator chunk) {
+            // Splitting only pays off for chunks with at least minRemainingMillis left, so there
+            // is no need to look for chunks to split more often than that
+            long now = EnvironmentEdgeManager.currentTimeMillis();
+            long lastCheckTime = lastSplitCheckTime.get();
+            if (now - lastCheckTime >= minRemainingMillis
+                    && lastSplitCheckTime.compareAndSet(lastCheckTime, now)) {
+                split(now);
+            }
+        }
+
+        @Override
+        public void chunkDone(SplittableResultIterator chunk) {
+            activeChunks.remove(chunk);
+        }
+
+        private void split(long now) {
+            if (queuedTasks.get() > 0 || remainingSplits.get() <= 0) {
+                return;
+            }
+            SplittableResultIterator slowestChunk = null;
+            Scan slowestChunkScan = null;
+            long maxRemainingMillis = minRemainingMillis;
+            for (Map.Entry<SplittableResultIterator, Scan> activeChunk : activeChunks.entrySet()) {
+                long remainingMillis = activeChunk.getKey().getEstimatedRemainingMillis(now);
+                if (remainingMillis > maxRemainingMillis) {
+                    slowestChunk = activeChunk.getKey();
+                    slowestChunkScan = activeChunk.getValue();
+                    maxRemainingMillis = remainingMillis;
                 }
-            }, "Parallel scanner for table: " + tableRef.getTable().getPhysicalName().getString()));
-            // Add our future in the right place so that we can concatenate the
-            // results of the inner futures versus merge sorting across all of them.
-            nestedFutures.get(scanLocation.getOuterListIndex()).set(scanLocation.getInnerListIndex(), new Pair<Scan,Future<PeekingResultIterator>>(scan,future));
+            }
+            if (slowestChunk != null && remainingSplits.getAndDecrement() > 0) {
+                final Scan chunkScan = slowestChunkScan;
+                byte[] splitKey;
+                try {
+                    splitKey = slowestChunk.split(new SplittableResultIterator.TailSubmitter() {
+                        @Override
+                        public Future<PeekingResultIterator> submit(byte[] startKey, byte[] stopKey) throws SQLException {
+                            Scan tailScan = ScanUtil.newScan(chunkScan);
+                            tailScan.setStartRow(startKey);
+                            tailScan.setStopRow(stopKey);
+                            Future<PeekingResultIterator> future = submitScan(executor, tailScan, true,
+                                    allIterators, readMetrics, physicalTableName, renewLeaseThreshold,
+                                    scanGrouper, ChunkSplitter.this);
+                            context.getOverallQueryMetrics().updateNumParallelScans(1);
+                            GLOBAL_NUM_PARALLEL_SCANS.update(1);
+                            return future;
+                        }
+                    });
+                } catch (Exception e) {
+                    // The chunk is left as is and scanned by the worker already scanning it
+                    LOGGER.warn(LogUtil.addCustomAnnotations("Id: " + scanId + ", failed to split chunk "
+                            + slowestChunk, ScanUtil.getCustomAnnotations(chunkScan)), e);
+                    return;
+                }
+                if (splitKey != null && LOGGER.isDebugEnabled()) {
+                    LOGGER.debug(LogUtil.addCustomAnnotations("Id: " + scanId + ", split chunk "
+                            + slowestChunk + " with an estimated " + maxRemainingMillis
+                            + "ms left at " + Bytes.toStringBinary(splitKey),
+                            ScanUtil.getCustomAnnotations(chunkScan)));
+                }
+            }
         }
     }
 
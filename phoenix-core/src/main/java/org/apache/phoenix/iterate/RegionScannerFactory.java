@@ -44,6 +44,8 @@ import org.apache.phoenix.expression.KeyValueColumnExpression;
 import org.apache.phoenix.hbase.index.covered.update.ColumnReference;
 import org.apache.phoenix.index.IndexMaintainer;
 import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.KeyValueSchema;
 import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PColumnImpl;
@@ -55,13 +57,16 @@ import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.transaction.PhoenixTransactionContext;
 import org.apache.phoenix.util.EncodedColumnsUtil;
 import org.apache.phoenix.util.IndexUtil;
+import org.apache.phoenix.util.PhoenixKeyValueUtil;
 import org.apache.phoenix.util.ScanUtil;
 import org.apache.phoenix.util.ServerUtil;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Queue;
 import java.util.Set;
 
 public abstract class RegionScannerFactory {
@@ -118,6 +123,13 @@ public abstract class RegionScannerFactory {
       private RegionInfo regionInfo = env.getRegionInfo();
       private byte[] actualStartKey = getActualStartKey();
       private boolean useNewValueColumnQualifier = EncodedColumnsUtil.useNewValueColumnQualifier(scan);
+      // Local index rows whose uncovered columns have already been joined from the data table,
+      // along with their array element cells
+      private final Queue<Pair<List<Cell>, Cell>> joinedLocalIndexRows = new LinkedList<>();
+      private boolean hasMoreLocalIndexRows = true;
+      private final int localIndexJoinBatchSize = env.getConfiguration().getInt(
+          QueryServices.LOCAL_INDEX_DATA_JOIN_BATCH_SIZE_ATTRIB,
+          QueryServicesOptions.DEFAULT_LOCAL_INDEX_DATA_JOIN_BATCH_SIZE);
 
       // Get the actual scan start row of local index. This will be used to compare the row
       // key of the results less than scan start row when there are references.
@@ -169,6 +181,10 @@ public abstract class RegionScannerFactory {
       @Override
       public boolean nextRaw(List<Cell> result) throws IOException {
         try {
+          if (tupleProjector != null && localIndexJoinBatchSize > 1 && ScanUtil.isLocalIndex(scan)
+              && !ScanUtil.isAnalyzeTable(scan)) {
+            return nextRawWithBatchedLocalIndexJoin(result);
+          }
           boolean next = s.nextRaw(result);
           Cell arrayElementCell = null;
           if (result.size() == 0) {
@@ -193,22 +209,7 @@ public abstract class RegionScannerFactory {
             IndexUtil.wrapResultUsingOffset(env, result, offset, dataColumns,
                 tupleProjector, dataRegion, indexMaintainer, viewConstants, ptr);
           }
-          if (projector != null) {
-            Tuple toProject = useQualifierAsListIndex ? new PositionBasedResultTuple(result) :
-                    new ResultTuple(Result.create(result));
-
-            Pair<Tuple, byte[]> mergedTupleDynColsPair = getTupleWithDynColsIfRequired(result,
-                    projector.projectResults(toProject, useNewValueColumnQualifier));
-            Tuple tupleWithDynColsIfReqd = mergedTupleDynColsPair.getFirst();
-            byte[] serializedDynColsList = mergedTupleDynColsPair.getSecond();
-
-            result.clear();
-            result.add(tupleWithDynColsIfReqd.mergeWithDynColsListBytesAndGetValue(0,
-                    serializedDynColsList));
-            if (arrayElementCell != null) {
-              result.add(arrayElementCell);
-            }
-          }
+          projectResult(result, arrayElementCell);
           // There is a scanattribute set to retrieve the specific array element
           return next;
         } catch (Throwable t) {
@@ -217,6 +218,75 @@ public abstract class RegionScannerFactory {
         }
       }
 
+      /**
+       * For local index scans that need uncovered columns from the data table, read ahead a batch
+       * of index rows and join all of them with the data table at once, instead of issuing a get
+       * per index row. The joined rows are then returned one at a time.
+       */
+      private boolean nextRawWithBatchedLocalIndexJoin(List<Cell> result) throws IOException {
+        if (joinedLocalIndexRows.isEmpty()) {
+          List<List<Cell>> batch = new ArrayList<>(localIndexJoinBatchSize);
+          List<Cell> arrayElementCells = new ArrayList<>(localIndexJoinBatchSize);
+          while (hasMoreLocalIndexRows && batch.size() < localIndexJoinBatchSize) {
+            List<Cell> row = new ArrayList<>();
+            hasMoreLocalIndexRows = s.nextRaw(row);
+            if (row.isEmpty()) {
+              continue;
+            }
+            Cell arrayElementCell = null;
+            if (arrayFuncRefs != null && arrayFuncRefs.length > 0 && arrayKVRefs.size() > 0) {
+              int arrayElementCellPosition = replaceArrayIndexElement(arrayKVRefs, arrayFuncRefs, row);
+              arrayElementCell = row.get(arrayElementCellPosition);
+            }
+            if (actualStartKey != null) {
+              hasMoreLocalIndexRows = scanTillScanStartRow(s, arrayKVRefs, arrayFuncRefs, row,
+                  null, arrayElementCell);
+              if (row.isEmpty()) {
+                continue;
+              }
+            }
+            // The rows are held across calls, so they must not refer to the block cache buffers
+            List<Cell> copiedRow = new ArrayList<>(row.size());
+            for (Cell cell : row) {
+              copiedRow.add(PhoenixKeyValueUtil.maybeCopyCell(cell));
+            }
+            batch.add(copiedRow);
+            arrayElementCells.add(PhoenixKeyValueUtil.maybeCopyCell(arrayElementCell));
+          }
+          IndexUtil.wrapResultsUsingOffset(env, batch, offset, dataColumns,
+              tupleProjector, dataRegion, indexMaintainer, viewConstants, ptr);
+          for (int i = 0; i < batch.size(); i++) {
+            joinedLocalIndexRows.add(new Pair<>(batch.get(i), arrayElementCells.get(i)));
+          }
+        }
+        Pair<List<Cell>, Cell> joinedRow = joinedLocalIndexRows.poll();
+        if (joinedRow == null) {
+          return hasMoreLocalIndexRows;
+        }
+        result.addAll(joinedRow.getFirst());
+        projectResult(result, joinedRow.getSecond());
+        return hasMoreLocalIndexRows || !joinedLocalIndexRows.isEmpty();
+      }
+
+      private void projectResult(List<Cell> result, Cell arrayElementCell) throws IOException {
+        if (projector != null) {
+          Tuple toProject = useQualifierAsListIndex ? new PositionBasedResultTuple(result) :
+                  new ResultTuple(Result.create(result));
+
+          Pair<Tuple, byte[]> mergedTupleDynColsPair = getTupleWithDynColsIfRequired(result,
+                  projector.projectResults(toProject, useNewValueColumnQualifier));
+          Tuple tupleWithDynColsIfReqd = mergedTupleDynColsPair.getFirst();
+          byte[] serializedDynColsList = mergedTupleDynColsPair.getSecond();
+
+          result.clear();
+          result.add(tupleWithDynColsIfReqd.mergeWithDynColsListBytesAndGetValue(0,
+                  serializedDynColsList));
+          if (arrayElementCell != null) {
+            result.add(arrayElementCell);
+          }
+        }
+      }
+
       /**
        * Iterate over the list of cells returned from the scan and use the dynamic column metadata
        * to create a tuple projector for dynamic columns. Finally, merge this with the projected
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.phoenix.iterate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.PrivateCellUtil;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.snapshot.RestoreSnapshotHelper;
+import org.apache.hadoop.hbase.util.CommonFSUtils;
+import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HBase snapshot restored for scanning under a unique directory of the restore directory
+ * configured by {@link PhoenixConfigurationUtil#RESTORE_DIR_KEY}. Restoring only links the
+ * files of the snapshot, but it lists and writes the metadata of all of its regions, so a
+ * restored snapshot is shared by all the scans of a split. The restored snapshot is deleted
+ * when closed.
+ */
+public class RestoredSnapshot implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RestoredSnapshot.class);
+
+  private final FileSystem fs;
+  private final Path restoreDir;
+  private final TableDescriptor htd;
+  private final List<RegionInfo> regions;
+
+  public RestoredSnapshot(Configuration configuration) throws IOException {
+    String snapshotName = configuration.get(PhoenixConfigurationUtil.SNAPSHOT_NAME_KEY);
+    Path rootDir = CommonFSUtils.getRootDir(configuration);
+    this.fs = rootDir.getFileSystem(configuration);
+    this.restoreDir = new Path(configuration.get(PhoenixConfigurationUtil.RESTORE_DIR_KEY),
+        UUID.randomUUID().toString());
+    RestoreSnapshotHelper.RestoreMetaChanges meta =
+        RestoreSnapshotHelper.copySnapshotForScanner(configuration, fs, rootDir, restoreDir,
+            snapshotName);
+    this.htd = meta.getTableDescriptor();
+    List<RegionInfo> restoredRegions = meta.getRegionsToAdd();
+    this.regions = new ArrayList<RegionInfo>(restoredRegions.size());
+    for (RegionInfo restoredRegion : restoredRegions) {
+      // Exclude offline split parent regions
+      if (!restoredRegion.isOffline()
+          || !(restoredRegion.isSplit() || restoredRegion.isSplitParent())) {
+        this.regions.add(restoredRegion);
+      }
+    }
+    this.regions.sort(RegionInfo.COMPARATOR);
+    LOGGER.info("Restored snapshot " + snapshotName + " with " + regions.size()
+        + " regions to " + restoreDir);
+  }
+
+  public FileSystem getFileSystem() {
+    return fs;
+  }
+
+  public Path getRestoreDir() {
+    return restoreDir;
+  }
+
+  public TableDescriptor getTableDescriptor() {
+    return htd;
+  }
+
+  /**
+   * @return the regions of the snapshot that intersect with the boundaries of the scan, sorted
+   */
+  public List<RegionInfo> getRegions(Scan scan) {
+    List<RegionInfo> scanRegions = new ArrayList<RegionInfo>();
+    for (RegionInfo region : regions) {
+      if (PrivateCellUtil.overlappingKeys(scan.getStartRow(), scan.getStopRow(),
+          region.getStartKey(), region.getEndKey())) {
+        scanRegions.add(region);
+      }
+    }
+    return scanRegions;
+  }
+
+  @Override
+  public void close() throws IOException {
+    fs.delete(restoreDir, true);
+  }
+}
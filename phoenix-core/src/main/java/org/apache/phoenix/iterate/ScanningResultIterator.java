@@ -41,6 +41,7 @@ import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_HBASE_COU
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_HBASE_COUNT_SCANNED_REGIONS;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_SCAN_BYTES;
 import static org.apache.phoenix.util.ScanUtil.isDummy;
+import static org.apache.phoenix.util.ScanUtil.isZoneMapPruned;
 
 import java.io.IOException;
 import java.sql.SQLException;
@@ -154,7 +155,10 @@ public class ScanningResultIterator implements ResultIterator {
     public Tuple next() throws SQLException {
         try {
             Result result = scanner.next();
-            while (result != null && isDummy(result)) {
+            while (result != null && (isDummy(result) || isZoneMapPruned(result))) {
+                if (isZoneMapPruned(result)) {
+                    scanMetricsHolder.getCountOfPrunedChunks().increment();
+                }
                 result = scanner.next();
             }
             if (result == null) {
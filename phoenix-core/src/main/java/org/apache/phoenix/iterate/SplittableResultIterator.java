@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.sql.SQLException;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RunnableFuture;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.ScanUtil;
+import org.apache.phoenix.util.ServerUtil;
+
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+/**
+ * Iterates over the rows of a chunk of a forward, non aggregate scan while allowing the part of
+ * the chunk that has not been read yet to be split off and scanned by another worker. Once the
+ * rows of the chunk reach the key the chunk was split at, this iterator stops reading its own
+ * scan and continues with the rows of the scans that were split off, in row key order.
+ */
+public class SplittableResultIterator implements ResultIterator {
+
+    /**
+     * Submits the scan of the part of a chunk that is split off.
+     */
+    public interface TailSubmitter {
+        /**
+         * @param startKey the inclusive start key of the part split off
+         * @param stopKey the exclusive stop key of the part split off
+         * @return the future of the iterator over the rows of the part split off
+         */
+        Future<PeekingResultIterator> submit(byte[] startKey, byte[] stopKey) throws SQLException;
+    }
+
+    /**
+     * Is told about the progress of the chunk by the thread reading it.
+     */
+    public interface ChunkListener {
+        /**
+         * Called after a row of the chunk's own scan was returned, outside of any lock held by
+         * the chunk, so that the reader may split chunks as it goes
+         */
+        void rowRead(SplittableResultIterator chunk);
+
+        /**
+         * Called once the chunk can no longer be split, because its own scan was read up to the
+         * key it was split at or the chunk was closed
+         */
+        void chunkDone(SplittableResultIterator chunk);
+    }
+
+    private final ResultIterator delegate;
+    private final ChunkListener listener;
+    private final byte[] startKey;
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    // Iterators over the parts split off, in row key order. Guarded by this.
+    private final Deque<Future<PeekingResultIterator>> tails = Lists.newLinkedList();
+    // Exclusive stop key of the rows read from the delegate. Guarded by this.
+    private byte[] stopKey;
+    // Key of the last row returned from the delegate. Guarded by this.
+    private byte[] lastKey;
+    // Whether the delegate has been read up to the stop key. Guarded by this.
+    private boolean delegateDone;
+    private boolean closed;
+    private long startTime;
+    private PeekingResultIterator currentTail;
+
+    /**
+     * @param delegate iterator over the scan of the chunk
+     * @param startKey the inclusive start key of the chunk
+     * @param stopKey the exclusive stop key of the chunk, which must not be empty
+     */
+    public SplittableResultIterator(ResultIterator delegate, byte[] startKey, byte[] stopKey) {
+        this(delegate, startKey, stopKey, null);
+    }
+
+    /**
+     * @param delegate iterator over the scan of the chunk
+     * @param startKey the inclusive start key of the chunk
+     * @param stopKey the exclusive stop key of the chunk, which must not be empty
+     * @param listener listener told about the progress of the chunk, or null
+     */
+    public SplittableResultIterator(ResultIterator delegate, byte[] startKey, byte[] stopKey,
+            ChunkListener listener) {
+        this.delegate = delegate;
+        this.listener = listener;
+        this.startKey = startKey;
+        this.stopKey = stopKey;
+        this.startTime = EnvironmentEdgeManager.currentTimeMillis();
+    }
+
+    /**
+     * Restarts the clock used to estimate the time left to scan the chunk, for when the scan
+     * of the chunk starts once a worker picks it up.
+     */
+    public synchronized void start() {
+        startTime = EnvironmentEdgeManager.currentTimeMillis();
+    }
+
+    @Override
+    public Tuple next() throws SQLException {
+        while (true) {
+            if (currentTail != null) {
+                Tuple tuple = currentTail.next();
+                if (tuple != null) {
+                    return tuple;
+                }
+                currentTail.close();
+                currentTail = null;
+            }
+            boolean readDelegate;
+            synchronized (this) {
+                readDelegate = !delegateDone;
+            }
+            if (readDelegate) {
+                Tuple tuple = delegate.next();
+                boolean beforeStopKey = false;
+                synchronized (this) {
+                    if (tuple != null) {
+                        tuple.getKey(ptr);
+                        beforeStopKey = Bytes.compareTo(ptr.get(), ptr.getOffset(),
+                                ptr.getLength(), stopKey, 0, stopKey.length) < 0;
+                    }
+                    if (beforeStopKey) {
+                        lastKey = ByteUtil.copyKeyBytesIfNecessary(ptr);
+                    } else {
+                        // The rows from the stop key on are returned by the tails
+                        delegateDone = true;
+                    }
+                }
+                if (beforeStopKey) {
+                    if (listener != null) {
+                        listener.rowRead(this);
+                    }
+                    return tuple;
+                }
+                delegate.close();
+                if (listener != null) {
+                    listener.chunkDone(this);
+                }
+            }
+            Future<PeekingResultIterator> tail;
+            synchronized (this) {
+                tail = tails.poll();
+            }
+            if (tail == null) {
+                return null;
+            }
+            currentTail = getIterator(tail);
+        }
+    }
+
+    private static PeekingResultIterator getIterator(Future<PeekingResultIterator> future)
+            throws SQLException {
+        if (future instanceof RunnableFuture) {
+            // Scan the tail in this thread if no worker has picked it up yet, so that we never
+            // wait on work queued behind the workers that are themselves waiting on their tails.
+            ((RunnableFuture<PeekingResultIterator>) future).run();
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw ServerUtil.parseServerException(e);
+        } catch (ExecutionException e) {
+            throw ServerUtil.parseServerException(e.getCause());
+        }
+    }
+
+    /**
+     * Splits the part of the chunk that has not been read yet at the middle of its key range,
+     * and submits the scan of the upper half.
+     * @return the key the chunk was split at, or null if it could not be split
+     */
+    public synchronized byte[] split(TailSubmitter submitter) throws SQLException {
+        if (delegateDone || closed) {
+            return null;
+        }
+        byte[] lowerKey = lastKey == null ? startKey : lastKey;
+        byte[] splitKey = getSplitKey(lowerKey, stopKey);
+        if (splitKey == null) {
+            return null;
+        }
+        tails.addFirst(submitter.submit(splitKey, stopKey));
+        stopKey = splitKey;
+        return splitKey;
+    }
+
+    /**
+     * Estimates the time left to read the chunk up to its current stop key from the fraction of
+     * its key range read so far and the time it took to read it.
+     * @return the estimated number of milliseconds left, or -1 if the chunk cannot be split
+     */
+    public synchronized long getEstimatedRemainingMillis(long now) {
+        if (delegateDone || closed) {
+            return -1;
+        }
+        long elapsed = Math.max(0, now - startTime);
+        if (lastKey == null) {
+            // Nothing was returned yet, so assume there is at least as much left as was scanned
+            return elapsed;
+        }
+        double position = ScanUtil.getKeyPosition(startKey, stopKey, lastKey);
+        if (position <= 0) {
+            return elapsed;
+        }
+        return (long)(elapsed * (1 - position) / position);
+    }
+
+    /**
+     * @return a key strictly between the lower and upper keys, or null if there is none
+     */
+    @VisibleForTesting
+    static byte[] getSplitKey(byte[] lowerKey, byte[] upperKey) {
+        if (upperKey.length == 0 || Bytes.compareTo(lowerKey, upperKey) >= 0) {
+            return null;
+        }
+        byte[][] splits;
+        try {
+            splits = Bytes.split(lowerKey, upperKey, 1);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (splits == null || splits.length != 3) {
+            return null;
+        }
+        byte[] splitKey = splits[1];
+        if (Bytes.compareTo(splitKey, lowerKey) <= 0 || Bytes.compareTo(splitKey, upperKey) >= 0) {
+            return null;
+        }
+        return splitKey;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        List<Future<PeekingResultIterator>> tailsToClose;
+        boolean closeDelegate;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closeDelegate = !delegateDone;
+            delegateDone = true;
+            tailsToClose = Lists.newArrayList(tails);
+            tails.clear();
+        }
+        if (closeDelegate && listener != null) {
+            listener.chunkDone(this);
+        }
+        SQLException toThrow = null;
+        try {
+            if (closeDelegate) {
+                delegate.close();
+            }
+            if (currentTail != null) {
+                currentTail.close();
+            }
+        } catch (SQLException e) {
+            toThrow = e;
+        }
+        for (Future<PeekingResultIterator> tail : tailsToClose) {
+            // Don't interrupt tails already being scanned, just skip the ones still queued
+            if (!tail.cancel(false)) {
+                try {
+                    getIterator(tail).close();
+                } catch (SQLException e) {
+                    if (toThrow == null) {
+                        toThrow = e;
+                    } else {
+                        toThrow.setNextException(e);
+                    }
+                }
+            }
+        }
+        if (toThrow != null) {
+            throw toThrow;
+        }
+    }
+
+    @Override
+    public void explain(List<String> planSteps) {
+        delegate.explain(planSteps);
+    }
+
+    @Override
+    public String toString() {
+        return "SplittableResultIterator [delegate=" + delegate + "]";
+    }
+}
@@ -19,22 +19,24 @@
 package org.apache.phoenix.iterate;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FileSystem;
-import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.hbase.PrivateCellUtil;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.AbstractClientScanner;
 import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
-import org.apache.hadoop.hbase.client.TableDescriptor;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
-import org.apache.hadoop.hbase.snapshot.RestoreSnapshotHelper;
-import org.apache.hadoop.hbase.util.CommonFSUtils;
-import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
+import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
 import org.apache.phoenix.monitoring.ScanMetricsHolder;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.ServerUtil;
@@ -45,76 +47,76 @@ import org.slf4j.LoggerFactory;
  * Iterator to scan over an HBase snapshot based on input HBase Scan object.
  * This iterator is generated by Phoenix during the query plan scan generation,
  * hence it will include scan attributes and custom filters.
- * Restores HBase snapshot and determines the valid regions that intersect
- * with the input Scan boundaries. Launches SnapshotScanner for each of them.
- * Deletes the restored snapshot when iterator is closed.
+ * Determines the valid regions of the restored snapshot that intersect
+ * with the input Scan boundaries and launches SnapshotScanner for each of them,
+ * one after the other, or ahead of time on an executor when one is given, in which case
+ * the rows of each region are buffered in a bounded queue until they are read.
+ * Deletes the restored snapshot when iterator is closed if it restored it.
  */
 public class TableSnapshotResultIterator implements ResultIterator {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(TableSnapshotResultIterator.class);
 
+  // Maximum number of rows read ahead for a region scanned on an executor
+  private static final int REGION_QUEUE_SIZE = 1024;
+  private static final Result END_OF_REGION = Result.create(new Cell[0]);
+
   private final Scan scan;
   private ResultIterator scanIterator;
   private Configuration configuration;
   private final ScanMetricsHolder scanMetricsHolder;
   private Tuple lastTuple = null;
   private static final ResultIterator UNINITIALIZED_SCANNER = ResultIterator.EMPTY_ITERATOR;
-  private List<RegionInfo> regions;
-  private TableDescriptor htd;
-  private String snapshotName;
+  private final RestoredSnapshot snapshot;
+  private final boolean ownsSnapshot;
+  private final List<RegionInfo> regions;
+  private final List<RegionReader> regionReaders;
 
-  private Path restoreDir;
-  private Path rootDir;
-  private FileSystem fs;
   private int currentRegion;
   private boolean closed = false;
 
   public TableSnapshotResultIterator(Configuration configuration, Scan scan, ScanMetricsHolder scanMetricsHolder)
       throws IOException {
+    this(configuration, scan, scanMetricsHolder, new RestoredSnapshot(configuration), true, null);
+  }
+
+  /**
+   * Creates an iterator over a snapshot restored by the caller, which stays responsible for
+   * closing it.
+   * @param executor executor to scan the regions on ahead of time, or null to scan them one
+   *                 after the other as they are read. The regions are submitted in order when
+   *                 the iterator is created, so iterators sharing an executor must be read in
+   *                 the order they are created.
+   */
+  public TableSnapshotResultIterator(Configuration configuration, Scan scan,
+      ScanMetricsHolder scanMetricsHolder, RestoredSnapshot snapshot, ExecutorService executor) {
+    this(configuration, scan, scanMetricsHolder, snapshot, false, executor);
+  }
+
+  private TableSnapshotResultIterator(Configuration configuration, Scan scan,
+      ScanMetricsHolder scanMetricsHolder, RestoredSnapshot snapshot, boolean ownsSnapshot,
+      ExecutorService executor) {
     this.configuration = configuration;
     this.currentRegion = -1;
     this.scan = scan;
     this.scanMetricsHolder = scanMetricsHolder;
     this.scanIterator = UNINITIALIZED_SCANNER;
-    this.restoreDir = new Path(configuration.get(PhoenixConfigurationUtil.RESTORE_DIR_KEY),
-        UUID.randomUUID().toString());
-    this.snapshotName = configuration.get(
-        PhoenixConfigurationUtil.SNAPSHOT_NAME_KEY);
-    this.rootDir = CommonFSUtils.getRootDir(configuration);
-    this.fs = rootDir.getFileSystem(configuration);
-    init();
-  }
-
-  private void init() throws IOException {
-    RestoreSnapshotHelper.RestoreMetaChanges meta =
-        RestoreSnapshotHelper.copySnapshotForScanner(this.configuration, this.fs,
-            this.rootDir, this.restoreDir, this.snapshotName);
-    List<RegionInfo> restoredRegions = meta.getRegionsToAdd();
-    this.htd = meta.getTableDescriptor();
-    this.regions = new ArrayList<RegionInfo>(restoredRegions.size());
-
-    for (RegionInfo restoredRegion : restoredRegions) {
-      if (isValidRegion(restoredRegion)) {
-        this.regions.add(restoredRegion);
+    this.snapshot = snapshot;
+    this.ownsSnapshot = ownsSnapshot;
+    this.regions = snapshot.getRegions(scan);
+    if (executor == null) {
+      this.regionReaders = null;
+    } else {
+      this.regionReaders = new ArrayList<RegionReader>(regions.size());
+      for (RegionInfo region : regions) {
+        RegionReader regionReader = new RegionReader(region);
+        regionReaders.add(regionReader);
+        executor.submit(regionReader);
       }
     }
-
-    this.regions.sort(RegionInfo.COMPARATOR);
     LOGGER.info("Initialization complete with " + regions.size() + " valid regions");
   }
 
-  /**
-   * Exclude offline split parent regions and
-   * regions that don't intersect with provided scan
-   */
-  private boolean isValidRegion(RegionInfo hri) {
-    if (hri.isOffline() && (hri.isSplit() || hri.isSplitParent())) {
-      return false;
-    }
-    return PrivateCellUtil.overlappingKeys(scan.getStartRow(), scan.getStopRow(),
-            hri.getStartKey(), hri.getEndKey());
-  }
-
   public boolean initSnapshotScanner() throws SQLException {
     if (closed) {
       return true;
@@ -126,9 +128,10 @@ public class TableSnapshotResultIterator implements ResultIterator {
         return false;
       try {
         RegionInfo hri = regions.get(this.currentRegion);
-        this.scanIterator =
-            new ScanningResultIterator(new SnapshotScanner(configuration, fs, restoreDir, htd, hri, scan),
-                scan, scanMetricsHolder);
+        ResultScanner scanner = regionReaders != null ? regionReaders.get(this.currentRegion)
+            : new SnapshotScanner(configuration, snapshot.getFileSystem(),
+                snapshot.getRestoreDir(), snapshot.getTableDescriptor(), hri, scan);
+        this.scanIterator = new ScanningResultIterator(scanner, scan, scanMetricsHolder);
       } catch (Throwable e) {
         throw ServerUtil.parseServerException(e);
       }
@@ -161,8 +164,15 @@ public class TableSnapshotResultIterator implements ResultIterator {
   public void close() throws SQLException {
     closed = true; // ok to say closed even if the below code throws an exception
     try {
+      if (regionReaders != null) {
+        for (RegionReader regionReader : regionReaders) {
+          regionReader.close();
+        }
+      }
       scanIterator.close();
-      fs.delete(this.restoreDir, true);
+      if (ownsSnapshot) {
+        snapshot.close();
+      }
     } catch (IOException e) {
       throw ServerUtil.parseServerException(e);
     } finally {
@@ -175,4 +185,87 @@ public class TableSnapshotResultIterator implements ResultIterator {
     // noop
   }
 
+  /**
+   * Scans a region on an executor, buffering its rows until they are read through this scanner.
+   */
+  private class RegionReader extends AbstractClientScanner implements Runnable {
+    private final RegionInfo hri;
+    private final BlockingQueue<Result> queue = new ArrayBlockingQueue<Result>(REGION_QUEUE_SIZE);
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+    private boolean done;
+
+    RegionReader(RegionInfo hri) {
+      this.hri = hri;
+    }
+
+    @Override
+    public void run() {
+      if (cancelled) {
+        return;
+      }
+      SnapshotScanner scanner = null;
+      try {
+        // Phoenix filters keep state, so each region gets its own copy of the scan
+        Scan regionScan = ProtobufUtil.toScan(ProtobufUtil.toScan(scan));
+        scanner = new SnapshotScanner(configuration, snapshot.getFileSystem(),
+            snapshot.getRestoreDir(), snapshot.getTableDescriptor(), hri, regionScan);
+        Result result;
+        while (!cancelled && (result = scanner.next()) != null) {
+          enqueue(result);
+        }
+      } catch (Throwable t) {
+        error = t;
+      } finally {
+        if (scanner != null) {
+          scanner.close();
+        }
+        try {
+          enqueue(END_OF_REGION);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    private void enqueue(Result result) throws InterruptedException {
+      while (!cancelled && !queue.offer(result, 100, TimeUnit.MILLISECONDS)) {
+        // wait for the rows ahead to be read, unless the scan is closed in the meantime
+      }
+    }
+
+    @Override
+    public Result next() throws IOException {
+      if (done) {
+        return null;
+      }
+      Result result;
+      try {
+        result = queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while scanning snapshot region " + hri);
+      }
+      if (result == END_OF_REGION) {
+        done = true;
+        if (error != null) {
+          throw error instanceof IOException ? (IOException) error
+              : new IOException("Failed to scan snapshot region " + hri, error);
+        }
+        return null;
+      }
+      return result;
+    }
+
+    @Override
+    public void close() {
+      cancelled = true;
+      queue.clear();
+    }
+
+    @Override
+    public boolean renewLease() {
+      return false;
+    }
+  }
 }
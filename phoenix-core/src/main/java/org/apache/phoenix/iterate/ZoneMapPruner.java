@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.AndExpression;
+import org.apache.phoenix.expression.ComparisonExpression;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.filter.BooleanExpressionFilter;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.stats.ZoneMap;
+import org.apache.phoenix.schema.types.PBoolean;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDate;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PSmallint;
+import org.apache.phoenix.schema.types.PTime;
+import org.apache.phoenix.schema.types.PTinyint;
+import org.apache.phoenix.schema.types.PUnsignedDate;
+import org.apache.phoenix.schema.types.PUnsignedInt;
+import org.apache.phoenix.schema.types.PUnsignedLong;
+import org.apache.phoenix.schema.types.PUnsignedSmallint;
+import org.apache.phoenix.schema.types.PUnsignedTime;
+import org.apache.phoenix.schema.types.PUnsignedTinyint;
+import org.apache.phoenix.schema.types.PVarbinary;
+import org.apache.phoenix.schema.types.PVarchar;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.ImmutableSet;
+
+/**
+ * Decides whether the chunk of a parallel scan ending at a guidepost can be skipped, based on
+ * the {@link ZoneMap} of the guidepost. Only the comparisons of a column of the column family of
+ * the guideposts to a constant that are ANDed together in the filter of the scan are used, and
+ * only for types whose serialized values sort in the same order as the values.
+ */
+public class ZoneMapPruner {
+    private static final Set<PDataType> BYTE_ORDERED_TYPES = ImmutableSet.<PDataType> of(
+            PVarchar.INSTANCE, PVarbinary.INSTANCE, PBoolean.INSTANCE,
+            PLong.INSTANCE, PInteger.INSTANCE, PSmallint.INSTANCE, PTinyint.INSTANCE,
+            PUnsignedLong.INSTANCE, PUnsignedInt.INSTANCE, PUnsignedSmallint.INSTANCE,
+            PUnsignedTinyint.INSTANCE, PDate.INSTANCE, PTime.INSTANCE,
+            PUnsignedDate.INSTANCE, PUnsignedTime.INSTANCE);
+
+    private final List<ImmutableBytesPtr> qualifiers = new ArrayList<>();
+    private final List<CompareOp> ops = new ArrayList<>();
+    private final List<byte[]> values = new ArrayList<>();
+
+    private ZoneMapPruner() {
+    }
+
+    /**
+     * @return the pruner for the given scan filter and column family of the guideposts, or null
+     * if the filter has no comparison that zone maps can be used for
+     */
+    public static ZoneMapPruner create(Filter filter, byte[] columnFamily) {
+        ZoneMapPruner pruner = new ZoneMapPruner();
+        pruner.addComparisons(filter, columnFamily);
+        return pruner.qualifiers.isEmpty() ? null : pruner;
+    }
+
+    private void addComparisons(Filter filter, byte[] columnFamily) {
+        if (filter instanceof FilterList) {
+            FilterList filterList = (FilterList) filter;
+            if (filterList.getOperator() == FilterList.Operator.MUST_PASS_ALL) {
+                for (Filter f : filterList.getFilters()) {
+                    addComparisons(f, columnFamily);
+                }
+            }
+        } else if (filter instanceof BooleanExpressionFilter) {
+            addComparisons(((BooleanExpressionFilter) filter).getExpression(), columnFamily);
+        }
+    }
+
+    private void addComparisons(Expression expression, byte[] columnFamily) {
+        if (expression instanceof AndExpression) {
+            for (Expression child : expression.getChildren()) {
+                addComparisons(child, columnFamily);
+            }
+            return;
+        }
+        if (!(expression instanceof ComparisonExpression)) {
+            return;
+        }
+        CompareOp op = ((ComparisonExpression) expression).getFilterOp();
+        Expression lhs = expression.getChildren().get(0);
+        Expression rhs = expression.getChildren().get(1);
+        if (lhs instanceof LiteralExpression) {
+            Expression swap = lhs;
+            lhs = rhs;
+            rhs = swap;
+            op = invert(op);
+        }
+        // Columns packed into a single cell are not tracked by zone maps
+        if (lhs.getClass() != KeyValueColumnExpression.class || !(rhs instanceof LiteralExpression)) {
+            return;
+        }
+        KeyValueColumnExpression column = (KeyValueColumnExpression) lhs;
+        PDataType type = column.getDataType();
+        if (!Bytes.equals(column.getColumnFamily(), columnFamily)
+                || !BYTE_ORDERED_TYPES.contains(type) || rhs.getDataType() != type
+                || column.getSortOrder() != SortOrder.ASC || rhs.getSortOrder() != SortOrder.ASC) {
+            return;
+        }
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        if (!rhs.evaluate(null, ptr) || ptr.getLength() == 0) {
+            return;
+        }
+        qualifiers.add(new ImmutableBytesPtr(column.getColumnQualifier()));
+        ops.add(op);
+        values.add(ptr.copyBytes());
+    }
+
+    private static CompareOp invert(CompareOp op) {
+        switch (op) {
+        case LESS:
+            return CompareOp.GREATER;
+        case LESS_OR_EQUAL:
+            return CompareOp.GREATER_OR_EQUAL;
+        case GREATER:
+            return CompareOp.LESS;
+        case GREATER_OR_EQUAL:
+            return CompareOp.LESS_OR_EQUAL;
+        default:
+            return op;
+        }
+    }
+
+    /**
+     * @return true if no row of the chunk starting at the given key and ending at the guidepost
+     * of the zone map can satisfy the filter. Zone maps without the read point of the statistics
+     * scan that built them, such as those collected during compactions, are not used.
+     */
+    public boolean canSkip(ZoneMap zoneMap, byte[] chunkStartKey) {
+        if (zoneMap == null || zoneMap.getReadPoint() == ZoneMap.NO_READ_POINT
+                || !zoneMap.covers(chunkStartKey)) {
+            return false;
+        }
+        for (int i = 0; i < qualifiers.size(); i++) {
+            if (!zoneMap.mayMatch(qualifiers.get(i), ops.get(i), values.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
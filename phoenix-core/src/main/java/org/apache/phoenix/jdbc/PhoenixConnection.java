@@ -66,6 +66,7 @@ import org.apache.htrace.TraceScope;
 import org.apache.phoenix.call.CallRunner;
 import org.apache.phoenix.exception.SQLExceptionCode;
 import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.execute.BulkUpserter;
 import org.apache.phoenix.execute.CommitException;
 import org.apache.phoenix.execute.MutationState;
 import org.apache.phoenix.expression.function.FunctionArgumentType;
@@ -786,6 +787,19 @@ public class PhoenixConnection implements Connection, MetaDataMutated, SQLClosea
         mutationState.sendUncommitted();
     }
 
+    /**
+     * Creates an upserter writing rows of a table straight to the region servers, for sustained
+     * ingest of many rows. See {@link BulkUpserter}.
+     * @param tableName the full name of the table
+     * @param columnNames the names of the columns of the rows, optionally qualified by their
+     * column family
+     */
+    public BulkUpserter newBulkUpserter(String tableName, List<String> columnNames)
+            throws SQLException {
+        checkOpen();
+        return new BulkUpserter(this, tableName, columnNames);
+    }
+
     public void setTransactionContext(PhoenixTransactionContext txContext)
             throws SQLException {
         if (!this.services.getProps().getBoolean(
@@ -49,6 +49,8 @@ import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Consistency;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.cache.ResultCache;
+import org.apache.phoenix.cache.ResultCache.CachedResults;
 import org.apache.phoenix.call.CallRunner;
 import org.apache.phoenix.compile.BaseMutationPlan;
 import org.apache.phoenix.compile.CloseStatementCompiler;
@@ -98,6 +100,7 @@ import org.apache.phoenix.log.QueryLogInfo;
 import org.apache.phoenix.log.QueryLogger;
 import org.apache.phoenix.log.QueryLoggerUtil;
 import org.apache.phoenix.log.QueryStatus;
+import org.apache.phoenix.monitoring.MetricType;
 import org.apache.phoenix.optimize.Cost;
 import org.apache.phoenix.parse.AddColumnStatement;
 import org.apache.phoenix.parse.AddJarsStatement;
@@ -313,10 +316,35 @@ public class PhoenixStatement implements Statement, SQLCloseable {
                         // not the projected table, so plan.getContext().getResolver().getTables() won't work.
                         Iterator<TableRef> tableRefs = plan.getSourceRefs().iterator();
                         connection.getMutationState().sendUncommitted(tableRefs);
+                        ResultCache resultCache = conn.getQueryServices().getResultCache();
+                        String resultCacheKey = resultCache.getKey(PhoenixStatement.this, plan);
+                        CachedResults cachedResults = resultCacheKey == null ? null : resultCache.get(resultCacheKey);
+                        Set<TableRef> sourceRefs = plan.getSourceRefs();
+                        // Optimize even when the results are cached, so that the last query
+                        // plan of the statement is the one the results are for
                         plan = connection.getQueryServices().getOptimizer().optimize(PhoenixStatement.this, plan);
-                         // this will create its own trace internally, so we don't wrap this
-                         // whole thing in tracing
-                        ResultIterator resultIterator = plan.iterator();
+                        ResultIterator resultIterator;
+                        RowProjector projector;
+                        if (cachedResults != null) {
+                            resultIterator = new MaterializedResultIterator(cachedResults.getResults());
+                            projector = cachedResults.getProjector();
+                        } else {
+                             // this will create its own trace internally, so we don't wrap this
+                             // whole thing in tracing
+                            resultIterator = plan.iterator();
+                            projector = plan.getProjector();
+                            if (resultCacheKey != null) {
+                                resultIterator = resultCache.newCachingIterator(resultCacheKey, resultIterator, projector);
+                            }
+                        }
+                        if (resultCacheKey != null) {
+                            MetricType metricType = cachedResults == null
+                                    ? MetricType.RESULT_CACHE_MISSES : MetricType.RESULT_CACHE_HITS;
+                            for (TableRef tableRef : sourceRefs) {
+                                plan.getContext().getReadMetricsQueue().allotMetric(metricType,
+                                        tableRef.getTable().getName().getString()).change(1);
+                            }
+                        }
                         if (LOGGER.isDebugEnabled()) {
                             String explainPlan = QueryUtil.getExplainPlan(resultIterator);
                             LOGGER.debug(LogUtil.addCustomAnnotations(
@@ -329,7 +357,7 @@ public class PhoenixStatement implements Statement, SQLCloseable {
                             queryLogger.log(QueryLogInfo.GLOBAL_SCAN_DETAILS_I, context.getScan()!=null?context.getScan().toString():null);
                         }
                         context.getOverallQueryMetrics().startQuery();
-                        PhoenixResultSet rs = newResultSet(resultIterator, plan.getProjector(), plan.getContext());
+                        PhoenixResultSet rs = newResultSet(resultIterator, projector, plan.getContext());
                         resultSets.add(rs);
                         setLastQueryPlan(plan);
                         setLastResultSet(rs);
@@ -415,7 +443,17 @@ public class PhoenixStatement implements Statement, SQLCloseable {
                                 state.sendUncommitted(tableRefs);
                                 state.checkpointIfNeccessary(plan);
                                 checkIfDDLStatementandMutationState(stmt, state);
-                                MutationState lastState = plan.execute();
+                                MutationState lastState;
+                                try {
+                                    lastState = plan.execute();
+                                } finally {
+                                    // Mutations run on the server are not sent through the
+                                    // mutation state
+                                    if (plan.getTargetRef() != null && plan.getTargetRef().getTable() != null) {
+                                        conn.getQueryServices().getResultCache().invalidate(
+                                                plan.getTargetRef().getTable());
+                                    }
+                                }
                                 state.join(lastState);
                                 if (connection.getAutoCommit()) {
                                     connection.commit();
@@ -615,6 +653,13 @@ public class PhoenixStatement implements Statement, SQLCloseable {
             }
             final StatementPlan plan = compilePlan;
             List<String> planSteps = plan.getExplainPlan().getPlanSteps();
+            if (plan instanceof QueryPlan && stmt.getConnection().getQueryServices().getProps().getBoolean(
+                    QueryServices.COST_BASED_OPTIMIZER_ENABLED,
+                    QueryServicesOptions.DEFAULT_COST_BASED_OPTIMIZER_ENABLED)) {
+                // Show the estimated cost the cost-based optimizer used for choosing this plan
+                planSteps = Lists.newArrayList(planSteps);
+                planSteps.add("ESTIMATED COST " + ((QueryPlan) plan).getCost());
+            }
             List<Tuple> tuples = Lists.newArrayListWithExpectedSize(planSteps.size());
             Long estimatedBytesToScan = plan.getEstimatedBytesToScan();
             Long estimatedRowsToScan = plan.getEstimatedRowsToScan();
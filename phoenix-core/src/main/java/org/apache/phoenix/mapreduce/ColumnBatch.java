@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDate;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PFloat;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PSmallint;
+import org.apache.phoenix.schema.types.PTime;
+import org.apache.phoenix.schema.types.PTinyint;
+import org.apache.phoenix.schema.types.PUnsignedDate;
+import org.apache.phoenix.schema.types.PUnsignedDouble;
+import org.apache.phoenix.schema.types.PUnsignedFloat;
+import org.apache.phoenix.schema.types.PUnsignedInt;
+import org.apache.phoenix.schema.types.PUnsignedLong;
+import org.apache.phoenix.schema.types.PUnsignedSmallint;
+import org.apache.phoenix.schema.types.PUnsignedTime;
+import org.apache.phoenix.schema.types.PUnsignedTinyint;
+import org.apache.phoenix.util.ByteUtil;
+
+/**
+ * A batch of rows stored column by column. Integral, date and time values are stored as longs
+ * (milliseconds for dates and times), floating point values as doubles, and values of all other
+ * types as their serialized bytes in ascending sort order, which {@link PDataType#toObject(byte[])}
+ * turns back into objects. Null values are flagged in a null mask per column. The arrays of a
+ * batch are reused from one batch to the next, so only the first {@link #getSize()} entries of
+ * them are valid.
+ */
+public class ColumnBatch {
+
+    /**
+     * How the values of a column are stored.
+     */
+    public enum Kind {
+        LONG, DOUBLE, BYTES;
+
+        public static Kind of(PDataType type) {
+            if (type == PLong.INSTANCE || type == PInteger.INSTANCE || type == PSmallint.INSTANCE
+                    || type == PTinyint.INSTANCE || type == PUnsignedLong.INSTANCE
+                    || type == PUnsignedInt.INSTANCE || type == PUnsignedSmallint.INSTANCE
+                    || type == PUnsignedTinyint.INSTANCE || type == PDate.INSTANCE
+                    || type == PTime.INSTANCE || type == PUnsignedDate.INSTANCE
+                    || type == PUnsignedTime.INSTANCE) {
+                return LONG;
+            }
+            if (type == PDouble.INSTANCE || type == PFloat.INSTANCE
+                    || type == PUnsignedDouble.INSTANCE || type == PUnsignedFloat.INSTANCE) {
+                return DOUBLE;
+            }
+            return BYTES;
+        }
+    }
+
+    /**
+     * The values of a column of the batch.
+     */
+    public static class Column {
+        private final String name;
+        private final PDataType type;
+        private final Kind kind;
+        private final boolean[] nulls;
+        private long[] longs;
+        private double[] doubles;
+        private byte[][] bytes;
+
+        Column(String name, PDataType type, int capacity) {
+            this.name = name;
+            this.type = type;
+            this.kind = Kind.of(type);
+            this.nulls = new boolean[capacity];
+            switch (kind) {
+            case LONG:
+                longs = new long[capacity];
+                break;
+            case DOUBLE:
+                doubles = new double[capacity];
+                break;
+            default:
+                bytes = new byte[capacity][];
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public PDataType getType() {
+            return type;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the null mask of the column, true for the rows where the column is null
+         */
+        public boolean[] getNulls() {
+            return nulls;
+        }
+
+        public long[] getLongs() {
+            return longs;
+        }
+
+        public double[] getDoubles() {
+            return doubles;
+        }
+
+        public byte[][] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Sets the value of the column for a row from its serialized form.
+         * @param ptr the serialized value, empty for null
+         */
+        void set(int row, ImmutableBytesWritable ptr, SortOrder sortOrder) {
+            if (ptr.getLength() == 0) {
+                nulls[row] = true;
+                return;
+            }
+            nulls[row] = false;
+            switch (kind) {
+            case LONG:
+                longs[row] = type.getCodec().decodeLong(ptr, sortOrder);
+                break;
+            case DOUBLE:
+                doubles[row] = type.getCodec().decodeDouble(ptr, sortOrder);
+                break;
+            default:
+                byte[] value = ByteUtil.copyKeyBytesIfNecessary(ptr);
+                if (sortOrder == SortOrder.DESC) {
+                    value = SortOrder.invert(value, 0, value.length);
+                }
+                bytes[row] = value;
+            }
+        }
+    }
+
+    private final Column[] columns;
+    private int size;
+
+    ColumnBatch(String[] names, PDataType[] types, int capacity) {
+        this.columns = new Column[names.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Column(names[i], types[i], capacity);
+        }
+    }
+
+    public Column[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the number of rows of the batch
+     */
+    public int getSize() {
+        return size;
+    }
+
+    void setSize(int size) {
+        this.size = size;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+/**
+ * Reads the {@link ColumnBatch}es of the files written by {@link ColumnBatchOutputFormat}, one
+ * split per file.
+ */
+public class ColumnBatchInputFormat extends FileInputFormat<NullWritable, ColumnBatch> {
+
+    @Override
+    protected boolean isSplitable(JobContext context, Path filename) {
+        // The blocks of a file can only be found by reading the file from its start
+        return false;
+    }
+
+    @Override
+    public RecordReader<NullWritable, ColumnBatch> createRecordReader(InputSplit split,
+            TaskAttemptContext context) throws IOException, InterruptedException {
+        return new ColumnBatchRecordReader();
+    }
+
+    private static class ColumnBatchRecordReader extends RecordReader<NullWritable, ColumnBatch> {
+        private FSDataInputStream input;
+        private ColumnBatchReader reader;
+        private ColumnBatch batch;
+        private long length;
+
+        @Override
+        public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+            FileSplit fileSplit = (FileSplit) split;
+            Path path = fileSplit.getPath();
+            FileSystem fs = path.getFileSystem(context.getConfiguration());
+            this.length = fileSplit.getLength();
+            this.input = fs.open(path);
+            try {
+                this.reader = new ColumnBatchReader(input);
+            } catch (IOException e) {
+                input.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException {
+            batch = reader.next();
+            return batch != null;
+        }
+
+        @Override
+        public NullWritable getCurrentKey() {
+            return NullWritable.get();
+        }
+
+        @Override
+        public ColumnBatch getCurrentValue() {
+            return batch;
+        }
+
+        @Override
+        public float getProgress() throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            return Math.min(1, input.getPos() / (float) length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+/**
+ * Writes {@link ColumnBatch}es to columnar files, one per task. A file starts with a header:
+ * <ul>
+ * <li>the magic bytes {@code PHXC} and the format version as a vint</li>
+ * <li>the number of columns as a vint, then the name and SQL type name of each column as
+ * strings</li>
+ * </ul>
+ * followed by one block per batch:
+ * <ul>
+ * <li>the number of rows of the block as a vint, zero marking the end of the file</li>
+ * <li>for each column, its null mask as one bit per row, then its values: a long per row for
+ * {@link ColumnBatch.Kind#LONG} columns, a double per row for {@link ColumnBatch.Kind#DOUBLE}
+ * columns and the length as a vint followed by the serialized value for each non null value of
+ * {@link ColumnBatch.Kind#BYTES} columns</li>
+ * </ul>
+ * Values of the rows where a column is null are written as zero for fixed width columns. A file
+ * written by a task without rows has no columns. The files are read back by
+ * {@link ColumnBatchReader}, or by {@link ColumnBatchInputFormat} in a job.
+ */
+public class ColumnBatchOutputFormat extends FileOutputFormat<NullWritable, ColumnBatch> {
+
+    public static final byte[] MAGIC = Bytes.toBytes("PHXC");
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".phxc";
+
+    @Override
+    public RecordWriter<NullWritable, ColumnBatch> getRecordWriter(TaskAttemptContext context)
+            throws IOException, InterruptedException {
+        Path file = getDefaultWorkFile(context, EXTENSION);
+        FileSystem fs = file.getFileSystem(context.getConfiguration());
+        return new ColumnBatchRecordWriter(fs.create(file, false));
+    }
+
+    private static class ColumnBatchRecordWriter extends RecordWriter<NullWritable, ColumnBatch> {
+        private final DataOutputStream output;
+        private boolean headerWritten;
+
+        ColumnBatchRecordWriter(DataOutputStream output) {
+            this.output = output;
+        }
+
+        private void writeHeader(ColumnBatch batch) throws IOException {
+            output.write(MAGIC);
+            WritableUtils.writeVInt(output, VERSION);
+            ColumnBatch.Column[] columns = batch.getColumns();
+            WritableUtils.writeVInt(output, columns.length);
+            for (ColumnBatch.Column column : columns) {
+                WritableUtils.writeString(output, column.getName());
+                WritableUtils.writeString(output,
+                        column.getType() == null ? null : column.getType().getSqlTypeName());
+            }
+            headerWritten = true;
+        }
+
+        @Override
+        public void write(NullWritable key, ColumnBatch batch) throws IOException {
+            if (!headerWritten) {
+                writeHeader(batch);
+            }
+            int size = batch.getSize();
+            if (size == 0) {
+                return;
+            }
+            WritableUtils.writeVInt(output, size);
+            byte[] mask = new byte[(size + 7) / 8];
+            for (ColumnBatch.Column column : batch.getColumns()) {
+                boolean[] nulls = column.getNulls();
+                Arrays.fill(mask, (byte) 0);
+                for (int i = 0; i < size; i++) {
+                    if (nulls[i]) {
+                        mask[i >>> 3] |= 1 << (i & 7);
+                    }
+                }
+                output.write(mask);
+                switch (column.getKind()) {
+                case LONG:
+                    long[] longs = column.getLongs();
+                    for (int i = 0; i < size; i++) {
+                        output.writeLong(nulls[i] ? 0 : longs[i]);
+                    }
+                    break;
+                case DOUBLE:
+                    double[] doubles = column.getDoubles();
+                    for (int i = 0; i < size; i++) {
+                        output.writeDouble(nulls[i] ? 0 : doubles[i]);
+                    }
+                    break;
+                default:
+                    byte[][] bytes = column.getBytes();
+                    for (int i = 0; i < size; i++) {
+                        if (!nulls[i]) {
+                            WritableUtils.writeVInt(output, bytes[i].length);
+                            output.write(bytes[i]);
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) throws IOException {
+            try {
+                if (!headerWritten) {
+                    // No batch was written, so the columns are not known
+                    output.write(MAGIC);
+                    WritableUtils.writeVInt(output, VERSION);
+                    WritableUtils.writeVInt(output, 0);
+                }
+                WritableUtils.writeVInt(output, 0);
+            } finally {
+                output.close();
+            }
+        }
+    }
+}
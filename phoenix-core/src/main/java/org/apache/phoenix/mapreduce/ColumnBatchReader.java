@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.schema.types.PDataType;
+
+/**
+ * Reads back the {@link ColumnBatch}es of a file written by {@link ColumnBatchOutputFormat}.
+ * The values of {@link ColumnBatch.Kind#BYTES} columns are returned serialized in ascending
+ * sort order, whatever the sort order of the column they were read from.
+ */
+public class ColumnBatchReader implements Closeable {
+
+    private final DataInputStream input;
+    private final String[] names;
+    private final PDataType[] types;
+    private ColumnBatch batch;
+    private int capacity;
+    private boolean done;
+
+    /**
+     * Reads the header of the file.
+     */
+    public ColumnBatchReader(DataInputStream input) throws IOException {
+        this.input = input;
+        byte[] magic = new byte[ColumnBatchOutputFormat.MAGIC.length];
+        input.readFully(magic);
+        if (!Bytes.equals(magic, ColumnBatchOutputFormat.MAGIC)) {
+            throw new IOException("Not a column batch file: " + Bytes.toStringBinary(magic));
+        }
+        int version = WritableUtils.readVInt(input);
+        if (version != ColumnBatchOutputFormat.VERSION) {
+            throw new IOException("Unsupported column batch file version: " + version);
+        }
+        int columnCount = WritableUtils.readVInt(input);
+        this.names = new String[columnCount];
+        this.types = new PDataType[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            names[i] = WritableUtils.readString(input);
+            String typeName = WritableUtils.readString(input);
+            types[i] = typeName == null ? null : PDataType.fromSqlTypeName(typeName);
+        }
+    }
+
+    /**
+     * @return the names of the columns, empty for a file written by a task without rows
+     */
+    public String[] getColumnNames() {
+        return names.clone();
+    }
+
+    /**
+     * @return the types of the columns, null for a column whose type is not known
+     */
+    public PDataType[] getColumnTypes() {
+        return types.clone();
+    }
+
+    /**
+     * Reads the next block of the file. The batch returned is reused by the following calls.
+     * @return the batch of the rows of the block, or null at the end of the file
+     */
+    public ColumnBatch next() throws IOException {
+        if (done) {
+            return null;
+        }
+        int size = WritableUtils.readVInt(input);
+        if (size == 0) {
+            done = true;
+            return null;
+        }
+        if (batch == null || size > capacity) {
+            capacity = size;
+            batch = new ColumnBatch(names, types, capacity);
+        }
+        byte[] mask = new byte[(size + 7) / 8];
+        for (ColumnBatch.Column column : batch.getColumns()) {
+            input.readFully(mask);
+            boolean[] nulls = column.getNulls();
+            for (int i = 0; i < size; i++) {
+                nulls[i] = (mask[i >>> 3] & (1 << (i & 7))) != 0;
+            }
+            switch (column.getKind()) {
+            case LONG:
+                long[] longs = column.getLongs();
+                for (int i = 0; i < size; i++) {
+                    longs[i] = input.readLong();
+                }
+                break;
+            case DOUBLE:
+                double[] doubles = column.getDoubles();
+                for (int i = 0; i < size; i++) {
+                    doubles[i] = input.readDouble();
+                }
+                break;
+            default:
+                byte[][] bytes = column.getBytes();
+                Arrays.fill(bytes, null);
+                for (int i = 0; i < size; i++) {
+                    if (!nulls[i]) {
+                        bytes[i] = new byte[WritableUtils.readVInt(input)];
+                        input.readFully(bytes[i]);
+                    }
+                }
+            }
+        }
+        batch.setSize(size);
+        return batch;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce;
+
+import java.util.Map;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.mapreduce.TableMapReduceUtil;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.phoenix.jdbc.PhoenixDriver;
+import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
+import org.apache.phoenix.mapreduce.util.PhoenixMapReduceUtil;
+import org.apache.phoenix.util.SchemaUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exports a table, or the result of a query on it, to columnar files written by
+ * {@link ColumnBatchOutputFormat}. The rows are read in {@link ColumnBatch}es by a map only job,
+ * with one file per split of the table. The files can be read with {@link ColumnBatchInputFormat}.
+ */
+public class ColumnarExportTool extends Configured implements Tool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ColumnarExportTool.class);
+
+    static final Option ZK_QUORUM_OPT = new Option("z", "zookeeper", true, "Supply zookeeper connection details (optional)");
+    static final Option SCHEMA_NAME_OPT = new Option("s", "schema", true, "Phoenix schema name (optional)");
+    static final Option TABLE_NAME_OPT = new Option("t", "table", true, "Phoenix table name (mandatory)");
+    static final Option QUERY_OPT = new Option("q", "query", true, "Query on the table to export the result of, defaults to all the columns of the table");
+    static final Option OUTPUT_PATH_OPT = new Option("o", "output", true, "Output directory (mandatory)");
+    static final Option BATCH_SIZE_OPT = new Option("b", "batch-size", true, "Number of rows per column batch");
+    static final Option HELP_OPT = new Option("h", "help", false, "Show this help and quit");
+
+    protected Options getOptions() {
+        Options options = new Options();
+        options.addOption(TABLE_NAME_OPT);
+        options.addOption(OUTPUT_PATH_OPT);
+        options.addOption(ZK_QUORUM_OPT);
+        options.addOption(SCHEMA_NAME_OPT);
+        options.addOption(QUERY_OPT);
+        options.addOption(BATCH_SIZE_OPT);
+        options.addOption(HELP_OPT);
+        return options;
+    }
+
+    protected CommandLine parseOptions(String[] args) {
+        Options options = getOptions();
+        CommandLineParser parser = new DefaultParser();
+        CommandLine cmdLine = null;
+        try {
+            cmdLine = parser.parse(options, args);
+        } catch (ParseException e) {
+            printHelpAndExit("Error parsing command line options: " + e.getMessage(), options);
+        }
+        if (cmdLine.hasOption(HELP_OPT.getOpt())) {
+            printHelpAndExit(options, 0);
+        }
+        if (!cmdLine.hasOption(TABLE_NAME_OPT.getOpt())) {
+            throw new IllegalStateException(TABLE_NAME_OPT.getLongOpt() + " is a mandatory "
+                    + "parameter");
+        }
+        if (!cmdLine.hasOption(OUTPUT_PATH_OPT.getOpt())) {
+            throw new IllegalStateException(OUTPUT_PATH_OPT.getLongOpt() + " is a mandatory "
+                    + "parameter");
+        }
+        if (!cmdLine.getArgList().isEmpty()) {
+            throw new IllegalStateException("Got unexpected extra parameters: "
+                    + cmdLine.getArgList());
+        }
+        return cmdLine;
+    }
+
+    private void printHelpAndExit(String errorMessage, Options options) {
+        System.err.println(errorMessage);
+        printHelpAndExit(options, 1);
+    }
+
+    private void printHelpAndExit(Options options, int exitCode) {
+        HelpFormatter formatter = new HelpFormatter();
+        formatter.printHelp("help", options);
+        System.exit(exitCode);
+    }
+
+    @Override
+    public int run(String[] args) throws Exception {
+        Configuration conf = HBaseConfiguration.create(getConf());
+        CommandLine cmdLine = null;
+        try {
+            cmdLine = parseOptions(args);
+        } catch (IllegalStateException e) {
+            printHelpAndExit(e.getMessage(), getOptions());
+        }
+        if (cmdLine.hasOption(ZK_QUORUM_OPT.getOpt())) {
+            String zkQuorum = cmdLine.getOptionValue(ZK_QUORUM_OPT.getOpt());
+            PhoenixDriver.ConnectionInfo info = PhoenixDriver.ConnectionInfo.create(zkQuorum);
+            LOGGER.info("Configuring HBase connection to {}", info);
+            for (Map.Entry<String,String> entry : info.asProps()) {
+                conf.set(entry.getKey(), entry.getValue());
+            }
+        }
+        if (cmdLine.hasOption(BATCH_SIZE_OPT.getOpt())) {
+            PhoenixConfigurationUtil.setColumnBatchSize(conf,
+                    Integer.parseInt(cmdLine.getOptionValue(BATCH_SIZE_OPT.getOpt())));
+        }
+        String qualifiedTableName = SchemaUtil.getQualifiedTableName(
+                cmdLine.getOptionValue(SCHEMA_NAME_OPT.getOpt()),
+                cmdLine.getOptionValue(TABLE_NAME_OPT.getOpt()));
+        Path outputPath = new Path(cmdLine.getOptionValue(OUTPUT_PATH_OPT.getOpt()));
+
+        Job job = Job.getInstance(conf, "Phoenix columnar export for " + qualifiedTableName);
+        job.setJarByClass(ColumnarExportTool.class);
+        if (cmdLine.hasOption(QUERY_OPT.getOpt())) {
+            PhoenixMapReduceUtil.setInput(job, PhoenixRecordWritable.class,
+                    PhoenixColumnBatchInputFormat.class, qualifiedTableName,
+                    cmdLine.getOptionValue(QUERY_OPT.getOpt()));
+        } else {
+            PhoenixMapReduceUtil.setInput(job, PhoenixRecordWritable.class,
+                    PhoenixColumnBatchInputFormat.class, qualifiedTableName, null, new String[0]);
+        }
+        // The batches go straight from the record reader to the output format
+        job.setMapperClass(Mapper.class);
+        job.setNumReduceTasks(0);
+        job.setOutputFormatClass(ColumnBatchOutputFormat.class);
+        job.setOutputKeyClass(NullWritable.class);
+        job.setOutputValueClass(ColumnBatch.class);
+        FileOutputFormat.setOutputPath(job, outputPath);
+        TableMapReduceUtil.addDependencyJars(job);
+        TableMapReduceUtil.initCredentials(job);
+
+        LOGGER.info("Running columnar export of {} to {}", qualifiedTableName, outputPath);
+        return job.waitForCompletion(true) ? 0 : 1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int exitStatus = ToolRunner.run(new ColumnarExportTool(), args);
+        System.exit(exitStatus);
+    }
+}
@@ -40,6 +40,7 @@ import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.mapreduce.bulkload.TableRowkeyPair;
 import org.apache.phoenix.mapreduce.bulkload.TargetTableRefFunctions;
@@ -63,7 +64,6 @@ import org.apache.phoenix.thirdparty.com.google.common.base.Function;
 import org.apache.phoenix.thirdparty.com.google.common.base.Joiner;
 import org.apache.phoenix.thirdparty.com.google.common.base.Splitter;
 import org.apache.phoenix.thirdparty.com.google.common.base.Throwables;
-import org.apache.phoenix.thirdparty.com.google.common.collect.ImmutableList;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Iterables;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
 
@@ -95,6 +95,16 @@ public abstract class FormatToBytesWritableMapper<RECORD> extends Mapper<LongWri
     /** Configuration key for the table logical names */
     public static final String LOGICAL_NAMES_CONFKEY = "phoenix.mapreduce.import.logicalnames";
 
+    /**
+     * Configuration key for the number of records upserted together before their cells are
+     * written out. Upserting records in batches saves the cost of collecting the uncommitted
+     * cells and rolling back the connection for every record, but a row key occurring more than
+     * once within a batch is written out once, with the values of its last record.
+     */
+    public static final String BATCH_SIZE_CONFKEY = "phoenix.mapreduce.import.batchsize";
+
+    public static final int DEFAULT_BATCH_SIZE = 1;
+
     /**
      * Parses a single input line, returning a {@code T}.
      */
@@ -114,6 +124,18 @@ public abstract class FormatToBytesWritableMapper<RECORD> extends Mapper<LongWri
      */
     protected Map<byte[], Integer> columnIndexes;
 
+    // Index in tableNames of each table name, and index of each <family, name> pair in the
+    // aggregated rows, looked up without copying the bytes of the cells
+    private Map<ImmutableBytesPtr, Integer> tableIndexes;
+    private Map<ImmutableBytesPtr, Integer> cellIndexes;
+    private final ImmutableBytesPtr lookupPtr = new ImmutableBytesPtr();
+    private byte[] lookupBuffer = new byte[64];
+
+    private int batchSize;
+    private List<RECORD> records;
+    private final ByteArrayOutputStream rowBytes = new ByteArrayOutputStream(1024);
+    private final DataOutputStream rowOutput = new DataOutputStream(rowBytes);
+
     protected abstract UpsertExecutor<RECORD,?> buildUpsertExecutor(Configuration conf);
     protected abstract LineParser<RECORD> getLineParser();
 
@@ -139,6 +161,7 @@ public abstract class FormatToBytesWritableMapper<RECORD> extends Mapper<LongWri
             tableNames = TargetTableRefFunctions.NAMES_FROM_JSON.apply(tableNamesConf);
             logicalNames = TargetTableRefFunctions.NAMES_FROM_JSON.apply(logicalNamesConf);
 
+            initTableIndexes();
             initColumnIndexes();
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -148,6 +171,8 @@ public abstract class FormatToBytesWritableMapper<RECORD> extends Mapper<LongWri
                 context, conf.getBoolean(IGNORE_INVALID_ROW_CONFKEY, true));
         upsertExecutor = buildUpsertExecutor(conf);
         preUpdateProcessor = PhoenixConfigurationUtil.loadPreUpsertProcessor(conf);
+        batchSize = Math.max(1, conf.getInt(BATCH_SIZE_CONFKEY, DEFAULT_BATCH_SIZE));
+        records = Lists.newArrayListWithExpectedSize(batchSize);
     }
 
     @Override
@@ -169,41 +194,65 @@ public abstract class FormatToBytesWritableMapper<RECORD> extends Mapper<LongWri
                 context.getCounter(COUNTER_GROUP_NAME, "Empty records").increment(1L);
                 return;
             }
-            upsertExecutor.execute(ImmutableList.<RECORD>of(record));
-            Map<Integer, List<Cell>> map = new HashMap<>();
-            Iterator<Pair<byte[], List<Cell>>> uncommittedDataIterator
-                    = PhoenixRuntime.getUncommittedDataIterator(conn, true);
-            while (uncommittedDataIterator.hasNext()) {
-                Pair<byte[], List<Cell>> kvPair = uncommittedDataIterator.next();
-                List<Cell> keyValueList = kvPair.getSecond();
-                keyValueList = preUpdateProcessor.preUpsert(kvPair.getFirst(), keyValueList);
-                byte[] first = kvPair.getFirst();
-                // Create a list of KV for each table
-                for (int i = 0; i < tableNames.size(); i++) {
-                    if (Bytes.compareTo(Bytes.toBytes(tableNames.get(i)), first) == 0) {
-                        if (!map.containsKey(i)) {
-                            map.put(i, new ArrayList<Cell>());
-                        }
-                        List<Cell> list = map.get(i);
-                        for (Cell kv : keyValueList) {
-                            list.add(kv);
-                        }
-                        break;
-                    }
-                }
+            records.add(record);
+            if (records.size() >= batchSize) {
+                upsertRecords(context);
             }
-            for (Map.Entry<Integer, List<Cell>> rowEntry : map.entrySet()) {
-                int tableIndex = rowEntry.getKey();
-                List<Cell> lkv = rowEntry.getValue();
-                // All KV values combines to a single byte array
-                writeAggregatedRow(context, tableNames.get(tableIndex), lkv);
-            }
-            conn.rollback();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Upsert the buffered records and write out the cells they produce, including those of the
+     * indexes of the tables, before discarding them from the connection.
+     */
+    private void upsertRecords(Context context) throws SQLException, IOException,
+            InterruptedException {
+        if (records.isEmpty()) {
+            return;
+        }
+        upsertExecutor.execute(records);
+        records.clear();
+        Map<Integer, List<Cell>> map = new HashMap<>();
+        Iterator<Pair<byte[], List<Cell>>> uncommittedDataIterator
+                = PhoenixRuntime.getUncommittedDataIterator(conn, true);
+        while (uncommittedDataIterator.hasNext()) {
+            Pair<byte[], List<Cell>> kvPair = uncommittedDataIterator.next();
+            List<Cell> keyValueList = kvPair.getSecond();
+            keyValueList = preUpdateProcessor.preUpsert(kvPair.getFirst(), keyValueList);
+            byte[] first = kvPair.getFirst();
+            // Create a list of KV for each table
+            lookupPtr.set(first);
+            Integer tableIndex = tableIndexes.get(lookupPtr);
+            if (tableIndex != null) {
+                List<Cell> list = map.get(tableIndex);
+                if (list == null) {
+                    list = new ArrayList<Cell>(keyValueList.size());
+                    map.put(tableIndex, list);
+                }
+                list.addAll(keyValueList);
+            }
+        }
+        for (Map.Entry<Integer, List<Cell>> rowEntry : map.entrySet()) {
+            int tableIndex = rowEntry.getKey();
+            List<Cell> lkv = rowEntry.getValue();
+            // All KV values combines to a single byte array
+            writeAggregatedRow(context, tableNames.get(tableIndex), lkv);
+        }
+        conn.rollback();
+    }
+
+    private void initTableIndexes() {
+        tableIndexes = new HashMap<>();
+        for (int i = 0; i < tableNames.size(); i++) {
+            ImmutableBytesPtr tableName = new ImmutableBytesPtr(Bytes.toBytes(tableNames.get(i)));
+            if (!tableIndexes.containsKey(tableName)) {
+                tableIndexes.put(tableName, i);
+            }
+        }
+    }
+
     /*
     Map all unique pairs <family, name>  to index. Table name is part of TableRowkey, so we do
     not care about it
@@ -247,6 +296,10 @@ public abstract class FormatToBytesWritableMapper<RECORD> extends Mapper<LongWri
             columnIndexes.put(cfn, new Integer(columnIndex));
             columnIndex++;
         }
+        cellIndexes = new HashMap<>();
+        for (Map.Entry<byte[], Integer> entry : columnIndexes.entrySet()) {
+            cellIndexes.put(new ImmutableBytesPtr(entry.getKey()), entry.getValue());
+        }
     }
 
     /**
@@ -257,15 +310,21 @@ public abstract class FormatToBytesWritableMapper<RECORD> extends Mapper<LongWri
      * @return column index for the specified cell or -1 if was not found
      */
     private int findIndex(Cell cell) throws IOException {
-        byte[] familyName = Bytes.copy(cell.getFamilyArray(), cell.getFamilyOffset(),
-                cell.getFamilyLength());
-        byte[] cq = Bytes.copy(cell.getQualifierArray(), cell.getQualifierOffset(),
-                cell.getQualifierLength());
-        byte[] cfn = Bytes.add(familyName, QueryConstants.NAMESPACE_SEPARATOR_BYTES, cq);
-        if(columnIndexes.containsKey(cfn)) {
-            return columnIndexes.get(cfn);
+        int familyLength = cell.getFamilyLength();
+        int separatorLength = QueryConstants.NAMESPACE_SEPARATOR_BYTES.length;
+        int length = familyLength + separatorLength + cell.getQualifierLength();
+        if (lookupBuffer.length < length) {
+            lookupBuffer = new byte[Math.max(length, lookupBuffer.length * 2)];
         }
-        return -1;
+        System.arraycopy(cell.getFamilyArray(), cell.getFamilyOffset(), lookupBuffer, 0,
+                familyLength);
+        System.arraycopy(QueryConstants.NAMESPACE_SEPARATOR_BYTES, 0, lookupBuffer, familyLength,
+                separatorLength);
+        System.arraycopy(cell.getQualifierArray(), cell.getQualifierOffset(), lookupBuffer,
+                familyLength + separatorLength, cell.getQualifierLength());
+        lookupPtr.set(lookupBuffer, 0, length);
+        Integer index = cellIndexes.get(lookupPtr);
+        return index == null ? -1 : index;
     }
 
     /**
@@ -281,8 +340,9 @@ public abstract class FormatToBytesWritableMapper<RECORD> extends Mapper<LongWri
 
     private void writeAggregatedRow(Context context, String tableName, List<Cell> lkv)
             throws IOException, InterruptedException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
-        DataOutputStream outputStream = new DataOutputStream(bos);
+        ByteArrayOutputStream bos = rowBytes;
+        DataOutputStream outputStream = rowOutput;
+        bos.reset();
         ImmutableBytesWritable outputKey =null;
         if (!lkv.isEmpty()) {
             for (Cell cell : lkv) {
@@ -291,15 +351,14 @@ public abstract class FormatToBytesWritableMapper<RECORD> extends Mapper<LongWri
                                 .getRowLength()) != 0) {
                     // This a the first RowKey or a different from previous
                     if (outputKey != null) { //It's a different RowKey, so we need to write it
+                        outputStream.flush();
                         ImmutableBytesWritable aggregatedArray =
                                 new ImmutableBytesWritable(bos.toByteArray());
-                        outputStream.close();
                         context.write(new TableRowkeyPair(tableName, outputKey), aggregatedArray);
                     }
                     outputKey = new ImmutableBytesWritable(cell.getRowArray(), cell.getRowOffset()
                             , cell.getRowLength());
-                    bos = new ByteArrayOutputStream(1024);
-                    outputStream = new DataOutputStream(bos);
+                    bos.reset();
                 }
                 /*
                 The order of aggregation: type, index of column, length of value, value itself
@@ -318,14 +377,21 @@ public abstract class FormatToBytesWritableMapper<RECORD> extends Mapper<LongWri
                 outputStream.write(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
 
             }
+            outputStream.flush();
             ImmutableBytesWritable aggregatedArray = new ImmutableBytesWritable(bos.toByteArray());
-            outputStream.close();
             context.write(new TableRowkeyPair(tableName, outputKey), aggregatedArray);
         }
     }
 
     @Override
     protected void cleanup(Context context) throws IOException, InterruptedException {
+        try {
+            if (conn != null && records != null) {
+                upsertRecords(context);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
         try {
             if (conn != null) {
                 conn.close();
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.iterate.MapReduceParallelScanGrouper;
+
+/**
+ * {@link InputFormat} implementation from Phoenix that returns the rows of the input table or
+ * query in {@link ColumnBatch}es of {@link
+ * org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil#MAPREDUCE_COLUMN_BATCH_SIZE} rows.
+ * The input is configured and split as for {@link PhoenixInputFormat}.
+ */
+public class PhoenixColumnBatchInputFormat extends InputFormat<NullWritable, ColumnBatch> {
+
+    private final PhoenixInputFormat<PhoenixRecordWritable> inputFormat =
+            new PhoenixInputFormat<PhoenixRecordWritable>();
+
+    /**
+     * instantiated by framework
+     */
+    public PhoenixColumnBatchInputFormat() {
+    }
+
+    @Override
+    public RecordReader<NullWritable, ColumnBatch> createRecordReader(InputSplit split,
+            TaskAttemptContext context) throws IOException, InterruptedException {
+        final Configuration configuration = context.getConfiguration();
+        final QueryPlan queryPlan = inputFormat.getQueryPlan(context, configuration);
+        return new PhoenixColumnBatchRecordReader(configuration, queryPlan,
+                MapReduceParallelScanGrouper.getInstance());
+    }
+
+    @Override
+    public List<InputSplit> getSplits(JobContext context) throws IOException, InterruptedException {
+        return inputFormat.getSplits(context);
+    }
+}
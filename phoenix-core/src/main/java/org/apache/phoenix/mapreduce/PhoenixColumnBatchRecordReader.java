@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.phoenix.compile.ColumnProjector;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.iterate.ParallelScanGrouper;
+import org.apache.phoenix.iterate.ResultIterator;
+import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.ScanUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.phoenix.thirdparty.com.google.common.base.Preconditions;
+
+/**
+ * {@link RecordReader} implementation that returns the rows of a split in {@link ColumnBatch}es.
+ * The projected expressions are evaluated directly against the rows returned by the scans, and
+ * their values decoded into the arrays of the batch, without going through a result set or
+ * creating objects per row for the columns of primitive types. The progress is estimated from the
+ * position of the key of the last row read within the key range of the split.
+ */
+public class PhoenixColumnBatchRecordReader extends RecordReader<NullWritable, ColumnBatch> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PhoenixColumnBatchRecordReader.class);
+    // Stands for the end of the table when estimating the position of a key: eight 0xFF bytes
+    private static final byte[] MAX_KEY = Bytes.toBytes(-1L);
+    private final Configuration configuration;
+    private final QueryPlan queryPlan;
+    private final ParallelScanGrouper scanGrouper;
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    private ResultIterator resultIterator;
+    private Expression[] expressions;
+    private ColumnBatch batch;
+    private int batchSize;
+    private boolean done;
+    private byte[] lowerKey = ByteUtil.EMPTY_BYTE_ARRAY;
+    private byte[] upperKey = MAX_KEY;
+    private float progress;
+
+    PhoenixColumnBatchRecordReader(final Configuration configuration, final QueryPlan queryPlan,
+            final ParallelScanGrouper scanGrouper) {
+        Preconditions.checkNotNull(configuration);
+        Preconditions.checkNotNull(queryPlan);
+        Preconditions.checkNotNull(scanGrouper);
+        this.configuration = configuration;
+        this.queryPlan = queryPlan;
+        this.scanGrouper = scanGrouper;
+    }
+
+    @Override
+    public void initialize(InputSplit split, TaskAttemptContext context)
+            throws IOException, InterruptedException {
+        try {
+            this.resultIterator = PhoenixRecordReader.newResultIterator((PhoenixInputSplit) split,
+                    configuration, queryPlan, scanGrouper);
+        } catch (SQLException e) {
+            LOGGER.error(String.format(" Error [%s] initializing PhoenixColumnBatchRecordReader. ",
+                    e.getMessage()));
+            throw new IOException(e);
+        }
+        KeyRange keyRange = ((PhoenixInputSplit) split).getKeyRange();
+        this.lowerKey = keyRange.getLowerRange();
+        if (keyRange.getUpperRange().length > 0) {
+            this.upperKey = keyRange.getUpperRange();
+        }
+        // Clone the row projector as it's not thread safe
+        List<? extends ColumnProjector> projectors =
+                queryPlan.getProjector().cloneIfNecessary().getColumnProjectors();
+        String[] names = new String[projectors.size()];
+        PDataType[] types = new PDataType[projectors.size()];
+        this.expressions = new Expression[projectors.size()];
+        for (int i = 0; i < projectors.size(); i++) {
+            ColumnProjector projector = projectors.get(i);
+            names[i] = projector.getName();
+            expressions[i] = projector.getExpression();
+            types[i] = expressions[i].getDataType();
+        }
+        this.batchSize = PhoenixConfigurationUtil.getColumnBatchSize(configuration);
+        this.batch = new ColumnBatch(names, types, batchSize);
+    }
+
+    @Override
+    public boolean nextKeyValue() throws IOException, InterruptedException {
+        if (done) {
+            return false;
+        }
+        ColumnBatch.Column[] columns = batch.getColumns();
+        int size = 0;
+        Tuple lastTuple = null;
+        try {
+            Tuple tuple;
+            while (size < batchSize && (tuple = resultIterator.next()) != null) {
+                lastTuple = tuple;
+                for (int i = 0; i < expressions.length; i++) {
+                    if (!expressions[i].evaluate(tuple, ptr)) {
+                        ptr.set(ptr.get(), ptr.getOffset(), 0);
+                    }
+                    columns[i].set(size, ptr, expressions[i].getSortOrder());
+                }
+                size++;
+            }
+        } catch (SQLException e) {
+            LOGGER.error(String.format(" Error [%s] occurred while iterating over the rows. ",
+                    e.getMessage()));
+            throw new IOException(e);
+        }
+        done = size < batchSize;
+        batch.setSize(size);
+        if (done) {
+            progress = 1;
+        } else {
+            lastTuple.getKey(ptr);
+            // The rows of a query with an ORDER BY or GROUP BY are not in key order
+            progress = Math.max(progress, (float) ScanUtil.getKeyPosition(lowerKey,
+                    upperKey, ByteUtil.copyKeyBytesIfNecessary(ptr)));
+        }
+        return size > 0;
+    }
+
+    @Override
+    public NullWritable getCurrentKey() throws IOException, InterruptedException {
+        return NullWritable.get();
+    }
+
+    @Override
+    public ColumnBatch getCurrentValue() throws IOException, InterruptedException {
+        return batch;
+    }
+
+    @Override
+    public float getProgress() throws IOException, InterruptedException {
+        return progress;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (resultIterator != null) {
+            try {
+                resultIterator.close();
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+}
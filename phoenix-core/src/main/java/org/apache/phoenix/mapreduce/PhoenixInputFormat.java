@@ -17,6 +17,7 @@
  */
 package org.apache.phoenix.mapreduce;
 
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
 import org.apache.phoenix.thirdparty.com.google.common.base.Preconditions;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
 import org.apache.hadoop.conf.Configuration;
@@ -45,6 +46,7 @@ import org.apache.phoenix.query.HBaseFactoryProvider;
 import org.apache.phoenix.query.KeyRange;
 import org.apache.phoenix.schema.stats.StatisticsUtil;
 import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.ScanUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,6 +65,8 @@ import java.util.Properties;
 public class PhoenixInputFormat<T extends DBWritable> extends InputFormat<NullWritable,T> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PhoenixInputFormat.class);
+    // Maximum number of parts a scan is divided into
+    private static final int MAX_SCAN_PARTS = 64;
        
     /**
      * instantiated by framework
@@ -102,6 +106,9 @@ public class PhoenixInputFormat<T extends DBWritable> extends InputFormat<NullWr
                 .getAdmin());
 
         final List<InputSplit> psplits = Lists.newArrayListWithExpectedSize(splits.size());
+        // Generate splits based off statistics, or just region splits?
+        boolean splitByStats = PhoenixConfigurationUtil.getSplitByStats(config);
+        long splitTargetBytes = PhoenixConfigurationUtil.getSplitTargetBytes(config);
         for (List<Scan> scans : qplan.getScans()) {
             // Get the region location
             HRegionLocation location = regionLocator.getRegionLocation(
@@ -116,10 +123,10 @@ public class PhoenixInputFormat<T extends DBWritable> extends InputFormat<NullWr
                     location.getRegion().getRegionName()
             );
 
-            // Generate splits based off statistics, or just region splits?
-            boolean splitByStats = PhoenixConfigurationUtil.getSplitByStats(config);
-
-            if (splitByStats) {
+            if (splitByStats && splitTargetBytes > 0 && regionSize > 0) {
+                psplits.addAll(getBalancedSplits(scans, regionSize, regionLocation,
+                        splitTargetBytes));
+            } else if (splitByStats) {
                 for (Scan aScan : scans) {
                     if (LOGGER.isDebugEnabled()) {
                         LOGGER.debug("Split for  scan : " + aScan + "with scanAttribute : " + aScan
@@ -155,6 +162,81 @@ public class PhoenixInputFormat<T extends DBWritable> extends InputFormat<NullWr
     }
     }
     
+    /**
+     * Returns splits of about the target size for the scans of a region. The scans of a region are
+     * bounded by guideposts, which are about evenly spaced by size, so each scan is assumed to read
+     * an equal share of the region. Consecutive scans that are smaller than the target are
+     * combined into one split, while scans larger than the target are divided by key range when
+     * possible. All the splits are located on the server hosting the region.
+     */
+    @VisibleForTesting
+    static List<PhoenixInputSplit> getBalancedSplits(List<Scan> scans, long regionSize,
+            String regionLocation, long targetBytes) throws IOException {
+        long scanBytes = Math.max(1, regionSize / scans.size());
+        List<PhoenixInputSplit> psplits = Lists.newArrayList();
+        List<Scan> combinedScans = Lists.newArrayList();
+        long combinedBytes = 0;
+        for (Scan scan : scans) {
+            List<Scan> dividedScans = divideScan(scan, scanBytes / targetBytes);
+            if (dividedScans != null) {
+                if (!combinedScans.isEmpty()) {
+                    psplits.add(new PhoenixInputSplit(combinedScans, combinedBytes, regionLocation));
+                    combinedScans = Lists.newArrayList();
+                    combinedBytes = 0;
+                }
+                for (Scan dividedScan : dividedScans) {
+                    psplits.add(new PhoenixInputSplit(Collections.singletonList(dividedScan),
+                            scanBytes / dividedScans.size(), regionLocation));
+                }
+                continue;
+            }
+            if (!combinedScans.isEmpty() && combinedBytes + scanBytes > targetBytes) {
+                psplits.add(new PhoenixInputSplit(combinedScans, combinedBytes, regionLocation));
+                combinedScans = Lists.newArrayList();
+                combinedBytes = 0;
+            }
+            combinedScans.add(scan);
+            combinedBytes += scanBytes;
+        }
+        if (!combinedScans.isEmpty()) {
+            psplits.add(new PhoenixInputSplit(combinedScans, combinedBytes, regionLocation));
+        }
+        return psplits;
+    }
+
+    /**
+     * Divides a scan into scans over equal parts of its key range.
+     * @return the scans, or null if the scan cannot or need not be divided
+     */
+    private static List<Scan> divideScan(Scan scan, long parts) throws IOException {
+        if (parts < 2 || scan.isReversed() || ScanUtil.isLocalIndex(scan)
+                || scan.getStartRow().length == 0 || scan.getStopRow().length == 0) {
+            return null;
+        }
+        byte[][] keys;
+        try {
+            keys = Bytes.split(scan.getStartRow(), scan.getStopRow(),
+                    (int) Math.min(parts, MAX_SCAN_PARTS) - 1);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (keys == null) {
+            return null;
+        }
+        List<Scan> scans = Lists.newArrayListWithExpectedSize(keys.length - 1);
+        for (int i = 0; i < keys.length - 1; i++) {
+            // The keys are not distinct when the key range is too narrow to be divided
+            if (Bytes.compareTo(keys[i], keys[i + 1]) >= 0) {
+                return null;
+            }
+            Scan dividedScan = new Scan(scan);
+            dividedScan.withStartRow(keys[i]);
+            dividedScan.withStopRow(keys[i + 1]);
+            scans.add(dividedScan);
+        }
+        return scans;
+    }
+
     /**
      * Returns the query plan associated with the select query.
      * @param context
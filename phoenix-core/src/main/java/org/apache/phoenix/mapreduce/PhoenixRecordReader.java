@@ -20,6 +20,8 @@ package org.apache.phoenix.mapreduce;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.TableName;
@@ -35,9 +37,11 @@ import org.apache.phoenix.compile.QueryPlan;
 import org.apache.phoenix.compile.StatementContext;
 import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
 import org.apache.phoenix.iterate.ConcatResultIterator;
+import org.apache.phoenix.iterate.DelegateResultIterator;
 import org.apache.phoenix.iterate.LookAheadResultIterator;
 import org.apache.phoenix.iterate.ParallelScanGrouper;
 import org.apache.phoenix.iterate.PeekingResultIterator;
+import org.apache.phoenix.iterate.RestoredSnapshot;
 import org.apache.phoenix.iterate.ResultIterator;
 import org.apache.phoenix.iterate.RoundRobinResultIterator;
 import org.apache.phoenix.iterate.SequenceResultIterator;
@@ -48,12 +52,14 @@ import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
 import org.apache.phoenix.monitoring.ReadMetricQueue;
 import org.apache.phoenix.monitoring.ScanMetricsHolder;
 import org.apache.phoenix.query.ConnectionQueryServices;
+import org.apache.phoenix.util.ServerUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.phoenix.thirdparty.com.google.common.base.Preconditions;
 import org.apache.phoenix.thirdparty.com.google.common.base.Throwables;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * {@link RecordReader} implementation that iterates over the the records.
@@ -110,23 +116,45 @@ public class PhoenixRecordReader<T extends DBWritable> extends RecordReader<Null
 
     @Override
     public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
-        final PhoenixInputSplit pSplit = (PhoenixInputSplit)split;
+        try {
+            this.resultIterator = newResultIterator((PhoenixInputSplit)split, configuration,
+                    queryPlan, scanGrouper);
+            // Clone the row projector as it's not thread safe and would be used simultaneously by
+            // multiple threads otherwise.
+
+            this.resultSet = new PhoenixResultSet(this.resultIterator, queryPlan.getProjector().cloneIfNecessary(), queryPlan.getContext());
+        } catch (SQLException e) {
+            LOGGER.error(String.format(" Error [%s] initializing PhoenixRecordReader. ",
+                    e.getMessage()));
+            Throwables.propagate(e);
+        }
+   }
+
+    /**
+     * Creates the iterator over the rows of the scans of a split.
+     */
+    static ResultIterator newResultIterator(PhoenixInputSplit pSplit, Configuration configuration,
+            QueryPlan queryPlan, ParallelScanGrouper scanGrouper) throws IOException, SQLException {
         final List<Scan> scans = pSplit.getScans();
+        LOGGER.info("Generating iterators for " + scans.size() + " scans in keyrange: "
+                + pSplit.getKeyRange());
+        List<PeekingResultIterator> iterators = Lists.newArrayListWithExpectedSize(scans.size());
+        StatementContext ctx = queryPlan.getContext();
+        ReadMetricQueue readMetrics = ctx.getReadMetricsQueue();
+        String tableName = queryPlan.getTableRef().getTable().getPhysicalName().getString();
+        String snapshotName = configuration.get(PhoenixConfigurationUtil.SNAPSHOT_NAME_KEY);
+
+        // Clear the table region boundary cache to make sure long running jobs stay up to date
+        byte[] tableNameBytes = queryPlan.getTableRef().getTable().getPhysicalName().getBytes();
+        ConnectionQueryServices services = queryPlan.getContext().getConnection().getQueryServices();
+        services.clearTableRegionCache(TableName.valueOf(tableNameBytes));
+
+        long renewScannerLeaseThreshold = queryPlan.getContext().getConnection().getQueryServices().getRenewLeaseThresholdMilliSeconds();
+        // The snapshot is restored once for all the scans of the split
+        final RestoredSnapshot snapshot = snapshotName != null ? new RestoredSnapshot(configuration) : null;
+        final ExecutorService snapshotExecutor = snapshot != null
+                ? newSnapshotScanExecutor(configuration, queryPlan) : null;
         try {
-            LOGGER.info("Generating iterators for " + scans.size() + " scans in keyrange: "
-                    + pSplit.getKeyRange());
-            List<PeekingResultIterator> iterators = Lists.newArrayListWithExpectedSize(scans.size());
-            StatementContext ctx = queryPlan.getContext();
-            ReadMetricQueue readMetrics = ctx.getReadMetricsQueue();
-            String tableName = queryPlan.getTableRef().getTable().getPhysicalName().getString();
-            String snapshotName = this.configuration.get(PhoenixConfigurationUtil.SNAPSHOT_NAME_KEY);
-
-            // Clear the table region boundary cache to make sure long running jobs stay up to date
-            byte[] tableNameBytes = queryPlan.getTableRef().getTable().getPhysicalName().getBytes();
-            ConnectionQueryServices services = queryPlan.getContext().getConnection().getQueryServices();
-            services.clearTableRegionCache(TableName.valueOf(tableNameBytes));
-
-            long renewScannerLeaseThreshold = queryPlan.getContext().getConnection().getQueryServices().getRenewLeaseThresholdMilliSeconds();
             for (Scan scan : scans) {
                 // For MR, skip the region boundary check exception if we encounter a split. ref: PHOENIX-2599
                 scan.setAttribute(BaseScannerRegionObserver.SKIP_REGION_BOUNDARY_CHECK, Bytes.toBytes(true));
@@ -135,10 +163,10 @@ public class PhoenixRecordReader<T extends DBWritable> extends RecordReader<Null
                 ScanMetricsHolder scanMetricsHolder =
                   ScanMetricsHolder.getInstance(readMetrics, tableName, scan,
                       queryPlan.getContext().getConnection().getLogLevel());
-                if (snapshotName != null) {
+                if (snapshot != null) {
                   // result iterator to read snapshots
                   final TableSnapshotResultIterator tableSnapshotResultIterator = new TableSnapshotResultIterator(configuration, scan,
-                      scanMetricsHolder);
+                      scanMetricsHolder, snapshot, snapshotExecutor);
                     peekingResultIterator = LookAheadResultIterator.wrap(tableSnapshotResultIterator);
                     LOGGER.info("Adding TableSnapshotResultIterator for scan: " + scan);
                 } else {
@@ -146,27 +174,63 @@ public class PhoenixRecordReader<T extends DBWritable> extends RecordReader<Null
                       new TableResultIterator(
                           queryPlan.getContext().getConnection().getMutationState(), scan,
                           scanMetricsHolder, renewScannerLeaseThreshold, queryPlan,
-                          this.scanGrouper);
+                          scanGrouper);
                   peekingResultIterator = LookAheadResultIterator.wrap(tableResultIterator);
                   LOGGER.info("Adding TableResultIterator for scan: " + scan);
                 }
                 iterators.add(peekingResultIterator);
             }
-            ResultIterator iterator = queryPlan.useRoundRobinIterator() ? RoundRobinResultIterator.newIterator(iterators, queryPlan) : ConcatResultIterator.newIterator(iterators);
-            if(queryPlan.getContext().getSequenceManager().getSequenceCount() > 0) {
-                iterator = new SequenceResultIterator(iterator, queryPlan.getContext().getSequenceManager());
+        } catch (RuntimeException | SQLException e) {
+            if (snapshot != null) {
+                closeSnapshot(snapshot, snapshotExecutor);
             }
-            this.resultIterator = iterator;
-            // Clone the row projector as it's not thread safe and would be used simultaneously by
-            // multiple threads otherwise.
+            throw e;
+        }
+        ResultIterator iterator = queryPlan.useRoundRobinIterator() ? RoundRobinResultIterator.newIterator(iterators, queryPlan) : ConcatResultIterator.newIterator(iterators);
+        if(queryPlan.getContext().getSequenceManager().getSequenceCount() > 0) {
+            iterator = new SequenceResultIterator(iterator, queryPlan.getContext().getSequenceManager());
+        }
+        if (snapshot != null) {
+            iterator = new DelegateResultIterator(iterator) {
+                @Override
+                public void close() throws SQLException {
+                    try {
+                        super.close();
+                    } finally {
+                        closeSnapshot(snapshot, snapshotExecutor);
+                    }
+                }
+            };
+        }
+        return iterator;
+    }
 
-            this.resultSet = new PhoenixResultSet(this.resultIterator, queryPlan.getProjector().cloneIfNecessary(), queryPlan.getContext());
-        } catch (SQLException e) {
-            LOGGER.error(String.format(" Error [%s] initializing PhoenixRecordReader. ",
-                    e.getMessage()));
-            Throwables.propagate(e);
+    /**
+     * Creates the executor scanning the regions of a snapshot ahead of time, or returns null to
+     * scan them one after the other. Round robin iteration reads the scans of the split out of
+     * order, so their regions are then always scanned as they are read.
+     */
+    private static ExecutorService newSnapshotScanExecutor(Configuration configuration,
+            QueryPlan queryPlan) {
+        int threads = PhoenixConfigurationUtil.getSnapshotScanThreads(configuration);
+        if (threads <= 1 || queryPlan.useRoundRobinIterator()) {
+            return null;
         }
-   }
+        return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("phoenix-snapshot-scan-%d").build());
+    }
+
+    private static void closeSnapshot(RestoredSnapshot snapshot, ExecutorService executor)
+            throws SQLException {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        try {
+            snapshot.close();
+        } catch (IOException e) {
+            throw ServerUtil.parseServerException(e);
+        }
+    }
 
    @Override
     public boolean nextKeyValue() throws IOException, InterruptedException {
@@ -20,6 +20,7 @@ package org.apache.phoenix.mapreduce.index;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Date;
 import java.util.List;
 
 import org.apache.phoenix.thirdparty.com.google.common.base.Strings;
@@ -49,6 +50,7 @@ import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.phoenix.compat.hbase.coprocessor.CompatBaseScannerRegionObserver;
+import org.apache.phoenix.expression.function.PhoenixRowTimestampFunction;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.mapreduce.CsvBulkImportUtil;
 import org.apache.phoenix.mapreduce.util.ConnectionUtil;
@@ -56,6 +58,7 @@ import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
 import org.apache.phoenix.mapreduce.util.PhoenixMapReduceUtil;
 import org.apache.phoenix.parse.HintNode.Hint;
 import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.util.DateUtil;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.PhoenixRuntime;
 import org.apache.phoenix.util.QueryUtil;
@@ -114,6 +117,11 @@ public class IndexScrutinyTool extends Configured implements Tool {
     private static final Option OUTPUT_MAX = new Option("om", "output-max", true, "Max number of invalid rows to output per mapper.  Defaults to 1M");
     private static final Option TENANT_ID_OPTION = new Option("tenant", "tenant-id", true,
             "If specified, uses Tenant connection for tenant view index scrutiny (optional)");
+    private static final Option START_TIME_OPTION = new Option("st", "start-time", true,
+            "Start time in millis for incremental scrutiny (optional). If specified, only the source table rows"
+                    + " written at or after this time are compared, e.g. the time of the last scrutiny run."
+                    + " Rows deleted from the source table since then are not detected, so a full scrutiny"
+                    + " should still be run periodically");
     public static final String INDEX_JOB_NAME_TEMPLATE = "PHOENIX_SCRUTINY_[%s]_[%s]";
 
     @Inject
@@ -158,6 +166,7 @@ public class IndexScrutinyTool extends Configured implements Tool {
         options.addOption(BATCH_SIZE_OPTION);
         options.addOption(SOURCE_TABLE_OPTION);
         options.addOption(TENANT_ID_OPTION);
+        options.addOption(START_TIME_OPTION);
         return options;
     }
 
@@ -281,9 +290,12 @@ public class IndexScrutinyTool extends Configured implements Tool {
 
             // Setup the select query against source - we either select the index columns from the
             // index table,
-            // or select the data table equivalents of the index columns from the data table
+            // or select the data table equivalents of the index columns from the data table.
+            // For an incremental scrutiny, only the source rows written since the start time are selected
+            final long startTime = PhoenixConfigurationUtil.getScrutinyStartTime(configuration);
             final String selectQuery =
-                    QueryUtil.constructSelectStatement(qSourceTable, sourceColumnNames, null,
+                    QueryUtil.constructSelectStatement(qSourceTable, sourceColumnNames,
+                        startTime > 0 ? getIncrementalWhereClause(startTime) : null,
                         Hint.NO_INDEX, true);
             LOGGER.info("Query used on source table to feed the mapper: " + selectQuery);
 
@@ -418,6 +430,15 @@ public class IndexScrutinyTool extends Configured implements Tool {
 
             validateTimestamp(configuration, ts);
 
+            if (cmdLine.hasOption(START_TIME_OPTION.getOpt())) {
+                long startTime = Long.parseLong(cmdLine.getOptionValue(START_TIME_OPTION.getOpt()));
+                if (startTime >= ts) {
+                    throw new IllegalArgumentException(String.format(
+                        "Start time %s must be earlier than the scrutiny timestamp %s", startTime, ts));
+                }
+                PhoenixConfigurationUtil.setScrutinyStartTime(configuration, startTime);
+            }
+
             if (indexTable != null) {
                 if (!IndexTool.isValidIndexTable(connection, qDataTable, indexTable, tenantId)) {
                     throw new IllegalArgumentException(String
@@ -513,6 +534,17 @@ public class IndexScrutinyTool extends Configured implements Tool {
         }
     }
 
+    /**
+     * Builds the condition selecting the source rows whose row timestamp, i.e., the timestamp of their
+     * empty column which is updated on every write to the row, is not earlier than the given start time
+     */
+    @VisibleForTesting
+    public static String getIncrementalWhereClause(long startTime) {
+        return PhoenixRowTimestampFunction.NAME + "() >= TO_DATE('"
+                + DateUtil.DEFAULT_MS_DATE_FORMATTER.format(new Date(startTime)) + "', '"
+                + DateUtil.DEFAULT_MS_DATE_FORMAT + "', '" + DateUtil.DEFAULT_TIME_ZONE_ID + "')";
+    }
+
     private void validateTimestamp(Configuration configuration, long ts) {
         long maxLookBackAge = CompatBaseScannerRegionObserver.getMaxLookbackInMillis(configuration);
         if (maxLookBackAge != CompatBaseScannerRegionObserver.DEFAULT_PHOENIX_MAX_LOOKBACK_AGE * 1000L) {
@@ -142,6 +142,9 @@ public final class PhoenixConfigurationUtil {
     // max output rows per mapper
     public static final String SCRUTINY_OUTPUT_MAX = "phoenix.mr.scrutiny.output.max";
 
+    // only source rows written at or after this time are scrutinized
+    public static final String SCRUTINY_START_TIME = "phoenix.mr.scrutiny.start.time";
+
     public static final long DEFAULT_SCRUTINY_BATCH_SIZE = 1000;
 
     public static final String DISABLED_INDEXES = "phoenix.mr.index.disabledIndexes";
@@ -160,10 +163,27 @@ public final class PhoenixConfigurationUtil {
 
     public static final boolean DEFAULT_SPLIT_BY_STATS = true;
 
+    // Target number of bytes read by a mapper when splitting by stats. Scans of a region that are
+    // smaller are combined and larger ones divided. Zero keeps one split per scan.
+    public static final String MAPREDUCE_SPLIT_TARGET_BYTES = "phoenix.mapreduce.split.target.bytes";
+
+    public static final long DEFAULT_SPLIT_TARGET_BYTES = 0;
+
+    // Number of rows of the column batches returned by PhoenixColumnBatchInputFormat
+    public static final String MAPREDUCE_COLUMN_BATCH_SIZE = "phoenix.mapreduce.column.batch.size";
+
+    public static final int DEFAULT_COLUMN_BATCH_SIZE = 1024;
+
     public static final String SNAPSHOT_NAME_KEY = "phoenix.mapreduce.snapshot.name";
 
     public static final String RESTORE_DIR_KEY = "phoenix.tableSnapshot.restore.dir";
 
+    // Number of threads scanning the regions of a snapshot ahead of time for a split. With a
+    // single thread, the regions are scanned one after the other as they are read.
+    public static final String MAPREDUCE_SNAPSHOT_SCAN_THREADS = "phoenix.mapreduce.snapshot.scan.threads";
+
+    public static final int DEFAULT_SNAPSHOT_SCAN_THREADS = 1;
+
     public static final String MAPREDUCE_TENANT_ID = "phoenix.mapreduce.tenantid";
     private static final String INDEX_TOOL_END_TIME = "phoenix.mr.index.endtime";
     private static final String INDEX_TOOL_START_TIME = "phoenix.mr.index.starttime";
@@ -742,6 +762,19 @@ public final class PhoenixConfigurationUtil {
         configuration.setLong(SCRUTINY_EXECUTE_TIMESTAMP, ts);
     }
 
+    public static void setScrutinyStartTime(Configuration configuration, long startTime) {
+        Preconditions.checkNotNull(configuration);
+        configuration.setLong(SCRUTINY_START_TIME, startTime);
+    }
+
+    /**
+     * @return the start time of an incremental scrutiny or 0 if the whole source table is scrutinized
+     */
+    public static long getScrutinyStartTime(Configuration configuration) {
+        Preconditions.checkNotNull(configuration);
+        return configuration.getLong(SCRUTINY_START_TIME, 0);
+    }
+
     public static void setSplitByStats(final Configuration configuration, boolean value) {
         Preconditions.checkNotNull(configuration);
         configuration.setBoolean(MAPREDUCE_SPLIT_BY_STATS, value);
@@ -780,6 +813,36 @@ public final class PhoenixConfigurationUtil {
         return split;
     }
 
+    public static void setSplitTargetBytes(final Configuration configuration, long targetBytes) {
+        Preconditions.checkNotNull(configuration);
+        configuration.setLong(MAPREDUCE_SPLIT_TARGET_BYTES, targetBytes);
+    }
+
+    public static long getSplitTargetBytes(final Configuration configuration) {
+        Preconditions.checkNotNull(configuration);
+        return configuration.getLong(MAPREDUCE_SPLIT_TARGET_BYTES, DEFAULT_SPLIT_TARGET_BYTES);
+    }
+
+    public static void setColumnBatchSize(final Configuration configuration, int batchSize) {
+        Preconditions.checkNotNull(configuration);
+        configuration.setInt(MAPREDUCE_COLUMN_BATCH_SIZE, batchSize);
+    }
+
+    public static int getColumnBatchSize(final Configuration configuration) {
+        Preconditions.checkNotNull(configuration);
+        return configuration.getInt(MAPREDUCE_COLUMN_BATCH_SIZE, DEFAULT_COLUMN_BATCH_SIZE);
+    }
+
+    public static void setSnapshotScanThreads(final Configuration configuration, int threads) {
+        Preconditions.checkNotNull(configuration);
+        configuration.setInt(MAPREDUCE_SNAPSHOT_SCAN_THREADS, threads);
+    }
+
+    public static int getSnapshotScanThreads(final Configuration configuration) {
+        Preconditions.checkNotNull(configuration);
+        return configuration.getInt(MAPREDUCE_SNAPSHOT_SCAN_THREADS, DEFAULT_SNAPSHOT_SCAN_THREADS);
+    }
+
 	public static boolean getStatsForParallelizationProp(PhoenixConnection conn, PTable table) {
 	    Boolean useStats = table.useStatsForParallelization();
 	    if (useStats != null) {
@@ -41,6 +41,9 @@ public enum MetricType {
     QUERY_FAILED_COUNTER("qf", "Number of times query failed",LogLevel.DEBUG, PLong.INSTANCE),
     NUM_PARALLEL_SCANS("ps", "Number of scans that were executed in parallel",LogLevel.DEBUG, PLong.INSTANCE),
     SCAN_BYTES("sb", "Number of bytes read by scans",LogLevel.OFF, PLong.INSTANCE),
+    NUM_PRUNED_SCAN_CHUNKS("pc", "Number of parallel scan chunks skipped by region servers as their zone maps show no row can match",LogLevel.OFF, PLong.INSTANCE),
+    RESULT_CACHE_HITS("rch", "Number of queries answered from the client-side result cache",LogLevel.OFF, PLong.INSTANCE),
+    RESULT_CACHE_MISSES("rcm", "Number of cacheable queries not found in the client-side result cache",LogLevel.OFF, PLong.INSTANCE),
     SELECT_SQL_COUNTER("sc", "Counter for number of sql queries",LogLevel.OFF, PLong.INSTANCE),
     // task metrics
     TASK_QUEUE_WAIT_TIME("tw", "Time in milliseconds tasks had to wait in the queue of the thread pool executor",LogLevel.DEBUG, PLong.INSTANCE),
@@ -28,6 +28,7 @@ import static org.apache.phoenix.monitoring.MetricType.COUNT_ROWS_SCANNED;
 import static org.apache.phoenix.monitoring.MetricType.COUNT_RPC_CALLS;
 import static org.apache.phoenix.monitoring.MetricType.COUNT_RPC_RETRIES;
 import static org.apache.phoenix.monitoring.MetricType.COUNT_SCANNED_REGIONS;
+import static org.apache.phoenix.monitoring.MetricType.NUM_PRUNED_SCAN_CHUNKS;
 
 import java.io.IOException;
 import java.util.Map;
@@ -49,6 +50,7 @@ public class ScanMetricsHolder {
     private final CombinableMetric countOfRemoteRPCRetries;
     private final CombinableMetric countOfRowsScanned;
     private final CombinableMetric countOfRowsFiltered;
+    private final CombinableMetric countOfPrunedChunks;
     private  Map<String, Long> scanMetricMap;
     private Object scan;
 
@@ -78,6 +80,7 @@ public class ScanMetricsHolder {
         countOfRemoteRPCRetries = readMetrics.allotMetric(COUNT_REMOTE_RPC_RETRIES, tableName);
         countOfRowsScanned = readMetrics.allotMetric(COUNT_ROWS_SCANNED, tableName);
         countOfRowsFiltered = readMetrics.allotMetric(COUNT_ROWS_FILTERED, tableName);
+        countOfPrunedChunks = readMetrics.allotMetric(NUM_PRUNED_SCAN_CHUNKS, tableName);
     }
 
     public CombinableMetric getCountOfRemoteRPCcalls() {
@@ -124,6 +127,10 @@ public class ScanMetricsHolder {
         return countOfRowsScanned;
     }
 
+    public CombinableMetric getCountOfPrunedChunks() {
+        return countOfPrunedChunks;
+    }
+
     public Map<String, Long> getScanMetricMap() {
         return scanMetricMap;
     }
@@ -52,7 +52,9 @@ import org.apache.phoenix.parse.HintNode;
 import org.apache.phoenix.parse.HintNode.Hint;
 import org.apache.phoenix.parse.IndexExpressionParseNodeRewriter;
 import org.apache.phoenix.parse.JoinTableNode;
+import org.apache.phoenix.parse.LiteralParseNode;
 import org.apache.phoenix.parse.NamedTableNode;
+import org.apache.phoenix.parse.OrderByNode;
 import org.apache.phoenix.parse.ParseNode;
 import org.apache.phoenix.parse.ParseNodeFactory;
 import org.apache.phoenix.parse.ParseNodeRewriter;
@@ -71,14 +73,19 @@ import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.schema.PTable.IndexType;
 import org.apache.phoenix.schema.PTableType;
 import org.apache.phoenix.schema.RowValueConstructorOffsetNotCoercibleException;
+import org.apache.phoenix.schema.TableNotFoundException;
 import org.apache.phoenix.schema.TableRef;
 import org.apache.phoenix.schema.types.PDataType;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.IndexUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
 
 public class QueryOptimizer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryOptimizer.class);
     private static final ParseNodeFactory FACTORY = new ParseNodeFactory();
 
     private final QueryServices services;
@@ -98,7 +105,9 @@ public class QueryOptimizer {
         if (dataPlan.getTableRef() == null) {
             return dataPlan;
         }
-        return optimize(dataPlan, statement, Collections.<PColumn>emptyList(), null);
+        QueryPlan plan = optimize(dataPlan, statement, Collections.<PColumn>emptyList(), null);
+        QueryPlan lateMaterializationPlan = getLateMaterializationPlan(plan, statement);
+        return lateMaterializationPlan == null ? plan : lateMaterializationPlan;
     }
 
     public QueryPlan optimize(PhoenixStatement statement, SelectStatement select) throws SQLException {
@@ -132,6 +141,7 @@ public class QueryOptimizer {
         SelectStatement select = (SelectStatement) dataPlan.getStatement();
         if (!select.isUnion()
                 && !select.isJoin()
+                && !select.hasWindowFunctions()
                 && select.getInnerSelectStatement() == null
                 && (select.getWhere() == null || !select.getWhere().hasSubquery())) {
             return getApplicablePlansForSingleFlatQuery(dataPlan, statement, targetColumns, parallelIteratorFactory, stopAtBestPlan);
@@ -205,6 +215,11 @@ public class QueryOptimizer {
             return Collections.<QueryPlan> singletonList(dataPlan);
         }
 
+        QueryPlan rollupPlan = getRollupPlan(dataPlan, statement, targetColumns, parallelIteratorFactory);
+        if (rollupPlan != null) {
+            return Collections.singletonList(rollupPlan);
+        }
+
         List<PTable>indexes = Lists.newArrayList(dataPlan.getTableRef().getTable().getIndexes());
         if (dataPlan.isApplicable() && (indexes.isEmpty() || dataPlan.isDegenerate() || dataPlan.getTableRef().hasDynamicCols() || select.getHint().hasHint(Hint.NO_INDEX))) {
             return Collections.<QueryPlan> singletonList(dataPlan);
@@ -261,6 +276,142 @@ public class QueryOptimizer {
         return hintedPlan == null ? orderPlansBestToWorst(select, applicablePlans, stopAtBestPlan) : applicablePlans;
     }
     
+    /**
+     * Rewrites an ORDER BY ... LIMIT query projecting many columns of a table as
+     * <pre>
+     *   SELECT ... FROM T WHERE (PK) IN (SELECT PK FROM (SELECT PK FROM T WHERE ... ORDER BY ... LIMIT ...))
+     *   AND ... ORDER BY ...
+     * </pre>
+     * so that the top N computed on each region only holds the primary key and sort key of the
+     * candidate rows, and the columns of the rows to return are looked up through a skip scan
+     * on the primary keys of the semi join. As both phases do not read the table at the same
+     * time, the lookup applies the WHERE clause again so that a row updated in between is only
+     * returned if it still matches it.
+     * @return the plan of the rewritten query, or null if the query is not rewritten
+     */
+    private QueryPlan getLateMaterializationPlan(QueryPlan plan, PhoenixStatement statement) throws SQLException {
+        PhoenixConnection connection = statement.getConnection();
+        ReadOnlyProps props = connection.getQueryServices().getProps();
+        if (!props.getBoolean(QueryServices.LATE_MATERIALIZATION_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_LATE_MATERIALIZATION_ENABLED)
+                || !(plan.getStatement() instanceof SelectStatement)
+                || plan.getLimit() == null
+                || plan.getOrderBy().getOrderByExpressions().isEmpty()
+                || !plan.getGroupBy().isEmpty()
+                || plan.getProjector().getColumnCount() < props.getInt(
+                        QueryServices.LATE_MATERIALIZATION_MIN_COLUMNS_ATTRIB,
+                        QueryServicesOptions.DEFAULT_LATE_MATERIALIZATION_MIN_COLUMNS)) {
+            return null;
+        }
+        SelectStatement select = (SelectStatement) plan.getStatement();
+        if (select.isUnion() || select.isJoin() || select.isAggregate() || select.isDistinct()
+                || select.hasSequence() || select.hasWindowFunctions() || select.getInnerSelectStatement() != null
+                || select.getTableSamplingRate() != null
+                || !(select.getFrom() instanceof NamedTableNode)
+                || (select.getWhere() != null && select.getWhere().hasSubquery())) {
+            return null;
+        }
+        for (OrderByNode orderByNode : select.getOrderBy()) {
+            // Positions refer to the select expressions, which the inner query does not have
+            if (orderByNode.getNode() instanceof LiteralParseNode) {
+                return null;
+            }
+        }
+        PTable table = plan.getTableRef().getTable();
+        if (table.getType() != PTableType.TABLE && table.getType() != PTableType.VIEW) {
+            return null;
+        }
+        int pkOffset = (table.getBucketNum() == null ? 0 : 1)
+                + (table.isMultiTenant() && connection.getTenantId() != null ? 1 : 0);
+        List<PColumn> pkColumns = table.getPKColumns();
+        List<ParseNode> pkNodes = Lists.newArrayListWithExpectedSize(pkColumns.size() - pkOffset);
+        List<AliasedNode> pkAliasedNodes = Lists.newArrayListWithExpectedSize(pkColumns.size() - pkOffset);
+        List<AliasedNode> derivedPkAliasedNodes = Lists.newArrayListWithExpectedSize(pkColumns.size() - pkOffset);
+        String derivedTableAlias = ParseNodeFactory.createTempAlias();
+        for (int i = pkOffset; i < pkColumns.size(); i++) {
+            String columnName = '"' + pkColumns.get(i).getName().getString() + '"';
+            String alias = ParseNodeFactory.createTempAlias();
+            pkNodes.add(FACTORY.column(null, columnName, null));
+            pkAliasedNodes.add(FACTORY.aliasedNode(alias, FACTORY.column(null, columnName, null)));
+            derivedPkAliasedNodes.add(FACTORY.aliasedNode(null,
+                    FACTORY.column(FACTORY.table(null, derivedTableAlias), alias, null)));
+        }
+        SelectStatement topN = FACTORY.select(select.getFrom(), select.getHint(), false,
+                pkAliasedNodes, select.getWhere(), Collections.<ParseNode>emptyList(), null,
+                select.getOrderBy(), select.getLimit(), select.getOffset(), select.getBindCount(),
+                false, false, Collections.<SelectStatement>emptyList(), select.getUdfParseNodes());
+        // Wrapped so that the DISTINCT added when the IN is turned into a semi join does not
+        // apply to the ORDER BY ... LIMIT query
+        SelectStatement subquery = FACTORY.select(FACTORY.derivedTable(derivedTableAlias, topN),
+                HintNode.EMPTY_HINT_NODE, false, derivedPkAliasedNodes, null,
+                Collections.<ParseNode>emptyList(), null, Collections.<OrderByNode>emptyList(),
+                null, null, select.getBindCount(), false, false,
+                Collections.<SelectStatement>emptyList(), select.getUdfParseNodes());
+        ParseNode in = FACTORY.in(pkNodes.size() == 1 ? pkNodes.get(0) : FACTORY.rowValueConstructor(pkNodes),
+                FACTORY.subquery(subquery, false), false, false);
+        ParseNode where = select.getWhere() == null ? in
+                : FACTORY.and(Lists.<ParseNode>newArrayList(in, select.getWhere()));
+        SelectStatement lookup = FACTORY.select(select.getFrom(), select.getHint(), false,
+                select.getSelect(), where, Collections.<ParseNode>emptyList(), null,
+                select.getOrderBy(), null, null, select.getBindCount(), false, false,
+                Collections.<SelectStatement>emptyList(), select.getUdfParseNodes());
+        try {
+            ColumnResolver resolver = FromCompiler.getResolverForQuery(lookup, connection);
+            lookup = SubqueryRewriter.transform(lookup, resolver, connection);
+            resolver = FromCompiler.getResolverForQuery(lookup, connection);
+            lookup = StatementNormalizer.normalize(lookup, resolver);
+            return new QueryCompiler(statement, lookup, resolver, Collections.<PDatum>emptyList(),
+                    connection.getIteratorFactory(), plan.getContext().getSequenceManager(),
+                    true, true, null).compile();
+        } catch (SQLException e) {
+            LOGGER.debug("Unable to use late materialization for " + select, e);
+            return null;
+        }
+    }
+
+    /**
+     * Compiles the query against the first rollup table declared for the table of the data plan
+     * that can answer it. As rollup tables are maintained by the application and may lag behind
+     * the table, they are only used by queries with the {@link Hint#USE_ROLLUP} hint.
+     * @return the plan reading the rollup table, or null if no rollup table can be used
+     */
+    private QueryPlan getRollupPlan(QueryPlan dataPlan, PhoenixStatement statement, List<? extends PDatum> targetColumns, ParallelIteratorFactory parallelIteratorFactory) throws SQLException {
+        SelectStatement select = (SelectStatement) dataPlan.getStatement();
+        if (!select.isAggregate() || !select.getHint().hasHint(Hint.USE_ROLLUP)) {
+            return null;
+        }
+        PhoenixConnection connection = statement.getConnection();
+        String tableName = dataPlan.getTableRef().getTable().getName().getString();
+        for (RollupRewriter.Rollup rollup : connection.getQueryServices().getRollups()) {
+            if (!rollup.getTableName().equals(tableName)) {
+                continue;
+            }
+            try {
+                SelectStatement rollupSelect = RollupRewriter.rewrite(select,
+                        dataPlan.getContext().getResolver(), rollup,
+                        FromCompiler.getResolverForQuery(rollup.getDefinition(), connection));
+                if (rollupSelect == null) {
+                    continue;
+                }
+                if (targetColumns.isEmpty()) {
+                    // Keep the types of the projected columns of the data plan
+                    List<? extends ColumnProjector> projectors = dataPlan.getProjector().getColumnProjectors();
+                    List<PDatum> targetDatums = Lists.newArrayListWithExpectedSize(projectors.size());
+                    for (ColumnProjector projector : projectors) {
+                        targetDatums.add(projector.getExpression());
+                    }
+                    targetColumns = targetDatums;
+                }
+                return new QueryCompiler(statement, rollupSelect,
+                        FromCompiler.getResolverForQuery(rollupSelect, connection), targetColumns,
+                        parallelIteratorFactory, dataPlan.getContext().getSequenceManager()).compile();
+            } catch (TableNotFoundException | ColumnNotFoundException e) {
+                // The rollup table does not match its definition, so it is not used
+            }
+        }
+        return null;
+    }
+
     private QueryPlan getHintedQueryPlan(PhoenixStatement statement, SelectStatement select, List<PTable> indexes, List<? extends PDatum> targetColumns, ParallelIteratorFactory parallelIteratorFactory, List<QueryPlan> plans) throws SQLException {
         QueryPlan dataPlan = plans.get(0);
         String indexHint = select.getHint().getHint(Hint.INDEX);
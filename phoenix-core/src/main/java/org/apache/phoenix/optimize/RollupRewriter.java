@@ -0,0 +1,365 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.optimize;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.phoenix.compile.ColumnResolver;
+import org.apache.phoenix.parse.AliasedNode;
+import org.apache.phoenix.parse.ColumnParseNode;
+import org.apache.phoenix.parse.FamilyWildcardParseNode;
+import org.apache.phoenix.parse.FunctionParseNode;
+import org.apache.phoenix.parse.LiteralParseNode;
+import org.apache.phoenix.parse.NamedTableNode;
+import org.apache.phoenix.parse.OrderByNode;
+import org.apache.phoenix.parse.ParseNode;
+import org.apache.phoenix.parse.ParseNodeFactory;
+import org.apache.phoenix.parse.ParseNodeRewriter;
+import org.apache.phoenix.parse.SQLParser;
+import org.apache.phoenix.parse.SelectStatement;
+import org.apache.phoenix.parse.TableName;
+import org.apache.phoenix.parse.TableWildcardParseNode;
+import org.apache.phoenix.parse.WildcardParseNode;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.ColumnNotFoundException;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.SchemaUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+/**
+ * Rewrites an aggregate query over a table into a query over a rollup table of it. A rollup table
+ * is a regular table holding the result of a GROUP BY query over the table, which is declared
+ * through a {@link QueryServices#ROLLUP_DEFINITION_ATTRIB_PREFIX} property named after the
+ * rollup table, for example:
+ * <pre>
+ *   phoenix.query.rollup.EVENTS_BY_HOST=SELECT HOST, DAY, SUM(BYTES) TOTAL_BYTES,
+ *       COUNT(*) EVENT_COUNT FROM EVENTS GROUP BY HOST, DAY
+ * </pre>
+ * The grouped columns of the rollup table keep their name unless aliased, and every aggregate
+ * must be aliased with the name of its column in the rollup table. Only SUM, COUNT, MIN and MAX
+ * of columns are supported, and the defining query may not have a WHERE or HAVING clause.
+ * The rollup table is maintained by the application, for example by running
+ * {@code UPSERT INTO EVENTS_BY_HOST} followed by the defining query, so it is only read by
+ * queries with the {@link org.apache.phoenix.parse.HintNode.Hint#USE_ROLLUP} hint.
+ * <p>
+ * A query is rewritten if its columns are all grouped columns of the rollup, outside of
+ * aggregates over columns that the rollup aggregates the same way. Columns are matched by their
+ * family and name once resolved against the table. SUM, MIN and MAX are aggregated again over
+ * the rollup columns while COUNT becomes the SUM of the counts.
+ */
+public class RollupRewriter extends ParseNodeRewriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RollupRewriter.class);
+    private static final ParseNodeFactory FACTORY = new ParseNodeFactory();
+    private static final String COUNT = "COUNT";
+    private static final String SUM = "SUM";
+    private static final Set<String> ROLLUP_AGGREGATES =
+            new HashSet<String>(Lists.newArrayList(COUNT, SUM, "MIN", "MAX"));
+
+    /**
+     * The definition of a rollup table, with the grouped columns and the aggregates of the
+     * defining query by the names of their columns in the rollup table
+     */
+    public static class Rollup {
+        private final String rollupTableName;
+        private final String tableName;
+        private final SelectStatement definition;
+        private final Map<String, ColumnParseNode> groupedColumns = new HashMap<String, ColumnParseNode>();
+        private final Map<String, FunctionParseNode> aggregates = new HashMap<String, FunctionParseNode>();
+
+        private Rollup(String rollupTableName, String tableName, SelectStatement definition) {
+            this.rollupTableName = rollupTableName;
+            this.tableName = tableName;
+            this.definition = definition;
+        }
+
+        public String getRollupTableName() {
+            return rollupTableName;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public SelectStatement getDefinition() {
+            return definition;
+        }
+    }
+
+    private final ColumnResolver resolver;
+    private final Map<String, String> groupedColumns;
+    private final Map<String, String> aggregates;
+    private final Set<String> selectAliases;
+    private final boolean isGrouped;
+    private boolean isRewritable = true;
+
+    private RollupRewriter(ColumnResolver resolver, Map<String, String> groupedColumns,
+            Map<String, String> aggregates, Set<String> selectAliases, boolean isGrouped) {
+        this.resolver = resolver;
+        this.groupedColumns = groupedColumns;
+        this.aggregates = aggregates;
+        this.selectAliases = selectAliases;
+        this.isGrouped = isGrouped;
+    }
+
+    /**
+     * @return the rollup tables declared in the given properties. Parsing their definitions is
+     * done once per {@link org.apache.phoenix.query.ConnectionQueryServices}, which caches them.
+     */
+    public static List<Rollup> getRollups(ReadOnlyProps props) {
+        List<Rollup> rollups = null;
+        for (Map.Entry<String, String> entry : props) {
+            if (!entry.getKey().startsWith(QueryServices.ROLLUP_DEFINITION_ATTRIB_PREFIX)) {
+                continue;
+            }
+            String rollupTableName = entry.getKey().substring(
+                    QueryServices.ROLLUP_DEFINITION_ATTRIB_PREFIX.length());
+            try {
+                Rollup rollup = getRollup(rollupTableName,
+                        new SQLParser(entry.getValue()).parseQuery());
+                if (rollup != null) {
+                    if (rollups == null) {
+                        rollups = Lists.newArrayListWithExpectedSize(1);
+                    }
+                    rollups.add(rollup);
+                } else {
+                    LOGGER.warn("Ignoring unsupported definition of rollup table " + rollupTableName);
+                }
+            } catch (SQLException e) {
+                LOGGER.warn("Ignoring invalid definition of rollup table " + rollupTableName, e);
+            }
+        }
+        return rollups == null ? Collections.<Rollup>emptyList() : Collections.unmodifiableList(rollups);
+    }
+
+    static Rollup getRollup(String rollupTableName, SelectStatement definition) {
+        if (!(definition.getFrom() instanceof NamedTableNode) || definition.getWhere() != null
+                || definition.getHaving() != null || definition.isDistinct()
+                || definition.getLimit() != null || definition.getOffset() != null
+                || definition.getGroupBy().isEmpty()) {
+            return null;
+        }
+        TableName tableName = ((NamedTableNode) definition.getFrom()).getName();
+        Rollup rollup = new Rollup(rollupTableName,
+                SchemaUtil.getTableName(tableName.getSchemaName(), tableName.getTableName()),
+                definition);
+        Set<String> groupedColumns = new HashSet<String>();
+        for (ParseNode node : definition.getGroupBy()) {
+            if (!(node instanceof ColumnParseNode)) {
+                return null;
+            }
+            groupedColumns.add(((ColumnParseNode) node).getFullName());
+        }
+        for (AliasedNode aliasedNode : definition.getSelect()) {
+            ParseNode node = aliasedNode.getNode();
+            if (node instanceof ColumnParseNode
+                    && groupedColumns.contains(((ColumnParseNode) node).getFullName())) {
+                String name = ((ColumnParseNode) node).getName();
+                rollup.groupedColumns.put(aliasedNode.getAlias() == null ? name : aliasedNode.getAlias(),
+                        (ColumnParseNode) node);
+            } else {
+                if (!isRollupAggregate(node) || aliasedNode.getAlias() == null) {
+                    return null;
+                }
+                rollup.aggregates.put(aliasedNode.getAlias(), (FunctionParseNode) node);
+            }
+        }
+        return rollup.groupedColumns.size() == groupedColumns.size() ? rollup : null;
+    }
+
+    /**
+     * @return true if the node is an aggregate over a column that a rollup can hold
+     */
+    private static boolean isRollupAggregate(ParseNode node) {
+        if (!(node instanceof FunctionParseNode) || !((FunctionParseNode) node).isAggregate()
+                || node.getChildren().size() != 1
+                || !ROLLUP_AGGREGATES.contains(((FunctionParseNode) node).getName())) {
+            return false;
+        }
+        ParseNode child = node.getChildren().get(0);
+        // COUNT(*) is parsed as COUNT(1)
+        return child instanceof ColumnParseNode || (COUNT.equals(((FunctionParseNode) node).getName())
+                && child instanceof LiteralParseNode && ((LiteralParseNode) child).getValue() != null);
+    }
+
+    /**
+     * @return the family and name of the column the node refers to
+     */
+    private static String getColumnKey(ColumnResolver resolver, ColumnParseNode node)
+            throws SQLException {
+        return SchemaUtil.getColumnDisplayName(resolver.resolveColumn(node.getSchemaName(),
+                node.getTableName(), node.getName()).getColumn());
+    }
+
+    /**
+     * @return the key identifying an aggregate for which {@link #isRollupAggregate(ParseNode)}
+     * is true
+     */
+    private static String getAggregateKey(ColumnResolver resolver, FunctionParseNode node)
+            throws SQLException {
+        ParseNode child = node.getChildren().get(0);
+        return node.getName() + "(" + (child instanceof ColumnParseNode
+                ? getColumnKey(resolver, (ColumnParseNode) child) : "*") + ")";
+    }
+
+    /**
+     * Rewrites the given aggregate query over the table of the rollup to read the rollup table.
+     * @param resolver the resolver of the query
+     * @param rollupResolver the resolver of the definition of the rollup
+     * @return the rewritten query, or null if the rollup cannot answer the query
+     */
+    public static SelectStatement rewrite(SelectStatement select, ColumnResolver resolver,
+            Rollup rollup, ColumnResolver rollupResolver) throws SQLException {
+        if (!select.isAggregate() || select.isJoin() || select.getTableSamplingRate() != null
+                || !(select.getFrom() instanceof NamedTableNode)) {
+            return null;
+        }
+        Map<String, String> groupedColumns = new HashMap<String, String>();
+        for (Map.Entry<String, ColumnParseNode> entry : rollup.groupedColumns.entrySet()) {
+            groupedColumns.put(getColumnKey(rollupResolver, entry.getValue()), entry.getKey());
+        }
+        Map<String, String> aggregates = new HashMap<String, String>();
+        for (Map.Entry<String, FunctionParseNode> entry : rollup.aggregates.entrySet()) {
+            aggregates.put(getAggregateKey(rollupResolver, entry.getValue()), entry.getKey());
+        }
+        Set<String> selectAliases = new HashSet<String>();
+        for (AliasedNode aliasedNode : select.getSelect()) {
+            if (aliasedNode.getAlias() != null) {
+                selectAliases.add(aliasedNode.getAlias());
+            }
+        }
+        RollupRewriter rewriter = new RollupRewriter(resolver, groupedColumns, aggregates,
+                selectAliases, !select.getGroupBy().isEmpty());
+        List<AliasedNode> selectNodes = Lists.newArrayListWithExpectedSize(select.getSelect().size());
+        for (AliasedNode aliasedNode : select.getSelect()) {
+            ParseNode node = aliasedNode.getNode();
+            // Keep the labels of the columns of the result
+            String alias = aliasedNode.getAlias();
+            if (alias == null) {
+                alias = node instanceof ColumnParseNode ? ((ColumnParseNode) node).getName() : node.toString();
+            }
+            selectNodes.add(FACTORY.aliasedNode('"' + alias + '"', rewriter.rewriteNode(node)));
+        }
+        ParseNode where = rewriter.rewriteNode(select.getWhere());
+        List<ParseNode> groupBy = Lists.newArrayListWithExpectedSize(select.getGroupBy().size());
+        for (ParseNode node : select.getGroupBy()) {
+            groupBy.add(rewriter.rewriteNode(node));
+        }
+        ParseNode having = rewriter.rewriteNode(select.getHaving());
+        List<OrderByNode> orderBy = Lists.newArrayListWithExpectedSize(select.getOrderBy().size());
+        for (OrderByNode orderByNode : select.getOrderBy()) {
+            orderBy.add(FACTORY.orderBy(rewriter.rewriteNode(orderByNode.getNode()),
+                    orderByNode.isNullsLast(), orderByNode.isAscending()));
+        }
+        if (!rewriter.isRewritable) {
+            return null;
+        }
+        String schemaName = SchemaUtil.getSchemaNameFromFullName(rollup.getRollupTableName());
+        TableName rollupTableName = TableName.createNormalized(
+                schemaName.isEmpty() ? null : schemaName,
+                SchemaUtil.getTableNameFromFullName(rollup.getRollupTableName()));
+        return FACTORY.select(FACTORY.namedTable(null, rollupTableName), select.getHint(),
+                select.isDistinct(), selectNodes, where, groupBy, having, orderBy,
+                select.getLimit(), select.getOffset(), select.getBindCount(), true,
+                select.hasSequence(), select.getSelects(), select.getUdfParseNodes());
+    }
+
+    private ParseNode rewriteNode(ParseNode node) throws SQLException {
+        if (node == null || !isRewritable) {
+            return node;
+        }
+        reset();
+        return node.accept(this);
+    }
+
+    private static ColumnParseNode column(String name) {
+        return FACTORY.column(null, '"' + name + '"', null);
+    }
+
+    @Override
+    public boolean visitEnter(FunctionParseNode node) throws SQLException {
+        // The arguments of aggregates refer to the columns of the table
+        return !node.isAggregate();
+    }
+
+    @Override
+    public ParseNode visitLeave(FunctionParseNode node, List<ParseNode> nodes) throws SQLException {
+        if (!node.isAggregate()) {
+            return super.visitLeave(node, nodes);
+        }
+        String rollupColumn = isRollupAggregate(node)
+                ? aggregates.get(getAggregateKey(resolver, node)) : null;
+        if (rollupColumn == null) {
+            isRewritable = false;
+            return node;
+        }
+        List<ParseNode> args = Collections.<ParseNode>singletonList(column(rollupColumn));
+        if (!COUNT.equals(node.getName())) {
+            return FACTORY.function(node.getName(), args);
+        }
+        ParseNode sum = FACTORY.function(SUM, args);
+        // Unlike COUNT, SUM is null when there are no rows to aggregate
+        return isGrouped ? sum : FACTORY.function("COALESCE",
+                Lists.<ParseNode>newArrayList(sum, FACTORY.literal(0L)));
+    }
+
+    @Override
+    public ParseNode visit(ColumnParseNode node) throws SQLException {
+        String rollupColumn;
+        try {
+            rollupColumn = groupedColumns.get(getColumnKey(resolver, node));
+        } catch (ColumnNotFoundException e) {
+            // References to the aliases of the select expressions are resolved by the compiler
+            if (node.getTableName() == null && selectAliases.contains(node.getName())) {
+                return node;
+            }
+            throw e;
+        }
+        if (rollupColumn != null) {
+            return column(rollupColumn);
+        }
+        isRewritable = false;
+        return node;
+    }
+
+    @Override
+    public ParseNode visit(WildcardParseNode node) throws SQLException {
+        isRewritable = false;
+        return node;
+    }
+
+    @Override
+    public ParseNode visit(TableWildcardParseNode node) throws SQLException {
+        isRewritable = false;
+        return node;
+    }
+
+    @Override
+    public ParseNode visit(FamilyWildcardParseNode node) throws SQLException {
+        isRewritable = false;
+        return node;
+    }
+}
@@ -118,6 +118,17 @@ public class HintNode {
          * Issue https://issues.apache.org/jira/browse/PHOENIX-4751.
          */
         HASH_AGGREGATE,
+        /**
+         * Caches the results of the query on the client, which is only done
+         * for queries run at a fixed SCN.
+         */
+        RESULT_CACHE,
+        /**
+         * Reads a rollup table declared for the table of an aggregate query
+         * if it can answer the query. Rollup tables are maintained by the
+         * application, so the results are as recent as the rollup table.
+         */
+        USE_ROLLUP,
     };
 
     private final Map<Hint,String> hints;
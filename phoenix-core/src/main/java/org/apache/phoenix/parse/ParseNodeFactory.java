@@ -516,6 +516,17 @@ public class ParseNodeFactory {
         }
     }
 
+    public WindowFunctionParseNode windowFunction(String name, List<ParseNode> args,
+            List<ParseNode> partitionBy, List<OrderByNode> orderBy) {
+        List<ParseNode> children = Lists.newArrayListWithExpectedSize(args.size() + partitionBy.size() + orderBy.size());
+        children.addAll(args);
+        children.addAll(partitionBy);
+        for (OrderByNode node : orderBy) {
+            children.add(node.getNode());
+        }
+        return new WindowFunctionParseNode(name, children, args.size(), partitionBy.size(), orderBy);
+    }
+
     public HintNode hint(String hint) {
         return new HintNode(hint);
     }
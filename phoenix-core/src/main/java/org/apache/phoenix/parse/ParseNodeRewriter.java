@@ -319,6 +319,9 @@ public class ParseNodeRewriter extends TraverseAllParseNodeVisitor<ParseNode> {
         return leaveCompoundNode(node, nodes, new CompoundNodeFactory() {
             @Override
             public ParseNode createNode(List<ParseNode> children) {
+                if (node instanceof WindowFunctionParseNode) {
+                    return ((WindowFunctionParseNode) node).copy(children);
+                }
                 return NODE_FACTORY.function(node.getName(),children);
             }
         });
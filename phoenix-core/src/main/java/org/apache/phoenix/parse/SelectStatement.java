@@ -354,6 +354,18 @@ public class SelectStatement implements FilterableStatement {
         return !getSelects().isEmpty();
     }
 
+    /**
+     * @return true if any of the select expressions is a window function
+     */
+    public boolean hasWindowFunctions() {
+        for (AliasedNode node : select) {
+            if (node.getNode() instanceof WindowFunctionParseNode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public List<SelectStatement> getSelects() {
         return selects;
     }
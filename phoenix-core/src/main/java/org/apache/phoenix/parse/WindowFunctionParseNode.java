@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.parse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.phoenix.compile.ColumnResolver;
+
+/**
+ *
+ * Node representing a window function such as ROW_NUMBER() OVER (PARTITION BY ... ORDER BY ...)
+ * in SQL. The arguments, PARTITION BY expressions and ORDER BY expressions are all children of
+ * the node so that they are rewritten along with the rest of the statement.
+ *
+ */
+public class WindowFunctionParseNode extends FunctionParseNode {
+    private final int argCount;
+    private final int partitionByCount;
+    private final List<OrderByNode> orderBy;
+
+    WindowFunctionParseNode(String name, List<ParseNode> children, int argCount,
+            int partitionByCount, List<OrderByNode> orderBy) {
+        super(name, children, null);
+        this.argCount = argCount;
+        this.partitionByCount = partitionByCount;
+        List<ParseNode> orderByNodes = children.subList(argCount + partitionByCount, children.size());
+        this.orderBy = new ArrayList<OrderByNode>(orderBy.size());
+        for (int i = 0; i < orderBy.size(); i++) {
+            OrderByNode node = orderBy.get(i);
+            this.orderBy.add(new OrderByNode(orderByNodes.get(i), node.isNullsLast(), node.isAscending()));
+        }
+    }
+
+    public List<ParseNode> getArguments() {
+        return getChildren().subList(0, argCount);
+    }
+
+    public List<ParseNode> getPartitionBy() {
+        return getChildren().subList(argCount, argCount + partitionByCount);
+    }
+
+    public List<OrderByNode> getOrderBy() {
+        return orderBy;
+    }
+
+    /**
+     * @return true if the given window function is computed over the same window as this one
+     */
+    public boolean hasSameWindow(WindowFunctionParseNode other) {
+        return getPartitionBy().equals(other.getPartitionBy()) && orderBy.equals(other.orderBy);
+    }
+
+    /**
+     * @return a copy of this node with the given children, as rewritten by a {@link ParseNodeRewriter}
+     */
+    public WindowFunctionParseNode copy(List<ParseNode> children) {
+        return new WindowFunctionParseNode(getName(), children, argCount, partitionByCount, orderBy);
+    }
+
+    @Override
+    public boolean isAggregate() {
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + argCount;
+        result = prime * result + partitionByCount;
+        result = prime * result + orderBy.hashCode();
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!super.equals(obj)) return false;
+        WindowFunctionParseNode other = (WindowFunctionParseNode) obj;
+        return argCount == other.argCount && partitionByCount == other.partitionByCount
+                && orderBy.equals(other.orderBy);
+    }
+
+    @Override
+    public void toSQL(ColumnResolver resolver, StringBuilder buf) {
+        buf.append(' ');
+        buf.append(getName());
+        buf.append('(');
+        List<ParseNode> args = getArguments();
+        if (!args.isEmpty()) {
+            for (ParseNode child : args) {
+                child.toSQL(resolver, buf);
+                buf.append(',');
+            }
+            buf.setLength(buf.length()-1);
+        }
+        buf.append(") OVER (");
+        List<ParseNode> partitionBy = getPartitionBy();
+        if (!partitionBy.isEmpty()) {
+            buf.append("PARTITION BY ");
+            for (ParseNode child : partitionBy) {
+                child.toSQL(resolver, buf);
+                buf.append(',');
+            }
+            buf.setLength(buf.length()-1);
+        }
+        if (!orderBy.isEmpty()) {
+            buf.append(partitionBy.isEmpty() ? "ORDER BY " : " ORDER BY ");
+            for (OrderByNode node : orderBy) {
+                node.toSQL(resolver, buf);
+                buf.append(',');
+            }
+            buf.setLength(buf.length()-1);
+        }
+        buf.append(')');
+    }
+}
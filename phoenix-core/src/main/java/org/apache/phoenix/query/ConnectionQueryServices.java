@@ -33,12 +33,14 @@ import org.apache.hadoop.hbase.client.TableDescriptor;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.security.User;
 import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.cache.ResultCache;
 import org.apache.phoenix.compile.MutationPlan;
 import org.apache.phoenix.coprocessor.MetaDataProtocol.MetaDataMutationResult;
 import org.apache.phoenix.execute.MutationState;
 import org.apache.phoenix.hbase.index.util.KeyValueBuilder;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.log.QueryLoggerDisruptor;
+import org.apache.phoenix.optimize.RollupRewriter;
 import org.apache.phoenix.parse.PFunction;
 import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PName;
@@ -187,6 +189,16 @@ public interface ConnectionQueryServices extends QueryServices, MetaDataMutated
     public User getUser();
 
     public QueryLoggerDisruptor getQueryDisruptor();
+
+    /**
+     * @return the client-side cache of the results of queries
+     */
+    public ResultCache getResultCache();
+
+    /**
+     * @return the rollup tables declared in the properties, parsed once
+     */
+    public List<RollupRewriter.Rollup> getRollups();
     
     public PhoenixTransactionClient initTransactionClient(TransactionFactory.Provider provider) throws SQLException;
     
@@ -107,6 +107,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
@@ -159,6 +160,7 @@ import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.hbase.util.VersionInfo;
 import org.apache.hadoop.hbase.zookeeper.ZKConfig;
 import org.apache.hadoop.ipc.RemoteException;
+import org.apache.phoenix.cache.ResultCache;
 import org.apache.phoenix.compile.MutationPlan;
 import org.apache.phoenix.coprocessor.ChildLinkMetaDataEndpoint;
 import org.apache.phoenix.coprocessor.GroupedAggregateRegionObserver;
@@ -221,6 +223,7 @@ import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
 import org.apache.phoenix.jdbc.PhoenixEmbeddedDriver.ConnectionInfo;
 import org.apache.phoenix.log.QueryLoggerDisruptor;
+import org.apache.phoenix.optimize.RollupRewriter;
 import org.apache.phoenix.parse.PFunction;
 import org.apache.phoenix.parse.PSchema;
 import org.apache.phoenix.protobuf.ProtobufUtil;
@@ -324,6 +327,8 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
     private final User user;
     private final ConcurrentHashMap<ImmutableBytesWritable,ConnectionQueryServices> childServices;
     private final GuidePostsCacheWrapper tableStatsCache;
+    private final ResultCache resultCache;
+    private final List<RollupRewriter.Rollup> rollups;
 
     // Cache the latest meta data here for future connections
     // writes guarded by "latestMetaDataLock"
@@ -338,6 +343,8 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
     private int connectionCount = 0;
     private final Object connectionCountLock = new Object();
     private final boolean returnSequenceValues ;
+    private final boolean prefetchSequenceValues;
+    private final long maxSequencePrefetchBlockMultiplier;
 
     private Connection connection;
     private volatile boolean initialized;
@@ -435,6 +442,11 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
         String hbaseVersion = VersionInfo.getVersion();
         this.kvBuilder = KeyValueBuilder.get(hbaseVersion);
         this.returnSequenceValues = props.getBoolean(QueryServices.RETURN_SEQUENCE_VALUES_ATTRIB, QueryServicesOptions.DEFAULT_RETURN_SEQUENCE_VALUES);
+        this.prefetchSequenceValues = props.getBoolean(QueryServices.SEQUENCE_PREFETCH_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_SEQUENCE_PREFETCH_ENABLED);
+        this.maxSequencePrefetchBlockMultiplier = props.getInt(
+                QueryServices.SEQUENCE_PREFETCH_MAX_BLOCK_MULTIPLIER_ATTRIB,
+                QueryServicesOptions.DEFAULT_SEQUENCE_PREFETCH_MAX_BLOCK_MULTIPLIER);
         this.renewLeaseEnabled = config.getBoolean(RENEW_LEASE_ENABLED, DEFAULT_RENEW_LEASE_ENABLED);
         this.renewLeasePoolSize = config.getInt(RENEW_LEASE_THREAD_POOL_SIZE, DEFAULT_RENEW_LEASE_THREAD_POOL_SIZE);
         this.renewLeaseThreshold = config.getInt(RENEW_LEASE_THRESHOLD_MILLISECONDS, DEFAULT_RENEW_LEASE_THRESHOLD_MILLISECONDS);
@@ -449,6 +461,8 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
         // A little bit of a smell to leak `this` here, but should not be a problem
         this.tableStatsCache = GUIDE_POSTS_CACHE_PROVIDER.getGuidePostsCache(props.get(GUIDE_POSTS_CACHE_FACTORY_CLASS,
                 QueryServicesOptions.DEFAULT_GUIDE_POSTS_CACHE_FACTORY_CLASS), this, config);
+        this.resultCache = new ResultCache(props);
+        this.rollups = RollupRewriter.getRollups(props);
 
         this.isAutoUpgradeEnabled = config.getBoolean(AUTO_UPGRADE_ENABLED, QueryServicesOptions.DEFAULT_AUTO_UPGRADE_ENABLED);
         this.maxConnectionsAllowed = config.getInt(QueryServices.CLIENT_CONNECTION_MAX_ALLOWED_CONNECTIONS,
@@ -4777,6 +4791,7 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
             latestMetaData = newEmptyMetaData();
         }
         tableStatsCache.invalidateAll();
+        resultCache.invalidateAll();
         try (Table htable =
                 this.getTable(
                     SchemaUtil.getPhysicalName(PhoenixDatabaseMetaData.SYSTEM_CATALOG_NAME_BYTES,
@@ -5063,12 +5078,65 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
                 }
             }
         } finally {
+            if (prefetchSequenceValues && op == Sequence.ValueOp.INCREMENT_SEQUENCE) {
+                for (Sequence sequence : sequences) {
+                    prefetchSequenceValues(sequence, timestamp);
+                }
+            }
             for (Sequence sequence : sequences) {
                 sequence.getLock().unlock();
             }
         }
     }
 
+    /**
+     * Allocates the next block of values of the sequence in the background once half of its
+     * cached block is used, so that NEXT VALUE FOR does not wait for the allocation when the
+     * cached block is used up. Must be called while holding the lock of the sequence.
+     */
+    private void prefetchSequenceValues(final Sequence sequence, long timestamp) {
+        final long numToAllocate = sequence.startPrefetch(timestamp, maxSequencePrefetchBlockMultiplier);
+        if (numToAllocate == 0) {
+            return;
+        }
+        final Increment inc = sequence.newIncrement(timestamp, Sequence.ValueOp.INCREMENT_SEQUENCE, numToAllocate);
+        Runnable prefetch = new Runnable() {
+            @Override
+            public void run() {
+                Result result = null;
+                try (Table hTable = getTable(SchemaUtil.getPhysicalName(
+                        PhoenixDatabaseMetaData.SYSTEM_SEQUENCE_NAME_BYTES, getProps()).getName())) {
+                    result = hTable.increment(inc);
+                } catch (Exception e) {
+                    LOGGER.debug("Unable to prefetch values of sequence " + sequence.getKey(), e);
+                }
+                Append discarded;
+                sequence.getLock().lock();
+                try {
+                    discarded = sequence.setPrefetchedValues(result, numToAllocate);
+                } finally {
+                    sequence.getLock().unlock();
+                }
+                if (discarded == null) {
+                    return;
+                }
+                // The server only takes the values back if it allocated none after them
+                try (Table hTable = getTable(SchemaUtil.getPhysicalName(
+                        PhoenixDatabaseMetaData.SYSTEM_SEQUENCE_NAME_BYTES, getProps()).getName())) {
+                    hTable.append(discarded);
+                } catch (Exception e) {
+                    LOGGER.debug("Unable to return prefetched values of sequence "
+                            + sequence.getKey(), e);
+                }
+            }
+        };
+        try {
+            getExecutor().submit(prefetch);
+        } catch (RejectedExecutionException e) {
+            sequence.setPrefetchedValues(null, numToAllocate);
+        }
+    }
+
     @Override
     public void clearTableFromCache(final byte[] tenantId, final byte[] schemaName, final byte[] tableName,
             final long clientTS) throws SQLException {
@@ -5742,6 +5810,16 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices implement
         return this.queryDisruptor;
     }
 
+    @Override
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    @Override
+    public List<RollupRewriter.Rollup> getRollups() {
+        return rollups;
+    }
+
     @Override
     public synchronized PhoenixTransactionClient initTransactionClient(Provider provider) throws SQLException {
         PhoenixTransactionClient client = txClients[provider.ordinal()];
@@ -47,6 +47,7 @@ import org.apache.hadoop.hbase.security.User;
 import org.apache.hadoop.hbase.util.Addressing;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.cache.ResultCache;
 import org.apache.phoenix.compile.MutationPlan;
 import org.apache.phoenix.coprocessor.MetaDataProtocol;
 import org.apache.phoenix.coprocessor.MetaDataProtocol.MetaDataMutationResult;
@@ -60,6 +61,7 @@ import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
 import org.apache.phoenix.jdbc.PhoenixEmbeddedDriver.ConnectionInfo;
 import org.apache.phoenix.log.QueryLoggerDisruptor;
+import org.apache.phoenix.optimize.RollupRewriter;
 import org.apache.phoenix.parse.PFunction;
 import org.apache.phoenix.parse.PSchema;
 import org.apache.phoenix.schema.FunctionNotFoundException;
@@ -121,6 +123,8 @@ public class ConnectionlessQueryServicesImpl extends DelegateQueryServices imple
     private volatile SQLException initializationException;
     private final Map<String, List<HRegionLocation>> tableSplits = Maps.newHashMap();
     private final GuidePostsCacheWrapper guidePostsCache;
+    private final ResultCache resultCache;
+    private final List<RollupRewriter.Rollup> rollups;
     private final Configuration config;
 
     private User user;
@@ -156,6 +160,8 @@ public class ConnectionlessQueryServicesImpl extends DelegateQueryServices imple
 
         this.guidePostsCache = GUIDE_POSTS_CACHE_PROVIDER.getGuidePostsCache(props.get(GUIDE_POSTS_CACHE_FACTORY_CLASS,
                 QueryServicesOptions.DEFAULT_GUIDE_POSTS_CACHE_FACTORY_CLASS), null, config);
+        this.resultCache = new ResultCache(props);
+        this.rollups = RollupRewriter.getRollups(props);
     }
 
     private PMetaData newEmptyMetaData() {
@@ -776,6 +782,16 @@ public class ConnectionlessQueryServicesImpl extends DelegateQueryServices imple
     public QueryLoggerDisruptor getQueryDisruptor() {
         return null;
     }
+
+    @Override
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    @Override
+    public List<RollupRewriter.Rollup> getRollups() {
+        return rollups;
+    }
     
     @Override
     public PhoenixTransactionClient initTransactionClient(Provider provider) {
@@ -202,6 +202,42 @@ public interface QueryServices extends SQLCloseable {
     public static final String STATS_GUIDEPOST_WIDTH_BYTES_ATTRIB = "phoenix.stats.guidepost.width";
     public static final String STATS_GUIDEPOST_PER_REGION_ATTRIB = "phoenix.stats.guidepost.per.region";
     public static final String STATS_USE_CURRENT_TIME_ATTRIB = "phoenix.stats.useCurrentTime";
+    // Whether per column statistics (distinct value sketches, null counts and histograms) are
+    // collected along with the guideposts on the server and loaded with them on the client
+    public static final String STATS_COLUMN_STATS_ENABLED_ATTRIB = "phoenix.stats.column.enabled";
+    public static final String STATS_COLUMN_HISTOGRAM_BUCKETS_ATTRIB = "phoenix.stats.column.histogram.buckets";
+    // Whether the min and max values of non primary key columns are collected for the chunk of
+    // rows ending at each guidepost, and whether queries use them to skip chunks. Since these zone
+    // maps are only as recent as the last stats collection, they are only used for immutable
+    // tables, and region servers only skip a chunk if its zone map was built by UPDATE STATISTICS
+    // and nothing was written to its region since, be it in the memstore or in a store file.
+    public static final String STATS_ZONE_MAP_ENABLED_ATTRIB = "phoenix.stats.zoneMap.enabled";
+    public static final String STATS_ZONE_MAP_MAX_COLUMNS_ATTRIB = "phoenix.stats.zoneMap.maxColumns";
+    public static final String STATS_ZONE_MAP_PRUNING_ENABLED_ATTRIB = "phoenix.stats.zoneMap.pruning.enabled";
+
+    // Prefix of the properties declaring rollup tables, followed by the name of the rollup table,
+    // whose value is the GROUP BY query the rollup table holds the result of. Aggregate queries
+    // with the USE_ROLLUP hint that the rollup can answer are rewritten to read it.
+    public static final String ROLLUP_DEFINITION_ATTRIB_PREFIX = "phoenix.query.rollup.";
+
+    // Client-side cache of the results of queries run at a fixed SCN, which may also be enabled
+    // for a single query with the RESULT_CACHE hint
+    public static final String RESULT_CACHE_ENABLED_ATTRIB = "phoenix.query.resultCache.enabled";
+    // Maximum total size in bytes of the cached results
+    public static final String RESULT_CACHE_MAX_SIZE_ATTRIB = "phoenix.query.resultCache.maxSize";
+    // Maximum size in bytes of the results of a single query for them to be cached
+    public static final String RESULT_CACHE_MAX_ENTRY_SIZE_ATTRIB = "phoenix.query.resultCache.maxEntrySize";
+    // Number of milliseconds after which cached results expire
+    public static final String RESULT_CACHE_TTL_MS_ATTRIB = "phoenix.query.resultCache.ttlMs";
+    // Minimum age of the SCN of a query for its results to be cached, so that writes in flight or
+    // made with skewed clocks at the time of the SCN are committed when the results are cached
+    public static final String RESULT_CACHE_SCN_MARGIN_MS_ATTRIB = "phoenix.query.resultCache.scnMarginMs";
+
+    // Whether ORDER BY ... LIMIT queries projecting many columns first find the primary keys of
+    // the rows to return and then look the rows up
+    public static final String LATE_MATERIALIZATION_ENABLED_ATTRIB = "phoenix.query.lateMaterialization.enabled";
+    // Minimum number of projected columns for late materialization to be used
+    public static final String LATE_MATERIALIZATION_MIN_COLUMNS_ATTRIB = "phoenix.query.lateMaterialization.minColumns";
     
     public static final String RUN_UPDATE_STATS_ASYNC = "phoenix.update.stats.command.async";
     public static final String STATS_SERVER_POOL_SIZE = "phoenix.stats.pool.size";
@@ -242,6 +278,10 @@ public interface QueryServices extends SQLCloseable {
     public static final String COLLECT_REQUEST_LEVEL_METRICS = "phoenix.query.request.metrics.enabled";
     public static final String ALLOW_VIEWS_ADD_NEW_CF_BASE_TABLE = "phoenix.view.allowNewColumnFamily";
     public static final String RETURN_SEQUENCE_VALUES_ATTRIB = "phoenix.sequence.returnValues";
+    // Whether the next block of values of a sequence is allocated in the background once half of
+    // the cached block is used, and the most cache sizes such a block may grow to
+    public static final String SEQUENCE_PREFETCH_ENABLED_ATTRIB = "phoenix.sequence.prefetch.enabled";
+    public static final String SEQUENCE_PREFETCH_MAX_BLOCK_MULTIPLIER_ATTRIB = "phoenix.sequence.prefetch.maxBlockMultiplier";
     public static final String EXTRA_JDBC_ARGUMENTS_ATTRIB = "phoenix.jdbc.extra.arguments";
     
     public static final String MAX_VERSIONS_TRANSACTIONAL_ATTRIB = "phoenix.transactions.maxVersions";
@@ -290,12 +330,20 @@ public interface QueryServices extends SQLCloseable {
 
     // whether to enable server side RS -> RS calls for upsert select statements
     public static final String ENABLE_SERVER_UPSERT_SELECT ="phoenix.client.enable.server.upsert.select";
+    // whether server side upsert select may also write to tables with global mutable indexes,
+    // read from hash joins or WHERE subqueries, or set a ROW_TIMESTAMP column
+    public static final String ENABLE_SERVER_UPSERT_SELECT_MUTABLE_INDEXES ="phoenix.client.enable.server.upsert.select.mutable.indexes";
+    public static final String ENABLE_SERVER_UPSERT_SELECT_JOINS ="phoenix.client.enable.server.upsert.select.joins";
+    public static final String ENABLE_SERVER_UPSERT_SELECT_ROW_TIMESTAMP ="phoenix.client.enable.server.upsert.select.row.timestamp";
 
     public static final String PROPERTY_POLICY_PROVIDER_ENABLED = "phoenix.property.policy.provider.enabled";
 
     // whether to trigger mutations on the server at all (UPSERT/DELETE or DELETE FROM)
     public static final String ENABLE_SERVER_SIDE_DELETE_MUTATIONS ="phoenix.client.enable.server.delete.mutations";
     public static final String ENABLE_SERVER_SIDE_UPSERT_MUTATIONS ="phoenix.client.enable.server.upsert.mutations";
+    // whether a DELETE of all the rows of a table truncates it and its global indexes instead
+    // of writing delete markers
+    public static final String ENABLE_DELETE_TRUNCATE ="phoenix.client.enable.delete.truncate";
 
     //Update Cache Frequency default config attribute
     public static final String DEFAULT_UPDATE_CACHE_FREQUENCY_ATRRIB  = "phoenix.default.update.cache.frequency";
@@ -330,8 +378,37 @@ public interface QueryServices extends SQLCloseable {
     // The number of rows to be scanned in one RPC call
     public static final String UNGROUPED_AGGREGATE_PAGE_SIZE_IN_MS = "phoenix.ungrouped.aggregate_page_size_in_ms";
     public static final String GROUPED_AGGREGATE_PAGE_SIZE_IN_MS = "phoenix.grouped.aggregate_page_size_in_ms";
+    // The number of local index rows whose uncovered columns are read from the data table with a single skip scan.
+    // A value of 1 reads them with a get per index row
+    public static final String LOCAL_INDEX_DATA_JOIN_BATCH_SIZE_ATTRIB = "phoenix.local.index.data.join.batch.size";
+    // Whether skip-scan semi joins (e.g. uncovered global index lookups) stream the join keys
+    // to the data table in batches instead of materializing all of them up front
+    public static final String SEMI_JOIN_KEY_BATCHING_ENABLED_ATTRIB = "phoenix.query.semiJoin.keyBatching.enabled";
+    public static final String SEMI_JOIN_KEY_BATCH_MIN_SIZE_ATTRIB = "phoenix.query.semiJoin.keyBatch.minSize";
+    public static final String SEMI_JOIN_KEY_BATCH_MAX_SIZE_ATTRIB = "phoenix.query.semiJoin.keyBatch.maxSize";
+    // Whether hash joins on columns that cannot be turned into a skip scan push a bloom filter
+    // of the build side join keys down to the probe side scan
+    public static final String HASH_JOIN_BLOOM_FILTER_ENABLED_ATTRIB = "phoenix.query.hashJoin.bloomFilter.enabled";
+    public static final String HASH_JOIN_BLOOM_FILTER_FPP_ATTRIB = "phoenix.query.hashJoin.bloomFilter.fpp";
+    public static final String HASH_JOIN_BLOOM_FILTER_MAX_KEYS_ATTRIB = "phoenix.query.hashJoin.bloomFilter.maxKeys";
+    // Whether aggregate queries over inner joins first aggregate the table the aggregated columns
+    // come from by its join keys, so that fewer rows are joined
+    public static final String JOIN_PARTIAL_AGGREGATION_ENABLED_ATTRIB = "phoenix.query.join.partialAggregation.enabled";
+    // Whether the chunks of a parallel non aggregate scan with the most time left to be read are
+    // split while they are read, with the part split off scanned by an idle worker
+    public static final String DYNAMIC_CHUNK_SPLITTING_ENABLED_ATTRIB = "phoenix.query.dynamicChunkSplitting.enabled";
+    // Minimum estimated number of milliseconds left to scan a chunk for it to be split
+    public static final String DYNAMIC_CHUNK_SPLITTING_MIN_REMAINING_MS_ATTRIB = "phoenix.query.dynamicChunkSplitting.minRemainingMs";
+    // Maximum number of times the chunks of a single query are split
+    public static final String DYNAMIC_CHUNK_SPLITTING_MAX_SPLITS_ATTRIB = "phoenix.query.dynamicChunkSplitting.maxSplits";
+    // Maximum number of batches of a bulk upsert being written to a single region server at once
+    public static final String BULK_UPSERT_MAX_IN_FLIGHT_BATCHES_PER_SERVER_ATTRIB = "phoenix.bulkUpsert.maxInFlightBatchesPerServer";
+    // Number of threads writing the batches of a bulk upsert
+    public static final String BULK_UPSERT_THREAD_POOL_SIZE_ATTRIB = "phoenix.bulkUpsert.threadPoolSize";
     // Flag indicating that server side masking of ttl expired rows is enabled.
     public static final String PHOENIX_TTL_SERVER_SIDE_MASKING_ENABLED = "phoenix.ttl.server_side.masking.enabled";
+    // Flag indicating that major compactions drop the rows of tenant views that expired by PHOENIX_TTL.
+    public static final String PHOENIX_TTL_COMPACTION_EXPIRY_ENABLED = "phoenix.ttl.compaction.expiry.enabled";
 
 
     // Before 4.15 when we created a view we included the parent table column metadata in the view
@@ -157,6 +157,7 @@ public class QueryServicesOptions {
     public static final int DEFAULT_MAX_INDEXES_PER_TABLE = 10;
     public static final int DEFAULT_CLIENT_INDEX_ASYNC_THRESHOLD = 0;
     public static final boolean DEFAULT_SERVER_SIDE_MASKING_ENABLED = true;
+    public static final boolean DEFAULT_PHOENIX_TTL_COMPACTION_EXPIRY_ENABLED = false;
 
     public final static int DEFAULT_MUTATE_BATCH_SIZE = 100; // Batch size for UPSERT SELECT and DELETE
     //Batch size in bytes for UPSERT, SELECT and DELETE. By default, 2MB
@@ -244,6 +245,18 @@ public class QueryServicesOptions {
     // compression we're getting)
     public static final long DEFAULT_STATS_GUIDEPOST_WIDTH_BYTES = 3* 100 * 1024 *1024;
     public static final boolean DEFAULT_STATS_USE_CURRENT_TIME = true;
+    public static final boolean DEFAULT_STATS_COLUMN_STATS_ENABLED = false;
+    public static final int DEFAULT_STATS_COLUMN_HISTOGRAM_BUCKETS = 16;
+    public static final boolean DEFAULT_STATS_ZONE_MAP_ENABLED = false;
+    public static final int DEFAULT_STATS_ZONE_MAP_MAX_COLUMNS = 16;
+    public static final boolean DEFAULT_STATS_ZONE_MAP_PRUNING_ENABLED = false;
+    public static final boolean DEFAULT_RESULT_CACHE_ENABLED = false;
+    public static final long DEFAULT_RESULT_CACHE_MAX_SIZE = 64 * 1024 * 1024; // 64MB
+    public static final long DEFAULT_RESULT_CACHE_MAX_ENTRY_SIZE = 1024 * 1024; // 1MB
+    public static final long DEFAULT_RESULT_CACHE_TTL_MS = 60000; // 1 min
+    public static final long DEFAULT_RESULT_CACHE_SCN_MARGIN_MS = 60000; // 1 min
+    public static final boolean DEFAULT_LATE_MATERIALIZATION_ENABLED = false;
+    public static final int DEFAULT_LATE_MATERIALIZATION_MIN_COLUMNS = 16;
     public static final boolean DEFAULT_RUN_UPDATE_STATS_ASYNC = true;
     public static final boolean DEFAULT_COMMIT_STATS_ASYNC = true;
     public static final int DEFAULT_STATS_POOL_SIZE = 4;
@@ -295,6 +308,8 @@ public class QueryServicesOptions {
     public static final int DEFAULT_MAX_VERSIONS_TRANSACTIONAL = Integer.MAX_VALUE;
 
     public static final boolean DEFAULT_RETURN_SEQUENCE_VALUES = false;
+    public static final boolean DEFAULT_SEQUENCE_PREFETCH_ENABLED = false;
+    public static final int DEFAULT_SEQUENCE_PREFETCH_MAX_BLOCK_MULTIPLIER = 16;
     public static final String DEFAULT_EXTRA_JDBC_ARGUMENTS = "";
 
     public static final long DEFAULT_INDEX_POPULATION_SLEEP_TIME = 5000;
@@ -340,6 +355,19 @@ public class QueryServicesOptions {
     public static final long DEFAULT_INDEX_REBUILD_PAGE_SIZE_IN_ROWS = 32*1024;
     public static final long DEFAULT_UNGROUPED_AGGREGATE_PAGE_SIZE_IN_MS = 1000; // 1 second
     public static final long DEFAULT_GROUPED_AGGREGATE_PAGE_SIZE_IN_MS = 1000;
+    public static final int DEFAULT_LOCAL_INDEX_DATA_JOIN_BATCH_SIZE = 1;
+    public static final boolean DEFAULT_SEMI_JOIN_KEY_BATCHING_ENABLED = false;
+    public static final int DEFAULT_SEMI_JOIN_KEY_BATCH_MIN_SIZE = 128;
+    public static final int DEFAULT_SEMI_JOIN_KEY_BATCH_MAX_SIZE = 32 * 1024;
+    public static final boolean DEFAULT_HASH_JOIN_BLOOM_FILTER_ENABLED = false;
+    public static final float DEFAULT_HASH_JOIN_BLOOM_FILTER_FPP = 0.03f;
+    public static final int DEFAULT_HASH_JOIN_BLOOM_FILTER_MAX_KEYS = 100000;
+    public static final boolean DEFAULT_JOIN_PARTIAL_AGGREGATION_ENABLED = false;
+    public static final boolean DEFAULT_DYNAMIC_CHUNK_SPLITTING_ENABLED = false;
+    public static final long DEFAULT_DYNAMIC_CHUNK_SPLITTING_MIN_REMAINING_MS = 1000;
+    public static final int DEFAULT_DYNAMIC_CHUNK_SPLITTING_MAX_SPLITS = 64;
+    public static final int DEFAULT_BULK_UPSERT_MAX_IN_FLIGHT_BATCHES_PER_SERVER = 2;
+    public static final int DEFAULT_BULK_UPSERT_THREAD_POOL_SIZE = 16;
 
     public static final boolean DEFAULT_ALLOW_SPLITTABLE_SYSTEM_CATALOG_ROLLBACK = false;
 
@@ -352,10 +380,14 @@ public class QueryServicesOptions {
                                                                                     // encoded
     // RS -> RS calls for upsert select statements are disabled by default
     public static final boolean DEFAULT_ENABLE_SERVER_UPSERT_SELECT = false;
+    public static final boolean DEFAULT_ENABLE_SERVER_UPSERT_SELECT_MUTABLE_INDEXES = false;
+    public static final boolean DEFAULT_ENABLE_SERVER_UPSERT_SELECT_JOINS = false;
+    public static final boolean DEFAULT_ENABLE_SERVER_UPSERT_SELECT_ROW_TIMESTAMP = false;
 
     // By default generally allow server trigger mutations
     public static final boolean DEFAULT_ENABLE_SERVER_SIDE_DELETE_MUTATIONS = true;
     public static final boolean DEFAULT_ENABLE_SERVER_SIDE_UPSERT_MUTATIONS = true;
+    public static final boolean DEFAULT_ENABLE_DELETE_TRUNCATE = false;
 
     public static final boolean DEFAULT_COST_BASED_OPTIMIZER_ENABLED = false;
     public static final boolean DEFAULT_WILDCARD_QUERY_DYNAMIC_COLS_ATTRIB = false;
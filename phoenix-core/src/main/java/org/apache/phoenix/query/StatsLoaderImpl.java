@@ -73,6 +73,12 @@ class StatsLoaderImpl implements PhoenixStatsLoader {
         try {
             GuidePostsInfo guidePostsInfo = StatisticsUtil.readStatistics(statsHTable, statsKey,
                     HConstants.LATEST_TIMESTAMP);
+            if (guidePostsInfo != GuidePostsInfo.NO_GUIDEPOST && queryServices.getProps().getBoolean(
+                    QueryServices.STATS_COLUMN_STATS_ENABLED_ATTRIB,
+                    QueryServicesOptions.DEFAULT_STATS_COLUMN_STATS_ENABLED)) {
+                guidePostsInfo = guidePostsInfo.withColumnStatistics(StatisticsUtil.readColumnStatistics(
+                        statsHTable, statsKey, HConstants.LATEST_TIMESTAMP));
+            }
             traceStatsUpdate(statsKey, guidePostsInfo);
             return guidePostsInfo;
         } catch (TableNotFoundException e) {
@@ -54,6 +54,7 @@ import org.apache.phoenix.schema.types.PDataType;
 import org.apache.phoenix.schema.types.PInteger;
 import org.apache.phoenix.schema.types.PLong;
 import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.PhoenixKeyValueUtil;
 import org.apache.phoenix.util.SequenceUtil;
 
@@ -99,9 +100,17 @@ public class Sequence {
     public static final int NUM_SEQUENCE_KEY_VALUES = SEQUENCE_KV_COLUMNS.size();
     private static final EmptySequenceCacheException EMPTY_SEQUENCE_CACHE_EXCEPTION = new EmptySequenceCacheException();
     
+    // A prefetched block that was used up faster than this grows the next one, and one used up
+    // more than four times slower shrinks it
+    private static final long TARGET_BLOCK_MILLIS = 1000;
+
     private final SequenceKey key;
     private final ReentrantLock lock;
     private List<SequenceValue> values;
+    // Whether the next block of values is being allocated in the background
+    private boolean prefetching;
+    // Number of cache sizes allocated by the next prefetch
+    private long blockMultiplier = 1;
     
     public Sequence(SequenceKey key) {
         if (key == null) throw new NullPointerException();
@@ -192,10 +201,101 @@ public class Sequence {
             if (op == ValueOp.VALIDATE_SEQUENCE) {
                 return value.currentValue;
             }
-            throw EMPTY_SEQUENCE_CACHE_EXCEPTION;
+            if (!usePrefetchedValues(value, numToAllocate)) {
+                throw EMPTY_SEQUENCE_CACHE_EXCEPTION;
+            }
         }
         return increment(value, op, numToAllocate);
     }
+
+    /**
+     * Moves on to the prefetched block of values once the cached one is used up, adapting the
+     * size of the next prefetched block to how fast the cached one was used up.
+     * @return true if there was a prefetched block to move on to
+     */
+    private boolean usePrefetchedValues(SequenceValue value, long numToAllocate) {
+        SequenceValue prefetched = value.prefetched;
+        // Bulk allocations may not fit in the prefetched block, and would skip the rest of the
+        // cached one
+        if (prefetched == null || SequenceUtil.isBulkAllocation(numToAllocate)) {
+            return false;
+        }
+        long now = EnvironmentEdgeManager.currentTimeMillis();
+        long elapsed = now - value.blockStartTime;
+        if (elapsed < TARGET_BLOCK_MILLIS) {
+            blockMultiplier = blockMultiplier * 2;
+        } else if (elapsed > 4 * TARGET_BLOCK_MILLIS) {
+            blockMultiplier = Math.max(1, blockMultiplier / 2);
+        }
+        value.currentValue = prefetched.currentValue;
+        value.nextValue = prefetched.nextValue;
+        value.limitReached = prefetched.limitReached;
+        value.blockSize = prefetched.blockSize;
+        value.blockStartTime = now;
+        value.prefetched = null;
+        return true;
+    }
+
+    /**
+     * Starts the prefetch of the next block of values once half of the cached block is used.
+     * Values are only prefetched for the latest version of sequences without CYCLE.
+     * @param maxBlockMultiplier most number of cache sizes to prefetch at once
+     * @return the number of values to allocate for the prefetched block, or 0 if the next block
+     * should not be prefetched now. {@link #setPrefetchedValues(Result, long)} must be called
+     * with the allocated block otherwise.
+     */
+    public long startPrefetch(long timestamp, long maxBlockMultiplier) {
+        if (prefetching || timestamp != HConstants.LATEST_TIMESTAMP) {
+            return 0;
+        }
+        SequenceValue value = findSequenceValue(timestamp);
+        if (value == null || value.isUnitialized() || value.cycle || value.limitReached
+                || value.prefetched != null || value.blockSize == 0) {
+            return 0;
+        }
+        long remaining = (value.nextValue - value.currentValue) / value.incrementBy;
+        if (remaining * 2 > value.blockSize) {
+            return 0;
+        }
+        prefetching = true;
+        blockMultiplier = Math.min(blockMultiplier, maxBlockMultiplier);
+        return blockMultiplier <= 1 || value.cacheSize <= 0 ? SequenceUtil.DEFAULT_NUM_SLOTS_TO_ALLOCATE
+                : value.cacheSize * blockMultiplier;
+    }
+
+    /**
+     * Keeps the block of values allocated by a prefetch until the cached block is used up.
+     * The cached block may have been used up and allocated again while the prefetch was in
+     * flight, in which case the prefetched block comes before it and is discarded.
+     * @param result the result of the increment started by {@link #startPrefetch(long, long)},
+     *               or null if it failed
+     * @return the mutation returning the values of a discarded block, or null if there is
+     * nothing to return
+     */
+    public Append setPrefetchedValues(Result result, long numToAllocate) {
+        prefetching = false;
+        if (result == null || result.rawCells().length == 1) {
+            // Leave the allocation to the next use of the sequence, which reports any error
+            blockMultiplier = 1;
+            return null;
+        }
+        SequenceValue prefetched = new SequenceValue(result, ValueOp.INCREMENT_SEQUENCE, numToAllocate);
+        SequenceValue value = findSequenceValue(HConstants.LATEST_TIMESTAMP);
+        // The prefetched values are skipped if the sequence changed in the meantime
+        if (value == null || !value.isInitialized() || value.incrementBy != prefetched.incrementBy) {
+            return null;
+        }
+        boolean behind = value.incrementBy > 0 ? prefetched.currentValue < value.nextValue
+                : prefetched.currentValue > value.nextValue;
+        if (behind) {
+            // Handing out the prefetched values after the cached ones would go backwards
+            blockMultiplier = 1;
+            return newReturn(prefetched, prefetched.currentValue, prefetched.nextValue,
+                    prefetched.limitReached);
+        }
+        value.prefetched = prefetched;
+        return null;
+    }
     
     /**
      * This method first checks whether value.currentValue = value.nextValue, this check is what 
@@ -276,7 +376,7 @@ public class Sequence {
         }
         List<Append> appends = Lists.newArrayListWithExpectedSize(values.size());
         for (SequenceValue value : values) {
-            if (value.isInitialized() && value.currentValue != value.nextValue) {
+            if (value.isInitialized() && hasUnusedValues(value)) {
                 appends.add(newReturn(value));
             }
         }
@@ -288,22 +388,40 @@ public class Sequence {
         if (value == null) {
             throw EMPTY_SEQUENCE_CACHE_EXCEPTION;
         }
-        if (value.currentValue == value.nextValue) {
+        if (!hasUnusedValues(value)) {
             throw EMPTY_SEQUENCE_CACHE_EXCEPTION;
         }
         return newReturn(value);
     }
 
+    private static boolean hasUnusedValues(SequenceValue value) {
+        return value.currentValue != value.nextValue || value.prefetched != null;
+    }
+
     private Append newReturn(SequenceValue value) {
+        SequenceValue prefetched = value.prefetched;
+        if (prefetched == null) {
+            return newReturn(value, value.currentValue, value.nextValue, value.limitReached);
+        }
+        // Both blocks are returned if no other client allocated values in between them
+        if (prefetched.currentValue == value.nextValue) {
+            return newReturn(value, value.currentValue, prefetched.nextValue, value.limitReached);
+        }
+        return newReturn(value, prefetched.currentValue, prefetched.nextValue,
+                prefetched.limitReached);
+    }
+
+    private Append newReturn(SequenceValue value, long currentValue, long nextValue,
+            boolean limitReached) {
         byte[] key = this.key.getKey();
         Append append = new Append(key);
         byte[] opBuf = new byte[] {(byte)MetaOp.RETURN_SEQUENCE.ordinal()};
         append.setAttribute(SequenceRegionObserver.OPERATION_ATTRIB, opBuf);
-        append.setAttribute(SequenceRegionObserver.CURRENT_VALUE_ATTRIB, PLong.INSTANCE.toBytes(value.nextValue));
+        append.setAttribute(SequenceRegionObserver.CURRENT_VALUE_ATTRIB, PLong.INSTANCE.toBytes(nextValue));
         Map<byte[], List<Cell>> familyMap = append.getFamilyCellMap();
         familyMap.put(PhoenixDatabaseMetaData.SYSTEM_SEQUENCE_FAMILY_BYTES, Arrays.<Cell>asList(
-        		PhoenixKeyValueUtil.newKeyValue(key, PhoenixDatabaseMetaData.SYSTEM_SEQUENCE_FAMILY_BYTES, PhoenixDatabaseMetaData.CURRENT_VALUE_BYTES, value.timestamp, PLong.INSTANCE.toBytes(value.currentValue)),
-        		PhoenixKeyValueUtil.newKeyValue(key, PhoenixDatabaseMetaData.SYSTEM_SEQUENCE_FAMILY_BYTES, PhoenixDatabaseMetaData.LIMIT_REACHED_FLAG_BYTES, value.timestamp, PBoolean.INSTANCE.toBytes(value.limitReached))
+        		PhoenixKeyValueUtil.newKeyValue(key, PhoenixDatabaseMetaData.SYSTEM_SEQUENCE_FAMILY_BYTES, PhoenixDatabaseMetaData.CURRENT_VALUE_BYTES, value.timestamp, PLong.INSTANCE.toBytes(currentValue)),
+        		PhoenixKeyValueUtil.newKeyValue(key, PhoenixDatabaseMetaData.SYSTEM_SEQUENCE_FAMILY_BYTES, PhoenixDatabaseMetaData.LIMIT_REACHED_FLAG_BYTES, value.timestamp, PBoolean.INSTANCE.toBytes(limitReached))
                 ));
         return append;
     }
@@ -477,6 +595,11 @@ public class Sequence {
         public boolean cycle;
         public boolean isDeleted;
         public boolean limitReached;
+        // Number of values in the cached block and when it was allocated
+        public long blockSize;
+        public long blockStartTime;
+        // Next block of values, allocated before the cached one is used up
+        public SequenceValue prefetched;
         
         public SequenceValue(long timestamp, long minValue, long maxValue, boolean cycle) {
             this(timestamp, false);
@@ -523,6 +646,8 @@ public class Sequence {
                 // We need to handle a valid edgecase where a client requests bulk allocation of 
                 // a number of slots that are less than cache size of the sequence
                 currentValue -= incrementBy * (SequenceUtil.isBulkAllocation(numToAllocate) ? numToAllocate : cacheSize);
+                blockSize = SequenceUtil.isBulkAllocation(numToAllocate) ? numToAllocate : cacheSize;
+                blockStartTime = EnvironmentEdgeManager.currentTimeMillis();
             }
         }
     }
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.util.EquiDepthStreamHistogram;
+import org.apache.phoenix.util.EquiDepthStreamHistogram.Bucket;
+import org.apache.phoenix.util.SizedUtil;
+
+import com.clearspring.analytics.stream.cardinality.CardinalityMergeException;
+import com.clearspring.analytics.stream.cardinality.HyperLogLogPlus;
+
+/**
+ * Statistics of the values of a single column collected along with the guideposts: the number
+ * of rows of the column family, the number of rows with a value for the column, a HyperLogLog
+ * sketch of the number of distinct values and an equi-depth histogram of the values. The
+ * statistics of the regions of a table are merged when they are read back from SYSTEM.STATS.
+ */
+public class ColumnStatistics {
+    private static final byte VERSION = 1;
+    private static final int NORMAL_SET_PRECISION = 14;
+    private static final int SPARSE_SET_PRECISION = 25;
+    private static final Comparator<Bucket> BUCKET_COMPARATOR = new Comparator<Bucket>() {
+        @Override
+        public int compare(Bucket o1, Bucket o2) {
+            return Bytes.compareTo(o1.getLeftBoundInclusive(), o2.getLeftBoundInclusive());
+        }
+    };
+
+    private final HyperLogLogPlus distinctValues;
+    // Only set while collecting statistics
+    private final EquiDepthStreamHistogram histogram;
+    private List<Bucket> buckets;
+    private long rowCount;
+    private long nonNullCount;
+
+    /**
+     * Creates the statistics of a column for collection
+     * @param histogramBuckets the number of buckets of the histogram of the column values,
+     * or zero to not build a histogram
+     */
+    public ColumnStatistics(int histogramBuckets) {
+        this.distinctValues = new HyperLogLogPlus(NORMAL_SET_PRECISION, SPARSE_SET_PRECISION);
+        this.histogram = histogramBuckets > 0 ? new EquiDepthStreamHistogram(histogramBuckets) : null;
+        this.buckets = Collections.emptyList();
+    }
+
+    private ColumnStatistics(HyperLogLogPlus distinctValues, List<Bucket> buckets, long rowCount,
+            long nonNullCount) {
+        this.distinctValues = distinctValues;
+        this.histogram = null;
+        this.buckets = buckets;
+        this.rowCount = rowCount;
+        this.nonNullCount = nonNullCount;
+    }
+
+    public void addValue(byte[] value) {
+        distinctValues.offer(value);
+        nonNullCount++;
+        if (histogram != null) {
+            histogram.addValue(value);
+        }
+    }
+
+    void setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * @return the number of rows of the column family the column belongs to
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getNonNullCount() {
+        return nonNullCount;
+    }
+
+    public long getNullCount() {
+        return Math.max(0, rowCount - nonNullCount);
+    }
+
+    public double getNullFraction() {
+        return rowCount == 0 ? 0 : (double) getNullCount() / rowCount;
+    }
+
+    /**
+     * @return the estimated number of distinct non null values of the column
+     */
+    public long getDistinctCount() {
+        return distinctValues.cardinality();
+    }
+
+    /**
+     * @return the buckets of the equi-depth histogram of the column values, ordered by their
+     * left bound. Buckets of different regions may overlap.
+     */
+    public List<Bucket> getHistogramBuckets() {
+        if (histogram != null) {
+            try {
+                return histogram.computeBuckets();
+            } catch (IllegalStateException | IllegalArgumentException e) {
+                // Not enough distinct values to fill the buckets
+                return Collections.emptyList();
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Merges the statistics of the same column collected for another region into this one
+     */
+    public void merge(ColumnStatistics other) throws IOException {
+        try {
+            distinctValues.addAll(other.distinctValues);
+        } catch (CardinalityMergeException e) {
+            throw new IOException(e);
+        }
+        rowCount += other.rowCount;
+        nonNullCount += other.nonNullCount;
+        List<Bucket> mergedBuckets = new ArrayList<>(buckets.size() + other.buckets.size());
+        mergedBuckets.addAll(buckets);
+        mergedBuckets.addAll(other.getHistogramBuckets());
+        Collections.sort(mergedBuckets, BUCKET_COMPARATOR);
+        buckets = mergedBuckets;
+    }
+
+    public int getEstimatedSize() {
+        int size = SizedUtil.OBJECT_SIZE + distinctValues.sizeof() + 2 * SizedUtil.LONG_SIZE
+                + SizedUtil.ARRAY_SIZE;
+        for (Bucket bucket : buckets) {
+            size += SizedUtil.OBJECT_SIZE + SizedUtil.LONG_SIZE
+                    + 2 * SizedUtil.ARRAY_SIZE
+                    + bucket.getLeftBoundInclusive().length
+                    + bucket.getRightBoundExclusive().length;
+        }
+        return size;
+    }
+
+    public byte[] toBytes() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(stream)) {
+            output.writeByte(VERSION);
+            WritableUtils.writeVLong(output, rowCount);
+            WritableUtils.writeVLong(output, nonNullCount);
+            Bytes.writeByteArray(output, distinctValues.getBytes());
+            List<Bucket> buckets = getHistogramBuckets();
+            WritableUtils.writeVInt(output, buckets.size());
+            for (Bucket bucket : buckets) {
+                Bytes.writeByteArray(output, bucket.getLeftBoundInclusive());
+                Bytes.writeByteArray(output, bucket.getRightBoundExclusive());
+                WritableUtils.writeVLong(output, bucket.getCountEstimate());
+            }
+        }
+        return stream.toByteArray();
+    }
+
+    public static ColumnStatistics fromBytes(byte[] bytes, int offset, int length) throws IOException {
+        try (DataInputStream input = new DataInputStream(
+                new ByteArrayInputStream(bytes, offset, length))) {
+            input.readByte(); // version
+            long rowCount = WritableUtils.readVLong(input);
+            long nonNullCount = WritableUtils.readVLong(input);
+            HyperLogLogPlus distinctValues = HyperLogLogPlus.Builder.build(Bytes.readByteArray(input));
+            int bucketCount = WritableUtils.readVInt(input);
+            List<Bucket> buckets = new ArrayList<>(bucketCount);
+            for (int i = 0; i < bucketCount; i++) {
+                Bucket bucket = new Bucket(Bytes.readByteArray(input), Bytes.readByteArray(input));
+                bucket.incrementCountEstimate(WritableUtils.readVLong(input));
+                buckets.add(bucket);
+            }
+            return new ColumnStatistics(distinctValues, buckets, rowCount, nonNullCount);
+        }
+    }
+}
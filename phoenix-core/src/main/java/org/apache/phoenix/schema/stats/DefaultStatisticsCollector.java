@@ -27,6 +27,7 @@ import java.util.Set;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.KeyValueUtil;
 import org.apache.hadoop.hbase.client.Get;
@@ -43,6 +44,7 @@ import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.coprocessor.MetaDataProtocol;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
+import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.PName;
@@ -51,6 +53,8 @@ import org.apache.phoenix.schema.PTableType;
 import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.types.PInteger;
 import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.CellVisibilityUtil;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.MetaDataUtil;
 import org.apache.phoenix.util.PhoenixRuntime;
@@ -70,6 +74,8 @@ public class DefaultStatisticsCollector implements StatisticsCollector {
             LoggerFactory.getLogger(DefaultStatisticsCollector.class);
     
     final Map<ImmutableBytesPtr, Pair<Long, GuidePostsInfoBuilder>> guidePostsInfoWriterMap = Maps.newHashMap();
+    final Map<ImmutableBytesPtr, FamilyColumnStatistics> columnStatisticsMap = Maps.newHashMap();
+    final Map<ImmutableBytesPtr, ZoneMap.Builder> zoneMapBuilders = Maps.newHashMap();
     private final Table htable;
     private StatisticsWriter statsWriter;
     final Pair<Long, GuidePostsInfoBuilder> cachedGuidePosts;
@@ -81,6 +87,14 @@ public class DefaultStatisticsCollector implements StatisticsCollector {
     private long guidePostDepth;
     private long maxTimeStamp = MetaDataProtocol.MIN_TABLE_TIMESTAMP;
     private ImmutableBytesWritable currentRow;
+    private final boolean collectColumnStatistics;
+    private final int columnHistogramBuckets;
+    private final boolean collectZoneMaps;
+    private final int zoneMapMaxColumns;
+    private long readPoint = ZoneMap.NO_READ_POINT;
+    // Delete markers of the row and column family the column statistics are collected for. They
+    // are kept across batches since a row may be returned in several of them.
+    private final VisibleCellTracker visibleCellTracker = new VisibleCellTracker();
     private final String tableName;
     private final boolean isViewIndexTable;
     private final Region region;
@@ -114,6 +128,23 @@ public class DefaultStatisticsCollector implements StatisticsCollector {
 
         this.statsWriter = statsWriter;
         this.htable = htable;
+        this.collectColumnStatistics = configuration.getBoolean(
+                QueryServices.STATS_COLUMN_STATS_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_STATS_COLUMN_STATS_ENABLED);
+        this.columnHistogramBuckets = configuration.getInt(
+                QueryServices.STATS_COLUMN_HISTOGRAM_BUCKETS_ATTRIB,
+                QueryServicesOptions.DEFAULT_STATS_COLUMN_HISTOGRAM_BUCKETS);
+        this.collectZoneMaps = configuration.getBoolean(
+                QueryServices.STATS_ZONE_MAP_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_STATS_ZONE_MAP_ENABLED);
+        this.zoneMapMaxColumns = configuration.getInt(
+                QueryServices.STATS_ZONE_MAP_MAX_COLUMNS_ATTRIB,
+                QueryServicesOptions.DEFAULT_STATS_ZONE_MAP_MAX_COLUMNS);
+    }
+
+    @Override
+    public void setReadPoint(long readPoint) {
+        this.readPoint = readPoint;
     }
 
     @Override
@@ -327,6 +358,12 @@ public class DefaultStatisticsCollector implements StatisticsCollector {
             incrementRow = true;
         }
         for (Cell cell : results) {
+            if (collectColumnStatistics) {
+                collectColumnStatistics(cell);
+            }
+            if (collectZoneMaps && !CellUtil.isDelete(cell) && !isEmptyColumn(cell)) {
+                getZoneMapBuilder(cell).addValue(cell);
+            }
             maxTimeStamp = Math.max(maxTimeStamp, cell.getTimestamp());
             Pair<Long, GuidePostsInfoBuilder> gps;
             if (cachedGuidePosts == null) {
@@ -356,11 +393,82 @@ public class DefaultStatisticsCollector implements StatisticsCollector {
                 if (gps.getSecond().addGuidePostOnCollection(row, byteCount, gps.getSecond().getRowCount())) {
                     gps.setFirst(0l);
                     gps.getSecond().resetRowCount();
+                    if (collectZoneMaps) {
+                        gps.getSecond().setLastZoneMap(
+                                getZoneMapBuilder(cell).endChunk(row.copyBytes()));
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Adds the value of the given cell to the statistics of its column. Only the latest version
+     * of a column that is not masked by a delete marker is taken into account, and a row is only
+     * counted if it has such a version in the column family.
+     */
+    private void collectColumnStatistics(Cell cell) {
+        if (!visibleCellTracker.isVisible(cell)) {
+            return;
+        }
+        ImmutableBytesPtr cfKey = new ImmutableBytesPtr(cell.getFamilyArray(), cell.getFamilyOffset(),
+                cell.getFamilyLength());
+        FamilyColumnStatistics familyStats = columnStatisticsMap.get(cfKey);
+        if (familyStats == null) {
+            familyStats = new FamilyColumnStatistics(CellUtil.cloneRow(cell));
+            columnStatisticsMap.put(new ImmutableBytesPtr(CellUtil.cloneFamily(cell)), familyStats);
+        }
+        if (!visibleCellTracker.isRowCounted()) {
+            familyStats.rowCount++;
+            visibleCellTracker.setRowCounted();
+        }
+        if (isEmptyColumn(cell)) {
+            return;
+        }
+        ImmutableBytesPtr qualifier = new ImmutableBytesPtr(cell.getQualifierArray(),
+                cell.getQualifierOffset(), cell.getQualifierLength());
+        ColumnStatistics columnStats = familyStats.columns.get(qualifier);
+        if (columnStats == null) {
+            columnStats = new ColumnStatistics(columnHistogramBuckets);
+            familyStats.columns.put(new ImmutableBytesPtr(CellUtil.cloneQualifier(cell)), columnStats);
+        }
+        columnStats.addValue(CellUtil.cloneValue(cell));
+    }
+
+    /**
+     * Gets the builder of the zone maps of the column family of the given cell. The first chunk
+     * of a region starts at the start key of the region.
+     */
+    private ZoneMap.Builder getZoneMapBuilder(Cell cell) {
+        ImmutableBytesPtr cfKey = new ImmutableBytesPtr(cell.getFamilyArray(), cell.getFamilyOffset(),
+                cell.getFamilyLength());
+        ZoneMap.Builder builder = zoneMapBuilders.get(cfKey);
+        if (builder == null) {
+            byte[] startKey = region != null ? region.getRegionInfo().getStartKey() : CellUtil.cloneRow(cell);
+            builder = new ZoneMap.Builder(startKey, zoneMapMaxColumns, readPoint);
+            zoneMapBuilders.put(new ImmutableBytesPtr(CellUtil.cloneFamily(cell)), builder);
+        }
+        return builder;
+    }
+
+    private static boolean isEmptyColumn(Cell cell) {
+        return CellUtil.matchingQualifier(cell, QueryConstants.EMPTY_COLUMN_BYTES)
+                || CellUtil.matchingQualifier(cell, QueryConstants.ENCODED_EMPTY_COLUMN_BYTES);
+    }
+
+    @Override
+    public Pair<byte[], Map<ImmutableBytesPtr, ColumnStatistics>> getColumnStatistics(ImmutableBytesPtr fam) {
+        FamilyColumnStatistics familyStats = columnStatisticsMap.get(fam);
+        if (familyStats == null) {
+            return null;
+        }
+        for (ColumnStatistics columnStats : familyStats.columns.values()) {
+            columnStats.setRowCount(familyStats.rowCount);
+        }
+        return new Pair<byte[], Map<ImmutableBytesPtr, ColumnStatistics>>(familyStats.firstRow,
+                familyStats.columns);
+    }
+
     @Override
     public GuidePostsInfo getGuidePosts(ImmutableBytesPtr fam) {
         Pair<Long, GuidePostsInfoBuilder> pair = guidePostsInfoWriterMap.get(fam);
@@ -380,6 +488,42 @@ public class DefaultStatisticsCollector implements StatisticsCollector {
         return statsWriter;
     }
 
+    /**
+     * Tracks the delete markers of the current row and column family of a raw scan, whose cells
+     * are ordered by column and then by descending timestamp with the delete markers of a
+     * timestamp first, to find the latest visible version of each column.
+     */
+    /**
+     * Tracks the visible cells of the column families of the rows along with whether a row has
+     * already been counted in the statistics of a column family.
+     */
+    static class VisibleCellTracker extends CellVisibilityUtil.VisibleCellTracker {
+        private boolean rowCounted;
+
+        @Override
+        protected void startFamily() {
+            rowCounted = false;
+        }
+
+        boolean isRowCounted() {
+            return rowCounted;
+        }
+
+        void setRowCounted() {
+            rowCounted = true;
+        }
+    }
+
+    static class FamilyColumnStatistics {
+        private final byte[] firstRow;
+        private final Map<ImmutableBytesPtr, ColumnStatistics> columns = Maps.newHashMap();
+        private long rowCount;
+
+        FamilyColumnStatistics(byte[] firstRow) {
+            this.firstRow = firstRow;
+        }
+    }
+
     @Override
     public InternalScanner createCompactionScanner(RegionCoprocessorEnvironment env,
                                                    Store store, InternalScanner delegate) {
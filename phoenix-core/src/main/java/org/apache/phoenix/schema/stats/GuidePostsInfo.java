@@ -19,9 +19,11 @@ package org.apache.phoenix.schema.stats;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.SizedUtil;
 
@@ -71,6 +73,14 @@ public class GuidePostsInfo {
      * The timestamps at which guideposts were created/updated
      */
     private final long[] gpTimestamps;
+    /**
+     * The statistics of the columns of the column family keyed by column qualifier
+     */
+    private final Map<ImmutableBytesPtr, ColumnStatistics> columnStatistics;
+    /**
+     * The zone maps of the chunks ending at each guidePost, with null for guidePosts without one
+     */
+    private final List<ZoneMap> zoneMaps;
 
     /**
      * Constructor that creates GuidePostsInfo per region
@@ -90,6 +100,32 @@ public class GuidePostsInfo {
      */
     public GuidePostsInfo(List<Long> byteCounts, ImmutableBytesWritable guidePosts, List<Long> rowCounts, int maxLength,
             int guidePostsCount, List<Long> updateTimes) {
+        this(byteCounts, guidePosts, rowCounts, maxLength, guidePostsCount, updateTimes,
+                Collections.<ImmutableBytesPtr, ColumnStatistics>emptyMap());
+    }
+
+    /**
+     * Constructor that also holds the statistics of the columns of the column family
+     *
+     * @param columnStatistics
+     *            The statistics of the columns keyed by column qualifier
+     */
+    public GuidePostsInfo(List<Long> byteCounts, ImmutableBytesWritable guidePosts, List<Long> rowCounts, int maxLength,
+            int guidePostsCount, List<Long> updateTimes, Map<ImmutableBytesPtr, ColumnStatistics> columnStatistics) {
+        this(byteCounts, guidePosts, rowCounts, maxLength, guidePostsCount, updateTimes,
+                columnStatistics, Collections.<ZoneMap>emptyList());
+    }
+
+    /**
+     * Constructor that also holds the zone maps of the guidePosts
+     *
+     * @param zoneMaps
+     *            The zone maps of the chunks ending at each guidePost, or an empty list if
+     *            no zone maps were collected
+     */
+    public GuidePostsInfo(List<Long> byteCounts, ImmutableBytesWritable guidePosts, List<Long> rowCounts, int maxLength,
+            int guidePostsCount, List<Long> updateTimes, Map<ImmutableBytesPtr, ColumnStatistics> columnStatistics,
+            List<ZoneMap> zoneMaps) {
         this.guidePosts = new ImmutableBytesWritable(guidePosts);
         this.maxLength = maxLength;
         this.guidePostsCount = guidePostsCount;
@@ -105,7 +141,21 @@ public class GuidePostsInfo {
                 + SizedUtil.ARRAY_SIZE + this.byteCounts.length * SizedUtil.LONG_SIZE // byteCounts
                 + SizedUtil.ARRAY_SIZE + this.gpTimestamps.length * SizedUtil.LONG_SIZE // gpTimestamps
                 + SizedUtil.INT_SIZE; // estimatedSize
+        for (Map.Entry<ImmutableBytesPtr, ColumnStatistics> entry : columnStatistics.entrySet()) {
+            estimatedSize += SizedUtil.MAP_ENTRY_SIZE + SizedUtil.IMMUTABLE_BYTES_PTR_SIZE
+                    + entry.getKey().getLength() + entry.getValue().getEstimatedSize();
+        }
+        if (!zoneMaps.isEmpty()) {
+            estimatedSize += SizedUtil.ARRAY_SIZE + zoneMaps.size() * SizedUtil.POINTER_SIZE;
+            for (ZoneMap zoneMap : zoneMaps) {
+                if (zoneMap != null) {
+                    estimatedSize += zoneMap.getEstimatedSize();
+                }
+            }
+        }
         this.estimatedSize = estimatedSize;
+        this.columnStatistics = columnStatistics;
+        this.zoneMaps = zoneMaps;
     }
     
     public ImmutableBytesWritable getGuidePosts() {
@@ -132,6 +182,34 @@ public class GuidePostsInfo {
         return gpTimestamps;
     }
 
+    /**
+     * @return the statistics of the columns keyed by column qualifier, which are empty unless
+     * column statistics collection is enabled
+     */
+    public Map<ImmutableBytesPtr, ColumnStatistics> getColumnStatistics() {
+        return columnStatistics;
+    }
+
+    /**
+     * @return the zone map of the chunk ending at the guidePost with the given index, or null if
+     * none was collected
+     */
+    public ZoneMap getZoneMap(int guideIndex) {
+        return guideIndex < zoneMaps.size() ? zoneMaps.get(guideIndex) : null;
+    }
+
+    public boolean hasZoneMaps() {
+        return !zoneMaps.isEmpty();
+    }
+
+    /**
+     * @return a copy of this instance holding the given column statistics
+     */
+    public GuidePostsInfo withColumnStatistics(Map<ImmutableBytesPtr, ColumnStatistics> columnStatistics) {
+        return new GuidePostsInfo(Longs.asList(byteCounts), guidePosts, Longs.asList(rowCounts),
+                maxLength, guidePostsCount, Longs.asList(gpTimestamps), columnStatistics, zoneMaps);
+    }
+
     public int getEstimatedSize() {
         return estimatedSize;
     }
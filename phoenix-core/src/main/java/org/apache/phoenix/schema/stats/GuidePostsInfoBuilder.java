@@ -20,9 +20,11 @@ package org.apache.phoenix.schema.stats;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.PrefixByteEncoder;
 import org.apache.phoenix.util.TrustedByteArrayOutputStream;
@@ -51,6 +53,8 @@ public class GuidePostsInfoBuilder {
     private List<Long> rowCounts = new ArrayList<Long>();
     private List<Long> byteCounts = new ArrayList<Long>();
     private List<Long> guidePostsTimestamps = new ArrayList<Long>();
+    private List<ZoneMap> zoneMaps = new ArrayList<ZoneMap>();
+    private boolean hasZoneMaps;
 
     public boolean isEmpty() {
         return rowCounts.size() == 0;
@@ -97,12 +101,23 @@ public class GuidePostsInfoBuilder {
      */
     public boolean trackGuidePost(ImmutableBytesWritable row, long byteCount, long rowCount,
             long updateTimestamp) {
+        return trackGuidePost(row, byteCount, rowCount, updateTimestamp, null);
+    }
+
+    /**
+     * Track a new guide post along with the zone map of the chunk ending at it
+     * @param zoneMap the zone map of the chunk ending at the guidepost, or null if none
+     */
+    public boolean trackGuidePost(ImmutableBytesWritable row, long byteCount, long rowCount,
+            long updateTimestamp, ZoneMap zoneMap) {
         if (row.getLength() != 0 && lastRow.compareTo(row) < 0) {
             try {
                 encoder.encode(output, row.get(), row.getOffset(), row.getLength());
                 rowCounts.add(rowCount);
                 byteCounts.add(byteCount);
                 guidePostsTimestamps.add(updateTimestamp);
+                zoneMaps.add(zoneMap);
+                hasZoneMaps |= zoneMap != null;
                 this.guidePostsCount++;
                 this.maxLength = encoder.getMaxLength();
                 lastRow = row;
@@ -114,10 +129,20 @@ public class GuidePostsInfoBuilder {
         return false;
     }
 
+    /**
+     * Sets the zone map of the chunk ending at the last guide post that was added
+     */
+    public void setLastZoneMap(ZoneMap zoneMap) {
+        zoneMaps.set(zoneMaps.size() - 1, zoneMap);
+        hasZoneMaps |= zoneMap != null;
+    }
+
     public GuidePostsInfo build() {
         this.guidePosts.set(stream.getBuffer(), 0, stream.size());
         GuidePostsInfo guidePostsInfo = new GuidePostsInfo(this.byteCounts, this.guidePosts, this.rowCounts,
-                this.maxLength, this.guidePostsCount, this.guidePostsTimestamps);
+                this.maxLength, this.guidePostsCount, this.guidePostsTimestamps,
+                Collections.<ImmutableBytesPtr, ColumnStatistics>emptyMap(),
+                hasZoneMaps ? this.zoneMaps : Collections.<ZoneMap>emptyList());
         return guidePostsInfo;
     }
 
@@ -19,6 +19,7 @@ package org.apache.phoenix.schema.stats;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.client.Scan;
@@ -26,6 +27,7 @@ import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 import org.apache.hadoop.hbase.regionserver.InternalScanner;
 import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.regionserver.Store;
+import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 
 /**
@@ -54,11 +56,21 @@ public class NoOpStatisticsCollector implements StatisticsCollector {
         // No-op
     }
 
+    @Override
+    public void setReadPoint(long readPoint) {
+        // No-op
+    }
+
     @Override
     public void init() {
         // No-op
     }
 
+    @Override
+    public Pair<byte[], Map<ImmutableBytesPtr, ColumnStatistics>> getColumnStatistics(ImmutableBytesPtr fam) {
+        return null;
+    }
+
     @Override public GuidePostsInfo getGuidePosts(ImmutableBytesPtr fam) {
         return null;
     }
@@ -20,6 +20,7 @@ package org.apache.phoenix.schema.stats;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.client.Scan;
@@ -27,6 +28,7 @@ import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 import org.apache.hadoop.hbase.regionserver.InternalScanner;
 import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.regionserver.Store;
+import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 
 /**
@@ -54,6 +56,13 @@ public interface StatisticsCollector extends Closeable {
      */
     void collectStatistics(List<Cell> results);
 
+    /**
+     * Sets the MVCC read point of the scan the statistics are collected from, up to which every
+     * cell written to the region is seen by the collection. Zone maps collected without a read
+     * point, such as during compactions, are not used to skip chunks.
+     */
+    void setReadPoint(long readPoint);
+
     /**
      * Called before beginning the collection of statistics through {@link #collectStatistics(List)}
      * @throws IOException 
@@ -65,6 +74,13 @@ public interface StatisticsCollector extends Closeable {
      */
     GuidePostsInfo getGuidePosts(ImmutableBytesPtr fam);
 
+    /**
+     * Retrieve the statistics collected for the columns of the given column family, keyed by
+     * column qualifier, along with the first row key of the column family in the region.
+     * Returns null if no column statistics were collected for the column family.
+     */
+    Pair<byte[], Map<ImmutableBytesPtr, ColumnStatistics>> getColumnStatistics(ImmutableBytesPtr fam);
+
     /**
      * Retrieve the guide post depth during stats collection
      */
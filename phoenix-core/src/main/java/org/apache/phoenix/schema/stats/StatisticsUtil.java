@@ -21,6 +21,8 @@ import static org.apache.phoenix.schema.types.PDataType.TRUE_BYTES;
 import static org.apache.phoenix.util.SchemaUtil.getVarCharLength;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -33,10 +35,12 @@ import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.filter.ColumnPrefixFilter;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
 import org.apache.phoenix.coprocessor.MetaDataProtocol;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServices;
@@ -81,6 +85,18 @@ public class StatisticsUtil {
     }
     
 
+    /**
+     * Prefix of the qualifiers of the cells holding the {@link ColumnStatistics} of a region,
+     * followed by the qualifier of the column.
+     */
+    public static final byte[] COLUMN_STATS_QUALIFIER_PREFIX = Bytes.toBytes("_CS:");
+
+    /**
+     * Qualifier of the cell of a guidepost row holding the {@link ZoneMap} of the chunk of rows
+     * ending at the guidepost.
+     */
+    public static final byte[] ZONE_MAP_QUALIFIER = Bytes.toBytes("_ZM");
+
     /** Number of parts in our complex key */
     protected static final int NUM_KEY_PARTS = 3;
     
@@ -153,6 +169,7 @@ public class StatisticsUtil {
         s.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, PhoenixDatabaseMetaData.GUIDE_POSTS_WIDTH_BYTES);
         s.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, PhoenixDatabaseMetaData.GUIDE_POSTS_ROW_COUNT_BYTES);
         s.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, QueryConstants.EMPTY_COLUMN_BYTES);
+        s.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, ZONE_MAP_QUALIFIER);
         GuidePostsInfoBuilder guidePostsInfoBuilder = new GuidePostsInfoBuilder();
         Cell current = null;
         GuidePostsInfo emptyGuidePost = null;
@@ -162,6 +179,7 @@ public class StatisticsUtil {
                 CellScanner cellScanner = result.cellScanner();
                 long rowCount = 0;
                 long byteCount = 0;
+                ZoneMap zoneMap = null;
                  while (cellScanner.advance()) {
                     current = cellScanner.current();
                     if (Bytes.equals(current.getQualifierArray(), current.getQualifierOffset(),
@@ -174,6 +192,10 @@ public class StatisticsUtil {
                             PhoenixDatabaseMetaData.GUIDE_POSTS_WIDTH_BYTES.length)) {
                         byteCount = PLong.INSTANCE.getCodec().decodeLong(current.getValueArray(),
                                 current.getValueOffset(), SortOrder.getDefault());
+                    } else if (Bytes.equals(current.getQualifierArray(), current.getQualifierOffset(),
+                            current.getQualifierLength(), ZONE_MAP_QUALIFIER, 0, ZONE_MAP_QUALIFIER.length)) {
+                        zoneMap = ZoneMap.fromBytes(current.getValueArray(), current.getValueOffset(),
+                                current.getValueLength());
                     }
                 }
                 if (current != null) {
@@ -194,7 +216,7 @@ public class StatisticsUtil {
                     } else {
                         guidePostsInfoBuilder.trackGuidePost(
                             new ImmutableBytesWritable(newGPStartKey), byteCount, rowCount,
-                            guidePostUpdateTime);
+                            guidePostUpdateTime, zoneMap);
                     }
                 }
             }
@@ -204,6 +226,62 @@ public class StatisticsUtil {
         return current == null ? GuidePostsInfo.NO_GUIDEPOST : guidePostsInfoBuilder.isEmpty() ? emptyGuidePost : guidePostsInfoBuilder.build();
     }
 
+    public static byte[] getColumnStatisticsQualifier(ImmutableBytesWritable columnQualifier) {
+        return ByteUtil.concat(COLUMN_STATS_QUALIFIER_PREFIX, ByteUtil.copyKeyBytesIfNecessary(columnQualifier));
+    }
+
+    /**
+     * Reads the column statistics of all regions for the given column family and merges them.
+     * @return the column statistics keyed by column qualifier
+     */
+    public static Map<ImmutableBytesPtr, ColumnStatistics> readColumnStatistics(Table statsHTable,
+            GuidePostsKey key, long clientTimeStamp) throws IOException {
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        ptr.set(key.getColumnFamily());
+        byte[] tableNameBytes = key.getPhysicalName();
+        byte[] startKey = getStartKey(tableNameBytes, ptr);
+        byte[] endKey = getEndKey(tableNameBytes, ptr);
+        Scan s = MetaDataUtil.newTableRowsScan(startKey, endKey, MetaDataProtocol.MIN_TABLE_TIMESTAMP, clientTimeStamp);
+        s.addFamily(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES);
+        s.setFilter(new ColumnPrefixFilter(COLUMN_STATS_QUALIFIER_PREFIX));
+        Map<ImmutableBytesPtr, ColumnStatistics> columnStats = new HashMap<>();
+        int prefixLength = COLUMN_STATS_QUALIFIER_PREFIX.length;
+        // A column only has statistics in the regions where it has a value, but its null count
+        // is relative to the rows of the column family in all the regions
+        long rowCount = 0;
+        try (ResultScanner scanner = statsHTable.getScanner(s)) {
+            Result result = null;
+            while ((result = scanner.next()) != null) {
+                CellScanner cellScanner = result.cellScanner();
+                boolean isFirstCell = true;
+                while (cellScanner.advance()) {
+                    Cell current = cellScanner.current();
+                    ImmutableBytesPtr qualifier = new ImmutableBytesPtr(current.getQualifierArray(),
+                            current.getQualifierOffset() + prefixLength,
+                            current.getQualifierLength() - prefixLength);
+                    ColumnStatistics regionColumnStats = ColumnStatistics.fromBytes(
+                            current.getValueArray(), current.getValueOffset(), current.getValueLength());
+                    if (isFirstCell) {
+                        // All the columns of a region have the row count of its column family
+                        rowCount += regionColumnStats.getRowCount();
+                        isFirstCell = false;
+                    }
+                    ColumnStatistics mergedColumnStats = columnStats.get(qualifier);
+                    if (mergedColumnStats == null) {
+                        columnStats.put(new ImmutableBytesPtr(ByteUtil.copyKeyBytesIfNecessary(qualifier)),
+                                regionColumnStats);
+                    } else {
+                        mergedColumnStats.merge(regionColumnStats);
+                    }
+                }
+            }
+        }
+        for (ColumnStatistics mergedColumnStats : columnStats.values()) {
+            mergedColumnStats.setRowCount(rowCount);
+        }
+        return columnStats.isEmpty() ? Collections.<ImmutableBytesPtr, ColumnStatistics>emptyMap() : columnStats;
+    }
+
     public static long getGuidePostDepth(int guidepostPerRegion, long guidepostWidth, TableDescriptor tableDesc) {
         if (guidepostPerRegion > 0) {
             long maxFileSize = HConstants.DEFAULT_MAX_FILE_SIZE;
@@ -30,8 +30,10 @@ import java.sql.Date;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.CompareOperator;
 import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.TableName;
@@ -43,6 +45,10 @@ import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.ColumnPrefixFilter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.QualifierFilter;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.ipc.CoprocessorRpcChannel;
 import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
@@ -52,6 +58,7 @@ import org.apache.hadoop.hbase.protobuf.generated.MultiRowMutationProtos.MutateR
 import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.security.User;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.coprocessor.MetaDataProtocol;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.jdbc.PhoenixConnection;
@@ -190,7 +197,8 @@ public class StatisticsWriter implements Closeable {
                     PrefixByteDecoder decoder = new PrefixByteDecoder(gps.getMaxLength());
                     do {
                         ImmutableBytesWritable ptr = decoder.decode(input);
-                        addGuidepost(cfKey, mutations, ptr, byteCounts[guidePostCount], rowCounts[guidePostCount], timeStamp);
+                        addGuidepost(cfKey, mutations, ptr, byteCounts[guidePostCount], rowCounts[guidePostCount],
+                                gps.getZoneMap(guidePostCount), timeStamp);
                         guidePostCount++;
                     } while (decoder != null);
                 } catch (EOFException e) { // Ignore as this signifies we're done
@@ -213,13 +221,36 @@ public class StatisticsWriter implements Closeable {
                  * GuidePostsKey key, long clientTimeStamp).
                  */
                 addGuidepost(cfKey, mutations, ByteUtil.EMPTY_IMMUTABLE_BYTE_ARRAY, guidePostDepth,
-                    0, timeStamp);
+                    0, null, timeStamp);
             }
         }
+        addColumnStats(tracker, cfKey, mutations, timeStamp);
+    }
+
+    /**
+     * Adds the column statistics of the region as a row keyed by the first row key of the
+     * column family in the region, with a cell per column. The row has no empty column, so
+     * that it is not mistaken for a guidepost.
+     */
+    private void addColumnStats(StatisticsCollector tracker, ImmutableBytesPtr cfKey,
+            List<Mutation> mutations, long timeStamp) throws IOException {
+        Pair<byte[], Map<ImmutableBytesPtr, ColumnStatistics>> columnStats =
+                tracker.getColumnStatistics(cfKey);
+        if (columnStats == null || columnStats.getSecond().isEmpty()) {
+            return;
+        }
+        Put put = new Put(StatisticsUtil.getRowKey(tableName, cfKey, columnStats.getFirst()));
+        for (Map.Entry<ImmutableBytesPtr, ColumnStatistics> entry : columnStats.getSecond().entrySet()) {
+            put.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES,
+                    StatisticsUtil.getColumnStatisticsQualifier(entry.getKey()), timeStamp,
+                    entry.getValue().toBytes());
+        }
+        mutations.add(put);
     }
     
     @SuppressWarnings("deprecation")
-    private void addGuidepost(ImmutableBytesPtr cfKey, List<Mutation> mutations, ImmutableBytesWritable ptr, long byteCount, long rowCount, long timeStamp) {
+    private void addGuidepost(ImmutableBytesPtr cfKey, List<Mutation> mutations, ImmutableBytesWritable ptr,
+            long byteCount, long rowCount, ZoneMap zoneMap, long timeStamp) throws IOException {
         byte[] prefix = StatisticsUtil.getRowKey(tableName, cfKey, ptr);
         Put put = new Put(prefix);
         put.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, PhoenixDatabaseMetaData.GUIDE_POSTS_WIDTH_BYTES,
@@ -230,6 +261,10 @@ public class StatisticsWriter implements Closeable {
         // Add our empty column value so queries behave correctly
         put.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, QueryConstants.EMPTY_COLUMN_BYTES, timeStamp,
                 ByteUtil.EMPTY_BYTE_ARRAY);
+        if (zoneMap != null) {
+            put.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, StatisticsUtil.ZONE_MAP_QUALIFIER,
+                    timeStamp, zoneMap.toBytes());
+        }
         mutations.add(put);
     }
 
@@ -297,7 +332,12 @@ public class StatisticsWriter implements Closeable {
                 MetaDataUtil.newTableRowsScan(getAdjustedKey(startKey, tableName, fam, false),
                     getAdjustedKey(stopKey, tableName, fam, true),
                     MetaDataProtocol.MIN_TABLE_TIMESTAMP, clientTimeStamp);
-        s.addColumn(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, QueryConstants.EMPTY_COLUMN_BYTES);
+        // Match both the guidepost rows and the column statistics rows of the region
+        s.addFamily(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES);
+        s.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ONE,
+                new QualifierFilter(CompareOperator.EQUAL,
+                        new BinaryComparator(QueryConstants.EMPTY_COLUMN_BYTES)),
+                new ColumnPrefixFilter(StatisticsUtil.COLUMN_STATS_QUALIFIER_PREFIX)));
         try (ResultScanner scanner = statsWriterTable.getScanner(s)) {
             Result result = null;
             while ((result = scanner.next()) != null) {
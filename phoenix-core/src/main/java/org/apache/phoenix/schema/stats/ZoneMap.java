@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.util.SizedUtil;
+
+/**
+ * The min and max values of the columns of a column family over the chunk of rows of a region
+ * that ends at a guidepost (exclusive). The chunk starts at the previous guidepost of the region,
+ * or at the start key of the region for its first guidepost, which is kept as the start key of
+ * the zone map since the region boundaries may change after the stats were collected.
+ * Values are compared as unsigned bytes, and columns without a min and max are unbounded.
+ * A zone map collected by UPDATE STATISTICS keeps the MVCC read point of the scan it was
+ * collected from, as every cell written to the region up to that point is part of it.
+ */
+public class ZoneMap {
+    private static final byte VERSION = 2;
+    /**
+     * Read point of the zone maps collected during compactions, whose cells may not include the
+     * ones that were still in the memstore
+     */
+    public static final long NO_READ_POINT = -1;
+    /**
+     * Values longer than this make their column unbounded in the chunk, to keep zone maps small
+     */
+    public static final int MAX_VALUE_LENGTH = 256;
+
+    private final byte[] startKey;
+    private final Map<ImmutableBytesPtr, byte[]> minValues;
+    private final Map<ImmutableBytesPtr, byte[]> maxValues;
+    private final long readPoint;
+
+    public ZoneMap(byte[] startKey, Map<ImmutableBytesPtr, byte[]> minValues,
+            Map<ImmutableBytesPtr, byte[]> maxValues, long readPoint) {
+        this.startKey = startKey;
+        this.minValues = minValues;
+        this.maxValues = maxValues;
+        this.readPoint = readPoint;
+    }
+
+    public byte[] getStartKey() {
+        return startKey;
+    }
+
+    /**
+     * @return the MVCC read point of the scan the zone map was collected from, or
+     * {@link #NO_READ_POINT} if it was not collected by UPDATE STATISTICS
+     */
+    public long getReadPoint() {
+        return readPoint;
+    }
+
+    public byte[] getMinValue(ImmutableBytesPtr qualifier) {
+        return minValues.get(qualifier);
+    }
+
+    public byte[] getMaxValue(ImmutableBytesPtr qualifier) {
+        return maxValues.get(qualifier);
+    }
+
+    /**
+     * @return true if the rows from the given key up to the guidepost of this zone map were all
+     * part of the chunk the zone map was collected for
+     */
+    public boolean covers(byte[] chunkStartKey) {
+        return startKey.length == 0
+                || (chunkStartKey.length > 0 && Bytes.compareTo(chunkStartKey, startKey) >= 0);
+    }
+
+    /**
+     * @return false if no value of the given column in the chunk satisfies
+     * {@code column op value}, true if some value may satisfy it
+     */
+    public boolean mayMatch(ImmutableBytesPtr qualifier, CompareOp op, byte[] value) {
+        byte[] min = minValues.get(qualifier);
+        byte[] max = maxValues.get(qualifier);
+        if (min == null || max == null) {
+            return true;
+        }
+        switch (op) {
+        case EQUAL:
+            return Bytes.compareTo(min, value) <= 0 && Bytes.compareTo(max, value) >= 0;
+        case NOT_EQUAL:
+            return !Bytes.equals(min, value) || !Bytes.equals(max, value);
+        case LESS:
+            return Bytes.compareTo(min, value) < 0;
+        case LESS_OR_EQUAL:
+            return Bytes.compareTo(min, value) <= 0;
+        case GREATER:
+            return Bytes.compareTo(max, value) > 0;
+        case GREATER_OR_EQUAL:
+            return Bytes.compareTo(max, value) >= 0;
+        default:
+            return true;
+        }
+    }
+
+    public int getEstimatedSize() {
+        int size = SizedUtil.OBJECT_SIZE + SizedUtil.ARRAY_SIZE + startKey.length;
+        for (Map.Entry<ImmutableBytesPtr, byte[]> entry : minValues.entrySet()) {
+            size += 2 * SizedUtil.MAP_ENTRY_SIZE + SizedUtil.IMMUTABLE_BYTES_PTR_SIZE
+                    + entry.getKey().getLength() + 2 * SizedUtil.ARRAY_SIZE
+                    + entry.getValue().length + maxValues.get(entry.getKey()).length;
+        }
+        return size;
+    }
+
+    public byte[] toBytes() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(stream)) {
+            output.writeByte(VERSION);
+            Bytes.writeByteArray(output, startKey);
+            WritableUtils.writeVLong(output, readPoint);
+            WritableUtils.writeVInt(output, minValues.size());
+            for (Map.Entry<ImmutableBytesPtr, byte[]> entry : minValues.entrySet()) {
+                Bytes.writeByteArray(output, entry.getKey().copyBytesIfNecessary());
+                Bytes.writeByteArray(output, entry.getValue());
+                Bytes.writeByteArray(output, maxValues.get(entry.getKey()));
+            }
+        }
+        return stream.toByteArray();
+    }
+
+    public static ZoneMap fromBytes(byte[] bytes, int offset, int length) throws IOException {
+        try (DataInputStream input = new DataInputStream(
+                new ByteArrayInputStream(bytes, offset, length))) {
+            byte version = input.readByte();
+            byte[] startKey = Bytes.readByteArray(input);
+            long readPoint = version >= 2 ? WritableUtils.readVLong(input) : NO_READ_POINT;
+            int columnCount = WritableUtils.readVInt(input);
+            Map<ImmutableBytesPtr, byte[]> minValues = new HashMap<>(columnCount);
+            Map<ImmutableBytesPtr, byte[]> maxValues = new HashMap<>(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                ImmutableBytesPtr qualifier = new ImmutableBytesPtr(Bytes.readByteArray(input));
+                minValues.put(qualifier, Bytes.readByteArray(input));
+                maxValues.put(qualifier, Bytes.readByteArray(input));
+            }
+            return new ZoneMap(startKey, minValues, maxValues, readPoint);
+        }
+    }
+
+    /**
+     * Builds the zone maps of the consecutive chunks of a column family of a region while its
+     * cells are scanned in order. The values of a row only become part of a chunk once the next
+     * row starts, so that the row at which a guidepost is added starts the next chunk.
+     */
+    static class Builder {
+        private final int maxColumns;
+        // The tracked columns, which are the first ones found in the region
+        private final Map<ImmutableBytesPtr, ImmutableBytesPtr> columns = new HashMap<>();
+        private final Map<ImmutableBytesPtr, byte[]> minValues = new HashMap<>();
+        private final Map<ImmutableBytesPtr, byte[]> maxValues = new HashMap<>();
+        private final Set<ImmutableBytesPtr> unboundedColumns = new HashSet<>();
+        // Values of the current row, which may have several versions of a column
+        private final Map<ImmutableBytesPtr, byte[]> rowMinValues = new HashMap<>();
+        private final Map<ImmutableBytesPtr, byte[]> rowMaxValues = new HashMap<>();
+        private final Set<ImmutableBytesPtr> rowUnboundedColumns = new HashSet<>();
+        private byte[] row;
+        private byte[] startKey;
+        private final long readPoint;
+
+        Builder(byte[] startKey, int maxColumns, long readPoint) {
+            this.startKey = startKey;
+            this.maxColumns = maxColumns;
+            this.readPoint = readPoint;
+        }
+
+        /**
+         * Adds the value of the given cell. Every version of a column is expected to be added, as
+         * the version that is visible cannot be known from the cells of a single column.
+         */
+        void addValue(Cell cell) {
+            if (row == null || !Bytes.equals(cell.getRowArray(), cell.getRowOffset(),
+                    cell.getRowLength(), row, 0, row.length)) {
+                addRowValues();
+                row = CellUtil.cloneRow(cell);
+            }
+            ImmutableBytesPtr qualifier = columns.get(new ImmutableBytesPtr(
+                    cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength()));
+            if (qualifier == null) {
+                if (columns.size() >= maxColumns) {
+                    return;
+                }
+                qualifier = new ImmutableBytesPtr(CellUtil.cloneQualifier(cell));
+                columns.put(qualifier, qualifier);
+            }
+            if (cell.getValueLength() > MAX_VALUE_LENGTH) {
+                rowUnboundedColumns.add(qualifier);
+            } else {
+                byte[] value = CellUtil.cloneValue(cell);
+                addMinValue(rowMinValues, qualifier, value);
+                addMaxValue(rowMaxValues, qualifier, value);
+            }
+        }
+
+        private static void addMinValue(Map<ImmutableBytesPtr, byte[]> values,
+                ImmutableBytesPtr qualifier, byte[] value) {
+            byte[] min = values.get(qualifier);
+            if (min == null || Bytes.compareTo(value, min) < 0) {
+                values.put(qualifier, value);
+            }
+        }
+
+        private static void addMaxValue(Map<ImmutableBytesPtr, byte[]> values,
+                ImmutableBytesPtr qualifier, byte[] value) {
+            byte[] max = values.get(qualifier);
+            if (max == null || Bytes.compareTo(value, max) > 0) {
+                values.put(qualifier, value);
+            }
+        }
+
+        private void addRowValues() {
+            for (Map.Entry<ImmutableBytesPtr, byte[]> entry : rowMinValues.entrySet()) {
+                addMinValue(minValues, entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<ImmutableBytesPtr, byte[]> entry : rowMaxValues.entrySet()) {
+                addMaxValue(maxValues, entry.getKey(), entry.getValue());
+            }
+            unboundedColumns.addAll(rowUnboundedColumns);
+            rowMinValues.clear();
+            rowMaxValues.clear();
+            rowUnboundedColumns.clear();
+        }
+
+        /**
+         * Ends the current chunk before the given row, which starts the next chunk
+         * @return the zone map of the ended chunk
+         */
+        ZoneMap endChunk(byte[] nextStartKey) {
+            if (row != null && !Bytes.equals(row, nextStartKey)) {
+                addRowValues();
+            }
+            Map<ImmutableBytesPtr, byte[]> chunkMinValues = new HashMap<>();
+            Map<ImmutableBytesPtr, byte[]> chunkMaxValues = new HashMap<>();
+            for (Map.Entry<ImmutableBytesPtr, byte[]> entry : minValues.entrySet()) {
+                if (!unboundedColumns.contains(entry.getKey())) {
+                    chunkMinValues.put(entry.getKey(), entry.getValue());
+                    chunkMaxValues.put(entry.getKey(), maxValues.get(entry.getKey()));
+                }
+            }
+            ZoneMap zoneMap = new ZoneMap(startKey,
+                    chunkMinValues.isEmpty() ? Collections.<ImmutableBytesPtr, byte[]>emptyMap() : chunkMinValues,
+                    chunkMaxValues.isEmpty() ? Collections.<ImmutableBytesPtr, byte[]>emptyMap() : chunkMaxValues,
+                    readPoint);
+            minValues.clear();
+            maxValues.clear();
+            unboundedColumns.clear();
+            startKey = nextStartKey;
+            return zoneMap;
+        }
+    }
+}
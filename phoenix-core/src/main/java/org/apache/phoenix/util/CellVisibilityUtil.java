@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+
+/**
+ * Utilities for finding the cells of raw scans that are visible to regular reads, that is, the
+ * cells that are not masked by a delete marker or by a later version of their column.
+ */
+public class CellVisibilityUtil {
+
+    private CellVisibilityUtil() {
+    }
+
+    /**
+     * Tracks the delete markers of the cells of a raw scan, which must be given in the order
+     * they are returned by the scan (i.e., sorted by CellComparator), where delete markers
+     * precede the puts they mask.
+     */
+    public static class VisibleCellTracker {
+        private byte[] row;
+        private byte[] family;
+        private long deleteFamilyTs = -1;
+        private final Set<Long> deleteFamilyVersions = new HashSet<>();
+        private byte[] qualifier;
+        private boolean columnFound;
+        private long deleteColumnTs = -1;
+        private final Set<Long> deleteVersions = new HashSet<>();
+
+        /**
+         * @return true if the given cell is a put that is the latest visible version of its
+         * column. The delete markers are recorded to mask the cells that follow them.
+         */
+        public boolean isVisible(Cell cell) {
+            if (row == null || !CellUtil.matchingRows(cell, row)
+                    || !CellUtil.matchingFamily(cell, family)) {
+                row = CellUtil.cloneRow(cell);
+                family = CellUtil.cloneFamily(cell);
+                deleteFamilyTs = -1;
+                deleteFamilyVersions.clear();
+                qualifier = null;
+                startFamily();
+            }
+            if (qualifier == null || !CellUtil.matchingQualifier(cell, qualifier)) {
+                qualifier = CellUtil.cloneQualifier(cell);
+                columnFound = false;
+                deleteColumnTs = -1;
+                deleteVersions.clear();
+            }
+            long ts = cell.getTimestamp();
+            switch (cell.getType()) {
+            case DeleteFamily:
+                deleteFamilyTs = Math.max(deleteFamilyTs, ts);
+                return false;
+            case DeleteFamilyVersion:
+                deleteFamilyVersions.add(ts);
+                return false;
+            case DeleteColumn:
+                deleteColumnTs = Math.max(deleteColumnTs, ts);
+                return false;
+            case Delete:
+                deleteVersions.add(ts);
+                return false;
+            case Put:
+                if (columnFound || ts <= deleteFamilyTs || ts <= deleteColumnTs
+                        || deleteFamilyVersions.contains(ts) || deleteVersions.contains(ts)) {
+                    return false;
+                }
+                columnFound = true;
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        /**
+         * Called when a cell starts another row or column family.
+         */
+        protected void startFamily() {
+        }
+    }
+
+    /**
+     * Returns the latest version of each column that is not masked by a delete marker. The
+     * cells must be in the order they are returned by a raw scan.
+     */
+    public static List<Cell> getLatestVisibleCells(List<Cell> cells) {
+        List<Cell> visibleCells = new ArrayList<>();
+        VisibleCellTracker tracker = new VisibleCellTracker();
+        for (Cell cell : cells) {
+            if (tracker.isVisible(cell)) {
+                visibleCells.add(cell);
+            }
+        }
+        return visibleCells;
+    }
+}
@@ -17,8 +17,14 @@
  */
 package org.apache.phoenix.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
 import org.apache.phoenix.compile.GroupByCompiler.GroupBy;
 import org.apache.phoenix.optimize.Cost;
+import org.apache.phoenix.parse.JoinTableNode.JoinType;
 import org.apache.phoenix.query.QueryServices;
 
 /**
@@ -78,6 +84,60 @@ public class CostUtil {
                 (rhsBytes * Math.log(rhsBytes) + (hasKeyRangeExpression ? 0 : lhsBytes)) / parallelLevel + outputBytes);
     }
 
+    /**
+     * Decide the probe order of a star join, i.e., a list of hash joins that all join
+     * against the same LHS and are evaluated one after another for each LHS row. Inner
+     * and semi joins are probed first with the smallest (most selective) RHS first so
+     * that LHS rows that would be dropped are dropped as early as possible; anti joins
+     * come next with the largest RHS first since that is the one most likely to reject
+     * a row; left joins never reject a row and thus come last in their original order.
+     * The ordering is stable for RHS of equal size.
+     * @param rhsRows the estimated number of rows of each RHS
+     * @param joinTypes the join type of each RHS
+     * @return the new order, in which element i is the original index of the i-th join
+     */
+    public static int[] orderStarJoins(final double[] rhsRows, final JoinType[] joinTypes) {
+        List<Integer> order = new ArrayList<Integer>(rhsRows.length);
+        for (int i = 0; i < rhsRows.length; i++) {
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                int c = Integer.compare(probeRank(joinTypes[i1]), probeRank(joinTypes[i2]));
+                if (c != 0) {
+                    return c;
+                }
+                switch (joinTypes[i1]) {
+                case Inner:
+                case Semi:
+                    return Double.compare(rhsRows[i1], rhsRows[i2]);
+                case Anti:
+                    return Double.compare(rhsRows[i2], rhsRows[i1]);
+                default:
+                    return 0;
+                }
+            }
+        });
+        int[] ret = new int[order.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = order.get(i);
+        }
+        return ret;
+    }
+
+    private static int probeRank(JoinType joinType) {
+        switch (joinType) {
+        case Inner:
+        case Semi:
+            return 0;
+        case Anti:
+            return 1;
+        default:
+            return 2;
+        }
+    }
+
     /**
      * Estimate the parallel level of an operation
      * @param runningOnServer if the operation will be running on server side
@@ -37,11 +37,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.phoenix.thirdparty.com.google.common.cache.Cache;
 import org.apache.phoenix.thirdparty.com.google.common.cache.CacheBuilder;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HRegionLocation;
 import org.apache.hadoop.hbase.TableName;
@@ -61,6 +63,7 @@ import org.apache.hadoop.hbase.ipc.CoprocessorRpcUtils.BlockingRpcCallback;
 import org.apache.hadoop.hbase.ipc.ServerRpcController;
 import org.apache.hadoop.hbase.protobuf.generated.ClientProtos.MutationProto;
 import org.apache.hadoop.hbase.regionserver.Region;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
 import org.apache.hadoop.hbase.regionserver.Store;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.WritableUtils;
@@ -68,6 +71,7 @@ import org.apache.phoenix.compat.hbase.OffsetCell;
 import org.apache.phoenix.compile.ColumnResolver;
 import org.apache.phoenix.compile.FromCompiler;
 import org.apache.phoenix.compile.IndexStatementRewriter;
+import org.apache.phoenix.compile.ScanRanges;
 import org.apache.phoenix.compile.StatementContext;
 import org.apache.phoenix.compile.WhereCompiler;
 import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
@@ -99,6 +103,7 @@ import org.apache.phoenix.parse.ParseNode;
 import org.apache.phoenix.parse.SQLParser;
 import org.apache.phoenix.parse.SelectStatement;
 import org.apache.phoenix.protobuf.ProtobufUtil;
+import org.apache.phoenix.query.KeyRange;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.ColumnFamilyNotFoundException;
@@ -551,48 +556,151 @@ public class IndexUtil {
             // Join back to data table here by issuing a local get projecting
             // all of the cq:cf from the KeyValueColumnExpression into the Get.
             Cell firstCell = result.get(0);
-            byte[] indexRowKey = firstCell.getRowArray();
-            ptr.set(indexRowKey, firstCell.getRowOffset() + offset, firstCell.getRowLength() - offset);
-            byte[] dataRowKey = indexMaintainer.buildDataRowKey(ptr, viewConstants);
+            byte[] dataRowKey = getDataRowKey(firstCell, offset, indexMaintainer, viewConstants, ptr);
             Get get = new Get(dataRowKey);
-            ImmutableStorageScheme storageScheme = indexMaintainer.getIndexStorageScheme();
-            for (int i = 0; i < dataColumns.length; i++) {
-                if (storageScheme == ImmutableStorageScheme.SINGLE_CELL_ARRAY_WITH_OFFSETS) {
-                    get.addFamily(dataColumns[i].getFamily());
-                } else {
-                    get.addColumn(dataColumns[i].getFamily(), dataColumns[i].getQualifier());
-                }
-            }
+            addDataColumns(get, dataColumns, indexMaintainer);
             Result joinResult = null;
             if (dataRegion != null) {
                 joinResult = dataRegion.get(get);
             } else {
-                TableName dataTable =
-                    TableName.valueOf(MetaDataUtil.getLocalIndexUserTableName(environment.getRegion().
-                        getTableDescriptor().getTableName().getNameAsString()));
                 Table table = null;
                 try {
-                    table = environment.getConnection().getTable(dataTable);
+                    table = environment.getConnection().getTable(getLocalIndexDataTableName(environment));
                     joinResult = table.get(get);
                 } finally {
                     if (table != null) table.close();
                 }
             }
-            // at this point join result has data from the data table. We now need to take this result and
-            // add it to the cells that we are returning. 
-            // TODO: handle null case (but shouldn't happen)
-            Tuple joinTuple = new ResultTuple(joinResult);
-            // This will create a byte[] that captures all of the values from the data table
-            byte[] value =
-                    tupleProjector.getSchema().toBytes(joinTuple, tupleProjector.getExpressions(),
-                        tupleProjector.getValueBitSet(), ptr);
-            Cell keyValue =
-                    PhoenixKeyValueUtil.newKeyValue(firstCell.getRowArray(),
-                        firstCell.getRowOffset(),firstCell.getRowLength(), VALUE_COLUMN_FAMILY,
-                        VALUE_COLUMN_QUALIFIER, firstCell.getTimestamp(), value, 0, value.length);
-            result.add(keyValue);
-        }
-        
+            addJoinedDataColumns(result, joinResult, tupleProjector, ptr);
+        }
+        wrapCellsUsingOffset(result, offset);
+    }
+
+    /**
+     * Same as {@link #wrapResultUsingOffset} but for a batch of local index rows. Instead of issuing a get
+     * per index row, the data rows of the whole batch are read in row key order with a single skip scan over
+     * the data region, or with a single multi-get when the data region is not available.
+     */
+    public static void wrapResultsUsingOffset(final RegionCoprocessorEnvironment environment,
+            List<List<Cell>> results, final int offset, ColumnReference[] dataColumns,
+            TupleProjector tupleProjector, Region dataRegion, IndexMaintainer indexMaintainer,
+            byte[][] viewConstants, ImmutableBytesWritable ptr) throws IOException {
+        if (results.isEmpty()) {
+            return;
+        }
+        if (tupleProjector != null) {
+            List<byte[]> dataRowKeys = new ArrayList<>(results.size());
+            for (List<Cell> result : results) {
+                dataRowKeys.add(getDataRowKey(result.get(0), offset, indexMaintainer, viewConstants, ptr));
+            }
+            Map<byte[], Result> joinResults = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+            if (dataRegion != null) {
+                List<KeyRange> keys = new ArrayList<>(dataRowKeys.size());
+                for (byte[] dataRowKey : dataRowKeys) {
+                    keys.add(PVarbinary.INSTANCE.getKeyRange(dataRowKey));
+                }
+                ScanRanges scanRanges = ScanRanges.createPointLookup(keys);
+                Scan dataScan = new Scan();
+                scanRanges.initializeScan(dataScan);
+                dataScan.setFilter(scanRanges.getSkipScanFilter());
+                addDataColumns(dataScan, dataColumns, indexMaintainer);
+                try (RegionScanner scanner = dataRegion.getScanner(dataScan)) {
+                    boolean hasMore;
+                    do {
+                        List<Cell> row = new ArrayList<>();
+                        hasMore = scanner.nextRaw(row);
+                        if (!row.isEmpty()) {
+                            List<Cell> copiedRow = new ArrayList<>(row.size());
+                            for (Cell cell : row) {
+                                copiedRow.add(PhoenixKeyValueUtil.maybeCopyCell(cell));
+                            }
+                            joinResults.put(CellUtil.cloneRow(row.get(0)), Result.create(copiedRow));
+                        }
+                    } while (hasMore);
+                }
+            } else {
+                List<Get> gets = new ArrayList<>(dataRowKeys.size());
+                for (byte[] dataRowKey : dataRowKeys) {
+                    Get get = new Get(dataRowKey);
+                    addDataColumns(get, dataColumns, indexMaintainer);
+                    gets.add(get);
+                }
+                Table table = null;
+                try {
+                    table = environment.getConnection().getTable(getLocalIndexDataTableName(environment));
+                    for (Result joinResult : table.get(gets)) {
+                        if (!joinResult.isEmpty()) {
+                            joinResults.put(joinResult.getRow(), joinResult);
+                        }
+                    }
+                } finally {
+                    if (table != null) table.close();
+                }
+            }
+            for (int i = 0; i < results.size(); i++) {
+                Result joinResult = joinResults.get(dataRowKeys.get(i));
+                addJoinedDataColumns(results.get(i),
+                        joinResult == null ? Result.create(Collections.<Cell>emptyList()) : joinResult,
+                        tupleProjector, ptr);
+            }
+        }
+        for (List<Cell> result : results) {
+            wrapCellsUsingOffset(result, offset);
+        }
+    }
+
+    private static byte[] getDataRowKey(Cell firstCell, int offset, IndexMaintainer indexMaintainer,
+            byte[][] viewConstants, ImmutableBytesWritable ptr) {
+        ptr.set(firstCell.getRowArray(), firstCell.getRowOffset() + offset, firstCell.getRowLength() - offset);
+        return indexMaintainer.buildDataRowKey(ptr, viewConstants);
+    }
+
+    private static void addDataColumns(Get get, ColumnReference[] dataColumns, IndexMaintainer indexMaintainer) {
+        ImmutableStorageScheme storageScheme = indexMaintainer.getIndexStorageScheme();
+        for (int i = 0; i < dataColumns.length; i++) {
+            if (storageScheme == ImmutableStorageScheme.SINGLE_CELL_ARRAY_WITH_OFFSETS) {
+                get.addFamily(dataColumns[i].getFamily());
+            } else {
+                get.addColumn(dataColumns[i].getFamily(), dataColumns[i].getQualifier());
+            }
+        }
+    }
+
+    private static void addDataColumns(Scan scan, ColumnReference[] dataColumns, IndexMaintainer indexMaintainer) {
+        ImmutableStorageScheme storageScheme = indexMaintainer.getIndexStorageScheme();
+        for (int i = 0; i < dataColumns.length; i++) {
+            if (storageScheme == ImmutableStorageScheme.SINGLE_CELL_ARRAY_WITH_OFFSETS) {
+                scan.addFamily(dataColumns[i].getFamily());
+            } else {
+                scan.addColumn(dataColumns[i].getFamily(), dataColumns[i].getQualifier());
+            }
+        }
+    }
+
+    private static TableName getLocalIndexDataTableName(final RegionCoprocessorEnvironment environment) {
+        return TableName.valueOf(MetaDataUtil.getLocalIndexUserTableName(environment.getRegion().
+                getTableDescriptor().getTableName().getNameAsString()));
+    }
+
+    private static void addJoinedDataColumns(List<Cell> result, Result joinResult,
+            TupleProjector tupleProjector, ImmutableBytesWritable ptr) {
+        // at this point join result has data from the data table. We now need to take this result and
+        // add it to the cells that we are returning.
+        // TODO: handle null case (but shouldn't happen)
+        Cell firstCell = result.get(0);
+        Tuple joinTuple = new ResultTuple(joinResult);
+        // This will create a byte[] that captures all of the values from the data table
+        byte[] value =
+                tupleProjector.getSchema().toBytes(joinTuple, tupleProjector.getExpressions(),
+                    tupleProjector.getValueBitSet(), ptr);
+        Cell keyValue =
+                PhoenixKeyValueUtil.newKeyValue(firstCell.getRowArray(),
+                    firstCell.getRowOffset(),firstCell.getRowLength(), VALUE_COLUMN_FAMILY,
+                    VALUE_COLUMN_QUALIFIER, firstCell.getTimestamp(), value, 0, value.length);
+        result.add(keyValue);
+    }
+
+    private static void wrapCellsUsingOffset(List<Cell> result, final int offset) {
         ListIterator<Cell> itr = result.listIterator();
         while (itr.hasNext()) {
             final Cell cell = itr.next();
@@ -601,7 +709,7 @@ public class IndexUtil {
             itr.set(newCell);
         }
     }
-    
+
     public static String getIndexColumnExpressionStr(PColumn col) {
         return col.getExpressionStr() == null ? IndexUtil.getCaseSensitiveDataColumnFullName(col.getName().getString())
                 : col.getExpressionStr();
@@ -1240,4 +1240,51 @@ public class ScanUtil {
         Cell cell = result.get(0);
         return CellUtil.matchingColumn(cell, EMPTY_BYTE_ARRAY, EMPTY_BYTE_ARRAY);
     }
+
+    private static final byte[] ZONE_MAP_PRUNED_QUALIFIER = Bytes.toBytes("_ZoneMapPruned");
+
+    /**
+     * Adds the marker returned by region servers for a scan chunk skipped by its zone map.
+     */
+    public static void getZoneMapPrunedResult(List<Cell> result) {
+        Cell keyValue =
+                PhoenixKeyValueUtil.newKeyValue(EMPTY_BYTE_ARRAY, 0, 0, EMPTY_BYTE_ARRAY,
+                        ZONE_MAP_PRUNED_QUALIFIER, 0, EMPTY_BYTE_ARRAY, 0, EMPTY_BYTE_ARRAY.length);
+        result.add(keyValue);
+    }
+
+    public static boolean isZoneMapPruned(Result result) {
+        if (result.rawCells().length != 1) {
+            return false;
+        }
+        Cell cell = result.rawCells()[0];
+        return CellUtil.matchingColumn(cell, EMPTY_BYTE_ARRAY, ZONE_MAP_PRUNED_QUALIFIER);
+    }
+
+    /**
+     * @return the position of the key within the range between the lower and upper keys, as a
+     * fraction of the range estimated from the first bytes after their common prefix
+     */
+    public static double getKeyPosition(byte[] lowerKey, byte[] upperKey, byte[] key) {
+        int prefixLength = 0;
+        int maxPrefixLength = Math.min(lowerKey.length, upperKey.length);
+        while (prefixLength < maxPrefixLength && lowerKey[prefixLength] == upperKey[prefixLength]) {
+            prefixLength++;
+        }
+        double lower = keyToDouble(lowerKey, prefixLength);
+        double upper = keyToDouble(upperKey, prefixLength);
+        if (upper <= lower) {
+            return 0;
+        }
+        double position = (keyToDouble(key, prefixLength) - lower) / (upper - lower);
+        return Math.max(0, Math.min(1, position));
+    }
+
+    private static double keyToDouble(byte[] key, int offset) {
+        double value = 0;
+        for (int i = offset; i < offset + Bytes.SIZEOF_LONG; i++) {
+            value = value * 256 + (i < key.length ? key[i] & 0xff : 0);
+        }
+        return value;
+    }
 }
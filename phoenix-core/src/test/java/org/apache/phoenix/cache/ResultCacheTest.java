@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.compile.RowProjector;
+import org.apache.phoenix.iterate.MaterializedResultIterator;
+import org.apache.phoenix.iterate.ResultIterator;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.ImmutableMap;
+
+public class ResultCacheTest {
+
+    private static List<Tuple> getResults(int count) {
+        List<Tuple> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            results.add(new SingleKeyValueTuple(new KeyValue(Bytes.toBytes(i), Bytes.toBytes("0"),
+                    Bytes.toBytes("A"), 1, Bytes.toBytes("v" + i))));
+        }
+        return results;
+    }
+
+    private static void readAll(ResultIterator iterator) throws Exception {
+        while (iterator.next() != null) {
+        }
+        iterator.close();
+    }
+
+    @Test
+    public void testResultsCachedOnceRead() throws Exception {
+        ResultCache cache = new ResultCache(ReadOnlyProps.EMPTY_PROPS);
+        RowProjector projector = RowProjector.EMPTY_PROJECTOR;
+        ResultIterator iterator = cache.newCachingIterator("k",
+                new MaterializedResultIterator(getResults(3)), projector);
+        iterator.next();
+        assertNull(cache.get("k"));
+        readAll(iterator);
+        assertEquals(3, cache.get("k").getResults().size());
+        assertSame(projector, cache.get("k").getProjector());
+    }
+
+    @Test
+    public void testPartiallyReadResultsNotCached() throws Exception {
+        ResultCache cache = new ResultCache(ReadOnlyProps.EMPTY_PROPS);
+        ResultIterator iterator = cache.newCachingIterator("k",
+                new MaterializedResultIterator(getResults(3)), RowProjector.EMPTY_PROJECTOR);
+        iterator.next();
+        iterator.close();
+        assertNull(cache.get("k"));
+    }
+
+    @Test
+    public void testLargeResultsNotCached() throws Exception {
+        ResultCache cache = new ResultCache(new ReadOnlyProps(ImmutableMap.of(
+                QueryServices.RESULT_CACHE_MAX_ENTRY_SIZE_ATTRIB, "500")));
+        readAll(cache.newCachingIterator("small",
+                new MaterializedResultIterator(getResults(1)), RowProjector.EMPTY_PROJECTOR));
+        readAll(cache.newCachingIterator("large",
+                new MaterializedResultIterator(getResults(100)), RowProjector.EMPTY_PROJECTOR));
+        assertEquals(1, cache.get("small").getResults().size());
+        assertNull(cache.get("large"));
+    }
+}
@@ -70,6 +70,7 @@ import org.apache.phoenix.execute.TupleProjectionPlan;
 import org.apache.phoenix.execute.TupleProjector;
 import org.apache.phoenix.execute.UnionPlan;
 import org.apache.phoenix.execute.UnnestArrayPlan;
+import org.apache.phoenix.execute.WindowPlan;
 import org.apache.phoenix.execute.visitor.QueryPlanVisitor;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.LiteralExpression;
@@ -81,7 +82,12 @@ import org.apache.phoenix.filter.EncodedQualifiersColumnProjectionFilter;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixPreparedStatement;
 import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.parse.DerivedTableNode;
+import org.apache.phoenix.parse.JoinTableNode;
+import org.apache.phoenix.parse.NamedTableNode;
 import org.apache.phoenix.parse.ParseNodeFactory;
+import org.apache.phoenix.parse.SelectStatement;
+import org.apache.phoenix.parse.TableNode;
 import org.apache.phoenix.query.BaseConnectionlessQueryTest;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServices;
@@ -5235,6 +5241,11 @@ public class QueryCompilerTest extends BaseConnectionlessQueryTest {
             return Collections.emptyList();
         }
 
+        @Override
+        public List<QueryPlan> visit(WindowPlan plan) {
+            return plan.getDelegate().accept(this);
+        }
+
         @Override
         public List<QueryPlan> visit(CorrelatePlan plan) {
             return Collections.emptyList();
@@ -6604,4 +6615,99 @@ public class QueryCompilerTest extends BaseConnectionlessQueryTest {
             conn.close();
         }
     }
+
+    @Test
+    public void testWindowFunctions() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE T_WINDOW (K1 VARCHAR NOT NULL, K2 INTEGER NOT NULL,"
+                    + " V1 INTEGER, V2 VARCHAR CONSTRAINT PK PRIMARY KEY (K1, K2))");
+
+            // The window follows the row key, so the rows are not sorted before computing it
+            QueryPlan plan = TestUtil.getOptimizeQueryPlanNoIterator(conn, "SELECT K1, K2,"
+                    + " ROW_NUMBER() OVER (PARTITION BY K1 ORDER BY K2) RN,"
+                    + " SUM(V1) OVER (PARTITION BY K1 ORDER BY K2) FROM T_WINDOW ORDER BY V2 LIMIT 5");
+            assertTrue(plan instanceof ClientScanPlan);
+            assertEquals(5, plan.getLimit().intValue());
+            assertEquals(1, plan.getOrderBy().getOrderByExpressions().size());
+            assertEquals(4, plan.getProjector().getColumnCount());
+            assertEquals("K2", plan.getProjector().getColumnProjector(1).getName());
+            assertEquals("RN", plan.getProjector().getColumnProjector(2).getName());
+            WindowPlan windowPlan = (WindowPlan) ((TupleProjectionPlan) ((ClientScanPlan) plan).getDelegate()).getDelegate();
+            assertEquals(2, windowPlan.getFunctions().size());
+            assertTrue(windowPlan.getDelegate() instanceof ScanPlan);
+            assertNull(windowPlan.getDelegate().getLimit());
+            assertTrue(windowPlan.getDelegate().getOrderBy().getOrderByExpressions().isEmpty());
+
+            plan = TestUtil.getOptimizeQueryPlanNoIterator(conn,
+                    "SELECT K1, RANK() OVER (ORDER BY V1 DESC) FROM T_WINDOW WHERE K1 = 'a'");
+            windowPlan = (WindowPlan) ((TupleProjectionPlan) ((ClientScanPlan) plan).getDelegate()).getDelegate();
+            assertEquals(1, windowPlan.getDelegate().getOrderBy().getOrderByExpressions().size());
+            assertTrue(plan.getOrderBy().getOrderByExpressions().isEmpty());
+
+            // Window over the groups of an aggregate query
+            plan = TestUtil.getOptimizeQueryPlanNoIterator(conn,
+                    "SELECT K1, SUM(V1), DENSE_RANK() OVER (ORDER BY SUM(V1) DESC) FROM T_WINDOW GROUP BY K1");
+            windowPlan = (WindowPlan) ((TupleProjectionPlan) ((ClientScanPlan) plan).getDelegate()).getDelegate();
+            assertTrue(windowPlan.getDelegate() instanceof AggregatePlan);
+
+            String[] unsupportedQueries = new String[] {
+                    "SELECT ROW_NUMBER() OVER (ORDER BY K2) + 1 FROM T_WINDOW",
+                    "SELECT K1 FROM T_WINDOW ORDER BY ROW_NUMBER() OVER (ORDER BY K2)",
+                    "SELECT RANK() OVER (ORDER BY K2), RANK() OVER (ORDER BY V1) FROM T_WINDOW",
+                    "SELECT AVG(V1) OVER (ORDER BY K2) FROM T_WINDOW",
+                    "SELECT LAG(V1, K2) OVER (ORDER BY K2) FROM T_WINDOW",
+                    "SELECT DISTINCT K1, ROW_NUMBER() OVER (ORDER BY K2) FROM T_WINDOW" };
+            for (String query : unsupportedQueries) {
+                try {
+                    TestUtil.getOptimizeQueryPlanNoIterator(conn, query);
+                    fail(query);
+                } catch (SQLFeatureNotSupportedException e) {
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPartialAggregationBelowJoin() throws Exception {
+        Properties props = PropertiesUtil.deepCopy(TestUtil.TEST_PROPERTIES);
+        props.setProperty(QueryServices.JOIN_PARTIAL_AGGREGATION_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            conn.createStatement().execute("CREATE TABLE T_FACT (K1 VARCHAR NOT NULL, K2 INTEGER NOT NULL,"
+                    + " DIM_ID INTEGER, AMOUNT DECIMAL CONSTRAINT PK PRIMARY KEY (K1, K2))");
+            conn.createStatement().execute("CREATE TABLE T_DIM (ID INTEGER PRIMARY KEY, NAME VARCHAR)");
+
+            String query = "SELECT D.NAME, SUM(F.AMOUNT), COUNT(*), MAX(D.ID) FROM T_FACT F"
+                    + " JOIN T_DIM D ON F.DIM_ID = D.ID WHERE F.K2 > 10 GROUP BY D.NAME";
+            QueryPlan plan = TestUtil.getOptimizeQueryPlanNoIterator(conn, query);
+            assertTrue(plan instanceof HashJoinPlan);
+            assertEquals(4, plan.getProjector().getColumnCount());
+            TableNode lhs = ((JoinTableNode) ((SelectStatement) plan.getStatement()).getFrom()).getLHS();
+            assertTrue(lhs instanceof DerivedTableNode);
+            SelectStatement partial = ((DerivedTableNode) lhs).getSelect();
+            // Grouped by the join key only, the filter on K2 is applied before the aggregation
+            assertEquals(1, partial.getGroupBy().size());
+            assertEquals(3, partial.getSelect().size());
+            assertNotNull(partial.getWhere());
+
+            String[] unchangedQueries = new String[] {
+                    // Grouped by the whole primary key
+                    "SELECT D.NAME, SUM(F.AMOUNT) FROM T_FACT F JOIN T_DIM D ON F.K2 = D.ID AND F.K1 = D.NAME GROUP BY D.NAME",
+                    // Not decomposable
+                    "SELECT D.NAME, AVG(F.AMOUNT) FROM T_FACT F JOIN T_DIM D ON F.DIM_ID = D.ID GROUP BY D.NAME",
+                    // Aggregates over columns of both tables
+                    "SELECT D.NAME, SUM(F.AMOUNT), COUNT(D.NAME) FROM T_FACT F JOIN T_DIM D ON F.DIM_ID = D.ID GROUP BY D.NAME",
+                    "SELECT D.NAME, SUM(F.AMOUNT) FROM T_FACT F LEFT JOIN T_DIM D ON F.DIM_ID = D.ID GROUP BY D.NAME" };
+            for (String unchangedQuery : unchangedQueries) {
+                plan = TestUtil.getOptimizeQueryPlanNoIterator(conn, unchangedQuery);
+                lhs = ((JoinTableNode) ((SelectStatement) plan.getStatement()).getFrom()).getLHS();
+                assertTrue(unchangedQuery, lhs instanceof NamedTableNode);
+            }
+        }
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            QueryPlan plan = TestUtil.getOptimizeQueryPlanNoIterator(conn, "SELECT D.NAME, SUM(F.AMOUNT)"
+                    + " FROM T_FACT F JOIN T_DIM D ON F.DIM_ID = D.ID GROUP BY D.NAME");
+            TableNode lhs = ((JoinTableNode) ((SelectStatement) plan.getStatement()).getFrom()).getLHS();
+            assertTrue(lhs instanceof NamedTableNode);
+        }
+    }
 }
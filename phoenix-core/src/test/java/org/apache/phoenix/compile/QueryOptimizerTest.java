@@ -42,6 +42,7 @@ import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.compile.OrderByCompiler.OrderBy;
+import org.apache.phoenix.execute.HashJoinPlan;
 import org.apache.phoenix.jdbc.PhoenixPreparedStatement;
 import org.apache.phoenix.jdbc.PhoenixResultSet;
 import org.apache.phoenix.jdbc.PhoenixStatement;
@@ -50,6 +51,7 @@ import org.apache.phoenix.parse.HintNode.Hint;
 import org.apache.phoenix.parse.SQLParser;
 import org.apache.phoenix.query.BaseConnectionlessQueryTest;
 import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PTableType;
 import org.apache.phoenix.util.PhoenixRuntime;
@@ -829,6 +831,30 @@ public class QueryOptimizerTest extends BaseConnectionlessQueryTest {
         assertQualifierRanges(rs, ENCODED_EMPTY_COLUMN_NAME, ENCODED_CQ_COUNTER_INITIAL_VALUE);
     }
     
+    @Test
+    public void testLateMaterialization() throws Exception {
+        Properties props = PropertiesUtil.deepCopy(TestUtil.TEST_PROPERTIES);
+        props.setProperty(QueryServices.LATE_MATERIALIZATION_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        props.setProperty(QueryServices.LATE_MATERIALIZATION_MIN_COLUMNS_ATTRIB, "4");
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        conn.createStatement().execute("CREATE TABLE LM (k1 VARCHAR NOT NULL, k2 INTEGER NOT NULL, "
+                + "a VARCHAR, b VARCHAR, c VARCHAR, d VARCHAR CONSTRAINT pk PRIMARY KEY (k1, k2))");
+        PhoenixStatement stmt = conn.createStatement().unwrap(PhoenixStatement.class);
+        QueryPlan plan = stmt.optimizeQuery("SELECT * FROM LM WHERE a = 'x' ORDER BY b LIMIT 10");
+        assertTrue(plan instanceof HashJoinPlan);
+        assertEquals(6, plan.getProjector().getColumnCount());
+        assertFalse(plan.getOrderBy().getOrderByExpressions().isEmpty());
+        // Too few columns projected
+        plan = stmt.optimizeQuery("SELECT k1, a FROM LM ORDER BY b LIMIT 10");
+        assertFalse(plan instanceof HashJoinPlan);
+        // Rows are already returned in row key order
+        plan = stmt.optimizeQuery("SELECT * FROM LM ORDER BY k1 LIMIT 10");
+        assertFalse(plan instanceof HashJoinPlan);
+        // No limit
+        plan = stmt.optimizeQuery("SELECT * FROM LM ORDER BY b");
+        assertFalse(plan instanceof HashJoinPlan);
+    }
+
     private static void assertQualifierRanges(ResultSet rs, int minQualifier, int maxQualifier) throws SQLException {
         Scan scan = rs.unwrap(PhoenixResultSet.class).getStatement().getQueryPlan().getContext().getScan();
         assertNotNull(scan.getAttribute(MIN_QUALIFIER));
@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.execute;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class HashJoinPlanTest {
+
+    @Test
+    public void testNextKeyBatchSize() {
+        // Every key matched a row: double the batch size
+        assertEquals(256, HashJoinPlan.nextKeyBatchSize(128, 128, 128, 128, 1024));
+        // Few keys matched a row: grow faster
+        assertEquals(512, HashJoinPlan.nextKeyBatchSize(128, 128, 10, 128, 1024));
+        // Bounded by the max batch size
+        assertEquals(1024, HashJoinPlan.nextKeyBatchSize(512, 512, 0, 128, 1024));
+        assertEquals(1024, HashJoinPlan.nextKeyBatchSize(1024, 1024, 1024, 128, 1024));
+        // Never below the min batch size
+        assertEquals(128, HashJoinPlan.nextKeyBatchSize(16, 16, 16, 128, 1024));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.execute.visitor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.AndExpression;
+import org.apache.phoenix.expression.ComparisonExpression;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.InListExpression;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.NotExpression;
+import org.apache.phoenix.expression.OrExpression;
+import org.apache.phoenix.filter.MultiKeyValueComparisonFilter;
+import org.apache.phoenix.filter.SingleCQKeyValueComparisonFilter;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.stats.ColumnStatistics;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PInteger;
+import org.junit.Test;
+
+public class SelectivityEstimatorTest {
+    private static final int NVALUES = 1000;
+    private static final byte[] COLUMN_WITH_STATS = Bytes.toBytes("V1");
+    private static final byte[] COLUMN_WITHOUT_STATS = Bytes.toBytes("V2");
+
+    private static final SelectivityEstimator ESTIMATOR = new SelectivityEstimator(null) {
+        private final ColumnStatistics stats = newColumnStatistics();
+
+        @Override
+        protected ColumnStatistics getColumnStatistics(byte[] family, byte[] qualifier) {
+            return Bytes.equals(qualifier, COLUMN_WITH_STATS) ? stats : null;
+        }
+    };
+
+    private static ColumnStatistics newColumnStatistics() {
+        ColumnStatistics stats = new ColumnStatistics(10);
+        for (int i = 0; i < NVALUES; i++) {
+            stats.addValue(PInteger.INSTANCE.toBytes(i));
+        }
+        return stats;
+    }
+
+    private static final PDatum INTEGER_DATUM = new PDatum() {
+        @Override
+        public boolean isNullable() {
+            return true;
+        }
+
+        @Override
+        public PDataType getDataType() {
+            return PInteger.INSTANCE;
+        }
+
+        @Override
+        public Integer getMaxLength() {
+            return null;
+        }
+
+        @Override
+        public Integer getScale() {
+            return null;
+        }
+
+        @Override
+        public SortOrder getSortOrder() {
+            return SortOrder.getDefault();
+        }
+    };
+
+    private static Expression column(byte[] qualifier) {
+        return new KeyValueColumnExpression(INTEGER_DATUM,
+                QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, qualifier);
+    }
+
+    private static Expression compare(CompareOp op, byte[] qualifier, int value)
+            throws Exception {
+        return new ComparisonExpression(Arrays.asList(column(qualifier),
+                LiteralExpression.newConstant(value, PInteger.INSTANCE)), op);
+    }
+
+    @Test
+    public void testEquality() throws Exception {
+        assertEquals(1.0 / NVALUES,
+                ESTIMATOR.estimate(compare(CompareOp.EQUAL, COLUMN_WITH_STATS, 5)), 0.0002);
+        assertEquals(1.0 - 1.0 / NVALUES,
+                ESTIMATOR.estimate(compare(CompareOp.NOT_EQUAL, COLUMN_WITH_STATS, 5)), 0.0002);
+        Expression inList = new InListExpression(Arrays.asList(column(COLUMN_WITH_STATS),
+                LiteralExpression.newConstant(1, PInteger.INSTANCE),
+                LiteralExpression.newConstant(2, PInteger.INSTANCE),
+                LiteralExpression.newConstant(3, PInteger.INSTANCE)), false);
+        assertEquals(3.0 / NVALUES, ESTIMATOR.estimate(inList), 0.0005);
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        assertEquals(0.25,
+                ESTIMATOR.estimate(compare(CompareOp.LESS, COLUMN_WITH_STATS, NVALUES / 4)), 0.05);
+        assertEquals(0.75, ESTIMATOR.estimate(
+                compare(CompareOp.GREATER_OR_EQUAL, COLUMN_WITH_STATS, NVALUES / 4)), 0.05);
+        assertEquals(0.0,
+                ESTIMATOR.estimate(compare(CompareOp.LESS, COLUMN_WITH_STATS, -1)), 0.0001);
+        assertEquals(1.0,
+                ESTIMATOR.estimate(compare(CompareOp.LESS, COLUMN_WITH_STATS, NVALUES)), 0.0001);
+        // A constant on the left hand side mirrors the operator
+        Expression reversed = new ComparisonExpression(Arrays.asList(
+                LiteralExpression.newConstant(NVALUES / 4, PInteger.INSTANCE),
+                column(COLUMN_WITH_STATS)), CompareOp.GREATER);
+        assertEquals(0.25, ESTIMATOR.estimate(reversed), 0.05);
+    }
+
+    @Test
+    public void testCompoundExpressions() throws Exception {
+        Expression lessThanHalf = compare(CompareOp.LESS, COLUMN_WITH_STATS, NVALUES / 2);
+        Expression lessThanQuarter = compare(CompareOp.LESS, COLUMN_WITH_STATS, NVALUES / 4);
+        Expression noStats = compare(CompareOp.EQUAL, COLUMN_WITHOUT_STATS, 5);
+        assertEquals(SelectivityEstimator.DEFAULT_SELECTIVITY, ESTIMATOR.estimate(noStats), 0);
+        assertEquals(0.25, ESTIMATOR.estimate(
+                new AndExpression(Arrays.asList(lessThanHalf, noStats))), 0.05);
+        assertEquals(0.5 + 0.25 - 0.5 * 0.25, ESTIMATOR.estimate(
+                new OrExpression(Arrays.asList(lessThanHalf, lessThanQuarter))), 0.05);
+        assertEquals(0.75, ESTIMATOR.estimate(new NotExpression(lessThanQuarter)), 0.05);
+    }
+
+    @Test
+    public void testFilters() throws Exception {
+        Filter lessThanHalf = new SingleCQKeyValueComparisonFilter(
+                compare(CompareOp.LESS, COLUMN_WITH_STATS, NVALUES / 2));
+        Filter noStats = new MultiKeyValueComparisonFilter(
+                compare(CompareOp.EQUAL, COLUMN_WITHOUT_STATS, 5), false, null);
+        assertEquals(0.5, ESTIMATOR.estimate(lessThanHalf), 0.05);
+        assertEquals(0.25, ESTIMATOR.estimate(new FilterList(FilterList.Operator.MUST_PASS_ALL,
+                Arrays.asList(lessThanHalf, noStats))), 0.05);
+        assertEquals(SelectivityEstimator.DEFAULT_SELECTIVITY, ESTIMATOR.estimate(
+                new FilterList(FilterList.Operator.MUST_PASS_ONE,
+                        Arrays.asList(lessThanHalf, noStats))), 0);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.schema.types.PBoolean;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+public class BloomFilterExpressionTest {
+
+    private static List<ImmutableBytesPtr> getKeys(String... values) {
+        List<ImmutableBytesPtr> keys = Lists.newArrayList();
+        for (String value : values) {
+            keys.add(new ImmutableBytesPtr(PVarchar.INSTANCE.toBytes(value)));
+        }
+        return keys;
+    }
+
+    private static Expression create(String value, String... keys) throws SQLException {
+        return BloomFilterExpression.create(
+                LiteralExpression.newConstant(value, PVarchar.INSTANCE), getKeys(keys), 0.01);
+    }
+
+    private static Boolean evaluate(Expression expression) throws Exception {
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        assertTrue(expression.evaluate(null, ptr));
+        return (Boolean) PBoolean.INSTANCE.toObject(ptr);
+    }
+
+    @Test
+    public void testEvaluate() throws Exception {
+        assertEquals(Boolean.TRUE, evaluate(create("b", "b", "d", "f")));
+        assertEquals(Boolean.TRUE, evaluate(create("d", "b", "d", "f")));
+        assertEquals(Boolean.TRUE, evaluate(create("f", "b", "d", "f")));
+        // Outside of the min/max key range
+        assertEquals(Boolean.FALSE, evaluate(create("a", "b", "d", "f")));
+        assertEquals(Boolean.FALSE, evaluate(create("g", "b", "d", "f")));
+        assertEquals(null, evaluate(create(null, "b", "d", "f")));
+    }
+
+    @Test
+    public void testNoKeys() throws Exception {
+        Expression bloomFilter = create("b");
+        assertTrue(LiteralExpression.isBooleanFalseOrNull(bloomFilter));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        Expression bloomFilter = create("d", "b", "d", "f");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dOut = new DataOutputStream(baos);
+        bloomFilter.write(dOut);
+        dOut.flush();
+
+        BloomFilterExpression bloomFilter2 = new BloomFilterExpression();
+        byte[] bytes = baos.toByteArray();
+        bloomFilter2.readFields(new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length)));
+        assertEquals(bloomFilter, bloomFilter2);
+        assertEquals(Boolean.TRUE, evaluate(bloomFilter2));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.filter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.util.CellVisibilityUtil;
+import org.junit.Test;
+
+public class IndexRowDigestFilterTest {
+    private static final byte[] ROW = Bytes.toBytes("row");
+    private static final byte[] FAMILY = Bytes.toBytes("0");
+
+    private static List<Cell> getCells(String value) {
+        List<Cell> cells = new ArrayList<>();
+        cells.add(new KeyValue(ROW, FAMILY, null, 3, KeyValue.Type.DeleteFamily));
+        cells.add(new KeyValue(ROW, FAMILY, Bytes.toBytes("_0"), 5, Bytes.toBytes("x")));
+        cells.add(new KeyValue(ROW, FAMILY, Bytes.toBytes("A"), 5, Bytes.toBytes(value)));
+        return cells;
+    }
+
+    @Test
+    public void testFilterRowCellsReplacesRowWithDigest() throws Exception {
+        IndexRowDigestFilter filter = new IndexRowDigestFilter();
+        assertTrue(filter.hasFilterRow());
+        List<Cell> cells = getCells("v1");
+        byte[] expectedDigest = IndexRowDigestFilter.computeDigest(getCells("v1"));
+        filter.filterRowCells(cells);
+        assertEquals(1, cells.size());
+        Cell digestCell = cells.get(0);
+        assertTrue(CellUtil.matchingRows(digestCell, ROW));
+        assertTrue(CellUtil.matchingColumn(digestCell, IndexRowDigestFilter.DIGEST_FAMILY,
+                IndexRowDigestFilter.DIGEST_QUALIFIER));
+        assertArrayEquals(expectedDigest, CellUtil.cloneValue(digestCell));
+    }
+
+    @Test
+    public void testDigestDependsOnValues() throws Exception {
+        byte[] digest = IndexRowDigestFilter.computeDigest(getCells("v1"));
+        assertFalse(Bytes.equals(digest, IndexRowDigestFilter.computeDigest(getCells("v2"))));
+        // The delete marker masks no version, so it does not change the digest
+        List<Cell> withoutDeleteMarker = getCells("v1");
+        withoutDeleteMarker.remove(0);
+        assertArrayEquals(digest, IndexRowDigestFilter.computeDigest(withoutDeleteMarker));
+    }
+
+    @Test
+    public void testDigestIgnoresOlderVersions() throws Exception {
+        byte[] digest = IndexRowDigestFilter.computeDigest(getCells("v1"));
+        List<Cell> withOlderVersion = getCells("v1");
+        withOlderVersion.add(new KeyValue(ROW, FAMILY, Bytes.toBytes("A"), 4, Bytes.toBytes("v0")));
+        assertArrayEquals(digest, IndexRowDigestFilter.computeDigest(withOlderVersion));
+    }
+
+    @Test
+    public void testLatestVisibleCellsSkipDeletedVersions() throws Exception {
+        List<Cell> cells = new ArrayList<>();
+        cells.add(new KeyValue(ROW, FAMILY, null, 6, KeyValue.Type.DeleteFamily));
+        cells.add(new KeyValue(ROW, FAMILY, Bytes.toBytes("_0"), 7, Bytes.toBytes("x")));
+        cells.add(new KeyValue(ROW, FAMILY, Bytes.toBytes("_0"), 5, Bytes.toBytes("x")));
+        cells.add(new KeyValue(ROW, FAMILY, Bytes.toBytes("A"), 9, KeyValue.Type.Delete));
+        cells.add(new KeyValue(ROW, FAMILY, Bytes.toBytes("A"), 9, Bytes.toBytes("v2")));
+        cells.add(new KeyValue(ROW, FAMILY, Bytes.toBytes("A"), 8, Bytes.toBytes("v1")));
+        cells.add(new KeyValue(ROW, FAMILY, Bytes.toBytes("B"), 8, KeyValue.Type.DeleteColumn));
+        cells.add(new KeyValue(ROW, FAMILY, Bytes.toBytes("B"), 7, Bytes.toBytes("v")));
+        List<Cell> visibleCells = CellVisibilityUtil.getLatestVisibleCells(cells);
+        assertEquals(2, visibleCells.size());
+        assertEquals(cells.get(1), visibleCells.get(0));
+        assertEquals(cells.get(5), visibleCells.get(1));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        IndexRowDigestFilter filter = new IndexRowDigestFilter();
+        IndexRowDigestFilter parsed = IndexRowDigestFilter.parseFrom(filter.toByteArray());
+        assertTrue(parsed.hasFilterRow());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hbase.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.exceptions.TimeoutIOException;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.hbase.index.LockManager.RowLock;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.junit.Test;
+
+public class StripedLockManagerTest {
+
+    @Test
+    public void testCreate() {
+        Configuration conf = new Configuration(false);
+        assertFalse(LockManager.create(conf) instanceof StripedLockManager);
+        conf.setInt(LockManager.ROW_LOCK_STRIPES_CONF_KEY, 100);
+        LockManager lockManager = LockManager.create(conf);
+        assertTrue(lockManager instanceof StripedLockManager);
+        assertEquals(128, ((StripedLockManager) lockManager).getNumStripes());
+    }
+
+    @Test
+    public void testLockIsReentrantAndExclusive() throws Exception {
+        final StripedLockManager lockManager = new StripedLockManager(16);
+        final ImmutableBytesPtr row = new ImmutableBytesPtr(Bytes.toBytes("row"));
+        RowLock lock1 = lockManager.lockRow(row, 10);
+        RowLock lock2 = lockManager.lockRow(row, 10);
+        assertEquals(row, lock2.getRowKey());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> future = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try {
+                        lockManager.lockRow(row, 10);
+                        fail("Expected the row lock to time out");
+                    } catch (TimeoutIOException e) {
+                        // expected
+                    }
+                    return null;
+                }
+            });
+            future.get();
+            lock1.release();
+            lock2.release();
+            future = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    lockManager.lockRow(row, 10).release();
+                    return null;
+                }
+            });
+            future.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLockRows() throws Exception {
+        StripedLockManager lockManager = new StripedLockManager(4);
+        List<ImmutableBytesPtr> rows = Arrays.asList(
+                new ImmutableBytesPtr(Bytes.toBytes("a")),
+                new ImmutableBytesPtr(Bytes.toBytes("b")),
+                new ImmutableBytesPtr(Bytes.toBytes("c")),
+                new ImmutableBytesPtr(Bytes.toBytes("d")),
+                new ImmutableBytesPtr(Bytes.toBytes("e")));
+        List<RowLock> locks = lockManager.lockRows(rows, 10);
+        assertEquals(rows.size(), locks.size());
+        int previousStripe = -1;
+        for (RowLock lock : locks) {
+            int stripe = lockManager.getStripe(lock.getRowKey());
+            assertTrue(stripe >= previousStripe);
+            previousStripe = stripe;
+            lock.release();
+        }
+    }
+}
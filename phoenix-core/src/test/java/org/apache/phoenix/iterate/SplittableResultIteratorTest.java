@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.AssertResults;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+public class SplittableResultIteratorTest {
+
+    private static Tuple row(String key) {
+        return new SingleKeyValueTuple(new KeyValue(Bytes.toBytes(key), SINGLE_COLUMN_FAMILY,
+                SINGLE_COLUMN, Bytes.toBytes(key)));
+    }
+
+    private static List<Tuple> rows(String... keys) {
+        List<Tuple> rows = Lists.newArrayList();
+        for (String key : keys) {
+            rows.add(row(key));
+        }
+        return rows;
+    }
+
+    private static void assertKey(String expectedKey, Tuple tuple) {
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        tuple.getKey(ptr);
+        assertEquals(expectedKey, Bytes.toString(ptr.get(), ptr.getOffset(), ptr.getLength()));
+    }
+
+    @Test
+    public void testSplitKey() {
+        assertArrayEquals(Bytes.toBytes("d"),
+                SplittableResultIterator.getSplitKey(Bytes.toBytes("a"), Bytes.toBytes("g")));
+        // No key sorts between a key and the same key followed by a zero byte
+        assertNull(SplittableResultIterator.getSplitKey(Bytes.toBytes("a"), new byte[] { 'a', 0 }));
+        assertNull(SplittableResultIterator.getSplitKey(Bytes.toBytes("b"), Bytes.toBytes("a")));
+        assertNull(SplittableResultIterator.getSplitKey(Bytes.toBytes("a"), new byte[0]));
+    }
+
+    @Test
+    public void testSplitWhileIterating() throws Throwable {
+        // The scan of the chunk keeps returning rows past the split key, which must be skipped
+        SplittableResultIterator iterator = new SplittableResultIterator(
+                new MaterializedResultIterator(rows("a", "b", "c", "d", "e", "f")),
+                Bytes.toBytes("a"), Bytes.toBytes("g"));
+        assertKey("a", iterator.next());
+        final List<byte[]> tailRanges = Lists.newArrayList();
+        byte[] splitKey = iterator.split(new SplittableResultIterator.TailSubmitter() {
+            @Override
+            public Future<PeekingResultIterator> submit(byte[] startKey, byte[] stopKey) {
+                tailRanges.add(startKey);
+                tailRanges.add(stopKey);
+                // Never picked up by a worker, so scanned by the thread reading the chunk
+                return new FutureTask<PeekingResultIterator>(new Callable<PeekingResultIterator>() {
+                    @Override
+                    public PeekingResultIterator call() {
+                        return new MaterializedResultIterator(rows("d", "e", "f"));
+                    }
+                });
+            }
+        });
+        assertArrayEquals(Bytes.toBytes("d"), splitKey);
+        assertArrayEquals(Bytes.toBytes("d"), tailRanges.get(0));
+        assertArrayEquals(Bytes.toBytes("g"), tailRanges.get(1));
+        AssertResults.assertResults(iterator, rows("b", "c", "d", "e", "f").toArray(new Tuple[0]));
+    }
+
+    @Test
+    public void testNoSplitOnceChunkIsRead() throws SQLException {
+        SplittableResultIterator iterator = new SplittableResultIterator(
+                new MaterializedResultIterator(Arrays.asList(row("a"))),
+                Bytes.toBytes("a"), Bytes.toBytes("g"));
+        assertKey("a", iterator.next());
+        assertNull(iterator.next());
+        assertNull(iterator.split(new SplittableResultIterator.TailSubmitter() {
+            @Override
+            public Future<PeekingResultIterator> submit(byte[] startKey, byte[] stopKey) {
+                throw new AssertionError();
+            }
+        }));
+        assertEquals(-1, iterator.getEstimatedRemainingMillis(System.currentTimeMillis()));
+    }
+
+    private static class CountingListener implements SplittableResultIterator.ChunkListener {
+        private int rowsRead;
+        private int chunksDone;
+
+        @Override
+        public void rowRead(SplittableResultIterator chunk) {
+            rowsRead++;
+        }
+
+        @Override
+        public void chunkDone(SplittableResultIterator chunk) {
+            chunksDone++;
+        }
+    }
+
+    @Test
+    public void testListener() throws SQLException {
+        CountingListener listener = new CountingListener();
+        SplittableResultIterator iterator = new SplittableResultIterator(
+                new MaterializedResultIterator(rows("a", "b", "c")),
+                Bytes.toBytes("a"), Bytes.toBytes("g"), listener);
+        assertKey("a", iterator.next());
+        assertKey("b", iterator.next());
+        assertEquals(2, listener.rowsRead);
+        // The chunk can be split until its scan is read to the end
+        assertEquals(0, listener.chunksDone);
+        assertKey("c", iterator.next());
+        assertNull(iterator.next());
+        assertEquals(3, listener.rowsRead);
+        assertEquals(1, listener.chunksDone);
+        iterator.close();
+        assertEquals(1, listener.chunksDone);
+
+        listener = new CountingListener();
+        iterator = new SplittableResultIterator(
+                new MaterializedResultIterator(rows("a", "b", "c")),
+                Bytes.toBytes("a"), Bytes.toBytes("g"), listener);
+        assertKey("a", iterator.next());
+        iterator.close();
+        assertEquals(1, listener.chunksDone);
+    }
+}
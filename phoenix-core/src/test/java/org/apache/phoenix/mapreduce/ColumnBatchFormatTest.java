@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDecimal;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.util.ByteUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ColumnBatchFormatTest {
+
+    private static final String[] NAMES = new String[] { "L", "D", "V", "N" };
+    private static final PDataType[] TYPES = new PDataType[] { PLong.INSTANCE, PDouble.INSTANCE,
+            PVarchar.INSTANCE, PDecimal.INSTANCE };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Fills the batch with the rows from the given one, every third row having only nulls.
+     */
+    private static void fill(ColumnBatch batch, int firstRow, int size) {
+        ColumnBatch.Column[] columns = batch.getColumns();
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        for (int i = 0; i < size; i++) {
+            int row = firstRow + i;
+            if (row % 3 == 2) {
+                ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+                for (ColumnBatch.Column column : columns) {
+                    column.set(i, ptr, SortOrder.ASC);
+                }
+                continue;
+            }
+            ptr.set(PLong.INSTANCE.toBytes((long) -row));
+            columns[0].set(i, ptr, SortOrder.ASC);
+            ptr.set(PDouble.INSTANCE.toBytes(row / 4d));
+            columns[1].set(i, ptr, SortOrder.ASC);
+            ptr.set(PVarchar.INSTANCE.toBytes("v" + row, SortOrder.DESC));
+            columns[2].set(i, ptr, SortOrder.DESC);
+            ptr.set(PDecimal.INSTANCE.toBytes(BigDecimal.valueOf(row)));
+            columns[3].set(i, ptr, SortOrder.ASC);
+        }
+        batch.setSize(size);
+    }
+
+    private static void assertRows(ColumnBatch batch, int firstRow) {
+        ColumnBatch.Column[] columns = batch.getColumns();
+        for (int i = 0; i < batch.getSize(); i++) {
+            int row = firstRow + i;
+            boolean isNull = row % 3 == 2;
+            for (ColumnBatch.Column column : columns) {
+                assertEquals(isNull, column.getNulls()[i]);
+            }
+            if (isNull) {
+                continue;
+            }
+            assertEquals(-row, columns[0].getLongs()[i]);
+            assertEquals(row / 4d, columns[1].getDoubles()[i], 0d);
+            assertArrayEquals(Bytes.toBytes("v" + row), columns[2].getBytes()[i]);
+            assertEquals(0, BigDecimal.valueOf(row).compareTo(
+                    (BigDecimal) PDecimal.INSTANCE.toObject(columns[3].getBytes()[i])));
+        }
+    }
+
+    private static TaskAttemptContext newTaskContext(Configuration conf) {
+        return new TaskAttemptContextImpl(conf, TaskAttemptID.forName(
+                "attempt_200707121733_0001_m_000000_0"));
+    }
+
+    /**
+     * Writes batches of the given sizes with {@link ColumnBatchOutputFormat}, reusing the same
+     * batch as the record reader does, and commits the output.
+     */
+    private static void write(Path output, int... sizes) throws Exception {
+        Job job = Job.getInstance(new Configuration());
+        FileOutputFormat.setOutputPath(job, output);
+        TaskAttemptContext context = newTaskContext(job.getConfiguration());
+        ColumnBatchOutputFormat format = new ColumnBatchOutputFormat();
+        OutputCommitter committer = format.getOutputCommitter(context);
+        committer.setupJob(context);
+        committer.setupTask(context);
+        RecordWriter<NullWritable, ColumnBatch> writer = format.getRecordWriter(context);
+        ColumnBatch batch = new ColumnBatch(NAMES, TYPES, 10);
+        int rows = 0;
+        for (int size : sizes) {
+            fill(batch, rows, size);
+            writer.write(NullWritable.get(), batch);
+            rows += size;
+        }
+        writer.close(context);
+        committer.commitTask(context);
+        committer.commitJob(context);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Path output = new Path(folder.getRoot().toURI().toString(), "out");
+        // Two full batches and a partial one
+        int[] sizes = new int[] { 10, 10, 7 };
+        write(output, sizes);
+
+        Job job = Job.getInstance(new Configuration());
+        FileInputFormat.setInputPaths(job, output);
+        ColumnBatchInputFormat format = new ColumnBatchInputFormat();
+        List<InputSplit> splits = format.getSplits(job);
+        assertEquals(1, splits.size());
+        TaskAttemptContext context = newTaskContext(job.getConfiguration());
+        try (RecordReader<NullWritable, ColumnBatch> reader =
+                format.createRecordReader(splits.get(0), context)) {
+            reader.initialize(splits.get(0), context);
+            assertTrue(reader.getProgress() < 1f);
+            int rows = 0;
+            for (int size : sizes) {
+                assertTrue(reader.nextKeyValue());
+                ColumnBatch read = reader.getCurrentValue();
+                assertEquals(size, read.getSize());
+                ColumnBatch.Column[] columns = read.getColumns();
+                for (int i = 0; i < NAMES.length; i++) {
+                    assertEquals(NAMES[i], columns[i].getName());
+                    assertEquals(TYPES[i], columns[i].getType());
+                }
+                assertRows(read, rows);
+                rows += size;
+            }
+            assertFalse(reader.nextKeyValue());
+            assertEquals(1f, reader.getProgress(), 0f);
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        Path output = new Path(folder.getRoot().toURI().toString(), "out");
+        write(output);
+        File[] files = new File(folder.getRoot(), "out").listFiles(
+                (dir, name) -> name.endsWith(ColumnBatchOutputFormat.EXTENSION));
+        assertEquals(1, files.length);
+        try (ColumnBatchReader reader = new ColumnBatchReader(new DataInputStream(
+                new FileInputStream(files[0])))) {
+            assertEquals(0, reader.getColumnNames().length);
+            assertNull(reader.next());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testNotAColumnBatchFile() throws Exception {
+        try {
+            new ColumnBatchReader(new DataInputStream(new ByteArrayInputStream(
+                    Bytes.toBytes("PAR1 and more"))));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Not a column batch file"));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Date;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDate;
+import org.apache.phoenix.schema.types.PDecimal;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.util.ByteUtil;
+import org.junit.Test;
+
+public class ColumnBatchTest {
+
+    @Test
+    public void testKinds() {
+        assertEquals(ColumnBatch.Kind.LONG, ColumnBatch.Kind.of(PInteger.INSTANCE));
+        assertEquals(ColumnBatch.Kind.LONG, ColumnBatch.Kind.of(PDate.INSTANCE));
+        assertEquals(ColumnBatch.Kind.DOUBLE, ColumnBatch.Kind.of(PDouble.INSTANCE));
+        assertEquals(ColumnBatch.Kind.BYTES, ColumnBatch.Kind.of(PDecimal.INSTANCE));
+        assertEquals(ColumnBatch.Kind.BYTES, ColumnBatch.Kind.of(PVarchar.INSTANCE));
+    }
+
+    @Test
+    public void testSetValues() {
+        ColumnBatch batch = new ColumnBatch(new String[] { "I", "D", "DT", "V" },
+                new PDataType[] { PInteger.INSTANCE, PDouble.INSTANCE, PDate.INSTANCE,
+                        PVarchar.INSTANCE }, 2);
+        ColumnBatch.Column[] columns = batch.getColumns();
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+
+        ptr.set(PInteger.INSTANCE.toBytes(-7, SortOrder.DESC));
+        columns[0].set(0, ptr, SortOrder.DESC);
+        ptr.set(PDouble.INSTANCE.toBytes(1.5d));
+        columns[1].set(0, ptr, SortOrder.ASC);
+        ptr.set(PDate.INSTANCE.toBytes(new Date(1234L)));
+        columns[2].set(0, ptr, SortOrder.ASC);
+        ptr.set(PVarchar.INSTANCE.toBytes("abc", SortOrder.DESC));
+        columns[3].set(0, ptr, SortOrder.DESC);
+        ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+        for (ColumnBatch.Column column : columns) {
+            column.set(1, ptr, SortOrder.ASC);
+        }
+        batch.setSize(2);
+
+        assertEquals(2, batch.getSize());
+        assertEquals(-7L, columns[0].getLongs()[0]);
+        assertEquals(1.5d, columns[1].getDoubles()[0], 0d);
+        assertEquals(1234L, columns[2].getLongs()[0]);
+        assertArrayEquals(Bytes.toBytes("abc"), columns[3].getBytes()[0]);
+        for (ColumnBatch.Column column : columns) {
+            assertFalse(column.getNulls()[0]);
+            assertTrue(column.getNulls()[1]);
+        }
+    }
+}
@@ -17,24 +17,52 @@
  */
 package org.apache.phoenix.mapreduce;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.csv.CSVRecord;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.counters.GenericCounter;
+import org.apache.phoenix.mapreduce.bulkload.TableRowkeyPair;
+import org.apache.phoenix.mapreduce.bulkload.TargetTableRef;
+import org.apache.phoenix.mapreduce.bulkload.TargetTableRefFunctions;
 import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
+import org.apache.phoenix.query.BaseConnectionlessQueryTest;
+import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.schema.types.PInteger;
 import org.apache.phoenix.schema.types.PIntegerArray;
 import org.apache.phoenix.schema.types.PUnsignedInt;
 import org.apache.phoenix.util.ColumnInfo;
+import org.apache.phoenix.util.PhoenixRuntime;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import org.apache.phoenix.thirdparty.com.google.common.collect.ImmutableList;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
-public class FormatToBytesWritableMapperTest {
+public class FormatToBytesWritableMapperTest extends BaseConnectionlessQueryTest {
 
     @Test
     public void testBuildColumnInfoList() {
@@ -94,6 +122,72 @@ public class FormatToBytesWritableMapperTest {
         PhoenixConfigurationUtil.loadPreUpsertProcessor(conf);
     }
 
+    @Test
+    public void testBatchedUpserts() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (K VARCHAR NOT NULL PRIMARY KEY, V INTEGER)");
+        }
+        Configuration conf = new Configuration(false);
+        // Connect to the same connectionless services as the test
+        conf.set(HConstants.ZOOKEEPER_QUORUM, PhoenixRuntime.CONNECTIONLESS);
+        conf.set(QueryServices.EXTRA_JDBC_ARGUMENTS_ATTRIB, PhoenixRuntime.PHOENIX_TEST_DRIVER_URL_PARAM);
+        conf.set(FormatToBytesWritableMapper.TABLE_NAME_CONFKEY, tableName);
+        List<TargetTableRef> tables = ImmutableList.of(new TargetTableRef(tableName));
+        conf.set(FormatToBytesWritableMapper.TABLE_NAMES_CONFKEY,
+                TargetTableRefFunctions.NAMES_TO_JSON.apply(tables));
+        conf.set(FormatToBytesWritableMapper.LOGICAL_NAMES_CONFKEY,
+                TargetTableRefFunctions.LOGICAL_NAMES_TO_JSON.apply(tables));
+        FormatToBytesWritableMapper.configureColumnInfoList(conf, ImmutableList.of(
+                new ColumnInfo("K", Types.VARCHAR), new ColumnInfo("V", Types.INTEGER)));
+        conf.setInt(FormatToBytesWritableMapper.BATCH_SIZE_CONFKEY, 3);
+
+        final List<String> rowKeys = new ArrayList<>();
+        final Map<String, Counter> counters = new HashMap<>();
+        Mapper<LongWritable, Text, TableRowkeyPair, ImmutableBytesWritable>.Context context =
+                mock(Mapper.Context.class);
+        when(context.getConfiguration()).thenReturn(conf);
+        when(context.getCounter(anyString(), anyString())).thenAnswer(new Answer<Counter>() {
+            @Override
+            public Counter answer(InvocationOnMock invocation) {
+                String name = (String) invocation.getArguments()[1];
+                Counter counter = counters.get(name);
+                if (counter == null) {
+                    counter = new GenericCounter(name, name);
+                    counters.put(name, counter);
+                }
+                return counter;
+            }
+        });
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                TableRowkeyPair pair = (TableRowkeyPair) invocation.getArguments()[0];
+                rowKeys.add(Bytes.toString(pair.getRowkey().copyBytes()));
+                return null;
+            }
+        }).when(context).write(any(TableRowkeyPair.class), any(ImmutableBytesWritable.class));
+
+        FormatToBytesWritableMapper<CSVRecord> mapper = new CsvToKeyValueMapper();
+        mapper.setup(context);
+        // Nothing is written until a batch is full
+        mapper.map(new LongWritable(0), new Text("a,1"), context);
+        mapper.map(new LongWritable(1), new Text("b,2"), context);
+        assertEquals(0, rowKeys.size());
+        // The row failing inside the batch is reported, and the other rows are still written
+        mapper.map(new LongWritable(2), new Text("c,notanumber"), context);
+        assertEquals(ImmutableList.of("a", "b"), rowKeys);
+        assertEquals(1, counters.get("Errors on records").getValue());
+        // The last batch is only partially filled, so it is written out on cleanup
+        mapper.map(new LongWritable(3), new Text("d,4"), context);
+        mapper.map(new LongWritable(4), new Text("e,5"), context);
+        assertEquals(2, rowKeys.size());
+        mapper.cleanup(context);
+        assertEquals(ImmutableList.of("a", "b", "d", "e"), rowKeys);
+        assertEquals(1, counters.get("Errors on records").getValue());
+    }
+
     static class MockUpsertProcessor implements ImportPreUpsertKeyValueProcessor {
         @Override
         public List<Cell> preUpsert(byte[] rowKey, List<Cell> keyValues) {
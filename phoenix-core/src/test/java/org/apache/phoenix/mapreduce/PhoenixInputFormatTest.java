@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+public class PhoenixInputFormatTest {
+
+    private static List<Scan> scans(String... keys) {
+        List<Scan> scans = Lists.newArrayList();
+        for (int i = 0; i < keys.length - 1; i++) {
+            scans.add(new Scan().withStartRow(Bytes.toBytes(keys[i]))
+                    .withStopRow(Bytes.toBytes(keys[i + 1])));
+        }
+        return scans;
+    }
+
+    @Test
+    public void testSmallScansAreCombined() throws Exception {
+        // Four scans of 25 bytes each, combined two by two
+        List<PhoenixInputSplit> splits = PhoenixInputFormat.getBalancedSplits(
+                scans("a", "b", "c", "d", "e"), 100, "host1", 50);
+        assertEquals(2, splits.size());
+        assertEquals(2, splits.get(0).getScans().size());
+        assertEquals(50, splits.get(0).getLength());
+        assertArrayEquals(Bytes.toBytes("c"), splits.get(1).getScans().get(0).getStartRow());
+        assertArrayEquals(new String[] { "host1" }, splits.get(1).getLocations());
+    }
+
+    @Test
+    public void testLargeScansAreDivided() throws Exception {
+        // Two scans of 100 bytes each, divided in four
+        List<PhoenixInputSplit> splits = PhoenixInputFormat.getBalancedSplits(
+                scans("a", "i", "q"), 200, "host1", 25);
+        assertEquals(8, splits.size());
+        for (PhoenixInputSplit split : splits) {
+            assertEquals(1, split.getScans().size());
+            assertEquals(25, split.getLength());
+        }
+        assertArrayEquals(Bytes.toBytes("a"), splits.get(0).getScans().get(0).getStartRow());
+        assertArrayEquals(Bytes.toBytes("i"), splits.get(3).getScans().get(0).getStopRow());
+        assertArrayEquals(Bytes.toBytes("i"), splits.get(4).getScans().get(0).getStartRow());
+        assertArrayEquals(Bytes.toBytes("q"), splits.get(7).getScans().get(0).getStopRow());
+    }
+
+    @Test
+    public void testOpenEndedScanIsNotDivided() throws Exception {
+        List<Scan> scans = Lists.newArrayList(new Scan().withStartRow(Bytes.toBytes("a")));
+        List<PhoenixInputSplit> splits = PhoenixInputFormat.getBalancedSplits(scans, 200,
+                "host1", 25);
+        assertEquals(1, splits.size());
+        assertEquals(200, splits.get(0).getLength());
+    }
+}
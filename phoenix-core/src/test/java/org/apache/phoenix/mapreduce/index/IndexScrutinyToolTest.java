@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce.index;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.phoenix.parse.SQLParser;
+import org.junit.Test;
+
+public class IndexScrutinyToolTest {
+
+    @Test
+    public void testIncrementalWhereClause() throws Exception {
+        assertEquals("PHOENIX_ROW_TIMESTAMP() >= TO_DATE('1970-01-01 00:00:00.000',"
+                        + " 'yyyy-MM-dd HH:mm:ss.SSS', 'GMT')",
+                IndexScrutinyTool.getIncrementalWhereClause(0));
+        // 2020-09-13 12:26:40.123 GMT
+        assertEquals("PHOENIX_ROW_TIMESTAMP() >= TO_DATE('2020-09-13 12:26:40.123',"
+                        + " 'yyyy-MM-dd HH:mm:ss.SSS', 'GMT')",
+                IndexScrutinyTool.getIncrementalWhereClause(1600000000123L));
+    }
+
+    @Test
+    public void testIncrementalWhereClauseParses() throws Exception {
+        new SQLParser("SELECT ID FROM T WHERE "
+                + IndexScrutinyTool.getIncrementalWhereClause(1600000000123L)).parseQuery();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.optimize;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.phoenix.compile.FromCompiler;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.parse.AliasedNode;
+import org.apache.phoenix.parse.ColumnParseNode;
+import org.apache.phoenix.parse.FunctionParseNode;
+import org.apache.phoenix.parse.NamedTableNode;
+import org.apache.phoenix.parse.SQLParser;
+import org.apache.phoenix.parse.SelectStatement;
+import org.apache.phoenix.query.BaseConnectionlessQueryTest;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.ImmutableMap;
+
+public class RollupRewriterTest extends BaseConnectionlessQueryTest {
+    private static final String DEFINITION = "SELECT HOST, DAY, SUM(A.BYTES) TOTAL_BYTES,"
+            + " MAX(A.BYTES) MAX_BYTES, COUNT(*) EVENT_COUNT FROM S.EVENTS GROUP BY HOST, DAY";
+
+    @BeforeClass
+    public static synchronized void createTable() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE IF NOT EXISTS S.EVENTS ("
+                    + "HOST VARCHAR NOT NULL, DAY INTEGER NOT NULL, URL VARCHAR,"
+                    + " A.BYTES BIGINT, B.BYTES BIGINT CONSTRAINT PK PRIMARY KEY (HOST, DAY))");
+        }
+    }
+
+    private static SelectStatement rewrite(String definition, String query) throws SQLException {
+        try (PhoenixConnection conn = DriverManager.getConnection(getUrl(),
+                PropertiesUtil.deepCopy(TEST_PROPERTIES)).unwrap(PhoenixConnection.class)) {
+            SelectStatement rollupDefinition = new SQLParser(definition).parseQuery();
+            RollupRewriter.Rollup rollup = RollupRewriter.getRollup("S.EVENTS_BY_HOST", rollupDefinition);
+            SelectStatement select = new SQLParser(query).parseQuery();
+            return RollupRewriter.rewrite(select, FromCompiler.getResolverForQuery(select, conn),
+                    rollup, FromCompiler.getResolverForQuery(rollupDefinition, conn));
+        }
+    }
+
+    private static SelectStatement rewrite(String query) throws SQLException {
+        return rewrite(DEFINITION, query);
+    }
+
+    @Test
+    public void testGetRollups() {
+        Map<String, String> props = ImmutableMap.of(
+                QueryServices.ROLLUP_DEFINITION_ATTRIB_PREFIX + "S.EVENTS_BY_HOST", DEFINITION,
+                QueryServices.ROLLUP_DEFINITION_ATTRIB_PREFIX + "EVENTS_WHERE",
+                "SELECT HOST, COUNT(*) C FROM S.EVENTS WHERE DAY > 1 GROUP BY HOST",
+                QueryServices.ROLLUP_DEFINITION_ATTRIB_PREFIX + "EVENTS_AVG",
+                "SELECT HOST, AVG(A.BYTES) A FROM S.EVENTS GROUP BY HOST");
+        List<RollupRewriter.Rollup> rollups = RollupRewriter.getRollups(new ReadOnlyProps(props));
+        assertEquals(1, rollups.size());
+        assertEquals("S.EVENTS_BY_HOST", rollups.get(0).getRollupTableName());
+        assertEquals("S.EVENTS", rollups.get(0).getTableName());
+    }
+
+    @Test
+    public void testRewriteGroupedQuery() throws SQLException {
+        SelectStatement select = rewrite("SELECT HOST, SUM(A.BYTES), COUNT(*) C FROM S.EVENTS"
+                + " WHERE DAY > 1 GROUP BY HOST ORDER BY C");
+        assertNotNull(select);
+        NamedTableNode from = (NamedTableNode) select.getFrom();
+        assertEquals("S", from.getName().getSchemaName());
+        assertEquals("EVENTS_BY_HOST", from.getName().getTableName());
+        List<AliasedNode> selectNodes = select.getSelect();
+        assertEquals("HOST", selectNodes.get(0).getAlias());
+        assertEquals("HOST", ((ColumnParseNode) selectNodes.get(0).getNode()).getName());
+        FunctionParseNode sum = (FunctionParseNode) selectNodes.get(1).getNode();
+        assertEquals("SUM", sum.getName());
+        assertEquals("TOTAL_BYTES", ((ColumnParseNode) sum.getChildren().get(0)).getName());
+        FunctionParseNode count = (FunctionParseNode) selectNodes.get(2).getNode();
+        assertEquals("C", selectNodes.get(2).getAlias());
+        assertEquals("SUM", count.getName());
+        assertEquals("EVENT_COUNT", ((ColumnParseNode) count.getChildren().get(0)).getName());
+        assertEquals("DAY", ((ColumnParseNode) select.getWhere().getChildren().get(0)).getName());
+        assertEquals("C", ((ColumnParseNode) select.getOrderBy().get(0).getNode()).getName());
+        assertTrue(select.isAggregate());
+    }
+
+    @Test
+    public void testRewriteWithTableAlias() throws SQLException {
+        assertNotNull(rewrite("SELECT E.HOST, SUM(E.A.BYTES) FROM S.EVENTS E GROUP BY E.HOST"));
+    }
+
+    @Test
+    public void testRewriteUngroupedCount() throws SQLException {
+        SelectStatement select = rewrite("SELECT COUNT(*) FROM S.EVENTS");
+        assertNotNull(select);
+        FunctionParseNode coalesce = (FunctionParseNode) select.getSelect().get(0).getNode();
+        assertEquals("COALESCE", coalesce.getName());
+        assertEquals("SUM", ((FunctionParseNode) coalesce.getChildren().get(0)).getName());
+    }
+
+    @Test
+    public void testColumnsAreMatchedByFamily() throws SQLException {
+        // Same column name in another family
+        assertNull(rewrite("SELECT HOST, SUM(B.BYTES) FROM S.EVENTS GROUP BY HOST"));
+        String definition = "SELECT A.BYTES, COUNT(*) C FROM S.EVENTS GROUP BY A.BYTES";
+        assertNotNull(rewrite(definition, "SELECT A.BYTES, COUNT(*) FROM S.EVENTS GROUP BY A.BYTES"));
+        assertNull(rewrite(definition, "SELECT B.BYTES, COUNT(*) FROM S.EVENTS GROUP BY B.BYTES"));
+    }
+
+    @Test
+    public void testNotRewritable() throws SQLException {
+        // Not a grouped column of the rollup
+        assertNull(rewrite("SELECT URL, COUNT(*) FROM S.EVENTS GROUP BY URL"));
+        assertNull(rewrite("SELECT HOST, COUNT(*) FROM S.EVENTS WHERE URL = 'a' GROUP BY HOST"));
+        // Aggregates the rollup cannot answer
+        assertNull(rewrite("SELECT HOST, AVG(A.BYTES) FROM S.EVENTS GROUP BY HOST"));
+        assertNull(rewrite("SELECT HOST, MIN(A.BYTES) FROM S.EVENTS GROUP BY HOST"));
+        assertNull(rewrite("SELECT HOST, COUNT(A.BYTES) FROM S.EVENTS GROUP BY HOST"));
+        // Not an aggregate query
+        assertNull(rewrite("SELECT HOST FROM S.EVENTS"));
+        assertNull(rewrite("SELECT * FROM S.EVENTS"));
+    }
+}
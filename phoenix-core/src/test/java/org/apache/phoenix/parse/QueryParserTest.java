@@ -18,6 +18,7 @@
 package org.apache.phoenix.parse;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -605,6 +606,42 @@ public class QueryParserTest {
         parseQuery(sql);
     }
     
+    @Test
+    public void testWindowFunctionQuery() throws Exception {
+        parseQuery("select a, row_number() over (partition by b, c order by d desc nulls last, e) rn,"
+                + " lag(f, 2, 0) over (partition by b, c order by d desc nulls last, e) from t");
+        parseQuery("select count(*) over (), sum(f) over (order by d) from t");
+        SelectStatement select = new SQLParser(
+                "select rank() over (partition by b order by d desc) from t").parseQuery();
+        WindowFunctionParseNode node = (WindowFunctionParseNode) select.getSelect().get(0).getNode();
+        assertEquals("RANK", node.getName());
+        assertTrue(node.getArguments().isEmpty());
+        assertEquals("B", ((ColumnParseNode) node.getPartitionBy().get(0)).getName());
+        assertEquals("D", ((ColumnParseNode) node.getOrderBy().get(0).getNode()).getName());
+        assertFalse(node.getOrderBy().get(0).isAscending());
+        assertFalse(node.isAggregate());
+        assertTrue(select.hasWindowFunctions());
+        assertFalse(select.isAggregate());
+        parseQueryThatShouldFail("select rank() over (order by d partition by b) from t");
+    }
+
+    @Test
+    public void testWindowKeywordsAreNotReserved() throws Exception {
+        SelectStatement select;
+        parseQuery("select over, partition from partition over where over > 0 order by partition");
+        parseQuery("select count(*) over, max(partition) partition from t");
+        select = new SQLParser("select count(*) over from t").parseQuery();
+        assertEquals("OVER", select.getSelect().get(0).getAlias());
+        select = new SQLParser("select max(a) over from t").parseQuery();
+        assertEquals("OVER", select.getSelect().get(0).getAlias());
+        parseQuery("create table over (partition varchar primary key, over integer)");
+        select = new SQLParser(
+                "select sum(over) over (partition by partition order by over) from over").parseQuery();
+        WindowFunctionParseNode node = (WindowFunctionParseNode) select.getSelect().get(0).getNode();
+        assertEquals("PARTITION", ((ColumnParseNode) node.getPartitionBy().get(0)).getName());
+        assertEquals("OVER", ((ColumnParseNode) node.getOrderBy().get(0).getNode()).getName());
+    }
+
     @Test
     public void testRowValueConstructorQuery() throws Exception {
         String sql = (
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema;
+
+import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.CACHE_SIZE_BYTES;
+import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.CURRENT_VALUE_BYTES;
+import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.CYCLE_FLAG_BYTES;
+import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.INCREMENT_BY_BYTES;
+import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.LIMIT_REACHED_FLAG_BYTES;
+import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.MAX_VALUE_BYTES;
+import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.MIN_VALUE_BYTES;
+import static org.apache.phoenix.jdbc.PhoenixDatabaseMetaData.SYSTEM_SEQUENCE_FAMILY_BYTES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Append;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.phoenix.coprocessor.SequenceRegionObserver;
+import org.apache.phoenix.schema.types.PBoolean;
+import org.apache.phoenix.schema.types.PLong;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+public class SequencePrefetchTest {
+
+    private static final long TIMESTAMP = 1000L;
+    private static final long MAX_BLOCK_MULTIPLIER = 16;
+
+    private static Result newIncrementResult(Sequence sequence, long currentValue, long cacheSize,
+            boolean cycle) {
+        byte[] row = sequence.getKey().getKey();
+        List<Cell> cells = Lists.newArrayList(
+                newCell(row, CURRENT_VALUE_BYTES, PLong.INSTANCE.toBytes(currentValue)),
+                newCell(row, INCREMENT_BY_BYTES, PLong.INSTANCE.toBytes(1L)),
+                newCell(row, CACHE_SIZE_BYTES, PLong.INSTANCE.toBytes(cacheSize)),
+                newCell(row, MIN_VALUE_BYTES, PLong.INSTANCE.toBytes(Long.MIN_VALUE)),
+                newCell(row, MAX_VALUE_BYTES, PLong.INSTANCE.toBytes(Long.MAX_VALUE)),
+                newCell(row, CYCLE_FLAG_BYTES, PBoolean.INSTANCE.toBytes(cycle)),
+                newCell(row, LIMIT_REACHED_FLAG_BYTES, PBoolean.INSTANCE.toBytes(false)));
+        cells.sort(CellComparatorImpl.COMPARATOR);
+        return Result.create(cells);
+    }
+
+    private static Cell newCell(byte[] row, byte[] qualifier, byte[] value) {
+        return new KeyValue(row, SYSTEM_SEQUENCE_FAMILY_BYTES, qualifier, TIMESTAMP, value);
+    }
+
+    private static long next(Sequence sequence) throws Exception {
+        return sequence.incrementValue(HConstants.LATEST_TIMESTAMP,
+                Sequence.ValueOp.INCREMENT_SEQUENCE, 1);
+    }
+
+    @Test
+    public void testPrefetchedValuesFollowCachedValues() throws Exception {
+        Sequence sequence = new Sequence(new SequenceKey(null, "S", "SEQ", 0));
+        // The server allocated the values from 90 to 99
+        assertEquals(90, sequence.incrementValue(newIncrementResult(sequence, 100, 10, false),
+                Sequence.ValueOp.INCREMENT_SEQUENCE, 1));
+        for (int i = 91; i <= 93; i++) {
+            assertEquals(i, next(sequence));
+            assertEquals(0, sequence.startPrefetch(HConstants.LATEST_TIMESTAMP,
+                    MAX_BLOCK_MULTIPLIER));
+        }
+        assertEquals(94, next(sequence));
+        // Half of the block is used, and no prefetch is started for SCN reads
+        assertEquals(0, sequence.startPrefetch(TIMESTAMP + 1, MAX_BLOCK_MULTIPLIER));
+        long numToAllocate = sequence.startPrefetch(HConstants.LATEST_TIMESTAMP,
+                MAX_BLOCK_MULTIPLIER);
+        assertEquals(1, numToAllocate);
+        assertEquals(0, sequence.startPrefetch(HConstants.LATEST_TIMESTAMP,
+                MAX_BLOCK_MULTIPLIER));
+        assertNull(sequence.setPrefetchedValues(newIncrementResult(sequence, 110, 10, false),
+                numToAllocate));
+
+        for (int i = 95; i <= 105; i++) {
+            assertEquals(i, next(sequence));
+        }
+        // Both the rest of the cached block and of the prefetched block are returned
+        assertEquals(1, sequence.newReturns().size());
+        // The prefetched block was used up quickly, so the next one is larger
+        assertEquals(20, sequence.startPrefetch(HConstants.LATEST_TIMESTAMP,
+                MAX_BLOCK_MULTIPLIER));
+        assertNull(sequence.setPrefetchedValues(null, 20));
+        for (int i = 106; i <= 109; i++) {
+            assertEquals(i, next(sequence));
+        }
+        try {
+            next(sequence);
+            fail();
+        } catch (EmptySequenceCacheException expected) {
+        }
+    }
+
+    @Test
+    public void testPrefetchedValuesBehindRefilledCache() throws Exception {
+        Sequence sequence = new Sequence(new SequenceKey(null, "S", "SEQ", 0));
+        assertEquals(90, sequence.incrementValue(newIncrementResult(sequence, 100, 10, false),
+                Sequence.ValueOp.INCREMENT_SEQUENCE, 1));
+        for (int i = 91; i <= 94; i++) {
+            assertEquals(i, next(sequence));
+        }
+        long numToAllocate = sequence.startPrefetch(HConstants.LATEST_TIMESTAMP,
+                MAX_BLOCK_MULTIPLIER);
+        assertEquals(1, numToAllocate);
+        // The cached block is used up before the prefetch completes
+        for (int i = 95; i <= 99; i++) {
+            assertEquals(i, next(sequence));
+        }
+        try {
+            next(sequence);
+            fail();
+        } catch (EmptySequenceCacheException expected) {
+        }
+        // The server allocated the values from 100 to 109 to the prefetch, and the values from
+        // 110 to 119 to the synchronous allocation that followed
+        assertEquals(110, sequence.incrementValue(newIncrementResult(sequence, 120, 10, false),
+                Sequence.ValueOp.INCREMENT_SEQUENCE, 1));
+        Append discarded = sequence.setPrefetchedValues(
+                newIncrementResult(sequence, 110, 10, false), numToAllocate);
+        assertNotNull(discarded);
+        assertEquals(110, PLong.INSTANCE.getCodec().decodeLong(
+                discarded.getAttribute(SequenceRegionObserver.CURRENT_VALUE_ATTRIB), 0,
+                SortOrder.getDefault()));
+
+        // The sequence keeps going up from the refilled block
+        for (int i = 111; i <= 119; i++) {
+            assertEquals(i, next(sequence));
+        }
+        try {
+            next(sequence);
+            fail();
+        } catch (EmptySequenceCacheException expected) {
+        }
+    }
+
+    @Test
+    public void testNoPrefetchForCycle() throws Exception {
+        Sequence sequence = new Sequence(new SequenceKey(null, "S", "SEQ", 0));
+        assertEquals(90, sequence.incrementValue(newIncrementResult(sequence, 100, 10, true),
+                Sequence.ValueOp.INCREMENT_SEQUENCE, 1));
+        for (int i = 91; i <= 99; i++) {
+            assertEquals(i, next(sequence));
+            assertEquals(0, sequence.startPrefetch(HConstants.LATEST_TIMESTAMP,
+                    MAX_BLOCK_MULTIPLIER));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.util.EquiDepthStreamHistogram.Bucket;
+import org.junit.Test;
+
+public class ColumnStatisticsTest {
+
+    private static ColumnStatistics getColumnStatistics(int start, int end, long rowCount) {
+        ColumnStatistics columnStats = new ColumnStatistics(4);
+        for (int i = start; i < end; i++) {
+            columnStats.addValue(Bytes.toBytes(i % 100));
+        }
+        columnStats.setRowCount(rowCount);
+        return columnStats;
+    }
+
+    @Test
+    public void testCollect() {
+        ColumnStatistics columnStats = getColumnStatistics(0, 1000, 1200);
+        assertEquals(1000, columnStats.getNonNullCount());
+        assertEquals(200, columnStats.getNullCount());
+        assertEquals(200.0 / 1200, columnStats.getNullFraction(), 0.0001);
+        assertEquals(100, columnStats.getDistinctCount(), 2);
+        List<Bucket> buckets = columnStats.getHistogramBuckets();
+        assertEquals(4, buckets.size());
+        long count = 0;
+        for (Bucket bucket : buckets) {
+            count += bucket.getCountEstimate();
+        }
+        assertEquals(1000, count);
+    }
+
+    @Test
+    public void testSerializeAndMerge() throws Exception {
+        byte[] bytes = getColumnStatistics(0, 1000, 1000).toBytes();
+        ColumnStatistics columnStats = ColumnStatistics.fromBytes(bytes, 0, bytes.length);
+        assertEquals(1000, columnStats.getRowCount());
+        assertEquals(1000, columnStats.getNonNullCount());
+        assertEquals(100, columnStats.getDistinctCount(), 2);
+        assertEquals(4, columnStats.getHistogramBuckets().size());
+
+        bytes = getColumnStatistics(0, 250, 500).toBytes();
+        columnStats.merge(ColumnStatistics.fromBytes(bytes, 0, bytes.length));
+        assertEquals(1500, columnStats.getRowCount());
+        assertEquals(1250, columnStats.getNonNullCount());
+        assertEquals(250, columnStats.getNullCount());
+        // The values of the second region are a subset of the first one
+        assertEquals(100, columnStats.getDistinctCount(), 2);
+        List<Bucket> buckets = columnStats.getHistogramBuckets();
+        assertEquals(8, buckets.size());
+        for (int i = 1; i < buckets.size(); i++) {
+            assertTrue(Bytes.compareTo(buckets.get(i - 1).getLeftBoundInclusive(),
+                    buckets.get(i).getLeftBoundInclusive()) <= 0);
+        }
+    }
+
+    @Test
+    public void testTooFewValuesForHistogram() {
+        ColumnStatistics columnStats = getColumnStatistics(0, 1, 1);
+        assertEquals(1, columnStats.getDistinctCount());
+        assertTrue(columnStats.getHistogramBuckets().isEmpty());
+    }
+
+    @Test
+    public void testVisibleCellTracker() {
+        byte[] row1 = Bytes.toBytes("r1");
+        byte[] row2 = Bytes.toBytes("r2");
+        byte[] family = Bytes.toBytes("0");
+        byte[] q1 = Bytes.toBytes("q1");
+        byte[] q2 = Bytes.toBytes("q2");
+        byte[] value = Bytes.toBytes("v");
+        DefaultStatisticsCollector.VisibleCellTracker tracker =
+                new DefaultStatisticsCollector.VisibleCellTracker();
+        // The whole family of the first row is deleted after its only put
+        assertFalse(tracker.isVisible(new KeyValue(row1, family, null, 10, KeyValue.Type.DeleteFamily)));
+        assertFalse(tracker.isVisible(new KeyValue(row1, family, q1, 5, KeyValue.Type.Put, value)));
+        assertFalse(tracker.isRowCounted());
+
+        // The latest version of q1 is deleted and q2 is deleted with all its older versions
+        assertFalse(tracker.isVisible(new KeyValue(row2, family, null, 2, KeyValue.Type.DeleteFamily)));
+        assertFalse(tracker.isVisible(new KeyValue(row2, family, q1, 7, KeyValue.Type.Delete)));
+        assertFalse(tracker.isVisible(new KeyValue(row2, family, q1, 7, KeyValue.Type.Put, value)));
+        assertTrue(tracker.isVisible(new KeyValue(row2, family, q1, 6, KeyValue.Type.Put, value)));
+        tracker.setRowCounted();
+        assertFalse(tracker.isVisible(new KeyValue(row2, family, q1, 5, KeyValue.Type.Put, value)));
+        assertFalse(tracker.isVisible(new KeyValue(row2, family, q2, 8, KeyValue.Type.DeleteColumn)));
+        assertFalse(tracker.isVisible(new KeyValue(row2, family, q2, 8, KeyValue.Type.Put, value)));
+        assertFalse(tracker.isVisible(new KeyValue(row2, family, q2, 4, KeyValue.Type.Put, value)));
+        assertTrue(tracker.isRowCounted());
+    }
+
+    private static Result getRegionColumnStatistics(byte[] row, long rowCount, byte[]... qualifiers)
+            throws Exception {
+        Cell[] cells = new Cell[qualifiers.length];
+        for (int i = 0; i < qualifiers.length; i++) {
+            cells[i] = new KeyValue(row, Bytes.toBytes("0"), StatisticsUtil.getColumnStatisticsQualifier(
+                    new ImmutableBytesPtr(qualifiers[i])), getColumnStatistics(0, 10, rowCount).toBytes());
+        }
+        return Result.create(cells);
+    }
+
+    @Test
+    public void testReadMergesRowCountOfAllRegions() throws Exception {
+        byte[] q1 = Bytes.toBytes("q1");
+        byte[] q2 = Bytes.toBytes("q2");
+        ResultScanner scanner = mock(ResultScanner.class);
+        // The second column only has values in the first region
+        when(scanner.next()).thenReturn(
+                getRegionColumnStatistics(Bytes.toBytes("r1"), 20, q1, q2),
+                getRegionColumnStatistics(Bytes.toBytes("r2"), 30, q1),
+                null);
+        Table statsTable = mock(Table.class);
+        when(statsTable.getScanner(any(Scan.class))).thenReturn(scanner);
+        Map<ImmutableBytesPtr, ColumnStatistics> columnStats = StatisticsUtil.readColumnStatistics(
+                statsTable, new GuidePostsKey(Bytes.toBytes("T"), Bytes.toBytes("0")), Long.MAX_VALUE);
+        ColumnStatistics q1Stats = columnStats.get(new ImmutableBytesPtr(q1));
+        assertEquals(50, q1Stats.getRowCount());
+        assertEquals(20, q1Stats.getNonNullCount());
+        ColumnStatistics q2Stats = columnStats.get(new ImmutableBytesPtr(q2));
+        assertEquals(50, q2Stats.getRowCount());
+        assertEquals(10, q2Stats.getNonNullCount());
+        assertEquals(40.0 / 50, q2Stats.getNullFraction(), 0.0001);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.util.ByteUtil;
+import org.junit.Test;
+
+public class ZoneMapTest {
+    private static final byte[] FAMILY = Bytes.toBytes("0");
+    private static final ImmutableBytesPtr A = new ImmutableBytesPtr(Bytes.toBytes("A"));
+    private static final ImmutableBytesPtr B = new ImmutableBytesPtr(Bytes.toBytes("B"));
+
+    private static KeyValue newCell(String row, ImmutableBytesPtr qualifier, String value) {
+        return new KeyValue(Bytes.toBytes(row), FAMILY, qualifier.copyBytesIfNecessary(), 1,
+                Bytes.toBytes(value));
+    }
+
+    @Test
+    public void testChunkExcludesGuidePostRow() {
+        ZoneMap.Builder builder = new ZoneMap.Builder(ByteUtil.EMPTY_BYTE_ARRAY, 16,
+                ZoneMap.NO_READ_POINT);
+        builder.addValue(newCell("r1", A, "m"));
+        builder.addValue(newCell("r2", A, "c"));
+        builder.addValue(newCell("r3", A, "x"));
+        ZoneMap first = builder.endChunk(Bytes.toBytes("r3"));
+        builder.addValue(newCell("r3", B, "b"));
+        builder.addValue(newCell("r4", A, "d"));
+        ZoneMap second = builder.endChunk(Bytes.toBytes("r5"));
+
+        assertArrayEquals(ByteUtil.EMPTY_BYTE_ARRAY, first.getStartKey());
+        assertArrayEquals(Bytes.toBytes("c"), first.getMinValue(A));
+        assertArrayEquals(Bytes.toBytes("m"), first.getMaxValue(A));
+        assertNull(first.getMinValue(B));
+
+        assertArrayEquals(Bytes.toBytes("r3"), second.getStartKey());
+        assertArrayEquals(Bytes.toBytes("d"), second.getMinValue(A));
+        assertArrayEquals(Bytes.toBytes("x"), second.getMaxValue(A));
+        assertArrayEquals(Bytes.toBytes("b"), second.getMinValue(B));
+    }
+
+    @Test
+    public void testUnboundedColumns() {
+        ZoneMap.Builder builder = new ZoneMap.Builder(ByteUtil.EMPTY_BYTE_ARRAY, 1,
+                ZoneMap.NO_READ_POINT);
+        byte[] longValue = new byte[ZoneMap.MAX_VALUE_LENGTH + 1];
+        builder.addValue(newCell("r1", A, "a"));
+        builder.addValue(new KeyValue(Bytes.toBytes("r2"), FAMILY, A.copyBytesIfNecessary(), 1,
+                longValue));
+        builder.addValue(newCell("r2", B, "b"));
+        ZoneMap zoneMap = builder.endChunk(Bytes.toBytes("r3"));
+        assertNull(zoneMap.getMinValue(A));
+        assertNull(zoneMap.getMinValue(B));
+        assertTrue(zoneMap.mayMatch(A, CompareOp.EQUAL, Bytes.toBytes("z")));
+    }
+
+    @Test
+    public void testMayMatch() {
+        ZoneMap.Builder builder = new ZoneMap.Builder(Bytes.toBytes("b"), 16,
+                ZoneMap.NO_READ_POINT);
+        builder.addValue(newCell("r1", A, "d"));
+        builder.addValue(newCell("r2", A, "f"));
+        ZoneMap zoneMap = builder.endChunk(Bytes.toBytes("r3"));
+
+        assertTrue(zoneMap.mayMatch(A, CompareOp.EQUAL, Bytes.toBytes("e")));
+        assertFalse(zoneMap.mayMatch(A, CompareOp.EQUAL, Bytes.toBytes("g")));
+        assertFalse(zoneMap.mayMatch(A, CompareOp.LESS, Bytes.toBytes("d")));
+        assertTrue(zoneMap.mayMatch(A, CompareOp.LESS_OR_EQUAL, Bytes.toBytes("d")));
+        assertFalse(zoneMap.mayMatch(A, CompareOp.GREATER, Bytes.toBytes("f")));
+        assertTrue(zoneMap.mayMatch(A, CompareOp.GREATER_OR_EQUAL, Bytes.toBytes("f")));
+        assertTrue(zoneMap.mayMatch(A, CompareOp.NOT_EQUAL, Bytes.toBytes("d")));
+        assertTrue(zoneMap.mayMatch(B, CompareOp.EQUAL, Bytes.toBytes("a")));
+
+        assertTrue(zoneMap.covers(Bytes.toBytes("c")));
+        assertFalse(zoneMap.covers(Bytes.toBytes("a")));
+        assertFalse(zoneMap.covers(ByteUtil.EMPTY_BYTE_ARRAY));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        ZoneMap.Builder builder = new ZoneMap.Builder(Bytes.toBytes("b"), 16, 42);
+        builder.addValue(newCell("r1", A, "d"));
+        builder.addValue(newCell("r1", B, "k"));
+        builder.addValue(newCell("r2", A, "f"));
+        byte[] bytes = builder.endChunk(Bytes.toBytes("r3")).toBytes();
+        ZoneMap zoneMap = ZoneMap.fromBytes(bytes, 0, bytes.length);
+        assertArrayEquals(Bytes.toBytes("b"), zoneMap.getStartKey());
+        assertEquals(42, zoneMap.getReadPoint());
+        assertArrayEquals(Bytes.toBytes("d"), zoneMap.getMinValue(A));
+        assertArrayEquals(Bytes.toBytes("f"), zoneMap.getMaxValue(A));
+        assertArrayEquals(Bytes.toBytes("k"), zoneMap.getMinValue(B));
+        assertArrayEquals(Bytes.toBytes("k"), zoneMap.getMaxValue(B));
+    }
+}
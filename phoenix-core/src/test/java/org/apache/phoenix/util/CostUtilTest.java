@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.util;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.apache.phoenix.parse.JoinTableNode.JoinType;
+import org.junit.Test;
+
+public class CostUtilTest {
+
+    @Test
+    public void testOrderStarJoinsBySelectivity() {
+        double[] rhsRows = new double[] {1000, 10, 100};
+        JoinType[] joinTypes = new JoinType[] {JoinType.Inner, JoinType.Inner, JoinType.Semi};
+        assertArrayEquals(new int[] {1, 2, 0}, CostUtil.orderStarJoins(rhsRows, joinTypes));
+    }
+
+    @Test
+    public void testOrderStarJoinsByJoinType() {
+        double[] rhsRows = new double[] {10, 20, 1000, 5, 100};
+        JoinType[] joinTypes = new JoinType[] {
+                JoinType.Left, JoinType.Anti, JoinType.Inner, JoinType.Left, JoinType.Anti};
+        assertArrayEquals(new int[] {2, 4, 1, 0, 3}, CostUtil.orderStarJoins(rhsRows, joinTypes));
+    }
+
+    @Test
+    public void testOrderStarJoinsIsStable() {
+        double[] rhsRows = new double[] {10, 10, 10};
+        JoinType[] joinTypes = new JoinType[] {JoinType.Inner, JoinType.Semi, JoinType.Inner};
+        assertArrayEquals(new int[] {0, 1, 2}, CostUtil.orderStarJoins(rhsRows, joinTypes));
+    }
+}
@@ -480,6 +480,14 @@ public class ScanUtilTest {
             assertArrayEquals(expectedStartKey, startKey);
             assertArrayEquals(expectedEndKey, endKey);
         }
+
+        @Test
+        public void testKeyPosition() {
+            Assert.assertEquals(0.5, ScanUtil.getKeyPosition(Bytes.toBytes("xa"),
+                    Bytes.toBytes("xc"), Bytes.toBytes("xb")), 0.001);
+            Assert.assertEquals(0, ScanUtil.getKeyPosition(Bytes.toBytes("a"),
+                    Bytes.toBytes("c"), Bytes.toBytes("a")), 0.001);
+        }
     }
 
     public static class PhoenixTTLScanUtilTest extends BaseConnectionlessQueryTest {
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.bulkload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.phoenix.end2end.BaseOwnClusterIT;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.TestUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+public class LocalBulkLoadToolIT extends BaseOwnClusterIT {
+
+    private static String zkQuorum;
+
+    @BeforeClass
+    public static synchronized void doSetup() throws Exception {
+        Map<String, String> clientProps = Maps.newHashMapWithExpectedSize(1);
+        clientProps.put(QueryServices.INDEX_REGION_OBSERVER_ENABLED_ATTRIB, Boolean.FALSE.toString());
+        setUpTestDriver(ReadOnlyProps.EMPTY_PROPS, new ReadOnlyProps(clientProps.entrySet().iterator()));
+        zkQuorum = TestUtil.LOCALHOST + PhoenixRuntime.JDBC_PROTOCOL_SEPARATOR
+                + getUtility().getZkCluster().getClientPort();
+    }
+
+    private static String writeInput(String name, int nrows, int nversions) throws Exception {
+        FileSystem fs = FileSystem.get(getUtility().getConfiguration());
+        String input = "/tmp/" + name + ".csv";
+        FSDataOutputStream outputStream = fs.create(new Path(input));
+        try (PrintWriter printWriter = new PrintWriter(outputStream)) {
+            // Every row appears several times, and its last line holds its final value
+            for (int version = 0; version < nversions; version++) {
+                for (int i = 0; i < nrows; i++) {
+                    printWriter.println(i + ",name " + i + " v" + version);
+                }
+            }
+        }
+        return input;
+    }
+
+    private static int runTool(String input, String tableName, String... extraArgs)
+            throws Exception {
+        LocalBulkLoadTool tool = new LocalBulkLoadTool();
+        tool.setConf(new Configuration(getUtility().getConfiguration()));
+        String[] args = new String[] { "--input", input, "--table", tableName,
+                "--zookeeper", zkQuorum };
+        String[] allArgs = new String[args.length + extraArgs.length];
+        System.arraycopy(args, 0, allArgs, 0, args.length);
+        System.arraycopy(extraArgs, 0, allArgs, args.length, extraArgs.length);
+        return tool.run(allArgs);
+    }
+
+    @Test
+    public void testImportWithIndexAndSpills() throws Exception {
+        String tableName = generateUniqueName();
+        String indexName = generateUniqueName();
+        int nrows = 3000;
+        int nversions = 3;
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (ID INTEGER NOT NULL PRIMARY KEY, NAME VARCHAR) SPLIT ON (1000, 2000)");
+            conn.createStatement().execute("CREATE INDEX " + indexName + " ON " + tableName
+                    + " (NAME)");
+        }
+        String input = writeInput(tableName, nrows, nversions);
+        // A single megabyte of cells for all the regions forces the sorters to spill, and the
+        // records of a row are upserted by batches running on different threads
+        assertEquals(0, runTool(input, tableName, "--threads", "4", "--sort-buffer-mb", "1"));
+
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT /*+ NO_INDEX */ ID, NAME FROM " + tableName + " ORDER BY ID");
+            for (int i = 0; i < nrows; i++) {
+                assertTrue(rs.next());
+                assertEquals(i, rs.getInt(1));
+                assertEquals("name " + i + " v" + (nversions - 1), rs.getString(2));
+            }
+            assertFalse(rs.next());
+
+            // As with the MapReduce bulk load, the index rows of the older versions are not
+            // deleted, so only the index row of the last version is checked
+            rs = conn.createStatement().executeQuery("SELECT ID FROM " + tableName
+                    + " WHERE NAME = 'name 42 v" + (nversions - 1) + "'");
+            assertTrue(rs.next());
+            assertEquals(42, rs.getInt(1));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testImportWithErrors() throws Exception {
+        String tableName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (ID INTEGER NOT NULL PRIMARY KEY, NAME VARCHAR)");
+        }
+        FileSystem fs = FileSystem.get(getUtility().getConfiguration());
+        String input = "/tmp/" + tableName + ".csv";
+        try (PrintWriter printWriter = new PrintWriter(fs.create(new Path(input)))) {
+            printWriter.println("1,Name 1");
+            printWriter.println("notanumber,Name 2");
+            printWriter.println("3,Name 3");
+        }
+        assertEquals(0, runTool(input, tableName, "--ignore-errors"));
+
+        try (Connection conn = DriverManager.getConnection(getUrl())) {
+            ResultSet rs = conn.createStatement().executeQuery(
+                    "SELECT ID, NAME FROM " + tableName + " ORDER BY ID");
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt(1));
+            assertEquals("Name 1", rs.getString(2));
+            assertTrue(rs.next());
+            assertEquals(3, rs.getInt(1));
+            assertEquals("Name 3", rs.getString(2));
+            assertFalse(rs.next());
+        }
+    }
+}
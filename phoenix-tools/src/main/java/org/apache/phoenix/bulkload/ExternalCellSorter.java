@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.bulkload;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.ClassSize;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+/**
+ * Sorts the cells bound for one region of a table. The cells buffered in memory by all the
+ * sorters sharing a {@link MemoryBudget} are bounded by the budget; beyond it, the largest
+ * buffer is sorted and spilled to a local file as a sorted run. The cells are read back in order
+ * by merging the runs with the cells still buffered.
+ * <p>
+ * Every batch of cells is added with a sequence number. Cells with the same key are returned in
+ * decreasing sequence order, so that the first of them is the one added last in the input order,
+ * whichever thread added it.
+ */
+class ExternalCellSorter implements Closeable {
+
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    private static final long ENTRY_OVERHEAD = ClassSize.align(ClassSize.OBJECT
+            + ClassSize.REFERENCE + Long.SIZE / Byte.SIZE) + ClassSize.REFERENCE;
+
+    private static final Comparator<SequencedCell> COMPARATOR = new Comparator<SequencedCell>() {
+        @Override
+        public int compare(SequencedCell o1, SequencedCell o2) {
+            int c = CellComparatorImpl.COMPARATOR.compare(o1.cell, o2.cell);
+            if (c != 0) {
+                return c;
+            }
+            return Long.compare(o2.sequence, o1.sequence);
+        }
+    };
+
+    /**
+     * Bounds the bytes of cells buffered in memory by a group of sorters.
+     */
+    static class MemoryBudget {
+        private final long maxBytes;
+        private final AtomicLong usedBytes = new AtomicLong();
+        private final List<ExternalCellSorter> sorters = Lists.newCopyOnWriteArrayList();
+
+        MemoryBudget(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        long getUsedBytes() {
+            return usedBytes.get();
+        }
+
+        /**
+         * Spills the largest buffers until the cells buffered fit in the budget. Must be called
+         * without holding the lock of any sorter.
+         */
+        void spillIfNeeded() throws IOException {
+            while (usedBytes.get() > maxBytes) {
+                ExternalCellSorter largest = null;
+                long largestBytes = 0;
+                for (ExternalCellSorter sorter : sorters) {
+                    long bytes = sorter.getBufferBytes();
+                    if (bytes > largestBytes) {
+                        largest = sorter;
+                        largestBytes = bytes;
+                    }
+                }
+                if (largest == null) {
+                    return;
+                }
+                largest.spill();
+            }
+        }
+    }
+
+    private final File spillDir;
+    private final String name;
+    private final MemoryBudget budget;
+    private final List<SequencedCell> buffer = Lists.newArrayList();
+    private final List<File> runs = Lists.newArrayList();
+    private long bufferBytes;
+
+    ExternalCellSorter(File spillDir, String name, MemoryBudget budget) {
+        this.spillDir = spillDir;
+        this.name = name;
+        this.budget = budget;
+        budget.sorters.add(this);
+    }
+
+    /**
+     * Adds a batch of cells.
+     * @param sequence the position of the batch in the input, higher for later batches
+     */
+    void add(List<KeyValue> cells, long sequence) throws IOException {
+        synchronized (this) {
+            long bytes = 0;
+            for (KeyValue cell : cells) {
+                buffer.add(new SequencedCell(cell, sequence));
+                bytes += cell.heapSize() + ENTRY_OVERHEAD;
+            }
+            bufferBytes += bytes;
+            budget.usedBytes.addAndGet(bytes);
+        }
+        budget.spillIfNeeded();
+    }
+
+    synchronized boolean isEmpty() {
+        return buffer.isEmpty() && runs.isEmpty();
+    }
+
+    synchronized long getBufferBytes() {
+        return bufferBytes;
+    }
+
+    synchronized int getRunCount() {
+        return runs.size();
+    }
+
+    private synchronized void spill() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        Collections.sort(buffer, COMPARATOR);
+        File run = new File(spillDir, name + "-" + runs.size());
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(run), IO_BUFFER_SIZE))) {
+            for (SequencedCell entry : buffer) {
+                output.writeLong(entry.sequence);
+                output.writeInt(entry.cell.getLength());
+                output.write(entry.cell.getBuffer(), entry.cell.getOffset(), entry.cell.getLength());
+            }
+        } catch (IOException e) {
+            run.delete();
+            throw e;
+        }
+        runs.add(run);
+        clearBuffer();
+    }
+
+    private void clearBuffer() {
+        buffer.clear();
+        budget.usedBytes.addAndGet(-bufferBytes);
+        bufferBytes = 0;
+    }
+
+    /**
+     * @return the cells added so far, in cell order. Must not be called while cells are added,
+     * and must be closed to release the files of the runs.
+     */
+    synchronized CellIterator sortedIterator() throws IOException {
+        Collections.sort(buffer, COMPARATOR);
+        CellIterator iterator = new CellIterator(runs.size() + 1);
+        try {
+            iterator.add(new RunIterator(null, buffer.iterator()));
+            for (File run : runs) {
+                iterator.add(new RunIterator(new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(run), IO_BUFFER_SIZE)), null));
+            }
+        } catch (IOException | RuntimeException e) {
+            iterator.close();
+            throw e;
+        }
+        return iterator;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        clearBuffer();
+        for (File run : runs) {
+            run.delete();
+        }
+        runs.clear();
+        budget.sorters.remove(this);
+    }
+
+    private static class SequencedCell {
+        private final KeyValue cell;
+        private final long sequence;
+
+        SequencedCell(KeyValue cell, long sequence) {
+            this.cell = cell;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Merges the sorted runs. Closing it closes the runs not read up to their end.
+     */
+    static class CellIterator implements Iterator<KeyValue>, Closeable {
+        private final PriorityQueue<RunIterator> queue;
+        private final List<RunIterator> runIterators = Lists.newArrayList();
+
+        private CellIterator(int runCount) {
+            this.queue = new PriorityQueue<RunIterator>(runCount, new Comparator<RunIterator>() {
+                @Override
+                public int compare(RunIterator o1, RunIterator o2) {
+                    return COMPARATOR.compare(o1.current, o2.current);
+                }
+            });
+        }
+
+        private void add(RunIterator runIterator) throws IOException {
+            runIterators.add(runIterator);
+            if (runIterator.advance()) {
+                queue.add(runIterator);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public KeyValue next() {
+            RunIterator runIterator = queue.poll();
+            if (runIterator == null) {
+                throw new NoSuchElementException();
+            }
+            KeyValue cell = runIterator.current.cell;
+            try {
+                if (runIterator.advance()) {
+                    queue.add(runIterator);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return cell;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException toThrow = null;
+            for (RunIterator runIterator : runIterators) {
+                try {
+                    runIterator.close();
+                } catch (IOException e) {
+                    if (toThrow == null) {
+                        toThrow = e;
+                    } else {
+                        toThrow.addSuppressed(e);
+                    }
+                }
+            }
+            queue.clear();
+            if (toThrow != null) {
+                throw toThrow;
+            }
+        }
+    }
+
+    /**
+     * Reads the cells of a spilled run, or of the cells still in memory.
+     */
+    private static class RunIterator implements Closeable {
+        private final DataInputStream input;
+        private final Iterator<SequencedCell> cells;
+        private SequencedCell current;
+        private boolean closed;
+
+        RunIterator(DataInputStream input, Iterator<SequencedCell> cells) {
+            this.input = input;
+            this.cells = cells;
+        }
+
+        boolean advance() throws IOException {
+            if (cells != null) {
+                current = cells.hasNext() ? cells.next() : null;
+                return current != null;
+            }
+            try {
+                long sequence;
+                try {
+                    sequence = input.readLong();
+                } catch (EOFException e) {
+                    close();
+                    current = null;
+                    return false;
+                }
+                int length = input.readInt();
+                byte[] bytes = new byte[length];
+                input.readFully(bytes);
+                current = new SequencedCell(new KeyValue(bytes, 0, length), sequence);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (input != null) {
+                input.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,680 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.bulkload;
+
+import static org.apache.hadoop.hbase.regionserver.HStoreFile.BULKLOAD_TIME_KEY;
+import static org.apache.hadoop.hbase.regionserver.HStoreFile.EXCLUDE_FROM_MINOR_COMPACTION_KEY;
+import static org.apache.hadoop.hbase.regionserver.HStoreFile.MAJOR_COMPACTION_KEY;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptor;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.StoreFileWriter;
+import org.apache.hadoop.hbase.tool.LoadIncrementalHFiles;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.phoenix.compat.hbase.CompatUtil;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixDriver;
+import org.apache.phoenix.mapreduce.CsvBulkImportUtil;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTable.IndexType;
+import org.apache.phoenix.util.ColumnInfo;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.IndexUtil;
+import org.apache.phoenix.util.PhoenixKeyValueUtil;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.SchemaUtil;
+import org.apache.phoenix.util.UpsertExecutor;
+import org.apache.phoenix.util.csv.CsvUpsertExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.phoenix.thirdparty.com.google.common.base.Splitter;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Loads CSV files into a table and its indexes from a single machine, without MapReduce.
+ * Records are parsed and turned into cells by upserting them on Phoenix connections owned by
+ * the threads of a fork-join pool. The cells are partitioned by the region of the physical
+ * table they belong to and sorted per region with an external merge sort, spilling to local
+ * files beyond a configurable memory budget. One HFile is then written per region and column
+ * family, and the HFiles are bulk loaded into the tables.
+ */
+public class LocalBulkLoadTool extends Configured implements Tool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalBulkLoadTool.class);
+
+    static final Option ZK_QUORUM_OPT = new Option("z", "zookeeper", true, "Supply zookeeper connection details (optional)");
+    static final Option INPUT_PATH_OPT = new Option("i", "input", true, "Input path(s) (comma-separated, mandatory)");
+    static final Option OUTPUT_PATH_OPT = new Option("o", "output", true, "Output path for temporary HFiles (optional)");
+    static final Option SCHEMA_NAME_OPT = new Option("s", "schema", true, "Phoenix schema name (optional)");
+    static final Option TABLE_NAME_OPT = new Option("t", "table", true, "Phoenix table name (mandatory)");
+    static final Option IMPORT_COLUMNS_OPT = new Option("c", "import-columns", true, "Comma-separated list of columns to be imported");
+    static final Option IGNORE_ERRORS_OPT = new Option("g", "ignore-errors", false, "Ignore input errors");
+    static final Option SKIP_HEADER_OPT = new Option("k", "skip-header", false, "Skip the first line of CSV files (the header)");
+    static final Option DELIMITER_OPT = new Option("d", "delimiter", true, "Input delimiter, defaults to comma");
+    static final Option QUOTE_OPT = new Option("q", "quote", true, "Supply a custom phrase delimiter, defaults to double quote character");
+    static final Option ESCAPE_OPT = new Option("e", "escape", true, "Supply a custom escape character, default is a backslash");
+    static final Option ARRAY_DELIMITER_OPT = new Option("a", "array-delimiter", true, "Array element delimiter (optional)");
+    static final Option THREADS_OPT = new Option("j", "threads", true, "Number of threads parsing records and writing HFiles, defaults to the number of processors");
+    static final Option SORT_BUFFER_OPT = new Option("m", "sort-buffer-mb", true, "Megabytes of cells kept in memory across all regions before spilling them to local files, defaults to 256");
+    static final Option HELP_OPT = new Option("h", "help", false, "Show this help and quit");
+
+    private static final int DEFAULT_SORT_BUFFER_MB = 256;
+    // Number of records upserted together by a thread
+    private static final int BATCH_SIZE = 1000;
+
+    private final AtomicLong upsertCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+
+    protected Options getOptions() {
+        Options options = new Options();
+        options.addOption(INPUT_PATH_OPT);
+        options.addOption(TABLE_NAME_OPT);
+        options.addOption(ZK_QUORUM_OPT);
+        options.addOption(OUTPUT_PATH_OPT);
+        options.addOption(SCHEMA_NAME_OPT);
+        options.addOption(IMPORT_COLUMNS_OPT);
+        options.addOption(IGNORE_ERRORS_OPT);
+        options.addOption(SKIP_HEADER_OPT);
+        options.addOption(DELIMITER_OPT);
+        options.addOption(QUOTE_OPT);
+        options.addOption(ESCAPE_OPT);
+        options.addOption(ARRAY_DELIMITER_OPT);
+        options.addOption(THREADS_OPT);
+        options.addOption(SORT_BUFFER_OPT);
+        options.addOption(HELP_OPT);
+        return options;
+    }
+
+    protected CommandLine parseOptions(String[] args) {
+        Options options = getOptions();
+        CommandLineParser parser = new DefaultParser();
+        CommandLine cmdLine = null;
+        try {
+            cmdLine = parser.parse(options, args);
+        } catch (ParseException e) {
+            printHelpAndExit("Error parsing command line options: " + e.getMessage(), options);
+        }
+        if (cmdLine.hasOption(HELP_OPT.getOpt())) {
+            printHelpAndExit(options, 0);
+        }
+        if (!cmdLine.hasOption(TABLE_NAME_OPT.getOpt())) {
+            throw new IllegalStateException(TABLE_NAME_OPT.getLongOpt() + " is a mandatory " +
+                    "parameter");
+        }
+        if (!cmdLine.hasOption(INPUT_PATH_OPT.getOpt())) {
+            throw new IllegalStateException(INPUT_PATH_OPT.getLongOpt() + " is a mandatory " +
+                    "parameter");
+        }
+        if (!cmdLine.getArgList().isEmpty()) {
+            throw new IllegalStateException("Got unexpected extra parameters: "
+                    + cmdLine.getArgList());
+        }
+        return cmdLine;
+    }
+
+    private void printHelpAndExit(String errorMessage, Options options) {
+        System.err.println(errorMessage);
+        printHelpAndExit(options, 1);
+    }
+
+    private void printHelpAndExit(Options options, int exitCode) {
+        HelpFormatter formatter = new HelpFormatter();
+        formatter.printHelp("help", options);
+        System.exit(exitCode);
+    }
+
+    private static char getCharOption(CommandLine cmdLine, Option option, char defaultChar,
+            boolean unescape) {
+        if (!cmdLine.hasOption(option.getOpt())) {
+            return defaultChar;
+        }
+        String value = cmdLine.getOptionValue(option.getOpt());
+        if (unescape) {
+            value = StringEscapeUtils.unescapeJava(value);
+        }
+        if (value.length() != 1) {
+            throw new IllegalArgumentException("Illegal " + option.getLongOpt() + " character: " + value);
+        }
+        return value.charAt(0);
+    }
+
+    @Override
+    public int run(String[] args) throws Exception {
+        Configuration conf = HBaseConfiguration.create(getConf());
+        CommandLine cmdLine = null;
+        try {
+            cmdLine = parseOptions(args);
+        } catch (IllegalStateException e) {
+            printHelpAndExit(e.getMessage(), getOptions());
+        }
+        return loadData(conf, cmdLine);
+    }
+
+    private int loadData(Configuration conf, CommandLine cmdLine) throws Exception {
+        if (cmdLine.hasOption(ZK_QUORUM_OPT.getOpt())) {
+            String zkQuorum = cmdLine.getOptionValue(ZK_QUORUM_OPT.getOpt());
+            PhoenixDriver.ConnectionInfo info = PhoenixDriver.ConnectionInfo.create(zkQuorum);
+            LOGGER.info("Configuring HBase connection to {}", info);
+            for (Map.Entry<String,String> entry : info.asProps()) {
+                conf.set(entry.getKey(), entry.getValue());
+            }
+        }
+        String qualifiedTableName = SchemaUtil.getQualifiedTableName(
+                cmdLine.getOptionValue(SCHEMA_NAME_OPT.getOpt()),
+                cmdLine.getOptionValue(TABLE_NAME_OPT.getOpt()));
+        List<String> userSuppliedColumnNames = null;
+        if (cmdLine.hasOption(IMPORT_COLUMNS_OPT.getOpt())) {
+            userSuppliedColumnNames = Lists.newArrayList(Splitter.on(",").trimResults()
+                    .split(cmdLine.getOptionValue(IMPORT_COLUMNS_OPT.getOpt())));
+        }
+        final List<ColumnInfo> columnInfos;
+        // The cells of each physical table, by region
+        final Map<String, RegionPartitioner> partitioners = Maps.newTreeMap();
+        int threads = cmdLine.hasOption(THREADS_OPT.getOpt())
+                ? Integer.parseInt(cmdLine.getOptionValue(THREADS_OPT.getOpt()))
+                : Runtime.getRuntime().availableProcessors();
+        long sortBufferBytes = (cmdLine.hasOption(SORT_BUFFER_OPT.getOpt())
+                ? Long.parseLong(cmdLine.getOptionValue(SORT_BUFFER_OPT.getOpt()))
+                : DEFAULT_SORT_BUFFER_MB) * 1024 * 1024;
+        final ExternalCellSorter.MemoryBudget sortBudget =
+                new ExternalCellSorter.MemoryBudget(sortBufferBytes);
+        final File spillDir = Files.createTempDirectory("phoenix-bulkload").toFile();
+        Path outputPath = cmdLine.hasOption(OUTPUT_PATH_OPT.getOpt())
+                ? new Path(cmdLine.getOptionValue(OUTPUT_PATH_OPT.getOpt()))
+                : new Path(spillDir.getAbsolutePath(), "hfiles");
+        // The start keys of the data table when the cells of its local indexes were partitioned
+        String dataPhysicalName = null;
+        byte[][] splitKeysBeforeLoad = null;
+
+        try (org.apache.hadoop.hbase.client.Connection hbaseConn =
+                ConnectionFactory.createConnection(conf)) {
+            try (PhoenixConnection conn = QueryUtil.getConnection(conf).unwrap(PhoenixConnection.class)) {
+                columnInfos = SchemaUtil.generateColumnInfo(conn, qualifiedTableName,
+                        userSuppliedColumnNames, true);
+                PTable table = PhoenixRuntime.getTable(conn, qualifiedTableName);
+                List<PTable> tables = Lists.newArrayList(table);
+                tables.addAll(table.getIndexes());
+                boolean hasLocalIndexes = false;
+                for (PTable index : table.getIndexes()) {
+                    if (index.getIndexType() == IndexType.LOCAL) {
+                        hasLocalIndexes = true;
+                        break;
+                    }
+                }
+                for (PTable targetTable : tables) {
+                    String physicalName = targetTable.getPhysicalName().getString();
+                    if (!partitioners.containsKey(physicalName)) {
+                        try (RegionLocator regionLocator = hbaseConn.getRegionLocator(
+                                TableName.valueOf(physicalName))) {
+                            byte[][] startKeys = regionLocator.getStartKeys();
+                            if (hasLocalIndexes && targetTable == table) {
+                                dataPhysicalName = physicalName;
+                                splitKeysBeforeLoad = startKeys;
+                            }
+                            partitioners.put(physicalName, new RegionPartitioner(physicalName,
+                                    startKeys, spillDir, sortBudget));
+                        }
+                    }
+                }
+            }
+
+            final String escapedTableName = SchemaUtil.getEscapedFullTableName(qualifiedTableName);
+            final String arraySeparator = cmdLine.getOptionValue(ARRAY_DELIMITER_OPT.getOpt(),
+                    ",");
+            final boolean ignoreErrors = cmdLine.hasOption(IGNORE_ERRORS_OPT.getOpt());
+            final Configuration connConf = conf;
+            // All the cells are written with the same timestamp, so that the cells of a row
+            // upserted more than once are told apart by the order of the input only
+            final long timestamp = EnvironmentEdgeManager.currentTimeMillis();
+            final Queue<RecordEncoder> encoders = new ConcurrentLinkedQueue<RecordEncoder>();
+            final ThreadLocal<RecordEncoder> threadEncoder = new ThreadLocal<RecordEncoder>() {
+                @Override
+                protected RecordEncoder initialValue() {
+                    try {
+                        RecordEncoder encoder = new RecordEncoder(connConf, escapedTableName,
+                                columnInfos, arraySeparator, ignoreErrors, partitioners, timestamp);
+                        encoders.add(encoder);
+                        return encoder;
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            CSVFormat csvFormat = CSVFormat.DEFAULT
+                    .withIgnoreEmptyLines(true)
+                    .withDelimiter(getCharOption(cmdLine, DELIMITER_OPT, ',', true))
+                    .withQuote(getCharOption(cmdLine, QUOTE_OPT, '"', false))
+                    .withEscape(getCharOption(cmdLine, ESCAPE_OPT, '\\', false));
+            boolean skipHeader = cmdLine.hasOption(SKIP_HEADER_OPT.getOpt());
+
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            // Bounds the number of batches of records waiting to be upserted
+            final Semaphore pendingBatches = new Semaphore(threads * 2);
+            try {
+                long batchSequence = 0;
+                for (String input : Splitter.on(",").trimResults().omitEmptyStrings()
+                        .split(cmdLine.getOptionValue(INPUT_PATH_OPT.getOpt()))) {
+                    Path inputPath = new Path(input);
+                    FileSystem fs = inputPath.getFileSystem(conf);
+                    LOGGER.info("Reading {}", inputPath);
+                    try (Reader reader = new InputStreamReader(fs.open(inputPath),
+                            StandardCharsets.UTF_8);
+                            CSVParser parser = new CSVParser(reader, csvFormat)) {
+                        Iterator<CSVRecord> records = parser.iterator();
+                        if (skipHeader && records.hasNext()) {
+                            records.next();
+                        }
+                        while (records.hasNext() && failure.get() == null) {
+                            final List<CSVRecord> batch = Lists.newArrayListWithExpectedSize(BATCH_SIZE);
+                            final long sequence = batchSequence++;
+                            while (batch.size() < BATCH_SIZE && records.hasNext()) {
+                                batch.add(records.next());
+                            }
+                            pendingBatches.acquire();
+                            pool.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    try {
+                                        threadEncoder.get().encode(batch, sequence);
+                                    } catch (Throwable t) {
+                                        failure.compareAndSet(null, t);
+                                    } finally {
+                                        pendingBatches.release();
+                                    }
+                                }
+                            });
+                        }
+                    }
+                }
+                pendingBatches.acquire(threads * 2);
+                pendingBatches.release(threads * 2);
+                if (failure.get() != null) {
+                    throw new RuntimeException("Bulk Loader error: failed to encode records",
+                            failure.get());
+                }
+                LOGGER.info("Upserted {} records with {} errors", upsertCount.get(), errorCount.get());
+
+                writeHFiles(conf, hbaseConn, pool, partitions(partitioners), outputPath, failure);
+                if (failure.get() != null) {
+                    throw new RuntimeException("Bulk Loader error: failed to write HFiles",
+                            failure.get());
+                }
+            } finally {
+                pool.shutdown();
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                for (RecordEncoder encoder : encoders) {
+                    encoder.close();
+                }
+                for (RegionPartitioner partitioner : partitioners.values()) {
+                    partitioner.close();
+                }
+            }
+
+            if (!matchingSplitKeys(hbaseConn, qualifiedTableName, dataPhysicalName,
+                    splitKeysBeforeLoad)) {
+                return -1;
+            }
+            for (String physicalName : partitioners.keySet()) {
+                Path tableOutputPath = CsvBulkImportUtil.getOutputPath(outputPath, physicalName);
+                if (!tableOutputPath.getFileSystem(conf).exists(tableOutputPath)) {
+                    continue;
+                }
+                LoadIncrementalHFiles loader = new LoadIncrementalHFiles(conf);
+                try (Table htable = hbaseConn.getTable(TableName.valueOf(physicalName))) {
+                    LOGGER.info("Loading HFiles for {} from {}", physicalName, tableOutputPath);
+                    loader.doBulkLoad(tableOutputPath, hbaseConn.getAdmin(), htable,
+                            hbaseConn.getRegionLocator(TableName.valueOf(physicalName)));
+                    LOGGER.info("Incremental load complete for table=" + physicalName);
+                }
+            }
+            if (!matchingSplitKeys(hbaseConn, qualifiedTableName, dataPhysicalName,
+                    splitKeysBeforeLoad)) {
+                return -1;
+            }
+            LOGGER.info("Removing output directory {}", outputPath);
+            if (!outputPath.getFileSystem(conf).delete(outputPath, true)) {
+                LOGGER.error("Failed to delete the output directory {}", outputPath);
+            }
+        } finally {
+            deleteQuietly(spillDir);
+        }
+        return 0;
+    }
+
+    /**
+     * The cells of local indexes are prefixed with the start key of the region of their data
+     * row, so they must not be loaded into regions that were split after they were partitioned.
+     * @return false if the data table has local indexes and was split since its start keys were
+     * read
+     */
+    private static boolean matchingSplitKeys(org.apache.hadoop.hbase.client.Connection hbaseConn,
+            String qualifiedTableName, String dataPhysicalName, byte[][] splitKeysBeforeLoad)
+            throws IOException {
+        if (splitKeysBeforeLoad == null) {
+            return true;
+        }
+        try (RegionLocator regionLocator = hbaseConn.getRegionLocator(
+                TableName.valueOf(dataPhysicalName))) {
+            if (!IndexUtil.matchingSplitKeys(splitKeysBeforeLoad, regionLocator.getStartKeys())) {
+                LOGGER.error("The table " + qualifiedTableName + " has local indexes and"
+                        + " there is split key mismatch before and after running"
+                        + " bulkload job. Please rerun the job otherwise there may be"
+                        + " inconsistencies between actual data and index data.");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void deleteQuietly(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteQuietly(child);
+            }
+        }
+        if (!file.delete()) {
+            LOGGER.warn("Failed to delete {}", file);
+        }
+    }
+
+    private static List<Pair<RegionPartitioner, Integer>> partitions(
+            Map<String, RegionPartitioner> partitioners) {
+        List<Pair<RegionPartitioner, Integer>> partitions = Lists.newArrayList();
+        for (RegionPartitioner partitioner : partitioners.values()) {
+            for (int i = 0; i < partitioner.sorters.length; i++) {
+                if (!partitioner.sorters[i].isEmpty()) {
+                    partitions.add(new Pair<RegionPartitioner, Integer>(partitioner, i));
+                }
+            }
+        }
+        return partitions;
+    }
+
+    private void writeHFiles(final Configuration conf,
+            org.apache.hadoop.hbase.client.Connection hbaseConn, ForkJoinPool pool,
+            List<Pair<RegionPartitioner, Integer>> partitions, final Path outputPath,
+            final AtomicReference<Throwable> failure) throws Exception {
+        final Map<String, TableDescriptor> descriptors = Maps.newHashMap();
+        for (Pair<RegionPartitioner, Integer> partition : partitions) {
+            String physicalName = partition.getFirst().physicalName;
+            if (!descriptors.containsKey(physicalName)) {
+                descriptors.put(physicalName,
+                        hbaseConn.getAdmin().getDescriptor(TableName.valueOf(physicalName)));
+            }
+        }
+        final long now = EnvironmentEdgeManager.currentTimeMillis();
+        List<java.util.concurrent.Future<?>> futures = Lists.newArrayList();
+        for (final Pair<RegionPartitioner, Integer> partition : partitions) {
+            futures.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    RegionPartitioner partitioner = partition.getFirst();
+                    try {
+                        writeHFiles(conf, descriptors.get(partitioner.physicalName),
+                                partitioner.sorters[partition.getSecond()],
+                                CsvBulkImportUtil.getOutputPath(outputPath, partitioner.physicalName),
+                                "region-" + partition.getSecond(), now);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            }));
+        }
+        for (java.util.concurrent.Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    /**
+     * Writes the sorted cells of a region into one HFile per column family.
+     */
+    private static void writeHFiles(Configuration conf, TableDescriptor descriptor,
+            ExternalCellSorter sorter, Path tableOutputPath, String fileName, long now)
+            throws IOException {
+        FileSystem fs = tableOutputPath.getFileSystem(conf);
+        Configuration tempConf = new Configuration(conf);
+        tempConf.setFloat(HConstants.HFILE_BLOCK_CACHE_SIZE_KEY, 0.0f);
+        Map<byte[], StoreFileWriter> writers = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        try (ExternalCellSorter.CellIterator cells = sorter.sortedIterator()) {
+            KeyValue previous = null;
+            while (cells.hasNext()) {
+                KeyValue cell = cells.next();
+                // Only the first of the cells with the same key, from the last record of the
+                // input upserting it, is kept
+                if (previous != null
+                        && CellComparatorImpl.COMPARATOR.compare(previous, cell) == 0) {
+                    continue;
+                }
+                previous = cell;
+                byte[] family = CellUtil.cloneFamily(cell);
+                StoreFileWriter writer = writers.get(family);
+                if (writer == null) {
+                    ColumnFamilyDescriptor familyDescriptor = descriptor.getColumnFamily(family);
+                    HFileContextBuilder contextBuilder = new HFileContextBuilder()
+                            .withCompression(familyDescriptor.getCompressionType())
+                            .withChecksumType(HStore.getChecksumType(conf))
+                            .withBytesPerCheckSum(HStore.getBytesPerChecksum(conf))
+                            .withBlockSize(familyDescriptor.getBlocksize())
+                            .withDataBlockEncoding(familyDescriptor.getDataBlockEncoding());
+                    CompatUtil.withComparator(contextBuilder, CellComparatorImpl.COMPARATOR);
+                    StoreFileWriter.Builder builder =
+                            new StoreFileWriter.Builder(conf, new CacheConfig(tempConf), fs)
+                                    .withFilePath(new Path(new Path(tableOutputPath,
+                                            Bytes.toString(family)), fileName))
+                                    .withBloomType(familyDescriptor.getBloomFilterType())
+                                    .withFileContext(contextBuilder.build());
+                    CompatUtil.withComparator(builder, CellComparatorImpl.COMPARATOR);
+                    writer = builder.build();
+                    writers.put(family, writer);
+                }
+                writer.append(cell);
+            }
+            for (StoreFileWriter writer : writers.values()) {
+                writer.appendFileInfo(BULKLOAD_TIME_KEY, Bytes.toBytes(now));
+                writer.appendFileInfo(MAJOR_COMPACTION_KEY, Bytes.toBytes(true));
+                writer.appendFileInfo(EXCLUDE_FROM_MINOR_COMPACTION_KEY, Bytes.toBytes(false));
+                writer.appendTrackedTimestampsToMetadata();
+            }
+        } finally {
+            for (StoreFileWriter writer : writers.values()) {
+                writer.close();
+            }
+            sorter.close();
+        }
+    }
+
+    /**
+     * Routes the cells of a physical table to the sorter of the region they belong to.
+     */
+    private static class RegionPartitioner implements Closeable {
+        private final String physicalName;
+        private final byte[][] startKeys;
+        private final ExternalCellSorter[] sorters;
+
+        RegionPartitioner(String physicalName, byte[][] startKeys, File spillDir,
+                ExternalCellSorter.MemoryBudget sortBudget) {
+            this.physicalName = physicalName;
+            this.startKeys = startKeys.clone();
+            Arrays.sort(this.startKeys, Bytes.BYTES_COMPARATOR);
+            this.sorters = new ExternalCellSorter[startKeys.length];
+            String prefix = physicalName.replace(':', '_');
+            for (int i = 0; i < startKeys.length; i++) {
+                sorters[i] = new ExternalCellSorter(spillDir, prefix + "-" + i, sortBudget);
+            }
+        }
+
+        int getRegionIndex(Cell cell) {
+            byte[] row = CellUtil.cloneRow(cell);
+            int index = Arrays.binarySearch(startKeys, row, Bytes.BYTES_COMPARATOR);
+            return index >= 0 ? index : Math.max(0, -index - 2);
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (ExternalCellSorter sorter : sorters) {
+                sorter.close();
+            }
+        }
+    }
+
+    /**
+     * Turns records into cells by upserting them on a connection of its own and collecting the
+     * uncommitted cells of the table and its indexes before rolling back.
+     */
+    private class RecordEncoder implements Closeable {
+        private final PhoenixConnection conn;
+        private final UpsertExecutor<CSVRecord, ?> upsertExecutor;
+        private final Map<String, RegionPartitioner> partitioners;
+        private final long timestamp;
+
+        RecordEncoder(Configuration conf, String tableName, List<ColumnInfo> columnInfos,
+                String arraySeparator, final boolean ignoreErrors,
+                Map<String, RegionPartitioner> partitioners, long timestamp) throws SQLException {
+            this.conn = QueryUtil.getConnection(conf).unwrap(PhoenixConnection.class);
+            conn.setAutoCommit(false);
+            this.partitioners = partitioners;
+            this.timestamp = timestamp;
+            this.upsertExecutor = new CsvUpsertExecutor(conn, tableName, columnInfos,
+                    new UpsertExecutor.UpsertListener<CSVRecord>() {
+                        @Override
+                        public void upsertDone(long count) {
+                            upsertCount.incrementAndGet();
+                        }
+
+                        @Override
+                        public void errorOnRecord(CSVRecord record, Throwable throwable) {
+                            errorCount.incrementAndGet();
+                            LOGGER.error("Error on record " + record, throwable);
+                            if (!ignoreErrors) {
+                                throw new RuntimeException(throwable);
+                            }
+                        }
+                    }, arraySeparator);
+        }
+
+        /**
+         * @param sequence the position of the batch of records in the input
+         */
+        void encode(List<CSVRecord> records, long sequence) throws SQLException, IOException {
+            upsertExecutor.execute(records);
+            Iterator<Pair<byte[], List<Cell>>> uncommittedDataIterator =
+                    PhoenixRuntime.getUncommittedDataIterator(conn, true);
+            while (uncommittedDataIterator.hasNext()) {
+                Pair<byte[], List<Cell>> tableCells = uncommittedDataIterator.next();
+                RegionPartitioner partitioner = partitioners.get(Bytes.toString(tableCells.getFirst()));
+                if (partitioner == null) {
+                    continue;
+                }
+                List<List<KeyValue>> regionCells = Lists.newArrayListWithExpectedSize(partitioner.sorters.length);
+                for (int i = 0; i < partitioner.sorters.length; i++) {
+                    regionCells.add(null);
+                }
+                for (Cell cell : tableCells.getSecond()) {
+                    KeyValue kv = PhoenixKeyValueUtil.maybeCopyCell(cell);
+                    if (kv.getTimestamp() == HConstants.LATEST_TIMESTAMP) {
+                        CellUtil.setTimestamp(kv, timestamp);
+                    }
+                    int regionIndex = partitioner.getRegionIndex(kv);
+                    List<KeyValue> cells = regionCells.get(regionIndex);
+                    if (cells == null) {
+                        cells = Lists.newArrayList();
+                        regionCells.set(regionIndex, cells);
+                    }
+                    cells.add(kv);
+                }
+                for (int i = 0; i < regionCells.size(); i++) {
+                    if (regionCells.get(i) != null) {
+                        partitioner.sorters[i].add(regionCells.get(i), sequence);
+                    }
+                }
+            }
+            conn.rollback();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                upsertExecutor.close();
+                conn.close();
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int exitStatus = ToolRunner.run(new LocalBulkLoadTool(), args);
+        System.exit(exitStatus);
+    }
+}
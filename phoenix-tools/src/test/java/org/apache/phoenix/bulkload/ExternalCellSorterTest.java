@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.bulkload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
+
+public class ExternalCellSorterTest {
+    private static final byte[] FAMILY = Bytes.toBytes("0");
+    private static final byte[] QUALIFIER = Bytes.toBytes("V");
+    private static final long TIMESTAMP = 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static KeyValue newCell(int row, String value) {
+        return new KeyValue(Bytes.toBytes(String.format("r%05d", row)), FAMILY, QUALIFIER,
+                TIMESTAMP, Bytes.toBytes(value));
+    }
+
+    private static List<KeyValue> readAll(ExternalCellSorter sorter) throws IOException {
+        List<KeyValue> cells = Lists.newArrayList();
+        try (ExternalCellSorter.CellIterator iterator = sorter.sortedIterator()) {
+            while (iterator.hasNext()) {
+                cells.add(iterator.next());
+            }
+        }
+        return cells;
+    }
+
+    @Test
+    public void testSortWithSpills() throws Exception {
+        File spillDir = folder.newFolder();
+        ExternalCellSorter.MemoryBudget budget = new ExternalCellSorter.MemoryBudget(4 * 1024);
+        List<KeyValue> expected = Lists.newArrayList();
+        try (ExternalCellSorter sorter = new ExternalCellSorter(spillDir, "t-0", budget)) {
+            List<Integer> rows = Lists.newArrayList();
+            for (int i = 0; i < 1000; i++) {
+                rows.add(i);
+            }
+            Collections.shuffle(rows, new Random(42));
+            for (int i = 0; i < rows.size(); i += 10) {
+                List<KeyValue> batch = Lists.newArrayList();
+                for (int row : rows.subList(i, i + 10)) {
+                    KeyValue cell = newCell(row, "v" + row);
+                    batch.add(cell);
+                    expected.add(cell);
+                }
+                sorter.add(batch, i / 10);
+                assertTrue(budget.getUsedBytes() <= 4 * 1024);
+            }
+            assertTrue(sorter.getRunCount() > 1);
+            Collections.sort(expected, CellComparatorImpl.COMPARATOR);
+            assertEquals(expected, readAll(sorter));
+        }
+        assertEquals(0, budget.getUsedBytes());
+        assertEquals(0, spillDir.list().length);
+    }
+
+    @Test
+    public void testEqualKeysOrderedBySequence() throws Exception {
+        File spillDir = folder.newFolder();
+        ExternalCellSorter.MemoryBudget budget = new ExternalCellSorter.MemoryBudget(Long.MAX_VALUE);
+        try (ExternalCellSorter sorter = new ExternalCellSorter(spillDir, "t-0", budget)) {
+            // The batches are added out of their input order, as by concurrent threads
+            sorter.add(Lists.newArrayList(newCell(1, "b"), newCell(2, "b")), 1);
+            sorter.add(Lists.newArrayList(newCell(1, "c")), 2);
+            sorter.add(Lists.newArrayList(newCell(1, "a"), newCell(2, "a")), 0);
+            List<KeyValue> cells = readAll(sorter);
+            assertEquals(5, cells.size());
+            // The cell of the last batch in the input comes first among the cells of a key
+            assertEquals("c", Bytes.toString(cells.get(0).getValueArray(),
+                    cells.get(0).getValueOffset(), cells.get(0).getValueLength()));
+            assertEquals("b", Bytes.toString(cells.get(3).getValueArray(),
+                    cells.get(3).getValueOffset(), cells.get(3).getValueLength()));
+        }
+    }
+
+    @Test
+    public void testEqualKeysOrderedBySequenceAcrossRuns() throws Exception {
+        File spillDir = folder.newFolder();
+        ExternalCellSorter.MemoryBudget budget = new ExternalCellSorter.MemoryBudget(1);
+        try (ExternalCellSorter sorter = new ExternalCellSorter(spillDir, "t-0", budget)) {
+            // Every batch is spilled to a run of its own
+            for (int sequence : new int[] { 3, 0, 4, 1, 2 }) {
+                sorter.add(Lists.newArrayList(newCell(1, "v" + sequence)), sequence);
+            }
+            assertEquals(5, sorter.getRunCount());
+            List<KeyValue> cells = readAll(sorter);
+            for (int i = 0; i < cells.size(); i++) {
+                KeyValue cell = cells.get(i);
+                assertEquals("v" + (4 - i), Bytes.toString(cell.getValueArray(),
+                        cell.getValueOffset(), cell.getValueLength()));
+            }
+        }
+    }
+
+    @Test
+    public void testSharedBudgetSpillsLargestBuffer() throws Exception {
+        File spillDir = folder.newFolder();
+        long cellBytes = newCell(0, "v").heapSize();
+        ExternalCellSorter.MemoryBudget budget = new ExternalCellSorter.MemoryBudget(cellBytes * 30);
+        try (ExternalCellSorter large = new ExternalCellSorter(spillDir, "t-0", budget);
+                ExternalCellSorter small = new ExternalCellSorter(spillDir, "t-1", budget)) {
+            List<KeyValue> batch = Lists.newArrayList();
+            for (int i = 0; i < 20; i++) {
+                batch.add(newCell(i, "v"));
+            }
+            large.add(batch, 0);
+            assertEquals(0, large.getRunCount());
+            // The small buffer pushes the total over the budget, so the large one is spilled
+            batch = Lists.newArrayList();
+            for (int i = 0; i < 10; i++) {
+                batch.add(newCell(i, "w"));
+            }
+            small.add(batch, 1);
+            assertEquals(1, large.getRunCount());
+            assertEquals(0, large.getBufferBytes());
+            assertEquals(0, small.getRunCount());
+            assertEquals(small.getBufferBytes(), budget.getUsedBytes());
+            assertEquals(20, readAll(large).size());
+            assertEquals(10, readAll(small).size());
+        }
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    public void testCloseIteratorBeforeEnd() throws Exception {
+        File spillDir = folder.newFolder();
+        ExternalCellSorter.MemoryBudget budget = new ExternalCellSorter.MemoryBudget(1);
+        ExternalCellSorter sorter = new ExternalCellSorter(spillDir, "t-0", budget);
+        for (int i = 0; i < 3; i++) {
+            sorter.add(Lists.newArrayList(newCell(i, "v")), i);
+        }
+        ExternalCellSorter.CellIterator iterator = sorter.sortedIterator();
+        assertTrue(iterator.hasNext());
+        iterator.next();
+        iterator.close();
+        assertFalse(iterator.hasNext());
+        sorter.close();
+        assertEquals(0, spillDir.list().length);
+    }
+}